@@ -1,6 +1,8 @@
 package com.mysillydreams.gateway.config;
 
 import com.mysillydreams.gateway.filter.AuthenticationFilter;
+import com.mysillydreams.gateway.filter.DeadlineFilter;
+import com.mysillydreams.gateway.filter.RequiredRolesFilterFactory;
 import com.mysillydreams.gateway.filter.TracingFilter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +10,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
 import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
@@ -28,6 +31,8 @@ public class GatewayConfig {
 
     private final AuthenticationFilter authenticationFilter;
     private final TracingFilter tracingFilter;
+    private final DeadlineFilter deadlineFilter;
+    private final RequiredRolesFilterFactory requiredRoles;
 
     // Fixed: Externalized service URIs from proper configuration paths
     @Value("${gateway.routes.cms-service.uri:lb://cms-service}")
@@ -86,16 +91,21 @@ public class GatewayConfig {
 
     // Rate limiters
     @Autowired
-    @Qualifier("authRedisRateLimiter")
-    private RedisRateLimiter authRedisRateLimiter;
+    @Qualifier("authRateLimiter")
+    private RateLimiter<?> authRateLimiter;
 
     @Autowired
-    @Qualifier("apiRedisRateLimiter")
-    private RedisRateLimiter apiRedisRateLimiter;
+    @Qualifier("apiRateLimiter")
+    private RateLimiter<?> apiRateLimiter;
 
     @Autowired
-    @Qualifier("adminRedisRateLimiter")
-    private RedisRateLimiter adminRedisRateLimiter;
+    @Qualifier("adminRateLimiter")
+    private RateLimiter<?> adminRateLimiter;
+
+    // Used by the internal-auth route only, which is commented out below; API-key quota overrides stay inactive until then
+    @Autowired
+    @Qualifier("apiKeyRateLimiter")
+    private RateLimiter<?> apiKeyRateLimiter;
 
     // Key resolvers
     @Autowired
@@ -118,10 +128,13 @@ public class GatewayConfig {
     @Qualifier("apiKeyResolver")
     private KeyResolver apiKeyResolver;
 
-    public GatewayConfig(GatewayProperties gatewayProperties, AuthenticationFilter authenticationFilter, TracingFilter tracingFilter) {
+    public GatewayConfig(GatewayProperties gatewayProperties, AuthenticationFilter authenticationFilter, TracingFilter tracingFilter,
+                         DeadlineFilter deadlineFilter, RequiredRolesFilterFactory requiredRoles) {
         this.gatewayProperties = gatewayProperties;
         this.authenticationFilter = authenticationFilter;
         this.tracingFilter = tracingFilter;
+        this.deadlineFilter = deadlineFilter;
+        this.requiredRoles = requiredRoles;
     }
 
     @Bean
@@ -133,13 +146,14 @@ public class GatewayConfig {
                         .filters(f -> f
                                 .filter(tracingFilter)  // Tracing first
                                 .requestRateLimiter(config -> config
-                                        .setRateLimiter(apiRedisRateLimiter)
+                                        .setRateLimiter(apiRateLimiter)
                                         .setKeyResolver(ipKeyResolver))  // IP-based for public content
                                 .filter((exchange, chain) -> chain.filter(exchange).timeout(perRouteTimeout))
                                 .retry(config -> config
                                         .setRetries(3)
                                         .setMethods(org.springframework.http.HttpMethod.GET, org.springframework.http.HttpMethod.POST)
                                         .setBackoff(Duration.ofMillis(1000), Duration.ofMillis(5000), 2, true))
+                                .filter(deadlineFilter)  // Forward the remaining deadline on every attempt
                                 .circuitBreaker(config -> config
                                         .setName("cms-api-cb")
                                         .setFallbackUri(cmsFallbackUri)))
@@ -169,13 +183,14 @@ public class GatewayConfig {
                         .filters(f -> f
                                 .filter(tracingFilter)  // Tracing first
                                 .requestRateLimiter(config -> config
-                                        .setRateLimiter(authRedisRateLimiter)
+                                        .setRateLimiter(authRateLimiter)
                                         .setKeyResolver(ipKeyResolver))  // IP-based for login attempts
                                 .filter((exchange, chain) -> chain.filter(exchange).timeout(perRouteTimeout))
                                 .retry(config -> config
                                         .setRetries(authRetryMaxAttempts)
                                         .setMethods(org.springframework.http.HttpMethod.POST)
                                         .setBackoff(Duration.ofMillis(1000), Duration.ofMillis(5000), 2, true))
+                                .filter(deadlineFilter)  // Forward the remaining deadline on every attempt
                                 .circuitBreaker(config -> config
                                         .setName("auth-login-cb")
                                         .setFallbackUri(authFallbackUri))
@@ -188,18 +203,20 @@ public class GatewayConfig {
                         .filters(f -> f
                                 .filter(tracingFilter)  // 1. Tracing first
                                 .filter(authenticationFilter)  // 2. Authentication
-                                .requestRateLimiter(config -> config  // 3. Rate limiting (after auth)
-                                        .setRateLimiter(adminRedisRateLimiter)
+                                .filter(requiredRoles.anyOf("ROLE_ADMIN", "admin"))  // 3. Role check (before rate limiting)
+                                .requestRateLimiter(config -> config  // 4. Rate limiting (after auth)
+                                        .setRateLimiter(adminRateLimiter)
                                         .setKeyResolver(combinedKeyResolver))  // Combined user+IP+endpoint
-                                .filter((exchange, chain) -> chain.filter(exchange).timeout(perRouteTimeout))  // 4. Timeout
-                                .retry(config -> config  // 5. Retry
+                                .filter((exchange, chain) -> chain.filter(exchange).timeout(perRouteTimeout))  // 5. Timeout
+                                .retry(config -> config  // 6. Retry
                                         .setRetries(adminRetryMaxAttempts)
                                         .setMethods(org.springframework.http.HttpMethod.GET, org.springframework.http.HttpMethod.POST, org.springframework.http.HttpMethod.PUT)
                                         .setBackoff(Duration.ofMillis(1000), Duration.ofMillis(3000), 2, true))
-                                .circuitBreaker(config -> config  // 6. Circuit breaker
+                                .filter(deadlineFilter)  // Forward the remaining deadline on every attempt
+                                .circuitBreaker(config -> config  // 7. Circuit breaker
                                         .setName("auth-admin-cb")
                                         .setFallbackUri(authFallbackUri))
-                                .stripPrefix(1))  // 7. Strip /api prefix
+                                .stripPrefix(1))  // 8. Strip /api prefix
                         .uri(authServiceUri))
 
                 // Fixed: User Service Routes - proper filter ordering
@@ -209,13 +226,14 @@ public class GatewayConfig {
                                 .filter(tracingFilter)  // 1. Tracing first
                                 .filter(authenticationFilter)  // 2. Authentication
                                 .requestRateLimiter(config -> config  // 3. Rate limiting (after auth)
-                                        .setRateLimiter(apiRedisRateLimiter)
+                                        .setRateLimiter(apiRateLimiter)
                                         .setKeyResolver(userKeyResolver))
                                 .filter((exchange, chain) -> chain.filter(exchange).timeout(perRouteTimeout))  // 4. Timeout
                                 .retry(config -> config  // 5. Retry
                                         .setRetries(userRetryMaxAttempts)
                                         .setMethods(org.springframework.http.HttpMethod.GET, org.springframework.http.HttpMethod.POST, org.springframework.http.HttpMethod.PUT)
                                         .setBackoff(Duration.ofMillis(1000), Duration.ofMillis(5000), 2, true))
+                                .filter(deadlineFilter)  // Forward the remaining deadline on every attempt
                                 .circuitBreaker(config -> config  // 6. Circuit breaker
                                         .setName("user-service-cb")
                                         .setFallbackUri(userFallbackUri)))
@@ -227,18 +245,20 @@ public class GatewayConfig {
                         .filters(f -> f
                                 .filter(tracingFilter)  // 1. Tracing first
                                 .filter(authenticationFilter)  // 2. Authentication
-                                .requestRateLimiter(config -> config  // 3. Rate limiting (after auth)
-                                        .setRateLimiter(adminRedisRateLimiter)
+                                .filter(requiredRoles.anyOf("ROLE_ADMIN", "admin"))  // 3. Role check (before rate limiting)
+                                .requestRateLimiter(config -> config  // 4. Rate limiting (after auth)
+                                        .setRateLimiter(adminRateLimiter)
                                         .setKeyResolver(sessionKeyResolver))
-                                .filter((exchange, chain) -> chain.filter(exchange).timeout(perRouteTimeout))  // 4. Timeout
-                                .retry(config -> config  // 5. Retry
+                                .filter((exchange, chain) -> chain.filter(exchange).timeout(perRouteTimeout))  // 5. Timeout
+                                .retry(config -> config  // 6. Retry
                                         .setRetries(adminRetryMaxAttempts)
                                         .setMethods(org.springframework.http.HttpMethod.GET)
                                         .setBackoff(Duration.ofMillis(1000), Duration.ofMillis(3000), 2, true))
-                                .circuitBreaker(config -> config  // 6. Circuit breaker
+                                .filter(deadlineFilter)  // Forward the remaining deadline on every attempt
+                                .circuitBreaker(config -> config  // 7. Circuit breaker
                                         .setName("admin-server-cb")
                                         .setFallbackUri(adminFallbackUri))
-                                .stripPrefix(1))  // 7. Strip prefix
+                                .stripPrefix(1))  // 8. Strip prefix
                         .uri(adminServerUri))
 
                 // Fixed: Internal Service Communication - proper filter ordering
@@ -248,13 +268,14 @@ public class GatewayConfig {
                                 .filter(tracingFilter)  // 1. Tracing first
                                 .filter(authenticationFilter)  // 2. Authentication
                                 .requestRateLimiter(config -> config  // 3. Rate limiting (after auth)
-                                        .setRateLimiter(apiRedisRateLimiter)
+                                        .setRateLimiter(apiKeyRateLimiter)
                                         .setKeyResolver(apiKeyResolver))  // API key based resolution
                                 .filter((exchange, chain) -> chain.filter(exchange).timeout(perRouteTimeout))  // 4. Timeout
                                 .retry(config -> config  // 5. Retry
                                         .setRetries(2)
                                         .setMethods(org.springframework.http.HttpMethod.GET, org.springframework.http.HttpMethod.POST)
                                         .setBackoff(Duration.ofMillis(500), Duration.ofMillis(2000), 2, true))
+                                .filter(deadlineFilter)  // Forward the remaining deadline on every attempt
                                 .circuitBreaker(config -> config  // 6. Circuit breaker
                                         .setName("internal-auth-cb")
                                         .setFallbackUri(authFallbackUri)))
@@ -266,15 +287,17 @@ public class GatewayConfig {
                         .filters(f -> f
                                 .filter(tracingFilter)  // 1. Tracing first
                                 .filter(authenticationFilter)  // 2. Authentication
-                                .requestRateLimiter(config -> config  // 3. Rate limiting (after auth)
-                                        .setRateLimiter(adminRedisRateLimiter)
+                                .filter(requiredRoles.anyOf("ROLE_ADMIN", "admin"))  // 3. Role check (before rate limiting)
+                                .requestRateLimiter(config -> config  // 4. Rate limiting (after auth)
+                                        .setRateLimiter(adminRateLimiter)
                                         .setKeyResolver(combinedKeyResolver))
-                                .filter((exchange, chain) -> chain.filter(exchange).timeout(Duration.ofSeconds(5)))  // 4. Timeout (shorter for config service)
-                                .retry(config -> config  // 5. Retry
+                                .filter((exchange, chain) -> chain.filter(exchange).timeout(Duration.ofSeconds(5)))  // 5. Timeout (shorter for config service)
+                                .retry(config -> config  // 6. Retry
                                         .setRetries(2)
                                         .setMethods(org.springframework.http.HttpMethod.GET, org.springframework.http.HttpMethod.POST)
                                         .setBackoff(Duration.ofMillis(1000), Duration.ofMillis(3000), 2, true))
-                                .circuitBreaker(config -> config  // 6. Circuit breaker
+                                .filter(deadlineFilter)  // Forward the remaining deadline on every attempt
+                                .circuitBreaker(config -> config  // 7. Circuit breaker
                                         .setName("zookeeper-service-cb")
                                         .setFallbackUri(configFallbackUri)))
                         .uri(configServiceUri))
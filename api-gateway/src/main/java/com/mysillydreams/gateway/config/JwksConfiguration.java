@@ -0,0 +1,50 @@
+package com.mysillydreams.gateway.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.gateway.service.VerifiedTokenCache;
+import com.mysillydreams.gateway.service.jwks.FileJwksSource;
+import com.mysillydreams.gateway.service.jwks.HttpJwksSource;
+import com.mysillydreams.gateway.service.jwks.JwksKeyStore;
+import com.mysillydreams.gateway.service.jwks.JwksSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.file.Path;
+
+/**
+ * JWKS key store wiring for asymmetric JWT verification
+ * Only active when jwt.jwks.enabled=true
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "jwt.jwks", name = "enabled", havingValue = "true")
+public class JwksConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public JwksKeyStore jwksKeyStore(JwtProperties jwtProperties, ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry, VerifiedTokenCache tokenCache) {
+        JwtProperties.Jwks config = jwtProperties.getJwks();
+        JwksKeyStore keyStore = new JwksKeyStore(jwksSource(config), config.getRefreshInterval(),
+                config.getMinRefreshInterval(), objectMapper, meterRegistry);
+
+        // Tokens verified against a retired key must not outlive it in the cache
+        keyStore.setKeyRemovalListener(removed -> tokenCache.invalidateAll());
+        return keyStore;
+    }
+
+    private JwksSource jwksSource(JwtProperties.Jwks config) {
+        String uri = config.getUri();
+        if (uri == null || uri.isBlank()) {
+            throw new IllegalArgumentException("jwt.jwks.uri is required when jwt.jwks.enabled=true");
+        }
+        if (uri.startsWith("file:")) {
+            return new FileJwksSource(Path.of(uri.substring("file:".length())));
+        }
+        if (uri.startsWith("http://") || uri.startsWith("https://")) {
+            return new HttpJwksSource(WebClient.create(), uri, config.getFetchTimeout());
+        }
+        throw new IllegalArgumentException("Unsupported jwt.jwks.uri scheme: " + uri);
+    }
+}
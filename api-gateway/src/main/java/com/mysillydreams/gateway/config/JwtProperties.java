@@ -0,0 +1,175 @@
+package com.mysillydreams.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+
+/**
+ * Configuration properties for JWT verification tuning
+ * Secret, issuer, audience and clock skew are still read directly by JwtService
+ */
+@Data
+@Validated
+@Component
+@ConfigurationProperties(prefix = "jwt")
+public class JwtProperties {
+
+    @Valid
+    @NotNull
+    private Cache cache = new Cache();
+
+    @Valid
+    @NotNull
+    private Verification verification = new Verification();
+
+    @Valid
+    @NotNull
+    private Jwks jwks = new Jwks();
+
+    @Valid
+    @NotNull
+    private Revocation revocation = new Revocation();
+
+    /**
+     * Verified-token cache configuration
+     * Entries are evicted at the token's exp or after ttl, whichever comes first
+     */
+    @Data
+    @Validated
+    public static class Cache {
+
+        /**
+         * Whether verified principals are cached between requests
+         */
+        private boolean enabled = true;
+
+        /**
+         * Hard cap on the number of cached tokens
+         */
+        @Positive
+        private int maxSize = 10_000;
+
+        /**
+         * Maximum time a verified token is trusted without re-verification (ISO-8601 duration format)
+         */
+        @NotNull
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    /**
+     * Where token verification runs relative to the Netty event loop
+     */
+    @Data
+    @Validated
+    public static class Verification {
+
+        /**
+         * INLINE verifies on the event loop when the token is cached or small;
+         * OFFLOAD always hops to boundedElastic (asymmetric keys, remote introspection)
+         */
+        @NotNull
+        private Mode mode = Mode.INLINE;
+
+        /**
+         * Uncached tokens longer than this are offloaded even in INLINE mode
+         */
+        @Positive
+        private int maxInlineTokenLength = 4096;
+    }
+
+    /**
+     * JWKS configuration for RS256/ES256 tokens
+     * HS* tokens keep using the shared secret; asymmetric tokens are matched to keys by kid
+     */
+    @Data
+    @Validated
+    public static class Jwks {
+
+        /**
+         * Whether asymmetric tokens are accepted
+         */
+        private boolean enabled = false;
+
+        /**
+         * JWKS location: http(s):// URL or file: path
+         */
+        private String uri;
+
+        /**
+         * Background refresh interval (ISO-8601 duration format)
+         */
+        @NotNull
+        private Duration refreshInterval = Duration.ofMinutes(5);
+
+        /**
+         * Minimum gap between on-demand refreshes triggered by unknown kids
+         */
+        @NotNull
+        private Duration minRefreshInterval = Duration.ofSeconds(30);
+
+        /**
+         * Timeout for a single HTTP fetch
+         */
+        @NotNull
+        private Duration fetchTimeout = Duration.ofSeconds(5);
+    }
+
+    /**
+     * Token revocation configuration
+     * Revoked jti values live in Redis and are mirrored into an in-memory Bloom filter
+     */
+    @Data
+    @Validated
+    public static class Revocation {
+
+        /**
+         * Whether revocation checks are performed
+         */
+        private boolean enabled = false;
+
+        /**
+         * Redis pub/sub channel carrying new revocations
+         */
+        @NotBlank
+        private String channel = "jwt:revocations";
+
+        /**
+         * Redis key prefix for revoked jti entries
+         */
+        @NotBlank
+        private String keyPrefix = "jwt:revoked:";
+
+        /**
+         * Expected number of concurrently revoked tokens, used to size the Bloom filter
+         */
+        @Positive
+        private long expectedRevocations = 100_000;
+
+        /**
+         * Target Bloom filter false-positive probability
+         */
+        @DecimalMin(value = "0.0", inclusive = false)
+        @DecimalMax(value = "1.0", inclusive = false)
+        private double falsePositiveProbability = 0.01;
+
+        /**
+         * How often the filter is rebuilt from Redis to drop expired revocations
+         */
+        @NotNull
+        private Duration rebuildInterval = Duration.ofMinutes(10);
+    }
+
+    public enum Mode {
+        INLINE,
+        OFFLOAD
+    }
+}
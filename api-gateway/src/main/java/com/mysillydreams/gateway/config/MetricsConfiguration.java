@@ -1,8 +1,14 @@
 package com.mysillydreams.gateway.config;
 
+import com.mysillydreams.gateway.metrics.GatewayMeters;
+import com.mysillydreams.gateway.metrics.PathTemplateNormalizer;
+import com.mysillydreams.gateway.metrics.RouteLatencyRecorder;
+import com.mysillydreams.gateway.metrics.TagCardinalityLimiter;
+import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
@@ -28,8 +34,18 @@ public class MetricsConfiguration {
      */
     @Bean
     @Order(-200)  // Very high precedence - before all other filters
-    public WebFilter metricsFilter(MeterRegistry meterRegistry) {
-        return new GatewayMetricsFilter(meterRegistry);
+    public WebFilter metricsFilter(GatewayMeters gatewayMeters, PathTemplateNormalizer pathNormalizer,
+                                   RouteLatencyRecorder latencyRecorder) {
+        return new GatewayMetricsFilter(gatewayMeters, pathNormalizer, latencyRecorder);
+    }
+
+    /**
+     * Tag cardinality cap for every gateway meter
+     * Picked up by Spring Boot both as a MeterFilter and as the binder for the dropped-series counter
+     */
+    @Bean
+    public TagCardinalityLimiter tagCardinalityLimiter(MetricsProperties metricsProperties) {
+        return new TagCardinalityLimiter(metricsProperties.getTagCardinality());
     }
 
     /**
@@ -37,34 +53,17 @@ public class MetricsConfiguration {
      */
     public static class GatewayMetricsFilter implements WebFilter {
 
-        private final MeterRegistry meterRegistry;
-        private final Counter requestCounter;
-        private final Counter rateLimitHitCounter;
-        private final Counter timeoutCounter;
-        private final Counter circuitBreakerOpenCounter;
-        private final Timer requestTimer;
-
-        public GatewayMetricsFilter(MeterRegistry meterRegistry) {
-            this.meterRegistry = meterRegistry;
-            this.requestCounter = Counter.builder("gateway.requests.total")
-                    .description("Total number of requests processed by gateway")
-                    .register(meterRegistry);
-
-            this.rateLimitHitCounter = Counter.builder("gateway.ratelimit.hits")
-                    .description("Number of requests that hit rate limits")
-                    .register(meterRegistry);
-
-            this.timeoutCounter = Counter.builder("gateway.timeouts.total")
-                    .description("Number of requests that timed out")
-                    .register(meterRegistry);
-
-            this.circuitBreakerOpenCounter = Counter.builder("gateway.circuitbreaker.opens")
-                    .description("Number of circuit breaker opens")
-                    .register(meterRegistry);
-
-            this.requestTimer = Timer.builder("gateway.request.duration")
-                    .description("Request processing time")
-                    .register(meterRegistry);
+        private final GatewayMeters gatewayMeters;
+        private final PathTemplateNormalizer pathNormalizer;
+        private final RouteLatencyRecorder latencyRecorder;
+        private final Clock clock;
+
+        public GatewayMetricsFilter(GatewayMeters gatewayMeters, PathTemplateNormalizer pathNormalizer,
+                                    RouteLatencyRecorder latencyRecorder) {
+            this.gatewayMeters = gatewayMeters;
+            this.pathNormalizer = pathNormalizer;
+            this.latencyRecorder = latencyRecorder;
+            this.clock = gatewayMeters.getRegistry().config().clock();
         }
 
         @Override
@@ -72,13 +71,19 @@ public class MetricsConfiguration {
             String path = exchange.getRequest().getPath().value();
 
             // Fixed: Exclude actuator endpoints from metrics and rate limiting
+            // Route latency is still recorded, so cms-actuator and the health routes get their histograms
             if (this.isActuatorEndpoint(path)) {
-                return chain.filter(exchange);
+                if (!latencyRecorder.isEnabled()) {
+                    return chain.filter(exchange);
+                }
+                long startNanos = clock.monotonicTime();
+                return chain.filter(exchange)
+                        .doFinally(signalType -> recordRouteLatency(exchange, clock.monotonicTime() - startNanos));
             }
 
-            // Use Timer.Sample for cleaner duration recording
-            Timer.Sample sample = Timer.start(meterRegistry);
+            long startNanos = clock.monotonicTime();
             String method = exchange.getRequest().getMethod().name();
+            GatewayMeters.RouteMeters routeMeters = gatewayMeters.route(pathNormalizer.normalize(path), method);
 
             // Generate correlation ID if not present
             String correlationId = exchange.getRequest().getHeaders().getFirst("X-Correlation-ID");
@@ -90,66 +95,27 @@ public class MetricsConfiguration {
             // Add correlation ID to response headers
             exchange.getResponse().getHeaders().add("X-Correlation-ID", correlationId);
 
-            // Increment request counter with method tag
-            Counter.builder("gateway.requests.total")
-                    .tag("method", method)
-                    .tag("path", sanitizePath(path))
-                    .description("Total number of requests processed by gateway")
-                    .register(meterRegistry)
-                    .increment();
+            routeMeters.request();
 
             return chain.filter(exchange)
                     .doFinally(signalType -> {
-                        // Record request duration with rich tags
+                        // Duration plus 429/503/5xx counters, all from meters resolved for this route
                         int statusCode = exchange.getResponse().getStatusCode() != null ?
                             exchange.getResponse().getStatusCode().value() : 0;
-
-                        sample.stop(Timer.builder("gateway.request.duration")
-                                .tags("method", method,
-                                      "status", String.valueOf(statusCode),
-                                      "path", sanitizePath(path))
-                                .description("Request processing time")
-                                .register(meterRegistry));
-
-                        // Record specific error metrics with tags
-                        if (statusCode == 429) {
-                            Counter.builder("gateway.ratelimit.hits")
-                                    .tag("method", method)
-                                    .tag("path", sanitizePath(path))
-                                    .description("Number of requests that hit rate limits")
-                                    .register(meterRegistry)
-                                    .increment();
-                        }
-
-                        if (statusCode == 503) {
-                            Counter.builder("gateway.circuitbreaker.opens")
-                                    .tag("method", method)
-                                    .tag("path", sanitizePath(path))
-                                    .description("Number of circuit breaker opens")
-                                    .register(meterRegistry)
-                                    .increment();
-                        }
-
-                        if (statusCode >= 500) {
-                            Counter.builder("gateway.errors.total")
-                                    .tag("method", method)
-                                    .tag("status", String.valueOf(statusCode))
-                                    .tag("path", sanitizePath(path))
-                                    .description("Total number of server errors")
-                                    .register(meterRegistry)
-                                    .increment();
-                        }
+                        long durationNanos = clock.monotonicTime() - startNanos;
+                        routeMeters.response(statusCode, durationNanos);
+                        recordRouteLatency(exchange, durationNanos);
                     });
         }
 
         /**
-         * Sanitize path for metrics to avoid high cardinality
+         * Route is resolved by the gateway handler mapping, so it is only known once the chain ran
          */
-        private String sanitizePath(String path) {
-            // Replace dynamic path segments with placeholders
-            return path.replaceAll("/\\d+", "/{id}")
-                      .replaceAll("/[a-f0-9-]{36}", "/{uuid}")
-                      .replaceAll("/[a-f0-9]{8,}", "/{hash}");
+        private void recordRouteLatency(ServerWebExchange exchange, long durationNanos) {
+            if (latencyRecorder.isEnabled()) {
+                Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+                latencyRecorder.record(route != null ? route.getId() : null, durationNanos);
+            }
         }
 
         /**
@@ -195,8 +161,8 @@ public class MetricsConfiguration {
 
     /**
      * Custom metrics for fallback responses
-     * Note: Fallback metrics are now created dynamically in FallbackController
-     * with proper service tagging using MeterRegistry directly
+     * Note: Fallback metrics are created in FallbackController
+     * with service tagging through GatewayMeters
      */
 
 
@@ -0,0 +1,116 @@
+package com.mysillydreams.gateway.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration properties for gateway metrics
+ */
+@Data
+@Validated
+@Component
+@ConfigurationProperties(prefix = "gateway.metrics")
+public class MetricsProperties {
+
+    @Valid
+    @NotNull
+    private TagCardinality tagCardinality = new TagCardinality();
+
+    @Valid
+    @NotNull
+    private Latency latency = new Latency();
+
+    /**
+     * Caps on distinct tag values for gateway meters
+     * Values beyond the cap are folded into a single overflow bucket
+     */
+    @Data
+    @Validated
+    public static class TagCardinality {
+
+        /**
+         * Whether the cap is enforced
+         */
+        private boolean enabled = true;
+
+        /**
+         * Only meters whose name starts with this prefix are limited
+         */
+        @NotBlank
+        private String meterPrefix = "gateway.";
+
+        /**
+         * Default maximum distinct values per tag of a single meter
+         */
+        @Positive
+        private int maxValuesPerTag = 200;
+
+        /**
+         * Per-tag-key overrides of maxValuesPerTag, e.g. path: 500
+         */
+        @NotNull
+        private Map<String, Integer> maxValuesByTag = new HashMap<>();
+
+        /**
+         * Tag value used once a tag has reached its cap
+         */
+        @NotBlank
+        private String overflowValue = "other";
+    }
+
+    /**
+     * Per-route latency timers (gateway.route.latency, tagged by route id)
+     * p50/p90/p99/p999 are always tracked in memory for the gateway-latency endpoint
+     */
+    @Data
+    @Validated
+    public static class Latency {
+
+        /**
+         * Whether per-route latency is recorded
+         */
+        private boolean enabled = true;
+
+        /**
+         * SLO bucket boundaries exported as cumulative histogram buckets (ISO-8601 duration format)
+         */
+        @NotNull
+        private List<Duration> sloBoundaries = List.of(
+            Duration.ofMillis(50),
+            Duration.ofMillis(100),
+            Duration.ofMillis(250),
+            Duration.ofMillis(500),
+            Duration.ofSeconds(1),
+            Duration.ofMillis(2500),
+            Duration.ofSeconds(5)
+        );
+
+        /**
+         * Also publish the full percentile histogram for server-side quantiles
+         */
+        private boolean percentileHistogram = false;
+
+        /**
+         * Window the in-memory percentiles cover before samples age out
+         */
+        @NotNull
+        private Duration percentileWindow = Duration.ofMinutes(2);
+
+        /**
+         * Number of rotating buckets the percentile window is split into
+         */
+        @Positive
+        private int percentileBufferLength = 3;
+    }
+}
@@ -44,9 +44,11 @@ public class RateLimiterErrorHandler implements ErrorWebExceptionHandler {
         response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
         response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
 
-        // Add rate limiting headers
-        response.getHeaders().set(HeaderConstants.RETRY_AFTER, 
-            gatewayProperties.getFallback().getRetryAfter().toString());
+        // Add rate limiting headers; keep the limiter's own Retry-After when it computed one
+        if (!response.getHeaders().containsKey(HeaderConstants.RETRY_AFTER)) {
+            response.getHeaders().set(HeaderConstants.RETRY_AFTER,
+                String.valueOf(gatewayProperties.getFallback().getRetryAfter().toSeconds()));
+        }
         response.getHeaders().set(HeaderConstants.CACHE_CONTROL, 
             "no-cache, no-store, must-revalidate");
 
@@ -1,19 +1,35 @@
 package com.mysillydreams.gateway.config;
 
 import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import com.mysillydreams.gateway.service.ratelimit.ApiKeyQuotaRateLimiter;
+import com.mysillydreams.gateway.service.ratelimit.ClientIdentity;
+import com.mysillydreams.gateway.service.ratelimit.FailoverRateLimiter;
+import com.mysillydreams.gateway.service.ratelimit.GcraRateLimiter;
+import com.mysillydreams.gateway.service.ratelimit.HeavyHitterTracker;
+import com.mysillydreams.gateway.service.ratelimit.LeasedTokenBucketRateLimiter;
+import com.mysillydreams.gateway.service.ratelimit.LocalLimit;
+import com.mysillydreams.gateway.service.ratelimit.LocalSlidingWindow;
+import com.mysillydreams.gateway.service.ratelimit.LocalTokenBucket;
+import com.mysillydreams.gateway.service.ratelimit.SlidingWindowRateLimiter;
+import com.mysillydreams.gateway.service.ratelimit.WeightedRedisRateLimiter;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
 import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
-import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.Map;
+import java.time.Duration;
 
 /**
  * Fixed: Enhanced rate limiting configuration using @ConfigurationProperties
@@ -25,17 +41,39 @@ public class RateLimitingConfiguration {
     @Autowired
     private RateLimiterProperties rateLimiterProperties;
 
-    // Fixed: Cache for CIDR parsing to avoid performance issues
-    private final Map<String, Boolean> cidrCache = new ConcurrentHashMap<>();
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectProvider<CircuitBreakerRegistry> circuitBreakerRegistry;
+
+    @Autowired
+    private ObjectProvider<DiscoveryClient> discoveryClient;
+
+    @Value("${spring.application.name:api-gateway}")
+    private String applicationName;
+
+    @Autowired
+    private ClientIdentity clientIdentity;
+
+    @Autowired
+    private HeavyHitterTracker heavyHitterTracker;
 
     /**
-     * Default rate limiter for general requests
+     * Default rate limiter for general requests, using the configured algorithm
      */
     @Bean
     @Primary
-    public RedisRateLimiter primaryDefaultRateLimiter() {
+    public RateLimiter<RedisRateLimiter.Config> primaryDefaultRateLimiter() {
         RateLimiterProperties.Default config = rateLimiterProperties.getDefault();
-        return new RedisRateLimiter(config.getReplenishRate(), config.getBurstCapacity(), config.getRequestedTokens());
+        return switch (config.getAlgorithm()) {
+            case GCRA -> new GcraRateLimiter(config.getReplenishRate(), config.getBurstCapacity(),
+                    config.getRequestedTokens());
+            case SLIDING_WINDOW -> new SlidingWindowRateLimiter(config.getReplenishRate(), config.getWindow(),
+                    config.getRequestedTokens());
+            case TOKEN_BUCKET -> new WeightedRedisRateLimiter(config.getReplenishRate(), config.getBurstCapacity(),
+                    config.getRequestedTokens());
+        };
     }
 
     /**
@@ -44,7 +82,8 @@ public class RateLimitingConfiguration {
     @Bean("authRedisRateLimiter")
     public RedisRateLimiter authRedisRateLimiter() {
         RateLimiterProperties.Auth config = rateLimiterProperties.getAuth();
-        return new RedisRateLimiter(config.getReplenishRate(), config.getBurstCapacity(), config.getRequestedTokens());
+        return new WeightedRedisRateLimiter(config.getReplenishRate(), config.getBurstCapacity(),
+                config.getRequestedTokens());
     }
 
     /**
@@ -53,7 +92,8 @@ public class RateLimitingConfiguration {
     @Bean("apiRedisRateLimiter")
     public RedisRateLimiter apiRedisRateLimiter() {
         RateLimiterProperties.Api config = rateLimiterProperties.getApi();
-        return new RedisRateLimiter(config.getReplenishRate(), config.getBurstCapacity(), config.getRequestedTokens());
+        return new WeightedRedisRateLimiter(config.getReplenishRate(), config.getBurstCapacity(),
+                config.getRequestedTokens());
     }
 
     /**
@@ -62,35 +102,63 @@ public class RateLimitingConfiguration {
     @Bean("adminRedisRateLimiter")
     public RedisRateLimiter adminRedisRateLimiter() {
         RateLimiterProperties.Admin config = rateLimiterProperties.getAdmin();
-        return new RedisRateLimiter(config.getReplenishRate(), config.getBurstCapacity(), config.getRequestedTokens());
+        return new WeightedRedisRateLimiter(config.getReplenishRate(), config.getBurstCapacity(),
+                config.getRequestedTokens());
+    }
+
+    /**
+     * Authentication limiter in the configured algorithm (token bucket with optional leasing by default), with Redis failover
+     */
+    @Bean("authRateLimiter")
+    public FailoverRateLimiter authRateLimiter(@Qualifier("authRedisRateLimiter") RedisRateLimiter redisLimiter) {
+        RateLimiterProperties.Auth config = rateLimiterProperties.getAuth();
+        return tiered("auth", redisLimiter, config.getAlgorithm(), config.getReplenishRate(), config.getBurstCapacity(),
+                config.getRequestedTokens(), config.getWindow(), config.getLease());
+    }
+
+    /**
+     * API limiter in the configured algorithm (token bucket with optional leasing by default), with Redis failover
+     */
+    @Bean("apiRateLimiter")
+    public FailoverRateLimiter apiRateLimiter(@Qualifier("apiRedisRateLimiter") RedisRateLimiter redisLimiter) {
+        RateLimiterProperties.Api config = rateLimiterProperties.getApi();
+        return tiered("api", redisLimiter, config.getAlgorithm(), config.getReplenishRate(), config.getBurstCapacity(),
+                config.getRequestedTokens(), config.getWindow(), config.getLease());
+    }
+
+    /**
+     * Admin limiter in the configured algorithm (token bucket with optional leasing by default), with Redis failover
+     */
+    @Bean("adminRateLimiter")
+    public FailoverRateLimiter adminRateLimiter(@Qualifier("adminRedisRateLimiter") RedisRateLimiter redisLimiter) {
+        RateLimiterProperties.Admin config = rateLimiterProperties.getAdmin();
+        return tiered("admin", redisLimiter, config.getAlgorithm(), config.getReplenishRate(), config.getBurstCapacity(),
+                config.getRequestedTokens(), config.getWindow(), config.getLease());
     }
 
     /**
-     * Fixed: Direct implementation of IP-based key resolver with proper proxy handling
+     * Limiter for apiKeyResolver keys: per-key quotas from rate-limiter.api-keys.overrides, the API limiter otherwise
+     */
+    @Bean("apiKeyRateLimiter")
+    public ApiKeyQuotaRateLimiter apiKeyRateLimiter(@Qualifier("apiRateLimiter") FailoverRateLimiter apiRateLimiter) {
+        return new ApiKeyQuotaRateLimiter(apiRateLimiter, rateLimiterProperties.getApiKeys().getOverrides());
+    }
+
+    /**
+     * IP-based key resolver; the client IP is resolved once per exchange by ClientIdentity
      */
     @Bean("ipKeyResolver")
     @Primary
     public KeyResolver ipKeyResolver() {
-        return exchange -> {
-            String clientIp = getClientIpAddress(exchange);
-            return Mono.just("ip:" + clientIp);
-        };
+        return exchange -> Mono.just(heavyHitterTracker.record(clientIdentity.ipKey(exchange)));
     }
 
     /**
-     * User-based key resolver for authenticated requests
+     * User-based key resolver for authenticated requests, falling back to the client IP
      */
     @Bean("userKeyResolver")
     public KeyResolver userKeyResolver() {
-        return exchange -> {
-            String userId = exchange.getRequest().getHeaders().getFirst("X-User-Id");
-            if (userId != null && !userId.isEmpty()) {
-                return Mono.just("user:" + userId);
-            }
-            // Fallback to IP if no user ID
-            String clientIp = getClientIpAddress(exchange);
-            return Mono.just("anonymous:" + clientIp);
-        };
+        return exchange -> Mono.just(heavyHitterTracker.record(clientIdentity.userKey(exchange)));
     }
 
     /**
@@ -98,189 +166,84 @@ public class RateLimitingConfiguration {
      */
     @Bean("combinedKeyResolver")
     public KeyResolver combinedKeyResolver() {
-        return exchange -> {
-            String userId = exchange.getRequest().getHeaders().getFirst("X-User-Id");
-            String clientIp = getClientIpAddress(exchange);
-            String endpoint = getEndpointCategory(exchange.getRequest().getPath().value());
-
-            String key;
-            if (userId != null && !userId.isEmpty()) {
-                key = String.format("user:%s:ip:%s:endpoint:%s", userId, clientIp, endpoint);
-            } else {
-                key = String.format("anonymous:ip:%s:endpoint:%s", clientIp, endpoint);
-            }
-
-            return Mono.just(key);
-        };
+        return exchange -> Mono.just(heavyHitterTracker.record(clientIdentity.combinedKey(exchange)));
     }
 
     /**
-     * Session-based key resolver for stateful operations
+     * Session-based key resolver for stateful operations, falling back to the user key
      */
     @Bean("sessionKeyResolver")
     public KeyResolver sessionKeyResolver() {
-        return exchange -> {
-            String sessionId = exchange.getRequest().getHeaders().getFirst("X-Session-Id");
-            if (sessionId != null && !sessionId.isEmpty()) {
-                return Mono.just("session:" + sessionId);
-            }
-
-            // Fallback to user-based resolution
-            return userKeyResolver().resolve(exchange);
-        };
+        return exchange -> Mono.just(heavyHitterTracker.record(clientIdentity.sessionKey(exchange)));
     }
 
     /**
-     * API key-based resolver for API clients
+     * API key-based resolver for API clients, falling back to the user key
      */
     @Bean("apiKeyResolver")
     public KeyResolver apiKeyResolver() {
-        return exchange -> {
-            String apiKey = exchange.getRequest().getHeaders().getFirst("X-API-Key");
-            if (apiKey != null && !apiKey.isEmpty()) {
-                // Use hash of API key for privacy
-                return Mono.just("apikey:" + Math.abs(apiKey.hashCode()));
-            }
-
-            // Fallback to user-based resolution
-            return userKeyResolver().resolve(exchange);
-        };
+        return exchange -> Mono.just(heavyHitterTracker.record(clientIdentity.apiKey(exchange)));
     }
 
-
-
-    /**
-     * Fixed: Enhanced client IP address resolution with proper proxy handling and caching
-     */
-    private String getClientIpAddress(ServerWebExchange exchange) {
-        RateLimiterProperties.IpResolution config = rateLimiterProperties.getIpResolution();
-
-        // Try X-Forwarded-For header first (if enabled)
-        if (config.isXForwardedForEnabled()) {
-            String xForwardedFor = exchange.getRequest().getHeaders().getFirst("X-Forwarded-For");
-            if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-                String clientIp = getFirstNonTrustedIp(xForwardedFor, config);
-                if (clientIp != null) {
-                    return clientIp;
-                }
+    private FailoverRateLimiter tiered(String name, RedisRateLimiter redisLimiter, RateLimiterProperties.Algorithm algorithm,
+                                       int replenishRate, int burstCapacity, int requestedTokens, Duration window,
+                                       RateLimiterProperties.Lease lease) {
+        RateLimiterProperties.Failover failover = rateLimiterProperties.getFailover();
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.getIfAvailable(CircuitBreakerRegistry::ofDefaults)
+                .circuitBreaker("rate-limiter-" + name, circuitBreakerConfig(failover));
+
+        RateLimiter<RedisRateLimiter.Config> primary;
+        LocalLimit.Factory localLimits;
+        switch (algorithm) {
+            case GCRA -> {
+                // Leasing batches would reintroduce the bursts GCRA is chosen to avoid
+                primary = new GcraRateLimiter(replenishRate, burstCapacity, requestedTokens);
+                localLimits = LocalTokenBucket::new;
             }
-        }
-
-        // Try X-Real-IP header (if enabled)
-        if (config.isXRealIpEnabled()) {
-            String xRealIp = exchange.getRequest().getHeaders().getFirst("X-Real-IP");
-            if (xRealIp != null && !xRealIp.isEmpty() && !isTrustedProxy(xRealIp, config)) {
-                return xRealIp;
+            case SLIDING_WINDOW -> {
+                primary = new SlidingWindowRateLimiter(replenishRate, window, requestedTokens);
+                double windowSeconds = window.toMillis() / 1000.0;
+                burstCapacity = SlidingWindowRateLimiter.limit(replenishRate, window);
+                localLimits = (rate, burst, now) -> new LocalSlidingWindow(Math.max(1.0, rate * windowSeconds), window, now);
             }
-        }
-
-        // Fallback to remote address
-        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
-        if (remoteAddress != null && remoteAddress.getAddress() != null) {
-            return remoteAddress.getAddress().getHostAddress();
-        }
-
-        return "unknown";
-    }
-
-    /**
-     * Parse X-Forwarded-For header and return the first non-trusted IP
-     */
-    private String getFirstNonTrustedIp(String forwardedFor, RateLimiterProperties.IpResolution config) {
-        if (forwardedFor == null || forwardedFor.isEmpty()) {
-            return null;
-        }
-
-        String[] ips = forwardedFor.split(",");
-        for (String ip : ips) {
-            String trimmedIp = ip.trim();
-            if (!trimmedIp.isEmpty() && !isTrustedProxy(trimmedIp, config)) {
-                return trimmedIp;
+            default -> {
+                primary = new LeasedTokenBucketRateLimiter(name, redisLimiter, replenishRate, burstCapacity,
+                        requestedTokens, lease, meterRegistry);
+                localLimits = LocalTokenBucket::new;
             }
         }
-        return null;
+        return new FailoverRateLimiter(name, primary, replenishRate, burstCapacity, failover, circuitBreaker,
+                this::gatewayNodeCount, localLimits, meterRegistry);
     }
 
-    /**
-     * Fixed: Check if an IP address is a trusted proxy with caching for performance
-     */
-    private boolean isTrustedProxy(String ip, RateLimiterProperties.IpResolution config) {
-        if (ip == null || ip.isEmpty()) {
-            return true;
-        }
-
-        // Use cache to avoid repeated CIDR parsing
-        return cidrCache.computeIfAbsent(ip, key -> {
-            try {
-                InetAddress address = InetAddress.getByName(key);
-                return config.getTrustedProxies().stream()
-                    .anyMatch(cidr -> isIpInRange(address, cidr));
-            } catch (Exception e) {
-                return true; // Assume trusted on error for safety
-            }
-        });
+    private CircuitBreakerConfig circuitBreakerConfig(RateLimiterProperties.Failover failover) {
+        return CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(failover.getSlidingWindowSize())
+                .minimumNumberOfCalls(failover.getMinimumNumberOfCalls())
+                .failureRateThreshold(failover.getFailureRateThreshold())
+                .slowCallRateThreshold(failover.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(failover.getSlowCallThreshold())
+                .waitDurationInOpenState(failover.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(failover.getPermittedCallsInHalfOpenState())
+                .build();
     }
 
     /**
-     * Enhanced: Check if an IP address is within a CIDR range (supports IPv4 and IPv6)
+     * Running gateway nodes as seen by service discovery, falling back to the configured count
      */
-    private boolean isIpInRange(InetAddress ip, String cidr) {
-        try {
-            String[] parts = cidr.split("/");
-            InetAddress network = InetAddress.getByName(parts[0]);
-            int prefixLength = Integer.parseInt(parts[1]);
-
-            byte[] ipBytes = ip.getAddress();
-            byte[] networkBytes = network.getAddress();
-
-            // IPv4 vs IPv6 compatibility check
-            if (ipBytes.length != networkBytes.length) {
-                return false;
-            }
-
-            // Validate prefix length for IPv4 (0-32) and IPv6 (0-128)
-            int maxPrefixLength = ipBytes.length == 4 ? 32 : 128;
-            if (prefixLength < 0 || prefixLength > maxPrefixLength) {
-                return false;
-            }
-
-            int bytesToCheck = prefixLength / 8;
-            int bitsToCheck = prefixLength % 8;
-
-            // Check full bytes
-            for (int i = 0; i < bytesToCheck; i++) {
-                if (ipBytes[i] != networkBytes[i]) {
-                    return false;
+    private int gatewayNodeCount() {
+        DiscoveryClient client = discoveryClient.getIfAvailable();
+        if (client != null) {
+            try {
+                int instances = client.getInstances(applicationName).size();
+                if (instances > 0) {
+                    return instances;
                 }
+            } catch (RuntimeException e) {
+                // Discovery may be unreachable in the same outage; use the configured count
             }
-
-            // Check remaining bits
-            if (bitsToCheck > 0 && bytesToCheck < ipBytes.length) {
-                int mask = 0xFF << (8 - bitsToCheck);
-                return (ipBytes[bytesToCheck] & mask) == (networkBytes[bytesToCheck] & mask);
-            }
-
-            return true;
-        } catch (Exception e) {
-            // Log the error for debugging
-            return false;
-        }
-    }
-
-    /**
-     * Categorize endpoint for compound key generation
-     */
-    private String getEndpointCategory(String path) {
-        if (path.startsWith("/api/auth/")) {
-            return "auth";
-        } else if (path.startsWith("/api/admin/")) {
-            return "admin";
-        } else if (path.startsWith("/api/users/")) {
-            return "users";
-        } else if (path.startsWith("/api/")) {
-            return "api";
-        } else {
-            return "other";
         }
+        return rateLimiterProperties.getFailover().getNodeCount();
     }
 }
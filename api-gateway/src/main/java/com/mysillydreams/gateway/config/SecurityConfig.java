@@ -3,9 +3,10 @@ package com.mysillydreams.gateway.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mysillydreams.gateway.config.TimeoutProperties;
 import com.mysillydreams.gateway.filter.GlobalTimeoutFilter;
+import com.mysillydreams.gateway.metrics.GatewayMeters;
+import com.mysillydreams.gateway.metrics.PathTemplateNormalizer;
 import com.mysillydreams.gateway.security.CustomAccessDeniedHandler;
 import com.mysillydreams.gateway.security.CustomAuthenticationEntryPoint;
-import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -95,7 +96,8 @@ public class SecurityConfig {
      */
     @Bean
     @Order(-100)  // Run before security filters
-    public GlobalTimeoutFilter globalTimeoutFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry, TimeoutProperties timeoutProperties) {
-        return new GlobalTimeoutFilter(objectMapper, meterRegistry, timeoutProperties);
+    public GlobalTimeoutFilter globalTimeoutFilter(ObjectMapper objectMapper, GatewayMeters gatewayMeters, TimeoutProperties timeoutProperties,
+                                                   PathTemplateNormalizer pathNormalizer) {
+        return new GlobalTimeoutFilter(objectMapper, gatewayMeters, timeoutProperties, pathNormalizer);
     }
 }
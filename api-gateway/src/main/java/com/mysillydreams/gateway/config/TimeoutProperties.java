@@ -1,5 +1,6 @@
 package com.mysillydreams.gateway.config;
 
+import com.mysillydreams.gateway.constants.HeaderConstants;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
@@ -7,9 +8,11 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -74,14 +77,10 @@ public class TimeoutProperties {
         """;
 
     /**
-     * Custom timeout values per path pattern
+     * Custom timeout values per path pattern, the most specific matching pattern wins
      * Key: Ant pattern, Value: timeout duration
      */
-    private Map<String, Duration> customTimeouts = Map.of(
-        "/api/upload/**", Duration.ofMinutes(5),
-        "/api/reports/**", Duration.ofMinutes(2),
-        "/api/health/**", Duration.ofSeconds(5)
-    );
+    private Map<String, Duration> customTimeouts = defaultCustomTimeouts();
 
     /**
      * Whether to enable custom timeout metrics
@@ -93,6 +92,13 @@ public class TimeoutProperties {
      */
     private boolean loggingEnabled = true;
 
+    /**
+     * Deadline propagation to upstream services
+     */
+    @Valid
+    @NotNull
+    private Deadline deadline = new Deadline();
+
     /**
      * Validate error template placeholders at startup
      */
@@ -105,4 +111,43 @@ public class TimeoutProperties {
             }
         }
     }
+
+    private static Map<String, Duration> defaultCustomTimeouts() {
+        // Ordered, so patterns of equal specificity resolve the same way on every start
+        Map<String, Duration> timeouts = new LinkedHashMap<>();
+        timeouts.put("/api/upload/**", Duration.ofMinutes(5));
+        timeouts.put("/api/reports/**", Duration.ofMinutes(2));
+        timeouts.put("/api/health/**", Duration.ofSeconds(5));
+        return timeouts;
+    }
+
+    /**
+     * Request deadline forwarded upstream.
+     * GlobalTimeoutFilter fixes the deadline when a request arrives (now + its timeout); every upstream
+     * attempt carries it as an absolute time and as the budget left, so retries see a shrinking budget.
+     */
+    @Data
+    public static class Deadline {
+
+        /**
+         * Whether to forward the deadline and enforce the retry budget floor
+         */
+        private boolean enabled = true;
+
+        /**
+         * Header carrying the absolute deadline in epoch milliseconds; blank to omit
+         */
+        private String header = HeaderConstants.X_REQUEST_DEADLINE;
+
+        /**
+         * Header carrying the remaining budget in gRPC timeout format (e.g. 1500m); blank to omit
+         */
+        private String timeoutHeader = HeaderConstants.X_REQUEST_TIMEOUT;
+
+        /**
+         * Retries are not started with less budget than this left
+         */
+        @NotNull
+        private Duration minRetryBudget = Duration.ofMillis(250);
+    }
 }
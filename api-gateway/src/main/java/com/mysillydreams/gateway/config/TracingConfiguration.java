@@ -0,0 +1,89 @@
+package com.mysillydreams.gateway.config;
+
+import brave.sampler.Sampler;
+import com.mysillydreams.gateway.service.tracing.TraceSampler;
+import io.micrometer.observation.Observation;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.handler.TracingObservationHandler;
+import org.springframework.cloud.gateway.filter.headers.observation.GatewayContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.server.reactive.observation.ServerRequestObservationContext;
+
+/**
+ * Brave wiring for gateway tracing
+ * Replaces the management.tracing.sampling.probability sampler, so Brave only records the new traces
+ * TracingFilter sampled through TraceSampler
+ */
+@Configuration
+public class TracingConfiguration {
+
+    @Bean
+    public Sampler gatewayTraceSampler(TraceSampler traceSampler) {
+        return traceSampler.braveSampler();
+    }
+
+    /**
+     * Keeps the http.server.requests and gateway proxy observations out of tracing
+     * Spring Boot lets the first tracing handler that supports a context handle it, so claiming these
+     * contexts ahead of the default handlers stops them from starting spans before TracingFilter's decision
+     * and from rewriting the traceparent it propagates. Their meter handlers still record the timers.
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public TracingObservationHandler<Observation.Context> untracedObservationHandler(Tracer tracer) {
+        return new UntracedObservationHandler(tracer);
+    }
+
+    /**
+     * Tracing handler that does nothing for the observations TracingFilter traces itself
+     */
+    static final class UntracedObservationHandler implements TracingObservationHandler<Observation.Context> {
+
+        private final Tracer tracer;
+
+        UntracedObservationHandler(Tracer tracer) {
+            this.tracer = tracer;
+        }
+
+        @Override
+        public boolean supportsContext(Observation.Context context) {
+            return context instanceof ServerRequestObservationContext || context instanceof GatewayContext;
+        }
+
+        @Override
+        public void onStart(Observation.Context context) {
+        }
+
+        @Override
+        public void onScopeOpened(Observation.Context context) {
+        }
+
+        @Override
+        public void onScopeClosed(Observation.Context context) {
+        }
+
+        @Override
+        public void onScopeReset(Observation.Context context) {
+        }
+
+        @Override
+        public void onEvent(Observation.Event event, Observation.Context context) {
+        }
+
+        @Override
+        public void onError(Observation.Context context) {
+        }
+
+        @Override
+        public void onStop(Observation.Context context) {
+        }
+
+        @Override
+        public Tracer getTracer() {
+            return tracer;
+        }
+    }
+}
@@ -7,9 +7,17 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Configuration properties for distributed tracing
@@ -69,6 +77,20 @@ public class TracingProperties {
      */
     private boolean customTraceHeaders = true;
 
+    /**
+     * Head-based sampling of gateway traces
+     */
+    @Valid
+    @NotNull
+    private Sampling sampling = new Sampling();
+
+    /**
+     * Tail-based sampling of recorded gateway traces
+     */
+    @Valid
+    @NotNull
+    private TailSampling tailSampling = new TailSampling();
+
     /**
      * Validate exclude paths patterns at startup
      */
@@ -83,4 +105,90 @@ public class TracingProperties {
             }
         }
     }
+
+    /**
+     * Sampling decision made when a request enters the gateway.
+     * A request is traced when it passes the probability draw and its route still has
+     * trace budget this second. Unsampled requests only carry a propagated, unsampled context.
+     */
+    @Data
+    public static class Sampling {
+
+        /**
+         * Fraction of requests to trace, from 0.0 to 1.0
+         */
+        @DecimalMin("0.0")
+        @DecimalMax("1.0")
+        private double probability = 1.0;
+
+        /**
+         * Maximum traces per second for each route; 0 means no cap
+         */
+        @PositiveOrZero
+        private int maxTracesPerSecond = 0;
+
+        /**
+         * Per-route overrides of maxTracesPerSecond, keyed by route id
+         */
+        @NotNull
+        private Map<String, Integer> routeMaxTracesPerSecond = new HashMap<>();
+
+        /**
+         * Whether unsampled requests that fail (5xx or an error signal) still record a span
+         */
+        private boolean alwaysSampleErrors = true;
+    }
+
+    /**
+     * Export decision made when the gateway.request span finishes.
+     * Spans of a recorded trace are held until its gateway.request span ends; the trace is exported only
+     * if it was slow, failed, fell back, was cut off, or won the baseline draw. Only traces that passed
+     * head sampling are recorded, so raise sampling.probability when enabling this.
+     */
+    @Data
+    public static class TailSampling {
+
+        /**
+         * Whether recorded traces go through the tail sampler before export
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long spans of a trace are held waiting for its gateway.request span
+         */
+        @NotNull
+        private Duration window = Duration.ofSeconds(5);
+
+        /**
+         * Traces held at once; the oldest is dropped when a new trace arrives at the cap
+         * (sized at startup)
+         */
+        @Positive
+        private int maxTraces = 10_000;
+
+        /**
+         * Spans held per trace; further spans are dropped
+         */
+        @Positive
+        private int maxSpansPerTrace = 32;
+
+        /**
+         * gateway.request spans at least this long are exported
+         */
+        @NotNull
+        private Duration latencyThreshold = Duration.ofSeconds(1);
+
+        /**
+         * Per-route overrides of latencyThreshold, keyed by route id
+         */
+        @NotNull
+        private Map<String, Duration> routeLatencyThresholds = new HashMap<>();
+
+        /**
+         * Fraction of unremarkable traces exported anyway, from 0.0 to 1.0
+         */
+        @DecimalMin("0.0")
+        @DecimalMax("1.0")
+        private double baselineProbability = 0.01;
+    }
 }
@@ -6,9 +6,14 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Configuration properties for rate limiting with refresh support
@@ -42,6 +47,23 @@ public class RateLimiterProperties {
     @NotNull
     private IpResolution ipResolution = new IpResolution();
 
+    @Valid
+    @NotNull
+    private Failover failover = new Failover();
+
+    @Valid
+    @NotNull
+    private ApiKeys apiKeys = new ApiKeys();
+
+    @Valid
+    @NotNull
+    private HeavyHitters heavyHitters = new HeavyHitters();
+
+    // Request cost rules, first match wins; unmatched requests cost one token
+    @Valid
+    @NotNull
+    private List<CostRule> costs = new ArrayList<>();
+
     /**
      * Authentication rate limiting configuration
      * Units: replenishRate and burstCapacity are requests per second
@@ -56,6 +78,17 @@ public class RateLimiterProperties {
         @Positive
         private int requestedTokens = 1;
 
+        @NotNull
+        private Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+        // Window length for SLIDING_WINDOW
+        @NotNull
+        private Duration window = Duration.ofSeconds(1);
+
+        @Valid
+        @NotNull
+        private Lease lease = new Lease();
+
         // Getters and setters
         public int getReplenishRate() { return replenishRate; }
         public void setReplenishRate(int replenishRate) { this.replenishRate = replenishRate; }
@@ -63,6 +96,12 @@ public class RateLimiterProperties {
         public void setBurstCapacity(int burstCapacity) { this.burstCapacity = burstCapacity; }
         public int getRequestedTokens() { return requestedTokens; }
         public void setRequestedTokens(int requestedTokens) { this.requestedTokens = requestedTokens; }
+        public Algorithm getAlgorithm() { return algorithm; }
+        public void setAlgorithm(Algorithm algorithm) { this.algorithm = algorithm; }
+        public Duration getWindow() { return window; }
+        public void setWindow(Duration window) { this.window = window; }
+        public Lease getLease() { return lease; }
+        public void setLease(Lease lease) { this.lease = lease; }
     }
 
     /**
@@ -79,6 +118,17 @@ public class RateLimiterProperties {
         @Positive
         private int requestedTokens = 1;
 
+        @NotNull
+        private Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+        // Window length for SLIDING_WINDOW
+        @NotNull
+        private Duration window = Duration.ofSeconds(1);
+
+        @Valid
+        @NotNull
+        private Lease lease = new Lease();
+
         // Getters and setters
         public int getReplenishRate() { return replenishRate; }
         public void setReplenishRate(int replenishRate) { this.replenishRate = replenishRate; }
@@ -86,6 +136,12 @@ public class RateLimiterProperties {
         public void setBurstCapacity(int burstCapacity) { this.burstCapacity = burstCapacity; }
         public int getRequestedTokens() { return requestedTokens; }
         public void setRequestedTokens(int requestedTokens) { this.requestedTokens = requestedTokens; }
+        public Algorithm getAlgorithm() { return algorithm; }
+        public void setAlgorithm(Algorithm algorithm) { this.algorithm = algorithm; }
+        public Duration getWindow() { return window; }
+        public void setWindow(Duration window) { this.window = window; }
+        public Lease getLease() { return lease; }
+        public void setLease(Lease lease) { this.lease = lease; }
     }
 
     /**
@@ -102,6 +158,17 @@ public class RateLimiterProperties {
         @Positive
         private int requestedTokens = 1;
 
+        @NotNull
+        private Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+        // Window length for SLIDING_WINDOW
+        @NotNull
+        private Duration window = Duration.ofSeconds(1);
+
+        @Valid
+        @NotNull
+        private Lease lease = new Lease();
+
         // Getters and setters
         public int getReplenishRate() { return replenishRate; }
         public void setReplenishRate(int replenishRate) { this.replenishRate = replenishRate; }
@@ -109,6 +176,12 @@ public class RateLimiterProperties {
         public void setBurstCapacity(int burstCapacity) { this.burstCapacity = burstCapacity; }
         public int getRequestedTokens() { return requestedTokens; }
         public void setRequestedTokens(int requestedTokens) { this.requestedTokens = requestedTokens; }
+        public Algorithm getAlgorithm() { return algorithm; }
+        public void setAlgorithm(Algorithm algorithm) { this.algorithm = algorithm; }
+        public Duration getWindow() { return window; }
+        public void setWindow(Duration window) { this.window = window; }
+        public Lease getLease() { return lease; }
+        public void setLease(Lease lease) { this.lease = lease; }
     }
 
     /**
@@ -125,6 +198,313 @@ public class RateLimiterProperties {
         @Positive
         private int requestedTokens = 1;
 
+        @NotNull
+        private Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+        // Window length for SLIDING_WINDOW
+        @NotNull
+        private Duration window = Duration.ofSeconds(1);
+
+        // Getters and setters
+        public int getReplenishRate() { return replenishRate; }
+        public void setReplenishRate(int replenishRate) { this.replenishRate = replenishRate; }
+        public int getBurstCapacity() { return burstCapacity; }
+        public void setBurstCapacity(int burstCapacity) { this.burstCapacity = burstCapacity; }
+        public int getRequestedTokens() { return requestedTokens; }
+        public void setRequestedTokens(int requestedTokens) { this.requestedTokens = requestedTokens; }
+        public Algorithm getAlgorithm() { return algorithm; }
+        public void setAlgorithm(Algorithm algorithm) { this.algorithm = algorithm; }
+        public Duration getWindow() { return window; }
+        public void setWindow(Duration window) { this.window = window; }
+    }
+
+    /**
+     * Algorithm behind a rate limiter bean
+     */
+    public enum Algorithm {
+        // Spring's RedisRateLimiter: up to burstCapacity at once, refilled at replenishRate per second
+        TOKEN_BUCKET,
+        // Requests spaced 1/replenishRate apart with burstCapacity of tolerance; one Redis key per client
+        GCRA,
+        // At most replenishRate * window requests in any window-long interval; burstCapacity is not used
+        SLIDING_WINDOW
+    }
+
+    /**
+     * Local token leasing in front of the Redis bucket
+     * Each node takes batchSize tokens from Redis in one call and serves requests from memory until
+     * the lease is spent or expires. Unspent tokens are never returned, so the error is one-sided:
+     * a client may be throttled early by at most maxErrorRatio * burstCapacity tokens per node.
+     */
+    public static class Lease {
+        private boolean enabled = false;
+
+        @Positive
+        private int batchSize = 10;
+
+        @Positive
+        @DecimalMax("1.0")
+        private double maxErrorRatio = 0.1;
+
+        @NotNull
+        private Duration ttl = Duration.ofSeconds(1);
+
+        @Positive
+        private int maxKeys = 100_000;
+
+        /**
+         * Tokens taken per Redis call: batchSize capped by the error bound, never below one
+         */
+        public int effectiveBatchSize(int burstCapacity) {
+            int bound = (int) Math.floor(burstCapacity * maxErrorRatio);
+            return Math.max(1, Math.min(batchSize, bound));
+        }
+
+        // Getters and setters
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+        public double getMaxErrorRatio() { return maxErrorRatio; }
+        public void setMaxErrorRatio(double maxErrorRatio) { this.maxErrorRatio = maxErrorRatio; }
+        public Duration getTtl() { return ttl; }
+        public void setTtl(Duration ttl) { this.ttl = ttl; }
+        public int getMaxKeys() { return maxKeys; }
+        public void setMaxKeys(int maxKeys) { this.maxKeys = maxKeys; }
+    }
+
+    /**
+     * Failover to per-node in-memory buckets when Redis is slow or unavailable
+     * A circuit breaker per limiter watches Redis calls; while it is open each node enforces
+     * replenishRate / nodeCount and burstCapacity / nodeCount on its own.
+     * Units: thresholds are percentages of the sliding window
+     */
+    public static class Failover {
+        private boolean enabled = true;
+
+        @NotNull
+        private Duration callTimeout = Duration.ofMillis(250);
+
+        @NotNull
+        private Duration slowCallThreshold = Duration.ofMillis(100);
+
+        @Positive
+        @DecimalMax("100.0")
+        private float slowCallRateThreshold = 50;
+
+        @Positive
+        @DecimalMax("100.0")
+        private float failureRateThreshold = 50;
+
+        @Positive
+        private int slidingWindowSize = 50;
+
+        @Positive
+        private int minimumNumberOfCalls = 20;
+
+        @NotNull
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+
+        @Positive
+        private int permittedCallsInHalfOpenState = 10;
+
+        // Used when service discovery does not know how many gateway nodes are running
+        @Positive
+        private int nodeCount = 1;
+
+        @Positive
+        private int maxKeys = 100_000;
+
+        // Getters and setters
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Duration getCallTimeout() { return callTimeout; }
+        public void setCallTimeout(Duration callTimeout) { this.callTimeout = callTimeout; }
+        public Duration getSlowCallThreshold() { return slowCallThreshold; }
+        public void setSlowCallThreshold(Duration slowCallThreshold) { this.slowCallThreshold = slowCallThreshold; }
+        public float getSlowCallRateThreshold() { return slowCallRateThreshold; }
+        public void setSlowCallRateThreshold(float slowCallRateThreshold) { this.slowCallRateThreshold = slowCallRateThreshold; }
+        public float getFailureRateThreshold() { return failureRateThreshold; }
+        public void setFailureRateThreshold(float failureRateThreshold) { this.failureRateThreshold = failureRateThreshold; }
+        public int getSlidingWindowSize() { return slidingWindowSize; }
+        public void setSlidingWindowSize(int slidingWindowSize) { this.slidingWindowSize = slidingWindowSize; }
+        public int getMinimumNumberOfCalls() { return minimumNumberOfCalls; }
+        public void setMinimumNumberOfCalls(int minimumNumberOfCalls) { this.minimumNumberOfCalls = minimumNumberOfCalls; }
+        public Duration getWaitDurationInOpenState() { return waitDurationInOpenState; }
+        public void setWaitDurationInOpenState(Duration waitDurationInOpenState) { this.waitDurationInOpenState = waitDurationInOpenState; }
+        public int getPermittedCallsInHalfOpenState() { return permittedCallsInHalfOpenState; }
+        public void setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) { this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState; }
+        public int getNodeCount() { return nodeCount; }
+        public void setNodeCount(int nodeCount) { this.nodeCount = nodeCount; }
+        public int getMaxKeys() { return maxKeys; }
+        public void setMaxKeys(int maxKeys) { this.maxKeys = maxKeys; }
+    }
+
+    /**
+     * API key bucketing for apiKeyResolver
+     * Keys are hashed with HMAC-SHA256 truncated to 128 bits; the hex digest is the bucket id, so the
+     * same key lands in the same Redis bucket on every node as long as hashSecret is shared.
+     * Units: quota replenishRate and burstCapacity are requests per second
+     */
+    public static class ApiKeys {
+        // Shared by all gateway nodes; a random per-node secret is used (with a warning) when blank
+        private String hashSecret = "";
+
+        @Positive
+        private int cacheSize = 10_000;
+
+        // Quota overrides keyed by bucket id (the 32-character hex digest, without the apikey: prefix)
+        @NotNull
+        private Map<String, Quota> overrides = new HashMap<>();
+
+        // Getters and setters
+        public String getHashSecret() { return hashSecret; }
+        public void setHashSecret(String hashSecret) { this.hashSecret = hashSecret; }
+        public int getCacheSize() { return cacheSize; }
+        public void setCacheSize(int cacheSize) { this.cacheSize = cacheSize; }
+        public Map<String, Quota> getOverrides() { return overrides; }
+        public void setOverrides(Map<String, Quota> overrides) { this.overrides = overrides; }
+    }
+
+    /**
+     * Heavy-hitter tracking over the keys produced by the rate limit key resolvers
+     * Counts go into a Count-Min Sketch (depth rows of width counters) that is halved every decayInterval,
+     * so an estimate is roughly the key's requests over the last two intervals. The topK largest estimates
+     * are kept in lock-striped heaps and reported at /actuator/heavy-hitters.
+     * With autoTighten enabled, a key whose estimate reaches threshold pays costMultiplier times the normal
+     * token cost for penaltyDuration.
+     */
+    public static class HeavyHitters {
+        private boolean enabled = true;
+
+        @Positive
+        private int depth = 4;
+
+        // Rounded up to a power of two
+        @Positive
+        private int width = 4096;
+
+        @Positive
+        private int topK = 20;
+
+        @Positive
+        private int stripes = 16;
+
+        @NotNull
+        private Duration decayInterval = Duration.ofSeconds(10);
+
+        @Valid
+        @NotNull
+        private AutoTighten autoTighten = new AutoTighten();
+
+        // Getters and setters
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getDepth() { return depth; }
+        public void setDepth(int depth) { this.depth = depth; }
+        public int getWidth() { return width; }
+        public void setWidth(int width) { this.width = width; }
+        public int getTopK() { return topK; }
+        public void setTopK(int topK) { this.topK = topK; }
+        public int getStripes() { return stripes; }
+        public void setStripes(int stripes) { this.stripes = stripes; }
+        public Duration getDecayInterval() { return decayInterval; }
+        public void setDecayInterval(Duration decayInterval) { this.decayInterval = decayInterval; }
+        public AutoTighten getAutoTighten() { return autoTighten; }
+        public void setAutoTighten(AutoTighten autoTighten) { this.autoTighten = autoTighten; }
+    }
+
+    /**
+     * Automatic cost penalty for heavy hitters
+     * Units: threshold is a decayed request estimate (about two decay intervals of traffic)
+     */
+    public static class AutoTighten {
+        private boolean enabled = false;
+
+        @Positive
+        private long threshold = 5_000;
+
+        @Positive
+        private int costMultiplier = 4;
+
+        @NotNull
+        private Duration penaltyDuration = Duration.ofMinutes(1);
+
+        @Positive
+        private int maxPenalized = 1_000;
+
+        // Getters and setters
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public long getThreshold() { return threshold; }
+        public void setThreshold(long threshold) { this.threshold = threshold; }
+        public int getCostMultiplier() { return costMultiplier; }
+        public void setCostMultiplier(int costMultiplier) { this.costMultiplier = costMultiplier; }
+        public Duration getPenaltyDuration() { return penaltyDuration; }
+        public void setPenaltyDuration(Duration penaltyDuration) { this.penaltyDuration = penaltyDuration; }
+        public int getMaxPenalized() { return maxPenalized; }
+        public void setMaxPenalized(int maxPenalized) { this.maxPenalized = maxPenalized; }
+    }
+
+    /**
+     * Token cost of matching requests
+     * A rule matches on route id, path pattern and method (each optional). The cost is tokens, plus one token
+     * per queryParams unit of each listed numeric query parameter, plus one token per bodyBytesPerToken bytes
+     * of Content-Length, capped at maxTokens. A POST, PUT or PATCH (or any chunked request) without
+     * Content-Length is charged maxTokens, since its body size is unknown when the limit is checked.
+     */
+    public static class CostRule {
+        private String route;
+
+        // Spring PathPattern syntax, e.g. /api/contents/search/**
+        private String path;
+
+        @NotNull
+        private List<String> methods = new ArrayList<>();
+
+        @Positive
+        private int tokens = 1;
+
+        // Query parameter name -> parameter value per extra token, e.g. size: 20
+        @NotNull
+        private Map<String, Integer> queryParams = new HashMap<>();
+
+        // 0 ignores the body size
+        private long bodyBytesPerToken = 0;
+
+        @Positive
+        private int maxTokens = 50;
+
+        // Getters and setters
+        public String getRoute() { return route; }
+        public void setRoute(String route) { this.route = route; }
+        public String getPath() { return path; }
+        public void setPath(String path) { this.path = path; }
+        public List<String> getMethods() { return methods; }
+        public void setMethods(List<String> methods) { this.methods = methods; }
+        public int getTokens() { return tokens; }
+        public void setTokens(int tokens) { this.tokens = tokens; }
+        public Map<String, Integer> getQueryParams() { return queryParams; }
+        public void setQueryParams(Map<String, Integer> queryParams) { this.queryParams = queryParams; }
+        public long getBodyBytesPerToken() { return bodyBytesPerToken; }
+        public void setBodyBytesPerToken(long bodyBytesPerToken) { this.bodyBytesPerToken = bodyBytesPerToken; }
+        public int getMaxTokens() { return maxTokens; }
+        public void setMaxTokens(int maxTokens) { this.maxTokens = maxTokens; }
+    }
+
+    /**
+     * Rate limit for a single API key bucket
+     */
+    public static class Quota {
+        @Positive
+        private int replenishRate = 100;
+
+        @Positive
+        private int burstCapacity = 200;
+
+        @Positive
+        private int requestedTokens = 1;
+
         // Getters and setters
         public int getReplenishRate() { return replenishRate; }
         public void setReplenishRate(int replenishRate) { this.replenishRate = replenishRate; }
@@ -149,8 +529,8 @@ public class RateLimiterProperties {
             // IPv6 private ranges
             "::1/128",           // IPv6 loopback
             "fc00::/7",          // IPv6 unique local addresses
-            "fe80::/10",         // IPv6 link-local addresses
-            "::ffff:0:0/96"      // IPv4-mapped IPv6 addresses
+            "fe80::/10"          // IPv6 link-local addresses
+            // IPv4-mapped IPv6 addresses (::ffff:a.b.c.d) are matched against the IPv4 ranges
         );
         private boolean xForwardedForEnabled = true;
         private boolean xRealIpEnabled = true;
@@ -175,4 +555,12 @@ public class RateLimiterProperties {
     public void setDefault(Default defaultLimiter) { this.defaultLimiter = defaultLimiter; }
     public IpResolution getIpResolution() { return ipResolution; }
     public void setIpResolution(IpResolution ipResolution) { this.ipResolution = ipResolution; }
+    public Failover getFailover() { return failover; }
+    public void setFailover(Failover failover) { this.failover = failover; }
+    public ApiKeys getApiKeys() { return apiKeys; }
+    public void setApiKeys(ApiKeys apiKeys) { this.apiKeys = apiKeys; }
+    public HeavyHitters getHeavyHitters() { return heavyHitters; }
+    public void setHeavyHitters(HeavyHitters heavyHitters) { this.heavyHitters = heavyHitters; }
+    public List<CostRule> getCosts() { return costs; }
+    public void setCosts(List<CostRule> costs) { this.costs = costs; }
 }
@@ -67,6 +67,13 @@ public final class HeaderConstants {
     public static final String X_RATE_LIMIT_RESET = "X-RateLimit-Reset";
     public static final String X_RATE_LIMIT_LIMIT = "X-RateLimit-Limit";
 
+    /**
+     * IETF RateLimit header fields (draft-ietf-httpapi-ratelimit-headers)
+     */
+    public static final String RATE_LIMIT_LIMIT = "RateLimit-Limit";
+    public static final String RATE_LIMIT_REMAINING = "RateLimit-Remaining";
+    public static final String RATE_LIMIT_RESET = "RateLimit-Reset";
+
     /**
      * Security headers
      */
@@ -89,6 +96,12 @@ public final class HeaderConstants {
     public static final String X_USER_ROLES = "X-User-Roles";
     public static final String X_GATEWAY_VALIDATED = "X-Gateway-Validated";
 
+    /**
+     * Client identification headers used for rate limit keys
+     */
+    public static final String X_SESSION_ID = "X-Session-Id";
+    public static final String X_API_KEY = "X-API-Key";
+
     /**
      * Tracing headers
      */
@@ -97,9 +110,19 @@ public final class HeaderConstants {
     public static final String TRACE_ID = "X-Trace-Id";
     public static final String SPAN_ID = "X-Span-Id";
 
+    /**
+     * Deadline propagation headers: absolute epoch millis and remaining budget in gRPC timeout format
+     */
+    public static final String X_REQUEST_DEADLINE = "X-Request-Deadline";
+    public static final String X_REQUEST_TIMEOUT = "X-Request-Timeout";
+
     /**
      * Filter constants
      */
     public static final String CSP_NONCE_ATTRIBUTE = "csp-nonce";
     public static final String TRACE_CONTEXT_ATTRIBUTE = "trace-context";
+    public static final String VERIFIED_PRINCIPAL_ATTRIBUTE = "verified-principal";
+    public static final String CLIENT_IP_ATTRIBUTE = "client-ip";
+    public static final String REQUEST_DEADLINE_ATTRIBUTE = "request-deadline";
+    public static final String UPSTREAM_ATTEMPT_ATTRIBUTE = "upstream-attempt";
 }
@@ -1,8 +1,7 @@
 package com.mysillydreams.gateway.controller;
 
 import com.mysillydreams.gateway.constants.HeaderConstants;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
+import com.mysillydreams.gateway.metrics.GatewayMeters;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
@@ -31,7 +30,7 @@ import static org.springframework.web.bind.annotation.RequestMethod.*;
 @RequiredArgsConstructor
 public class FallbackController {
 
-    private final MeterRegistry meterRegistry;
+    private final GatewayMeters gatewayMeters;
 
     // Service mapping for consistent naming
     private static final Map<String, String> SERVICE_ID_MAP = Map.of(
@@ -118,13 +117,7 @@ public class FallbackController {
             log.warn("Fallback invoked for service={}, path={}, method={}", serviceId, path, method);
 
             // Increment fallback metrics with rich tagging for better dashboards
-            Counter.builder("gateway.fallback.count")
-                    .tags("service", serviceId,
-                          "method", method,
-                          "status", String.valueOf(HttpStatus.SERVICE_UNAVAILABLE.value()))
-                    .description("Number of fallback invocations per service")
-                    .register(meterRegistry)
-                    .increment();
+            gatewayMeters.fallback(serviceId, method);
 
         // Build response payload
         Map<String, Object> response = new LinkedHashMap<>();
@@ -2,10 +2,12 @@ package com.mysillydreams.gateway.filter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.metrics.GatewayMeters;
+import com.mysillydreams.gateway.metrics.PathTemplateNormalizer;
 import com.mysillydreams.gateway.service.JwtService;
+import com.mysillydreams.gateway.service.VerifiedPrincipal;
+import com.mysillydreams.gateway.service.revocation.TokenRevocationService;
 import io.jsonwebtoken.JwtException;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.tracing.Tracer;
 import io.micrometer.tracing.annotation.NewSpan;
 import org.slf4j.Logger;
@@ -37,13 +39,18 @@ public class AuthenticationFilter implements GatewayFilter {
     private final JwtService jwtService;
     private final ObjectMapper objectMapper;
     private final Tracer tracer;
-    private final MeterRegistry meterRegistry;
+    private final GatewayMeters gatewayMeters;
+    private final TokenRevocationService revocationService;
+    private final PathTemplateNormalizer pathNormalizer;
 
-    public AuthenticationFilter(JwtService jwtService, ObjectMapper objectMapper, Tracer tracer, MeterRegistry meterRegistry) {
+    public AuthenticationFilter(JwtService jwtService, ObjectMapper objectMapper, Tracer tracer, GatewayMeters gatewayMeters,
+                                TokenRevocationService revocationService, PathTemplateNormalizer pathNormalizer) {
         this.jwtService = jwtService;
         this.objectMapper = objectMapper;
         this.tracer = tracer;
-        this.meterRegistry = meterRegistry;
+        this.gatewayMeters = gatewayMeters;
+        this.revocationService = revocationService;
+        this.pathNormalizer = pathNormalizer;
     }
 
     @Override
@@ -59,83 +66,53 @@ public class AuthenticationFilter implements GatewayFilter {
             logger.warn("Missing or invalid Authorization header for path: {}", request.getPath());
 
             // Record missing-header failures
-            meterRegistry.counter("gateway.auth.failure",
-                "path", sanitizePath(request.getPath().value()),
-                "reason", "missing_or_malformed_header")
-                .increment();
+            gatewayMeters.authFailure(pathNormalizer.normalize(request.getPath().value()), "missing_or_malformed_header");
 
             return handleUnauthorized(exchange, "Missing or invalid Authorization header");
         }
 
         String token = authHeader.substring(BEARER_PREFIX.length());
-
-        return Mono.fromCallable(() -> {
-            // Validate JWT token
-            if (!jwtService.validateToken(token)) {
+        // One cache probe serves both the offload decision and the verification below
+        VerifiedPrincipal cached = jwtService.cached(token);
+
+        Mono<VerifiedPrincipal> verified = Mono.fromCallable(() -> {
+            // Validate JWT token and extract user information in a single parse
+            VerifiedPrincipal principal;
+            try {
+                principal = cached != null ? cached : jwtService.verifyUncached(token);
+            } catch (JwtException e) {
+                logger.debug("JWT verification failed: {}", e.getMessage());
                 throw new JwtException("Invalid JWT token");
             }
-
-            // Extract user information from token
-            String userId = jwtService.extractUserId(token);
-            String username = jwtService.extractUsername(token);
-            String roles = jwtService.extractRoles(token);
+            String userId = principal.getUserId();
+            String username = principal.getUsername();
+            String roles = principal.getRoles();
 
             // Validate presence of required claims with consolidated metrics
             if (userId == null || userId.trim().isEmpty()) {
-                meterRegistry.counter("gateway.auth.failure",
-                    "path", sanitizePath(request.getPath().value()),
-                    "reason", "jwt_invalid_claim")
-                    .increment();
+                gatewayMeters.authFailure(pathNormalizer.normalize(request.getPath().value()), "jwt_invalid_claim");
                 throw new JwtException("JWT missing required claim: userId");
             }
             if (username == null || username.trim().isEmpty()) {
-                meterRegistry.counter("gateway.auth.failure",
-                    "path", sanitizePath(request.getPath().value()),
-                    "reason", "jwt_invalid_claim")
-                    .increment();
+                gatewayMeters.authFailure(pathNormalizer.normalize(request.getPath().value()), "jwt_invalid_claim");
                 throw new JwtException("JWT missing required claim: username");
             }
             if (roles == null || roles.trim().isEmpty()) {
-                meterRegistry.counter("gateway.auth.failure",
-                    "path", sanitizePath(request.getPath().value()),
-                    "reason", "jwt_invalid_claim")
-                    .increment();
+                gatewayMeters.authFailure(pathNormalizer.normalize(request.getPath().value()), "jwt_invalid_claim");
                 throw new JwtException("JWT missing required claim: roles");
             }
 
-            // Null-safe header writes - build request with only non-null values
-            ServerHttpRequest.Builder requestBuilder = request.mutate();
-
-            if (userId != null) {
-                requestBuilder.header(HeaderConstants.X_USER_ID, userId);
-            }
-            if (username != null) {
-                requestBuilder.header(HeaderConstants.X_USERNAME, username);
-            }
-            if (roles != null) {
-                requestBuilder.header(HeaderConstants.X_USER_ROLES, roles);
-            }
-            requestBuilder.header(HeaderConstants.X_GATEWAY_VALIDATED, "true");
-
-            ServerHttpRequest modifiedRequest = requestBuilder.build();
-
-            logger.debug("Authentication successful for user: {} on path: {}", username, request.getPath());
-
-            // Emit metrics counter for auth success (simplified registration)
-            meterRegistry.counter("gateway.auth.success",
-                "path", sanitizePath(request.getPath().value()))
-                .increment();
+            return principal;
+        });
 
-            // Tag the span with user information
-            if (tracer.currentSpan() != null) {
-                if (userId != null) tracer.currentSpan().tag("user.id", userId);
-                if (username != null) tracer.currentSpan().tag("user.name", username);
-                if (roles != null) tracer.currentSpan().tag("user.roles", roles);
-            }
+        // Verification is pure CPU work: run it inline on the event loop unless it may be expensive
+        if (jwtService.requiresOffload(token, cached != null)) {
+            verified = verified.subscribeOn(Schedulers.boundedElastic());
+        }
 
-            return exchange.mutate().request(modifiedRequest).build();
-        })
-        .subscribeOn(Schedulers.boundedElastic())  // Avoid blocking Netty event loop
+        return verified
+        .flatMap(this::rejectIfRevoked)
+        .map(principal -> authenticatedExchange(exchange, principal))
         .flatMap(modifiedExchange -> {
             // Propagate user info and correlation ID into Reactor Context
             return chain.filter(modifiedExchange)
@@ -156,10 +133,7 @@ public class AuthenticationFilter implements GatewayFilter {
             logger.warn("JWT validation failed for path: {}: {}", request.getPath(), ex.getMessage());
 
             // Emit metrics counter for auth failure (simplified registration)
-            meterRegistry.counter("gateway.auth.failure",
-                "path", sanitizePath(request.getPath().value()),
-                "reason", "jwt_invalid")
-                .increment();
+            gatewayMeters.authFailure(pathNormalizer.normalize(request.getPath().value()), "jwt_invalid");
 
             return handleUnauthorized(exchange, ex.getMessage());
         })
@@ -171,6 +145,59 @@ public class AuthenticationFilter implements GatewayFilter {
         });
     }
 
+    /**
+     * Reject tokens whose jti has been revoked before exp
+     */
+    private Mono<VerifiedPrincipal> rejectIfRevoked(VerifiedPrincipal principal) {
+        return revocationService.isRevoked(principal)
+                .flatMap(revoked -> revoked
+                        ? Mono.error(new JwtException("JWT has been revoked"))
+                        : Mono.just(principal));
+    }
+
+    /**
+     * Forward verified user information to downstream services as trusted headers
+     */
+    private ServerWebExchange authenticatedExchange(ServerWebExchange exchange, VerifiedPrincipal principal) {
+        ServerHttpRequest request = exchange.getRequest();
+        String userId = principal.getUserId();
+        String username = principal.getUsername();
+        String roles = principal.getRoles();
+
+        // Null-safe header writes - build request with only non-null values
+        ServerHttpRequest.Builder requestBuilder = request.mutate();
+
+        if (userId != null) {
+            requestBuilder.header(HeaderConstants.X_USER_ID, userId);
+        }
+        if (username != null) {
+            requestBuilder.header(HeaderConstants.X_USERNAME, username);
+        }
+        if (roles != null) {
+            requestBuilder.header(HeaderConstants.X_USER_ROLES, roles);
+        }
+        requestBuilder.header(HeaderConstants.X_GATEWAY_VALIDATED, "true");
+
+        ServerHttpRequest modifiedRequest = requestBuilder.build();
+
+        logger.debug("Authentication successful for user: {} on path: {}", username, request.getPath());
+
+        // Emit metrics counter for auth success (simplified registration)
+        gatewayMeters.authSuccess(pathNormalizer.normalize(request.getPath().value()));
+
+        // Tag the span with user information
+        if (tracer.currentSpan() != null) {
+            if (userId != null) tracer.currentSpan().tag("user.id", userId);
+            if (username != null) tracer.currentSpan().tag("user.name", username);
+            if (roles != null) tracer.currentSpan().tag("user.roles", roles);
+        }
+
+        // Route-level role checks read the parsed principal instead of re-reading headers
+        exchange.getAttributes().put(HeaderConstants.VERIFIED_PRINCIPAL_ATTRIBUTE, principal);
+
+        return exchange.mutate().request(modifiedRequest).build();
+    }
+
     private Mono<Void> handleUnauthorized(ServerWebExchange exchange, String message) {
         return handleError(exchange, HttpStatus.UNAUTHORIZED, message, null);
     }
@@ -239,13 +266,4 @@ public class AuthenticationFilter implements GatewayFilter {
             default -> "error";
         };
     }
-
-    /**
-     * Sanitize path for metrics to avoid high cardinality
-     */
-    private String sanitizePath(String path) {
-        return path.replaceAll("/\\d+", "/{id}")
-                  .replaceAll("/[a-f0-9-]{36}", "/{uuid}")
-                  .replaceAll("/[a-f0-9]{8,}", "/{hash}");
-    }
 }
@@ -0,0 +1,149 @@
+package com.mysillydreams.gateway.filter;
+
+import com.mysillydreams.gateway.config.TimeoutProperties;
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Forwards the request deadline to upstream services on every attempt.
+ * GlobalTimeoutFilter fixes the absolute deadline when the request arrives; this filter sits right after
+ * the route's retry filter, so it runs once per upstream attempt and each attempt carries what is left of
+ * the same budget: the deadline itself (epoch millis) and the remaining time in gRPC timeout format.
+ * A retry is refused with 504 when less than gateway.timeout.deadline.min-retry-budget is left, instead of
+ * sending upstream a request its caller will have given up on.
+ * Without a deadline, or with the feature disabled, client-sent copies of both headers are removed.
+ */
+@Component
+public class DeadlineFilter implements GatewayFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineFilter.class);
+
+    /** gRPC timeouts carry at most 8 digits */
+    private static final long MAX_TIMEOUT_VALUE = 99_999_999L;
+
+    private final TimeoutProperties timeoutProperties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier millisClock;
+    private final Map<String, Counter> refused = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DeadlineFilter(TimeoutProperties timeoutProperties, MeterRegistry meterRegistry) {
+        this(timeoutProperties, meterRegistry, System::currentTimeMillis);
+    }
+
+    DeadlineFilter(TimeoutProperties timeoutProperties, MeterRegistry meterRegistry, LongSupplier millisClock) {
+        this.timeoutProperties = timeoutProperties;
+        this.meterRegistry = meterRegistry;
+        this.millisClock = millisClock;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        TimeoutProperties.Deadline config = timeoutProperties.getDeadline();
+        Long deadline = exchange.getAttribute(HeaderConstants.REQUEST_DEADLINE_ATTRIBUTE);
+        if (!config.isEnabled() || deadline == null) {
+            return chain.filter(withoutDeadlineHeaders(exchange, config));
+        }
+
+        int attempt = nextAttempt(exchange);
+        long remaining = deadline - millisClock.getAsLong();
+        if (attempt > 1 && remaining < config.getMinRetryBudget().toMillis()) {
+            String routeId = routeId(exchange);
+            logger.debug("Refusing retry {} on route {}: {}ms left of the request deadline", attempt - 1, routeId,
+                    remaining);
+            refusedCounter(routeId).increment();
+            return Mono.error(new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                    "Request deadline too close to retry"));
+        }
+
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .headers(headers -> {
+                    if (StringUtils.hasText(config.getHeader())) {
+                        headers.set(config.getHeader(), Long.toString(deadline));
+                    }
+                    if (StringUtils.hasText(config.getTimeoutHeader())) {
+                        headers.set(config.getTimeoutHeader(), grpcTimeout(remaining));
+                    }
+                })
+                .build();
+        return chain.filter(exchange.mutate().request(request).build());
+    }
+
+    /**
+     * Drops deadline headers the client sent itself, so upstream never trusts a budget the gateway did not set
+     */
+    private static ServerWebExchange withoutDeadlineHeaders(ServerWebExchange exchange,
+                                                            TimeoutProperties.Deadline config) {
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        boolean hasDeadline = StringUtils.hasText(config.getHeader()) && headers.containsKey(config.getHeader());
+        boolean hasTimeout = StringUtils.hasText(config.getTimeoutHeader())
+                && headers.containsKey(config.getTimeoutHeader());
+        if (!hasDeadline && !hasTimeout) {
+            return exchange;
+        }
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .headers(mutable -> {
+                    if (hasDeadline) {
+                        mutable.remove(config.getHeader());
+                    }
+                    if (hasTimeout) {
+                        mutable.remove(config.getTimeoutHeader());
+                    }
+                })
+                .build();
+        return exchange.mutate().request(request).build();
+    }
+
+    /**
+     * Formats a budget as a gRPC timeout: milliseconds, or whole seconds once that needs more than 8 digits
+     */
+    static String grpcTimeout(long remainingMillis) {
+        long millis = Math.max(0, remainingMillis);
+        if (millis <= MAX_TIMEOUT_VALUE) {
+            return millis + "m";
+        }
+        return Math.min(millis / 1_000, MAX_TIMEOUT_VALUE) + "S";
+    }
+
+    /**
+     * Counts this upstream attempt on the exchange; the retry filter re-runs the chain with the same attributes
+     */
+    private static int nextAttempt(ServerWebExchange exchange) {
+        Integer previous = exchange.getAttribute(HeaderConstants.UPSTREAM_ATTEMPT_ATTRIBUTE);
+        int attempt = previous == null ? 1 : previous + 1;
+        exchange.getAttributes().put(HeaderConstants.UPSTREAM_ATTEMPT_ATTRIBUTE, attempt);
+        return attempt;
+    }
+
+    private Counter refusedCounter(String routeId) {
+        return refused.computeIfAbsent(routeId, id -> Counter.builder("gateway.deadline.retry.refused")
+                .tag("route", id)
+                .description("Retries not started because too little of the request deadline was left")
+                .register(meterRegistry));
+    }
+
+    private static String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "unknown";
+    }
+}
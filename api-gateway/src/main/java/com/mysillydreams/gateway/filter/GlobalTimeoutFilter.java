@@ -4,17 +4,19 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mysillydreams.gateway.config.TimeoutProperties;
 import com.mysillydreams.gateway.constants.HeaderConstants;
-import io.micrometer.core.instrument.MeterRegistry;
-import lombok.RequiredArgsConstructor;
+import com.mysillydreams.gateway.metrics.GatewayMeters;
+import com.mysillydreams.gateway.metrics.PathTemplateNormalizer;
+import com.mysillydreams.gateway.service.routing.PathPatternTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpResponse;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
@@ -27,26 +29,39 @@ import java.time.OffsetDateTime;
 import java.util.concurrent.TimeoutException;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.TimeoutException;
 
 /**
  * Global timeout filter that applies a sensible timeout to every request chain.
  * Maps timeouts to HTTP 504 Gateway Timeout to prevent slow or hanging upstream calls
  * from tying up gateway threads.
+ * Exclude paths and custom timeouts are compiled into path tables at startup and on config refresh;
+ * the most specific custom timeout pattern wins, so map order no longer matters.
  * Note: Registered as @Bean in SecurityConfig, not @Component to avoid double registration
  */
-@RequiredArgsConstructor
 public class GlobalTimeoutFilter implements WebFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(GlobalTimeoutFilter.class);
     private final ObjectMapper objectMapper;
-    private final MeterRegistry meterRegistry;
+    private final GatewayMeters gatewayMeters;
     private final TimeoutProperties timeoutProperties;
-    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final PathTemplateNormalizer pathNormalizer;
+    private volatile TimeoutRoutes routes;
+
+    public GlobalTimeoutFilter(ObjectMapper objectMapper, GatewayMeters gatewayMeters,
+                               TimeoutProperties timeoutProperties, PathTemplateNormalizer pathNormalizer) {
+        this.objectMapper = objectMapper;
+        this.gatewayMeters = gatewayMeters;
+        this.timeoutProperties = timeoutProperties;
+        this.pathNormalizer = pathNormalizer;
+        this.routes = TimeoutRoutes.of(timeoutProperties);
+    }
 
-    // All configuration now injected via TimeoutProperties
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void recompileRoutes() {
+        routes = TimeoutRoutes.of(timeoutProperties);
+        logger.info("Compiled {} timeout exclusions and {} custom timeouts", routes.excluded().size(),
+                routes.timeouts().size());
+    }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
@@ -63,6 +78,10 @@ public class GlobalTimeoutFilter implements WebFilter {
         // Determine timeout for this specific path
         Duration timeout = getTimeoutForPath(path);
 
+        // Fix the absolute deadline once; DeadlineFilter forwards it on every upstream attempt
+        exchange.getAttributes().put(HeaderConstants.REQUEST_DEADLINE_ATTRIBUTE,
+                System.currentTimeMillis() + timeout.toMillis());
+
         return chain.filter(exchange)
                 .timeout(timeout)
                 // Use Reactor's timeout-only matcher
@@ -78,9 +97,7 @@ public class GlobalTimeoutFilter implements WebFilter {
 
                         // Instrument timeout counter if enabled
                         if (timeoutProperties.isMetricsEnabled()) {
-                            meterRegistry.counter("gateway.timeout.count",
-                                "path", sanitizePath(path))
-                                .increment();
+                            gatewayMeters.timeout(pathNormalizer.normalize(path));
                         }
 
                         return handleTimeout(exchange, ex, timeout);
@@ -155,28 +172,39 @@ public class GlobalTimeoutFilter implements WebFilter {
      * Check if the path should be excluded from timeout handling using configurable patterns
      */
     private boolean isExcludedPath(String path) {
-        return timeoutProperties.getExcludePaths().stream()
-                .anyMatch(pattern -> pathMatcher.match(pattern, path));
+        return routes.excluded().matches(path);
     }
 
     /**
-     * Get timeout duration for a specific path, checking custom timeouts first,
-     * then per-route timeout, then global timeout
+     * Get timeout duration for a specific path: the most specific custom timeout,
+     * otherwise the per-route timeout
      */
     private Duration getTimeoutForPath(String path) {
-        return timeoutProperties.getCustomTimeouts().entrySet().stream()
-                .filter(entry -> pathMatcher.match(entry.getKey(), path))
-                .map(Map.Entry::getValue)
-                .findFirst()
-                .orElse(timeoutProperties.getPerRouteTimeout());
+        TimeoutRoutes current = routes;
+        Duration timeout = current.timeouts().match(path);
+        return timeout != null ? timeout : current.perRouteTimeout();
     }
 
     /**
-     * Sanitize path for metrics to avoid high cardinality
+     * Timeout settings compiled from TimeoutProperties, swapped as a whole on refresh
      */
-    private String sanitizePath(String path) {
-        return path.replaceAll("/\\d+", "/{id}")
-                  .replaceAll("/[a-f0-9-]{36}", "/{uuid}")
-                  .replaceAll("/[a-f0-9]{8,}", "/{hash}");
+    record TimeoutRoutes(PathPatternTable<Boolean> excluded, PathPatternTable<Duration> timeouts,
+                         Duration perRouteTimeout) {
+
+        static TimeoutRoutes of(TimeoutProperties properties) {
+            PathPatternTable.Builder<Boolean> excluded = PathPatternTable.builder();
+            properties.getExcludePaths().forEach(pattern -> add(excluded, pattern, Boolean.TRUE, "exclusion"));
+            PathPatternTable.Builder<Duration> timeouts = PathPatternTable.builder();
+            properties.getCustomTimeouts().forEach((pattern, timeout) -> add(timeouts, pattern, timeout, "custom"));
+            return new TimeoutRoutes(excluded.build(), timeouts.build(), properties.getPerRouteTimeout());
+        }
+
+        private static <V> void add(PathPatternTable.Builder<V> table, String pattern, V value, String kind) {
+            try {
+                table.add(pattern, value);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring {} timeout path '{}': {}", kind, pattern, e.getMessage());
+            }
+        }
     }
 }
@@ -0,0 +1,44 @@
+package com.mysillydreams.gateway.filter;
+
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.service.ratelimit.RateLimitHeaders;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Adds IETF RateLimit-Limit / RateLimit-Remaining / RateLimit-Reset (and Retry-After on 429) to every
+ * rate-limited response, allowed or not, so clients can back off before they hit the limit.
+ * Values come from the headers the rate limiter already put on the response; nothing is read from Redis.
+ * Limiters that set the standard fields themselves (Lua scripts, local leases, failover buckets) are left as is.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class RateLimitHeadersFilter implements WebFilter {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.beforeCommit(() -> {
+            addStandardHeaders(response);
+            return Mono.empty();
+        });
+        return chain.filter(exchange);
+    }
+
+    void addStandardHeaders(ServerHttpResponse response) {
+        HttpHeaders headers = response.getHeaders();
+        if (headers.containsKey(HeaderConstants.RATE_LIMIT_REMAINING)) {
+            return;
+        }
+        boolean denied = response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+        RateLimitHeaders.fromRedisRateLimiter(headers::getFirst, !denied, headers::set);
+    }
+}
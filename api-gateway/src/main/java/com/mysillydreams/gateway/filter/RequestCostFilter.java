@@ -0,0 +1,70 @@
+package com.mysillydreams.gateway.filter;
+
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.service.ratelimit.ClientIdentity;
+import com.mysillydreams.gateway.service.ratelimit.HeavyHitterTracker;
+import com.mysillydreams.gateway.service.ratelimit.RequestCost;
+import com.mysillydreams.gateway.service.ratelimit.RequestCostModel;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Prices each routed request with RequestCostModel and hands the cost to the rate limiters through the
+ * Reactor context. Runs ahead of the route filters, so requestRateLimiter sees it.
+ * Clients whose ip, user, combined, session or API key is penalized by HeavyHitterTracker pay a multiple of that cost.
+ */
+@Component
+public class RequestCostFilter implements GlobalFilter, Ordered {
+
+    private final RequestCostModel requestCostModel;
+    private final HeavyHitterTracker heavyHitterTracker;
+    private final ClientIdentity clientIdentity;
+
+    public RequestCostFilter(RequestCostModel requestCostModel, HeavyHitterTracker heavyHitterTracker,
+                             ClientIdentity clientIdentity) {
+        this.requestCostModel = requestCostModel;
+        this.heavyHitterTracker = heavyHitterTracker;
+        this.clientIdentity = clientIdentity;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        int cost = requestCostModel.costOf(exchange);
+        if (heavyHitterTracker.hasPenalties()) {
+            cost *= penaltyMultiplier(exchange);
+        }
+        if (cost == 1) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange).contextWrite(RequestCost.context(cost));
+    }
+
+    /**
+     * Largest multiplier among the keys the resolvers could have charged this request to.
+     * Only reached while some key is penalized, so building the keys stays off the common path.
+     */
+    private int penaltyMultiplier(ServerWebExchange exchange) {
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        int multiplier = Math.max(heavyHitterTracker.costMultiplier(clientIdentity.ipKey(exchange)),
+                heavyHitterTracker.costMultiplier(clientIdentity.userKey(exchange)));
+        multiplier = Math.max(multiplier, heavyHitterTracker.costMultiplier(clientIdentity.combinedKey(exchange)));
+        if (headers.containsKey(HeaderConstants.X_SESSION_ID)) {
+            multiplier = Math.max(multiplier, heavyHitterTracker.costMultiplier(clientIdentity.sessionKey(exchange)));
+        }
+        if (headers.containsKey(HeaderConstants.X_API_KEY)) {
+            multiplier = Math.max(multiplier, heavyHitterTracker.costMultiplier(clientIdentity.apiKey(exchange)));
+        }
+        return multiplier;
+    }
+
+    @Override
+    public int getOrder() {
+        // Route filters added through the Java DSL default to order 0
+        return -1;
+    }
+}
@@ -2,15 +2,25 @@ package com.mysillydreams.gateway.filter;
 
 import com.mysillydreams.gateway.config.TracingProperties;
 import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.metrics.PathTemplateNormalizer;
+import com.mysillydreams.gateway.service.tracing.TailSampler;
+import com.mysillydreams.gateway.service.tracing.TraceIds;
+import com.mysillydreams.gateway.service.tracing.TraceParent;
+import com.mysillydreams.gateway.service.tracing.TraceSampler;
+import com.mysillydreams.gateway.service.tracing.TraceState;
 import io.micrometer.tracing.Span;
 import io.micrometer.tracing.TraceContext;
 import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.brave.bridge.BraveSpan;
+import io.micrometer.tracing.brave.bridge.BraveTraceContext;
 // import io.micrometer.tracing.propagation.TraceContext; // Not needed for current implementation
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpHeaders;
@@ -21,13 +31,17 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import reactor.util.context.Context;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tracing filter for distributed tracing across gateway
  * Enhanced: Proper span lifecycle management and context propagation
+ * Enhanced: Head-based sampling through TraceSampler; unsampled requests skip span creation
+ * Enhanced: Continues inbound W3C traceparent/tracestate and honours the caller's sampled flag
  * Order: Run early to wrap entire request processing
  */
 @Component
@@ -38,7 +52,10 @@ public class TracingFilter implements GatewayFilter {
     private static final Logger logger = LoggerFactory.getLogger(TracingFilter.class);
 
     private final Tracer tracer;
+    private final brave.Tracer braveTracer;
     private final TracingProperties tracingProperties;
+    private final PathTemplateNormalizer pathNormalizer;
+    private final TraceSampler traceSampler;
     private final AntPathMatcher pathMatcher = new AntPathMatcher();
 
     @Override
@@ -51,68 +68,155 @@ public class TracingFilter implements GatewayFilter {
             return chain.filter(exchange);
         }
 
+        // Continue the caller's trace and keep its sampling decision when it sent a valid traceparent
+        String routeId = routeId(exchange);
+        TraceParent inbound = tracingProperties.isW3cTraceContext()
+                ? TraceParent.parse(request.getHeaders().getFirst(HeaderConstants.TRACEPARENT))
+                : null;
+        boolean sampled = inbound != null
+                ? traceSampler.sampleContinued(routeId, inbound.sampled())
+                : traceSampler.sample(routeId);
+        if (!sampled) {
+            return unsampled(exchange, chain, routeId, inbound);
+        }
+
         // Propagate ReactorContext with trace span
         return Mono.deferContextual(ctx -> {
-            // Create a new span for the gateway request
-            Span span = tracer.nextSpan()
-                    .name("gateway.request")
-                    .tag("http.method", request.getMethod().name())
-                    .tag("http.path", tracingProperties.isPathSanitization() ? sanitizePath(path) : path)
-                    .start();
-
-            // Tag correlation ID on the span if enabled
-            if (tracingProperties.isCorrelationIdTagging()) {
-                Optional.ofNullable(request.getHeaders().getFirst(HeaderConstants.X_CORRELATION_ID))
-                        .ifPresent(id -> span.tag("correlationId", id));
-            }
+            // Create a span for the gateway request, as a child of the caller's span when there is one
+            Span span = inbound != null
+                    ? tagRequest(tracer.spanBuilder().setParent(remoteParent(inbound)).start(), request, routeId)
+                    : tagRequest(traceSampler.startSampledRoot(tracer::nextSpan), request, routeId).start();
 
-            // Add trace headers based on configuration
-            ServerHttpRequest.Builder requestBuilder = request.mutate();
+            ServerWebExchange modifiedExchange = propagate(exchange, span.context(), true, inbound);
 
-            if (tracingProperties.isW3cTraceContext()) {
-                requestBuilder.header(HeaderConstants.TRACEPARENT, generateTraceParent(span));
+            return chain.filter(modifiedExchange)
+                    .contextWrite(Context.of(TraceContext.class, span.context()))
+                    .doFinally(signal -> finish(span, exchange, signal));
+        });
+    }
+
+    /**
+     * Unsampled request: no span is created or reported, only an unsampled context is propagated so upstream
+     * services and logs still correlate. It continues the caller's trace id when there is one, otherwise it
+     * gets fresh ids. A request that fails is recorded after the fact when
+     * tracing.sampling.always-sample-errors is on, under the span id that was propagated, so upstream spans
+     * of the failed request nest under it.
+     */
+    private Mono<Void> unsampled(ServerWebExchange exchange, GatewayFilterChain chain, String routeId,
+                                 TraceParent inbound) {
+        TraceContext.Builder builder = tracer.traceContextBuilder();
+        if (inbound != null) {
+            builder.traceId(inbound.traceId()).parentId(inbound.parentId());
+        } else {
+            builder.traceId(TraceIds.traceId());
+        }
+        TraceContext context = builder.spanId(TraceIds.spanId()).sampled(false).build();
+        Mono<Void> result = chain.filter(propagate(exchange, context, false, inbound))
+                .contextWrite(Context.of(TraceContext.class, context));
+        if (!traceSampler.alwaysSampleErrors()) {
+            return result;
+        }
+
+        long startMillis = System.currentTimeMillis();
+        return result.doFinally(signal -> {
+            HttpStatusCode statusCode = exchange.getResponse().getStatusCode();
+            if (signal == SignalType.ON_ERROR || (statusCode != null && statusCode.is5xxServerError())) {
+                brave.propagation.TraceContext recorded = BraveTraceContext.toBrave(context).toBuilder()
+                        .sampled(true)
+                        .build();
+                Span span = tagRequest(BraveSpan.fromBrave(braveTracer.toSpan(recorded)
+                        .start(TimeUnit.MILLISECONDS.toMicros(startMillis))), exchange.getRequest(), routeId);
+                span.tag("sampling.reason", "error");
+                finish(span, exchange, signal);
+                traceSampler.recordErrorSample(routeId);
             }
+        });
+    }
+
+    private Span tagRequest(Span span, ServerHttpRequest request, String routeId) {
+        String path = request.getPath().value();
+        span.name(TailSampler.ROOT_SPAN_NAME)
+                .tag(TailSampler.ROUTE_TAG, routeId)
+                .tag("http.method", request.getMethod().name())
+                .tag("http.path", tracingProperties.isPathSanitization() ? pathNormalizer.normalize(path) : path);
+
+        // Tag correlation ID on the span if enabled
+        if (tracingProperties.isCorrelationIdTagging()) {
+            Optional.ofNullable(request.getHeaders().getFirst(HeaderConstants.X_CORRELATION_ID))
+                    .ifPresent(id -> span.tag("correlationId", id));
+        }
+        return span;
+    }
+
+    /**
+     * Caller's span as a remote parent; only reached for sampled parents
+     */
+    private TraceContext remoteParent(TraceParent inbound) {
+        return tracer.traceContextBuilder()
+                .traceId(inbound.traceId())
+                .spanId(inbound.parentId())
+                .sampled(true)
+                .build();
+    }
 
-            if (tracingProperties.isCustomTraceHeaders()) {
-                requestBuilder.header(HeaderConstants.TRACE_ID, span.context().traceId())
-                             .header(HeaderConstants.SPAN_ID, span.context().spanId());
+    /**
+     * Adds trace headers based on configuration and stores the context for downstream access.
+     * tracestate is forwarded only alongside a continued traceparent, as the W3C spec requires.
+     */
+    private ServerWebExchange propagate(ServerWebExchange exchange, TraceContext context, boolean sampled,
+                                        TraceParent inbound) {
+        ServerHttpRequest.Builder requestBuilder = exchange.getRequest().mutate();
+
+        if (tracingProperties.isW3cTraceContext()) {
+            requestBuilder.header(HeaderConstants.TRACEPARENT,
+                    TraceParent.format(context.traceId(), context.spanId(), sampled));
+
+            String traceState = exchange.getRequest().getHeaders().getFirst(HeaderConstants.TRACESTATE);
+            if (traceState != null) {
+                String forwarded = inbound != null ? TraceState.sanitize(traceState) : null;
+                if (forwarded == null) {
+                    requestBuilder.headers(headers -> headers.remove(HeaderConstants.TRACESTATE));
+                } else if (forwarded != traceState) {
+                    requestBuilder.header(HeaderConstants.TRACESTATE, forwarded);
+                }
             }
+        }
 
-            ServerHttpRequest modifiedRequest = requestBuilder.build();
+        if (tracingProperties.isCustomTraceHeaders()) {
+            requestBuilder.header(HeaderConstants.TRACE_ID, context.traceId())
+                         .header(HeaderConstants.SPAN_ID, context.spanId());
+        }
 
-            ServerWebExchange modifiedExchange = exchange.mutate().request(modifiedRequest).build();
+        ServerWebExchange modifiedExchange = exchange.mutate().request(requestBuilder.build()).build();
+        modifiedExchange.getAttributes().put(HeaderConstants.TRACE_CONTEXT_ATTRIBUTE, context);
+        return modifiedExchange;
+    }
 
-            // Store span in exchange attributes for downstream access
-            modifiedExchange.getAttributes().put(HeaderConstants.TRACE_CONTEXT_ATTRIBUTE, span.context());
+    private void finish(Span span, ServerWebExchange exchange, SignalType signal) {
+        // Add HTTP status and error tags in finally block
+        HttpStatusCode statusCode = exchange.getResponse().getStatusCode();
+        if (statusCode != null) {
+            span.tag("http.status_code", String.valueOf(statusCode.value()));
+            if (statusCode.isError()) {
+                span.tag("error", "true");
+            }
+        }
 
-            return chain.filter(modifiedExchange)
-                    .contextWrite(Context.of(TraceContext.class, span.context()))
-                    .doFinally(signal -> {
-                        // Add HTTP status and error tags in finally block
-                        HttpStatusCode statusCode = exchange.getResponse().getStatusCode();
-                        if (statusCode != null) {
-                            span.tag("http.status_code", String.valueOf(statusCode.value()));
-                            if (statusCode.isError()) {
-                                span.tag("error", "true");
-                            }
-                        }
-
-                        // Add signal type for debugging
-                        span.tag("reactor.signal", signal.toString());
-
-                        // End the span
-                        span.end();
-                    });
-        });
+        // The circuit breaker filter records the failure it fell back from
+        if (exchange.getAttribute(ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR) != null) {
+            span.tag(TailSampler.FALLBACK_TAG, "true");
+        }
+
+        // Add signal type for debugging
+        span.tag("reactor.signal", signal.toString());
+
+        // End the span
+        span.end();
     }
 
-    /**
-     * Sanitize path to avoid high cardinality in tracing
-     */
-    private String sanitizePath(String path) {
-        return path.replaceAll("/\\d+", "/{id}")
-                  .replaceAll("/[a-f0-9-]{36}", "/{uuid}")
-                  .replaceAll("/[a-f0-9]{8,}", "/{hash}");
+    private static String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "unknown";
     }
 
     /**
@@ -122,13 +226,4 @@ public class TracingFilter implements GatewayFilter {
         return tracingProperties.getExcludePaths().stream()
                 .anyMatch(pattern -> pathMatcher.match(pattern, path));
     }
-
-    /**
-     * Generate W3C TraceContext traceparent header
-     */
-    private String generateTraceParent(Span span) {
-        return String.format("00-%s-%s-01",
-            span.context().traceId(),
-            span.context().spanId());
-    }
 }
@@ -1,6 +1,8 @@
 package com.mysillydreams.gateway.logging;
 
 import com.mysillydreams.gateway.security.SecurityErrorFormatter;
+import com.mysillydreams.gateway.service.cache.BoundedCache;
+import com.mysillydreams.gateway.service.cache.BoundedCaches;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -14,10 +16,26 @@ public class SanitizingLoggerInterceptor {
 
     private static final Logger logger = LoggerFactory.getLogger(SanitizingLoggerInterceptor.class);
     
+    private static final String CACHE_NAME = "log-sanitization";
+    private static final int MAX_CACHE_SIZE = 1000;
+    // Summed key + value length in chars, so a run of long arguments cannot pin much heap
+    private static final long MAX_CACHE_WEIGHT = 256 * 1024;
+
     private final SecurityErrorFormatter errorFormatter;
 
-    public SanitizingLoggerInterceptor(SecurityErrorFormatter errorFormatter) {
+    /**
+     * Cache for frequently sanitized arguments to improve performance
+     */
+    private final BoundedCache<String, String> sanitizationCache;
+
+    public SanitizingLoggerInterceptor(SecurityErrorFormatter errorFormatter, BoundedCaches caches) {
         this.errorFormatter = errorFormatter;
+        this.sanitizationCache = caches.create(CACHE_NAME, MAX_CACHE_SIZE, MAX_CACHE_WEIGHT,
+                SanitizingLoggerInterceptor::weigh);
+    }
+
+    private static int weigh(String value, String sanitized) {
+        return value.length() + sanitized.length();
     }
 
     /**
@@ -186,13 +204,6 @@ public class SanitizingLoggerInterceptor {
         return sanitized;
     }
 
-    /**
-     * Cache for frequently sanitized arguments to improve performance
-     */
-    private final java.util.concurrent.ConcurrentHashMap<String, String> sanitizationCache =
-            new java.util.concurrent.ConcurrentHashMap<>();
-    private static final int MAX_CACHE_SIZE = 1000;
-
     /**
      * Get sanitized value from cache or compute and cache it
      */
@@ -202,12 +213,7 @@ public class SanitizingLoggerInterceptor {
             return sanitizeMessage(value);
         }
 
-        // Clean cache if it gets too large
-        if (sanitizationCache.size() > MAX_CACHE_SIZE) {
-            sanitizationCache.clear();
-        }
-
-        return sanitizationCache.computeIfAbsent(value, this::sanitizeMessage);
+        return sanitizationCache.get(value, this::sanitizeMessage);
     }
 
     /**
@@ -0,0 +1,27 @@
+package com.mysillydreams.gateway.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint reporting live per-route latency percentiles.
+ * Mapped to /actuator/gateway-latency through management.endpoints.web.path-mapping.
+ */
+@Component
+@Endpoint(id = "gatewaylatency")
+public class GatewayLatencyEndpoint {
+
+    private final RouteLatencyRecorder latencyRecorder;
+
+    public GatewayLatencyEndpoint(RouteLatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> latency() {
+        return latencyRecorder.snapshot();
+    }
+}
@@ -0,0 +1,287 @@
+package com.mysillydreams.gateway.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-resolved gateway meters for the request path.
+ * Each meter is registered once and then looked up through nested maps keyed by the
+ * (interned) tag values, so a request only pays for map reads and an increment rather than
+ * a builder, tag sort and registry lookup per call.
+ * Tag values are admitted through the {@link TagCardinalityLimiter} on first sight, so values
+ * past the cap share the overflow meter and never grow these maps.
+ */
+@Component
+public class GatewayMeters {
+
+    private static final String REQUESTS = "gateway.requests.total";
+    private static final String DURATION = "gateway.request.duration";
+    private static final String RATE_LIMIT_HITS = "gateway.ratelimit.hits";
+    private static final String CIRCUIT_BREAKER_OPENS = "gateway.circuitbreaker.opens";
+    private static final String ERRORS = "gateway.errors.total";
+    private static final int MAX_OVERFLOW_PATHS = 10_000;
+
+    private final MeterRegistry registry;
+    private final TagCardinalityLimiter limiter;
+    private final ConcurrentMap<String, ConcurrentMap<String, RouteMeters>> routes = new ConcurrentHashMap<>();
+    // Raw templates already folded into the overflow bucket, so repeat requests skip the limiter
+    private final ConcurrentMap<String, ConcurrentMap<String, RouteMeters>> overflowPaths = new ConcurrentHashMap<>();
+
+    private final CounterFamily authSuccess;
+    private final CounterFamily authFailure;
+    private final CounterFamily authorizationDenied;
+    private final CounterFamily timeouts;
+    private final CounterFamily fallbacks;
+
+    public GatewayMeters(MeterRegistry registry) {
+        this(registry, TagCardinalityLimiter.unlimited());
+    }
+
+    @Autowired
+    public GatewayMeters(MeterRegistry registry, TagCardinalityLimiter limiter) {
+        this.registry = registry;
+        this.limiter = limiter;
+        this.authSuccess = new CounterFamily("gateway.auth.success",
+                "Successful JWT authentications", "path", null, Tags.empty());
+        this.authFailure = new CounterFamily("gateway.auth.failure",
+                "Rejected authentications by reason", "path", "reason", Tags.empty());
+        // Separate name: Prometheus requires one tag key set per meter name
+        this.authorizationDenied = new CounterFamily("gateway.authz.denied",
+                "Authenticated requests rejected by a route role check", "route", null, Tags.empty());
+        this.timeouts = new CounterFamily("gateway.timeout.count",
+                "Requests cut off by the global timeout", "path", null, Tags.empty());
+        this.fallbacks = new CounterFamily("gateway.fallback.count",
+                "Number of fallback invocations per service", "service", "method", Tags.of("status", "503"));
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Request meters for one path template and HTTP method
+     */
+    public RouteMeters route(String pathTemplate, String method) {
+        String path = pathTemplate;
+        ConcurrentMap<String, RouteMeters> byMethod = routes.get(path);
+        if (byMethod == null) {
+            byMethod = overflowPaths.get(pathTemplate);
+            if (byMethod != null) {
+                path = limiter.getOverflowValue();
+            } else {
+                path = limiter.limit(REQUESTS, "path", pathTemplate);
+                byMethod = routes.computeIfAbsent(path, p -> new ConcurrentHashMap<>());
+                if (!path.equals(pathTemplate) && overflowPaths.size() < MAX_OVERFLOW_PATHS) {
+                    overflowPaths.putIfAbsent(pathTemplate, byMethod);
+                }
+            }
+        }
+        RouteMeters meters = byMethod.get(method);
+        if (meters == null) {
+            String routePath = path;
+            meters = byMethod.computeIfAbsent(limiter.limit(REQUESTS, "method", method),
+                    m -> new RouteMeters(routePath, m));
+        }
+        return meters;
+    }
+
+    public void authSuccess(String pathTemplate) {
+        authSuccess.get(pathTemplate, null).increment();
+    }
+
+    public void authFailure(String pathTemplate, String reason) {
+        authFailure.get(pathTemplate, reason).increment();
+    }
+
+    public void authorizationDenied(String routeId) {
+        authorizationDenied.get(routeId, null).increment();
+    }
+
+    public void timeout(String pathTemplate) {
+        timeouts.get(pathTemplate, null).increment();
+    }
+
+    /**
+     * Fallbacks always answer 503, which is kept as a fixed status tag
+     */
+    public void fallback(String serviceId, String method) {
+        fallbacks.get(serviceId, method).increment();
+    }
+
+    /**
+     * Meters recorded by the metrics filter for a single (path template, method) pair.
+     * Response timers are kept per status code in a small copy-on-write array: a route
+     * only ever sees a handful of codes, so a linear scan beats boxing the code for a map.
+     */
+    public final class RouteMeters {
+
+        private final String pathTemplate;
+        private final String method;
+        private final Counter requests;
+        private volatile Counter rateLimitHits;
+        private volatile Counter circuitBreakerOpens;
+        private volatile StatusMeters[] statuses = new StatusMeters[0];
+
+        private RouteMeters(String pathTemplate, String method) {
+            this.pathTemplate = pathTemplate;
+            this.method = method;
+            this.requests = Counter.builder(REQUESTS)
+                    .tag("method", method)
+                    .tag("path", pathTemplate)
+                    .description("Total number of requests processed by gateway")
+                    .register(registry);
+        }
+
+        public void request() {
+            requests.increment();
+        }
+
+        /**
+         * Record the response duration and any status-specific counters
+         */
+        public void response(int statusCode, long durationNanos) {
+            StatusMeters status = status(statusCode);
+            status.timer.record(durationNanos, TimeUnit.NANOSECONDS);
+            if (status.errors != null) {
+                status.errors.increment();
+            }
+            if (statusCode == 429) {
+                rateLimitHits().increment();
+            } else if (statusCode == 503) {
+                circuitBreakerOpens().increment();
+            }
+        }
+
+        private StatusMeters status(int statusCode) {
+            for (StatusMeters candidate : statuses) {
+                if (candidate.statusCode == statusCode) {
+                    return candidate;
+                }
+            }
+            synchronized (this) {
+                StatusMeters[] current = statuses;
+                for (StatusMeters candidate : current) {
+                    if (candidate.statusCode == statusCode) {
+                        return candidate;
+                    }
+                }
+                StatusMeters created = new StatusMeters(statusCode, pathTemplate, method);
+                StatusMeters[] next = Arrays.copyOf(current, current.length + 1);
+                next[current.length] = created;
+                statuses = next;
+                return created;
+            }
+        }
+
+        private Counter rateLimitHits() {
+            Counter counter = rateLimitHits;
+            if (counter == null) {
+                counter = Counter.builder(RATE_LIMIT_HITS)
+                        .tag("method", method)
+                        .tag("path", pathTemplate)
+                        .description("Number of requests that hit rate limits")
+                        .register(registry);
+                rateLimitHits = counter;
+            }
+            return counter;
+        }
+
+        private Counter circuitBreakerOpens() {
+            Counter counter = circuitBreakerOpens;
+            if (counter == null) {
+                counter = Counter.builder(CIRCUIT_BREAKER_OPENS)
+                        .tag("method", method)
+                        .tag("path", pathTemplate)
+                        .description("Number of circuit breaker opens")
+                        .register(registry);
+                circuitBreakerOpens = counter;
+            }
+            return counter;
+        }
+    }
+
+    private final class StatusMeters {
+
+        private final int statusCode;
+        private final Timer timer;
+        private final Counter errors;
+
+        private StatusMeters(int statusCode, String pathTemplate, String method) {
+            String status = String.valueOf(statusCode);
+            this.statusCode = statusCode;
+            this.timer = Timer.builder(DURATION)
+                    .tags("method", method,
+                          "status", status,
+                          "path", pathTemplate)
+                    .description("Request processing time")
+                    .register(registry);
+            this.errors = statusCode >= 500
+                    ? Counter.builder(ERRORS)
+                        .tag("method", method)
+                        .tag("status", status)
+                        .tag("path", pathTemplate)
+                        .description("Total number of server errors")
+                        .register(registry)
+                    : null;
+        }
+    }
+
+    /**
+     * Counters sharing a name, one or two variable tags and any fixed tags
+     */
+    private final class CounterFamily {
+
+        private final String name;
+        private final String description;
+        private final String firstTag;
+        private final String secondTag;
+        private final Tags fixedTags;
+        private final ConcurrentMap<String, ConcurrentMap<String, Counter>> counters = new ConcurrentHashMap<>();
+
+        private CounterFamily(String name, String description, String firstTag, String secondTag, Tags fixedTags) {
+            this.name = name;
+            this.description = description;
+            this.firstTag = firstTag;
+            this.secondTag = secondTag;
+            this.fixedTags = fixedTags;
+        }
+
+        Counter get(String first, String second) {
+            String firstKey = first;
+            ConcurrentMap<String, Counter> inner = counters.get(firstKey);
+            if (inner == null) {
+                firstKey = limiter.limit(name, firstTag, first);
+                inner = counters.computeIfAbsent(firstKey, f -> new ConcurrentHashMap<>());
+            }
+            String secondKey = second != null ? second : "";
+            Counter counter = inner.get(secondKey);
+            if (counter == null) {
+                String firstValue = firstKey;
+                String secondValue = second != null ? limiter.limit(name, secondTag, second) : null;
+                counter = inner.computeIfAbsent(secondValue != null ? secondValue : "",
+                        s -> register(firstValue, secondValue));
+            }
+            return counter;
+        }
+
+        private Counter register(String first, String second) {
+            Counter.Builder builder = Counter.builder(name)
+                    .tag(firstTag, first)
+                    .tags(fixedTags)
+                    .description(description);
+            if (secondTag != null) {
+                builder.tag(secondTag, second);
+            }
+            return builder.register(registry);
+        }
+    }
+}
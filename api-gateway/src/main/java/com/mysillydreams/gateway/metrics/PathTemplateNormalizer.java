@@ -0,0 +1,170 @@
+package com.mysillydreams.gateway.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collapses request paths into low-cardinality templates for metric tags and span names.
+ * Numeric segments become {id}, UUIDs {uuid} and hex strings of 8+ characters {hash}.
+ * Paths are scanned once without regexes; results are interned so every request for the
+ * same template shares one String, and recent raw paths are remembered in a bounded LRU.
+ */
+@Component
+public class PathTemplateNormalizer {
+
+    public static final String ID_PLACEHOLDER = "{id}";
+    public static final String UUID_PLACEHOLDER = "{uuid}";
+    public static final String HASH_PLACEHOLDER = "{hash}";
+
+    private static final int DEFAULT_MAX_CACHED_PATHS = 10_000;
+    private static final int MIN_HASH_LENGTH = 8;
+    private static final int UUID_LENGTH = 36;
+    // Striped so concurrent requests rarely contend on the same LRU lock
+    private static final int STRIPES = 16;
+
+    private final LruStripe[] stripes;
+    private final Map<String, String> templates = new ConcurrentHashMap<>();
+    private final int maxTemplates;
+
+    public PathTemplateNormalizer() {
+        this(DEFAULT_MAX_CACHED_PATHS);
+    }
+
+    public PathTemplateNormalizer(int maxCachedPaths) {
+        int perStripe = Math.max(1, maxCachedPaths / STRIPES);
+        this.stripes = new LruStripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LruStripe(perStripe);
+        }
+        this.maxTemplates = maxCachedPaths;
+    }
+
+    /**
+     * Template for a raw request path, e.g. /api/contents/42 becomes /api/contents/{id}
+     */
+    public String normalize(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        LruStripe stripe = stripes[(path.hashCode() & 0x7fffffff) % STRIPES];
+        String template = stripe.get(path);
+        if (template == null) {
+            template = intern(scan(path));
+            stripe.put(path, template);
+        }
+        return template;
+    }
+
+    /**
+     * Single pass over the path; returns the input unchanged when no segment is dynamic
+     */
+    static String scan(String path) {
+        StringBuilder builder = null;
+        int length = path.length();
+        int copiedUpTo = 0;
+        int segmentStart = 0;
+
+        for (int i = 0; i <= length; i++) {
+            if (i < length && path.charAt(i) != '/') {
+                continue;
+            }
+            String placeholder = classify(path, segmentStart, i);
+            if (placeholder != null) {
+                if (builder == null) {
+                    builder = new StringBuilder(length);
+                }
+                builder.append(path, copiedUpTo, segmentStart).append(placeholder);
+                copiedUpTo = i;
+            }
+            segmentStart = i + 1;
+        }
+
+        if (builder == null) {
+            return path;
+        }
+        return builder.append(path, copiedUpTo, length).toString();
+    }
+
+    /**
+     * Placeholder for a dynamic segment, or null for a static one
+     */
+    private static String classify(String path, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return null;
+        }
+
+        boolean allDigits = true;
+        boolean allHex = true;
+        boolean uuidShape = length == UUID_LENGTH;
+        for (int i = 0; i < length; i++) {
+            char c = path.charAt(start + i);
+            if (c == '-') {
+                allDigits = false;
+                allHex = false;
+                uuidShape &= i == 8 || i == 13 || i == 18 || i == 23;
+                continue;
+            }
+            boolean digit = c >= '0' && c <= '9';
+            boolean hex = digit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+            allDigits &= digit;
+            allHex &= hex;
+            uuidShape &= hex && i != 8 && i != 13 && i != 18 && i != 23;
+            if (!allHex && !uuidShape) {
+                return null;
+            }
+        }
+
+        if (uuidShape) {
+            return UUID_PLACEHOLDER;
+        }
+        if (allDigits) {
+            return ID_PLACEHOLDER;
+        }
+        if (allHex && length >= MIN_HASH_LENGTH) {
+            return HASH_PLACEHOLDER;
+        }
+        return null;
+    }
+
+    private String intern(String template) {
+        String existing = templates.get(template);
+        if (existing != null) {
+            return existing;
+        }
+        // Past the cap the template is still correct, just not shared
+        if (templates.size() >= maxTemplates) {
+            return template;
+        }
+        existing = templates.putIfAbsent(template, template);
+        return existing != null ? existing : template;
+    }
+
+    private static final class LruStripe extends LinkedHashMap<String, String> {
+
+        private final int capacity;
+
+        LruStripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized String get(Object key) {
+            return super.get(key);
+        }
+
+        @Override
+        public synchronized String put(String key, String value) {
+            return super.put(key, value);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.mysillydreams.gateway.metrics;
+
+import com.mysillydreams.gateway.config.MetricsProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency timers keyed by gateway route id, with SLO buckets and in-memory percentiles.
+ * Route ids come from the route definitions, so the series count is fixed by configuration.
+ */
+@Component
+public class RouteLatencyRecorder {
+
+    public static final String METER_NAME = "gateway.route.latency";
+    public static final String UNMATCHED_ROUTE = "unmatched";
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_LABELS = {"p50", "p90", "p99", "p999"};
+
+    private final MeterRegistry registry;
+    private final MetricsProperties.Latency config;
+    private final Duration[] sloBoundaries;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public RouteLatencyRecorder(MeterRegistry registry, MetricsProperties metricsProperties) {
+        this.registry = registry;
+        this.config = metricsProperties.getLatency();
+        this.sloBoundaries = config.getSloBoundaries().toArray(new Duration[0]);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public void record(String routeId, long durationNanos) {
+        timer(routeId != null ? routeId : UNMATCHED_ROUTE).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Live latency summary per route: count, mean, max and p50/p90/p99/p999 in milliseconds
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> routes = new TreeMap<>();
+        timers.forEach((routeId, timer) -> {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", snapshot.count());
+            summary.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+            summary.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+            ValueAtPercentile[] values = snapshot.percentileValues();
+            for (int i = 0; i < values.length && i < PERCENTILE_LABELS.length; i++) {
+                summary.put(PERCENTILE_LABELS[i] + "Ms", values[i].value(TimeUnit.MILLISECONDS));
+            }
+            routes.put(routeId, summary);
+        });
+        return routes;
+    }
+
+    private Timer timer(String routeId) {
+        Timer timer = timers.get(routeId);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(routeId, id -> Timer.builder(METER_NAME)
+                    .tag("route", id)
+                    .description("Request latency per gateway route")
+                    .serviceLevelObjectives(sloBoundaries)
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram(config.isPercentileHistogram())
+                    .distributionStatisticExpiry(config.getPercentileWindow())
+                    .distributionStatisticBufferLength(config.getPercentileBufferLength())
+                    .register(registry));
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,170 @@
+package com.mysillydreams.gateway.metrics;
+
+import com.mysillydreams.gateway.config.MetricsProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the number of distinct values each tag of a gateway meter may take.
+ * The first values seen are admitted; once a tag is full, new values are folded into the
+ * overflow bucket. Applied to every registered meter as a {@link MeterFilter}, and called
+ * directly by {@link GatewayMeters} so its own lookup maps stay bounded too.
+ * gateway.metrics.dropped.series counts each folded value once. Folded values are remembered per tag up
+ * to a fixed bound; past it, further new values are still folded but no longer counted.
+ */
+public class TagCardinalityLimiter implements MeterFilter, MeterBinder {
+
+    private static final int MAX_TRACKED_FOLDED_VALUES = 10_000;
+
+    private final boolean enabled;
+    private final String meterPrefix;
+    private final int defaultLimit;
+    private final Map<String, Integer> limitsByTag;
+    private final String overflowValue;
+
+    // meter name -> tag key -> admitted values
+    private final ConcurrentMap<String, ConcurrentMap<String, AdmittedValues>> admitted = new ConcurrentHashMap<>();
+    private final AtomicLong folded = new AtomicLong();
+
+    public TagCardinalityLimiter(MetricsProperties.TagCardinality config) {
+        this.enabled = config.isEnabled();
+        this.meterPrefix = config.getMeterPrefix();
+        this.defaultLimit = config.getMaxValuesPerTag();
+        this.limitsByTag = Map.copyOf(config.getMaxValuesByTag());
+        this.overflowValue = config.getOverflowValue();
+    }
+
+    /**
+     * Limiter that admits every value, for components used without metrics configuration
+     */
+    public static TagCardinalityLimiter unlimited() {
+        MetricsProperties.TagCardinality config = new MetricsProperties.TagCardinality();
+        config.setEnabled(false);
+        return new TagCardinalityLimiter(config);
+    }
+
+    /**
+     * The value to use for a tag: the value itself if admitted, otherwise the overflow bucket
+     */
+    public String limit(String meterName, String tagKey, String value) {
+        if (!enabled || value == null || value.equals(overflowValue) || !meterName.startsWith(meterPrefix)) {
+            return value;
+        }
+        ConcurrentMap<String, AdmittedValues> byTag = admitted.get(meterName);
+        if (byTag == null) {
+            byTag = admitted.computeIfAbsent(meterName, n -> new ConcurrentHashMap<>());
+        }
+        AdmittedValues values = byTag.get(tagKey);
+        if (values == null) {
+            values = byTag.computeIfAbsent(tagKey, k -> new AdmittedValues(limitsByTag.getOrDefault(k, defaultLimit)));
+        }
+        if (values.admit(value)) {
+            return value;
+        }
+        if (values.fold(value)) {
+            folded.incrementAndGet();
+        }
+        return overflowValue;
+    }
+
+    public String getOverflowValue() {
+        return overflowValue;
+    }
+
+    /**
+     * Number of distinct tag values folded into the overflow bucket so far
+     */
+    public long getFoldedCount() {
+        return folded.get();
+    }
+
+    @Override
+    public Meter.Id map(Meter.Id id) {
+        String name = id.getName();
+        if (!enabled || !name.startsWith(meterPrefix)) {
+            return id;
+        }
+        List<Tag> tags = id.getTags();
+        List<Tag> limited = null;
+        for (int i = 0; i < tags.size(); i++) {
+            Tag tag = tags.get(i);
+            String value = limit(name, tag.getKey(), tag.getValue());
+            if (!value.equals(tag.getValue())) {
+                if (limited == null) {
+                    limited = new ArrayList<>(tags);
+                }
+                limited.set(i, Tag.of(tag.getKey(), value));
+            }
+        }
+        return limited == null ? id : id.replaceTags(limited);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("gateway.metrics.dropped.series", folded, AtomicLong::get)
+                .description("Distinct tag values folded into the overflow bucket after reaching the per-tag cap")
+                .register(registry);
+    }
+
+    private static final class AdmittedValues {
+
+        private final int limit;
+        private final Set<String> values = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger size = new AtomicInteger();
+        private final Set<String> foldedValues = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger foldedSize = new AtomicInteger();
+
+        private AdmittedValues(int limit) {
+            this.limit = limit;
+        }
+
+        boolean admit(String value) {
+            if (values.contains(value)) {
+                return true;
+            }
+            if (size.get() >= limit) {
+                return false;
+            }
+            // Reserve a slot first so concurrent callers can never push the set past the limit
+            if (size.incrementAndGet() > limit) {
+                size.decrementAndGet();
+                return values.contains(value);
+            }
+            if (!values.add(value)) {
+                size.decrementAndGet();
+            }
+            return true;
+        }
+
+        /**
+         * Remembers a value that was not admitted; true the first time it is seen
+         */
+        boolean fold(String value) {
+            if (foldedValues.contains(value)) {
+                return false;
+            }
+            if (foldedSize.incrementAndGet() > MAX_TRACKED_FOLDED_VALUES) {
+                foldedSize.decrementAndGet();
+                return false;
+            }
+            if (!foldedValues.add(value)) {
+                foldedSize.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -32,13 +32,6 @@ public abstract class AbstractErrorHandler {
     protected final String realm;
     protected final SanitizingLoggerInterceptor loggingInterceptor;
 
-    protected AbstractErrorHandler(ObjectMapper objectMapper, String realm) {
-        this.objectMapper = objectMapper;
-        this.realm = realm != null ? realm : "api";
-        // Create a default sanitizing logger interceptor if not provided
-        this.loggingInterceptor = new SanitizingLoggerInterceptor(new SecurityErrorFormatter());
-    }
-
     protected AbstractErrorHandler(ObjectMapper objectMapper, String realm,
                                   SanitizingLoggerInterceptor loggingInterceptor) {
         this.objectMapper = objectMapper;
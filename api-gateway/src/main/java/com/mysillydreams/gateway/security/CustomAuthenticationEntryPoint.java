@@ -2,6 +2,7 @@ package com.mysillydreams.gateway.security;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mysillydreams.gateway.dto.ErrorResponse;
+import com.mysillydreams.gateway.logging.SanitizingLoggerInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,8 +26,9 @@ public class CustomAuthenticationEntryPoint extends AbstractErrorHandler impleme
 
     public CustomAuthenticationEntryPoint(ObjectMapper objectMapper,
                                          @Value("${security.realm:api}") String realm,
-                                         SecurityErrorFormatter errorFormatter) {
-        super(objectMapper, realm);
+                                         SecurityErrorFormatter errorFormatter,
+                                         SanitizingLoggerInterceptor loggingInterceptor) {
+        super(objectMapper, realm, loggingInterceptor);
         this.errorFormatter = errorFormatter;
     }
 
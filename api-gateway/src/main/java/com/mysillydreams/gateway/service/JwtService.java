@@ -1,18 +1,28 @@
 package com.mysillydreams.gateway.service;
 
+import com.mysillydreams.gateway.config.JwtProperties;
+import com.mysillydreams.gateway.service.jwks.JwksKeyStore;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Clock;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolver;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
 // import io.jsonwebtoken.impl.DefaultClock; // Using public API instead
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.PublicKey;
 import java.time.Duration;
 import java.util.Date;
 import java.util.List;
@@ -24,6 +34,8 @@ import java.util.List;
 public class JwtService {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
+    // Exact role names, not substrings: "ROLE_ADMINISTRATOR_TRAINEE" no longer counts as admin
+    private static final RoleSet ADMIN_ROLES = RoleRegistry.getDefault().require("ROLE_ADMIN", "admin");
 
     private final SecretKey jwtSecretKey;
     private final SecretKey jwtRefreshSecretKey;
@@ -32,12 +44,22 @@ public class JwtService {
     private final String expectedAudience;
     private final Duration clockSkew;
 
+    // Parsers are immutable and thread-safe once built, so build them once instead of per call
+    private final JwtParser jwtParser;
+    private final JwtParser claimsParser;
+    private final VerifiedTokenCache tokenCache;
+    private final JwtProperties.Verification verificationConfig;
+    private final JwksKeyStore jwksKeyStore;
+
     // Constructor with security enhancements
     public JwtService(
             @Value("${jwt.secret:#{environment.JWT_SECRET ?: 'LocalJwtSecretKeyForDevelopmentMinimum256BitsLong123456789!'}}") String jwtSecret,
             @Value("${jwt.issuer:api-gateway}") String expectedIssuer,
             @Value("${jwt.audience:mysillydreams-api}") String expectedAudience,
-            @Value("${jwt.clock-skew:PT60S}") Duration clockSkew
+            @Value("${jwt.clock-skew:PT60S}") Duration clockSkew,
+            VerifiedTokenCache tokenCache,
+            JwtProperties jwtProperties,
+            ObjectProvider<JwksKeyStore> jwksKeyStore
     ) {
         // Load from environment variable or secure vault, not application.yml
         String secretKey = System.getenv("JWT_SECRET") != null ? System.getenv("JWT_SECRET") : jwtSecret;
@@ -48,31 +70,128 @@ public class JwtService {
         this.expectedIssuer = expectedIssuer;
         this.expectedAudience = expectedAudience;
         this.clockSkew = clockSkew;
+        this.tokenCache = tokenCache;
+        this.verificationConfig = jwtProperties.getVerification();
+        // Only present when jwt.jwks is configured
+        this.jwksKeyStore = jwksKeyStore.getIfAvailable();
+
+        SigningKeyResolver signingKeyResolver = new SigningKeyResolverAdapter() {
+            // jjwt 0.11 declares this parameter as a raw JwsHeader, so the override has to match it
+            @Override
+            @SuppressWarnings("rawtypes")
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                return resolveKey(header);
+            }
+        };
+
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(signingKeyResolver)
+                .setClock(clock)
+                .setAllowedClockSkewSeconds(clockSkew.getSeconds())
+                .requireIssuer(expectedIssuer)
+                .requireAudience(expectedAudience)
+                .build();
+        // Signature-only parser backing the individual extract* helpers
+        this.claimsParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(signingKeyResolver)
+                .build();
 
-        logger.info("JwtService initialized with issuer: {}, audience: {}, clockSkew: {}",
-                   expectedIssuer, expectedAudience, clockSkew);
+        logger.info("JwtService initialized with issuer: {}, audience: {}, clockSkew: {}, jwks: {}",
+                   expectedIssuer, expectedAudience, clockSkew, this.jwksKeyStore != null);
     }
 
     private SecretKey getSigningKey() {
         return jwtSecretKey;
     }
 
+    /**
+     * Pick the verification key from the JWS header: HMAC uses the shared secret,
+     * RSA and EC algorithms look up the kid in the JWKS key store without blocking
+     */
+    private Key resolveKey(JwsHeader<?> header) {
+        String algorithm = header.getAlgorithm();
+        if (algorithm != null && algorithm.startsWith("HS")) {
+            return getSigningKey();
+        }
+        if (jwksKeyStore == null) {
+            throw new UnsupportedJwtException("Asymmetric JWT algorithm not enabled: " + algorithm);
+        }
+        PublicKey key = jwksKeyStore.getKey(header.getKeyId());
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown JWT key id: " + header.getKeyId());
+        }
+        return key;
+    }
+
+    /**
+     * Parse and verify a JWT exactly once, returning the verified principal.
+     * Validates signature, expiry, issuer and audience with the configured clock skew.
+     * Hot tokens are served from the verified-token cache without any crypto.
+     *
+     * @throws JwtException if the token is invalid for any reason
+     */
+    public VerifiedPrincipal verify(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new JwtException("JWT token is empty");
+        }
+
+        VerifiedPrincipal cached = tokenCache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        return verifyUncached(token);
+    }
+
+    /**
+     * Principal for a token already in the verified-token cache, or null; no parsing and no crypto
+     */
+    public VerifiedPrincipal cached(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        return tokenCache.get(token);
+    }
+
+    /**
+     * Parse and verify a token that missed the verified-token cache, caching the principal.
+     * Callers that already looked the token up through {@link #cached(String)} use this to skip a second probe.
+     *
+     * @throws JwtException if the token is invalid for any reason
+     */
+    public VerifiedPrincipal verifyUncached(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new JwtException("JWT token is empty");
+        }
+
+        try {
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            VerifiedPrincipal principal = VerifiedPrincipal.fromClaims(claims);
+            tokenCache.put(token, principal);
+            return principal;
+        } catch (IllegalArgumentException e) {
+            // Null/empty token strings surface as IllegalArgumentException from the parser
+            throw new JwtException("JWT token is empty", e);
+        }
+    }
+
+    /**
+     * Whether verifying this token is expensive enough to move off the event loop.
+     * Small tokens are a single HMAC plus a JSON decode and always run inline in INLINE mode;
+     * large ones only run inline when already cached, as reported by the caller's {@link #cached(String)} lookup.
+     */
+    public boolean requiresOffload(String token, boolean cached) {
+        if (verificationConfig.getMode() == JwtProperties.Mode.OFFLOAD) {
+            return true;
+        }
+        return !cached && token != null && token.length() > verificationConfig.getMaxInlineTokenLength();
+    }
+
     /**
      * Validate JWT token with issuer, audience, and clock skew validation
      */
     public boolean validateToken(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .setClock(clock)
-                    .setAllowedClockSkewSeconds(clockSkew.getSeconds())
-                    .requireIssuer(expectedIssuer)
-                    .requireAudience(expectedAudience)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            // Additional validation can be added here
+            verify(token);
             return true;
         } catch (JwtException e) {
             logger.debug("JWT validation failed: {}", e.getMessage());
@@ -88,11 +207,7 @@ public class JwtService {
      */
     public String extractUserId(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = claimsParser.parseClaimsJws(token).getBody();
 
             // Try to get userId from claims, fallback to subject if not present
             String userId = claims.get("userId", String.class);
@@ -108,11 +223,7 @@ public class JwtService {
      */
     public String extractUsername(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = claimsParser.parseClaimsJws(token).getBody();
 
             // Username is typically stored in the subject
             return claims.getSubject();
@@ -127,11 +238,7 @@ public class JwtService {
      */
     public String extractRoles(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = claimsParser.parseClaimsJws(token).getBody();
 
             // Roles are typically stored in authorities claim
             String authorities = claims.get("authorities", String.class);
@@ -178,30 +285,20 @@ public class JwtService {
      * Extract all claims from token with validation
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .setClock(clock)
-                .setAllowedClockSkewSeconds(clockSkew.getSeconds())
-                .requireIssuer(expectedIssuer)
-                .requireAudience(expectedAudience)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 
     /**
      * Check if user has admin role
      */
     public boolean hasAdminRole(String token) {
-        String roles = extractRoles(token);
-        return roles.contains("ROLE_ADMIN") || roles.contains("admin");
+        return RoleRegistry.getDefault().parse(extractRoles(token)).containsAny(ADMIN_ROLES);
     }
 
     /**
      * Check if user has specific role
      */
     public boolean hasRole(String token, String role) {
-        String roles = extractRoles(token);
-        return roles.contains(role);
+        return RoleRegistry.getDefault().parse(extractRoles(token)).contains(role);
     }
 }
@@ -0,0 +1,142 @@
+package com.mysillydreams.gateway.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each distinct role name a bit position so role sets can be compared with a single AND.
+ * Positions are handed out on first sight and never reused; roles referenced by route configuration
+ * are registered at startup, so only token-only roles can be dropped once all 64 bits are taken.
+ */
+public final class RoleRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+    private static final RoleRegistry DEFAULT = new RoleRegistry();
+
+    public static final int MAX_ROLES = Long.SIZE;
+    // Bounds the raw-claim cache; distinct authority strings are few in practice
+    private static final int MAX_CACHED_CLAIMS = 4096;
+
+    private final Map<String, Integer> positions = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<Long, RoleSet> internedSets = new ConcurrentHashMap<>();
+    private final Map<String, RoleSet> parsedClaims = new ConcurrentHashMap<>();
+
+    public RoleRegistry() {
+    }
+
+    /**
+     * Process-wide registry shared by token verification and route authorization
+     */
+    public static RoleRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Bit position for a role, registering it if unseen; -1 when the registry is full
+     */
+    public int register(String role) {
+        Integer position = positions.get(role);
+        if (position != null) {
+            return position;
+        }
+        synchronized (names) {
+            position = positions.get(role);
+            if (position != null) {
+                return position;
+            }
+            if (names.size() >= MAX_ROLES) {
+                logger.warn("Role registry full ({} roles), ignoring role: {}", MAX_ROLES, role);
+                return -1;
+            }
+            int assigned = names.size();
+            names.add(role);
+            positions.put(role, assigned);
+            return assigned;
+        }
+    }
+
+    /**
+     * Bit position for an already-known role, or -1
+     */
+    public int positionOf(String role) {
+        Integer position = positions.get(role);
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Build the interned set for the given role names, failing if any cannot be represented.
+     * Intended for route configuration where a silently dropped role would weaken authorization.
+     */
+    public RoleSet require(String... roles) {
+        long bits = 0L;
+        for (String role : roles) {
+            int position = register(role.trim());
+            if (position < 0) {
+                throw new IllegalStateException("Cannot register required role '" + role
+                        + "': more than " + MAX_ROLES + " distinct roles");
+            }
+            bits |= 1L << position;
+        }
+        return intern(bits);
+    }
+
+    /**
+     * Parse a comma/whitespace separated authorities claim into an interned set
+     */
+    public RoleSet parse(String authorities) {
+        if (authorities == null || authorities.isEmpty()) {
+            return RoleSet.EMPTY;
+        }
+        RoleSet cached = parsedClaims.get(authorities);
+        if (cached != null) {
+            return cached;
+        }
+
+        long bits = 0L;
+        int length = authorities.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean separator = i == length || isSeparator(authorities.charAt(i));
+            if (!separator) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                int position = register(authorities.substring(start, i));
+                if (position >= 0) {
+                    bits |= 1L << position;
+                }
+                start = -1;
+            }
+        }
+
+        RoleSet set = intern(bits);
+        if (parsedClaims.size() < MAX_CACHED_CLAIMS) {
+            parsedClaims.putIfAbsent(authorities, set);
+        }
+        return set;
+    }
+
+    String nameAt(int position) {
+        synchronized (names) {
+            return position < names.size() ? names.get(position) : null;
+        }
+    }
+
+    private RoleSet intern(long bits) {
+        if (bits == 0L) {
+            return RoleSet.EMPTY;
+        }
+        return internedSets.computeIfAbsent(bits, b -> new RoleSet(this, b));
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || Character.isWhitespace(c);
+    }
+}
@@ -0,0 +1,74 @@
+package com.mysillydreams.gateway.service;
+
+import java.util.StringJoiner;
+
+/**
+ * Immutable bitset of roles, interned per {@link RoleRegistry} so equal sets share one instance.
+ * Membership and route checks are a single AND against the required set's bits.
+ */
+public final class RoleSet {
+
+    public static final RoleSet EMPTY = new RoleSet(null, 0L);
+
+    private final RoleRegistry registry;
+    private final long bits;
+
+    RoleSet(RoleRegistry registry, long bits) {
+        this.registry = registry;
+        this.bits = bits;
+    }
+
+    public long getBits() {
+        return bits;
+    }
+
+    public boolean isEmpty() {
+        return bits == 0L;
+    }
+
+    /**
+     * True when every role in {@code required} is present
+     */
+    public boolean containsAll(RoleSet required) {
+        return (bits & required.bits) == required.bits;
+    }
+
+    /**
+     * True when at least one role in {@code candidates} is present
+     */
+    public boolean containsAny(RoleSet candidates) {
+        return (bits & candidates.bits) != 0L;
+    }
+
+    public boolean contains(String role) {
+        if (registry == null) {
+            return false;
+        }
+        int position = registry.positionOf(role);
+        return position >= 0 && (bits & (1L << position)) != 0L;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RoleSet that)) return false;
+        return bits == that.bits && registry == that.registry;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        long remaining = bits;
+        while (remaining != 0L) {
+            int position = Long.numberOfTrailingZeros(remaining);
+            joiner.add(registry.nameAt(position));
+            remaining &= remaining - 1;
+        }
+        return joiner.toString();
+    }
+}
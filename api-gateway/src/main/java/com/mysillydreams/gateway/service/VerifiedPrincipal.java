@@ -0,0 +1,93 @@
+package com.mysillydreams.gateway.service;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Immutable view of a JWT whose signature and standard claims have been verified.
+ * Produced once per token by {@link JwtService#verify(String)} and safe to share across threads.
+ */
+public final class VerifiedPrincipal {
+
+    private final String userId;
+    private final String username;
+    private final String roles;
+    private final Instant expiry;
+    private final String issuer;
+    private final String tokenId;
+    // Parsed once per token; cached principals carry it across requests
+    private final RoleSet roleSet;
+
+    public VerifiedPrincipal(String userId, String username, String roles, Instant expiry, String issuer, String tokenId) {
+        this.userId = userId;
+        this.username = username;
+        this.roles = roles != null ? roles : "";
+        this.expiry = expiry;
+        this.issuer = issuer;
+        this.tokenId = tokenId;
+        this.roleSet = RoleRegistry.getDefault().parse(this.roles);
+    }
+
+    /**
+     * Build a principal from already-verified claims
+     */
+    static VerifiedPrincipal fromClaims(Claims claims) {
+        // Try to get userId from claims, fallback to subject if not present
+        String userId = claims.get("userId", String.class);
+        // Roles are typically stored in authorities claim
+        String authorities = claims.get("authorities", String.class);
+        Date expiration = claims.getExpiration();
+
+        return new VerifiedPrincipal(
+                userId != null ? userId : claims.getSubject(),
+                claims.getSubject(),
+                authorities,
+                expiration != null ? expiration.toInstant() : null,
+                claims.getIssuer(),
+                claims.getId()
+        );
+    }
+
+    public String getUserId() { return userId; }
+    public String getUsername() { return username; }
+    public String getRoles() { return roles; }
+    public Instant getExpiry() { return expiry; }
+    public String getIssuer() { return issuer; }
+    public String getTokenId() { return tokenId; }
+    public RoleSet getRoleSet() { return roleSet; }
+
+    /**
+     * Check if the token backing this principal has expired at the given instant
+     */
+    public boolean isExpired(Instant now) {
+        return expiry != null && !now.isBefore(expiry);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VerifiedPrincipal that)) return false;
+        return Objects.equals(userId, that.userId)
+                && Objects.equals(username, that.username)
+                && Objects.equals(roles, that.roles)
+                && Objects.equals(expiry, that.expiry)
+                && Objects.equals(issuer, that.issuer)
+                && Objects.equals(tokenId, that.tokenId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, username, roles, expiry, issuer, tokenId);
+    }
+
+    @Override
+    public String toString() {
+        // Roles are safe to log, token material never reaches this object
+        return "VerifiedPrincipal{userId='" + userId + "', username='" + username
+                + "', roles='" + roles + "', expiry=" + expiry + ", issuer='" + issuer
+                + "', tokenId='" + tokenId + "'}";
+    }
+}
@@ -0,0 +1,206 @@
+package com.mysillydreams.gateway.service;
+
+import com.mysillydreams.gateway.config.JwtProperties;
+import com.mysillydreams.gateway.service.cache.BoundedCache;
+import com.mysillydreams.gateway.service.cache.BoundedCaches;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Bounded in-process cache of verified JWT principals.
+ * Keyed by a 128-bit SHA-256 digest of the raw token so token material is never retained,
+ * and entries expire at the token's exp or the configured TTL, whichever comes first.
+ * Entries live in a CLOCK-evicted BoundedCache, so a full cache evicts one entry per insert instead of
+ * sweeping the whole map; expiry is checked when an entry is read.
+ * Lookups, size evictions and size are metered by BoundedCaches under cache=jwt-verified-tokens; only the
+ * evictions the generic meters cannot see (expired, invalidated) are counted here.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerifiedTokenCache.class);
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private static final String CACHE_NAME = "jwt-verified-tokens";
+
+    private final BoundedCache<TokenKey, Entry> entries;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Clock clock;
+
+    private final Counter expiredEvictionCounter;
+    private final Counter invalidationCounter;
+
+    @Autowired
+    public VerifiedTokenCache(JwtProperties jwtProperties, MeterRegistry meterRegistry, BoundedCaches caches) {
+        this(jwtProperties.getCache().isEnabled(),
+             jwtProperties.getCache().getMaxSize(),
+             jwtProperties.getCache().getTtl(),
+             Clock.systemUTC(),
+             meterRegistry,
+             caches);
+    }
+
+    public VerifiedTokenCache(boolean enabled, int maxSize, Duration ttl, Clock clock, MeterRegistry meterRegistry,
+                              BoundedCaches caches) {
+        this.enabled = enabled;
+        this.entries = caches.create(CACHE_NAME, Math.max(1, maxSize));
+        this.ttl = ttl;
+        this.clock = clock;
+
+        this.expiredEvictionCounter = Counter.builder("gateway.jwt.cache.evictions")
+                .tag("reason", "expired")
+                .description("Verified-token cache evictions")
+                .register(meterRegistry);
+        this.invalidationCounter = Counter.builder("gateway.jwt.cache.evictions")
+                .tag("reason", "invalidated")
+                .description("Verified-token cache evictions")
+                .register(meterRegistry);
+
+        logger.info("VerifiedTokenCache initialized with enabled: {}, maxSize: {}, ttl: {}", enabled, maxSize, ttl);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Return the cached principal for a token, or null if absent or expired
+     */
+    public VerifiedPrincipal get(String token) {
+        if (!enabled) {
+            return null;
+        }
+
+        TokenKey key = TokenKey.of(token);
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(clock.millis())) {
+            entries.invalidate(key);
+            expiredEvictionCounter.increment();
+            return null;
+        }
+
+        return entry.principal;
+    }
+
+    /**
+     * Cache a freshly verified principal until min(exp, now + ttl)
+     */
+    public void put(String token, VerifiedPrincipal principal) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = clock.millis();
+        long expiresAt = now + ttl.toMillis();
+        Instant tokenExpiry = principal.getExpiry();
+        if (tokenExpiry != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiry.toEpochMilli());
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+
+        entries.put(TokenKey.of(token), new Entry(principal, expiresAt));
+    }
+
+    /**
+     * Drop a single token, e.g. on logout or revocation
+     */
+    public void invalidate(String token) {
+        TokenKey key = TokenKey.of(token);
+        if (entries.getIfPresent(key) != null) {
+            entries.invalidate(key);
+            invalidationCounter.increment();
+        }
+    }
+
+    /**
+     * Drop all cached principals, e.g. after a signing key rotation
+     */
+    public void invalidateAll() {
+        long size = entries.size();
+        entries.invalidateAll();
+        invalidationCounter.increment(size);
+    }
+
+    public int size() {
+        return (int) entries.size();
+    }
+
+    private static final class Entry {
+        private final VerifiedPrincipal principal;
+        private final long expiresAtMillis;
+
+        private Entry(VerifiedPrincipal principal, long expiresAtMillis) {
+            this.principal = principal;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+
+    /**
+     * First 128 bits of the token's SHA-256 digest; collision-resistant so a forged token
+     * can never be served another token's principal
+     */
+    private static final class TokenKey {
+        private final long high;
+        private final long low;
+
+        private TokenKey(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        private static TokenKey of(String token) {
+            MessageDigest digest = SHA_256.get();
+            byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return new TokenKey(toLong(hash, 0), toLong(hash, 8));
+        }
+
+        private static long toLong(byte[] bytes, int offset) {
+            long value = 0;
+            for (int i = offset; i < offset + 8; i++) {
+                value = (value << 8) | (bytes[i] & 0xFF);
+            }
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TokenKey other)) return false;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high ^ low);
+        }
+    }
+}
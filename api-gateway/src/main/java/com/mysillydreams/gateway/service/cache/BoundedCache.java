@@ -0,0 +1,40 @@
+package com.mysillydreams.gateway.service.cache;
+
+import java.util.function.Function;
+
+/**
+ * Concurrent cache with a hard bound on entry count and total weight.
+ * Entries are evicted rather than the whole cache being cleared, so a burst of one-off keys
+ * cannot push out the working set in one go.
+ */
+public interface BoundedCache<K, V> {
+
+    /**
+     * Cached value for the key, or null when absent. Counts as a hit or a miss.
+     */
+    V getIfPresent(K key);
+
+    /**
+     * Cached value for the key, computing and caching it on a miss. A null result is returned but not cached.
+     * Concurrent misses for the same key may compute the value more than once.
+     */
+    V get(K key, Function<? super K, ? extends V> loader);
+
+    void put(K key, V value);
+
+    void invalidate(K key);
+
+    void invalidateAll();
+
+    long size();
+
+    long weightedSize();
+
+    CacheStats stats();
+
+    /**
+     * Point-in-time counters since the cache was created
+     */
+    record CacheStats(long hits, long misses, long puts, long evictions) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.mysillydreams.gateway.service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Creates named ClockCache instances with their meters registered, so every cache in the gateway
+ * reports cache.gets/puts/evictions/size/weight tagged with cache=name
+ */
+@Component
+public class BoundedCaches {
+
+    private final MeterRegistry meterRegistry;
+
+    public BoundedCaches(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Cache bounded by entry count only
+     */
+    public <K, V> BoundedCache<K, V> create(String name, int maximumSize) {
+        return register(name, ClockCache.<K, V>builder().maximumSize(maximumSize).build());
+    }
+
+    /**
+     * Cache bounded by entry count and by the summed weight of its entries
+     */
+    public <K, V> BoundedCache<K, V> create(String name, int maximumSize, long maximumWeight,
+                                            ToIntBiFunction<? super K, ? super V> weigher) {
+        return register(name, ClockCache.<K, V>builder()
+                .maximumSize(maximumSize)
+                .maximumWeight(maximumWeight)
+                .weigher(weigher)
+                .build());
+    }
+
+    private <K, V> BoundedCache<K, V> register(String name, BoundedCache<K, V> cache) {
+        new BoundedCacheMetrics(cache, name, Tags.empty()).bindTo(meterRegistry);
+        return cache;
+    }
+}
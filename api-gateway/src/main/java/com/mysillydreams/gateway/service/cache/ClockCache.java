@@ -0,0 +1,294 @@
+package com.mysillydreams.gateway.service.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * BoundedCache with CLOCK (second chance) eviction.
+ * Reads are a ConcurrentHashMap lookup plus setting a reference bit; only writes take a lock, and the
+ * cache is split into segments so they rarely contend. The clock hand skips entries read since its last
+ * pass and evicts the first one that was not, so a flood of keys seen only once churns among itself
+ * while keys that are read again survive.
+ */
+public final class ClockCache<K, V> implements BoundedCache<K, V> {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ClockCache(Builder<K, V> builder) {
+        int segmentCount = Math.max(1, Math.min(builder.segments, builder.maximumSize));
+        this.segments = new Segment[segmentCount];
+        int sizePerSegment = Math.max(1, (int) Math.ceil((double) builder.maximumSize / segmentCount));
+        long weightPerSegment = Math.max(1L, builder.maximumWeight / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(sizePerSegment, weightPerSegment, evictions);
+        }
+        this.weigher = builder.weigher;
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        Node<K, V> node = segmentFor(key).map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        node.markReferenced();
+        return node.value;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        int weight = Math.max(1, weigher.applyAsInt(key, value));
+        if (segmentFor(key).put(key, value, weight)) {
+            puts.increment();
+        }
+    }
+
+    @Override
+    public void invalidate(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.map.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long weightedSize() {
+        long weight = 0;
+        for (Segment<K, V> segment : segments) {
+            weight += segment.weight;
+        }
+        return weight;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), puts.sum(), evictions.sum());
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    public static final class Builder<K, V> {
+
+        private int maximumSize = 1_000;
+        private long maximumWeight = Long.MAX_VALUE;
+        private int segments = DEFAULT_SEGMENTS;
+        private ToIntBiFunction<? super K, ? super V> weigher = (key, value) -> 1;
+
+        public Builder<K, V> maximumSize(int maximumSize) {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("maximumSize must be positive");
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Upper bound on the summed weight of all entries; only meaningful together with a weigher
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight) {
+            if (maximumWeight <= 0) {
+                throw new IllegalArgumentException("maximumWeight must be positive");
+            }
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public Builder<K, V> weigher(ToIntBiFunction<? super K, ? super V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder<K, V> segments(int segments) {
+            if (segments <= 0) {
+                throw new IllegalArgumentException("segments must be positive");
+            }
+            this.segments = segments;
+            return this;
+        }
+
+        public ClockCache<K, V> build() {
+            return new ClockCache<>(this);
+        }
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+        final V value;
+        final int weight;
+        int slot;
+        volatile boolean referenced;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        void markReferenced() {
+            // Skip the volatile write when the bit is already set; hot keys are read far more than swept
+            if (!referenced) {
+                referenced = true;
+            }
+        }
+    }
+
+    /**
+     * One lock, one clock ring. The ring is a fixed array of slots; free slots are recycled through a stack.
+     */
+    private static final class Segment<K, V> {
+
+        final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+        final ReentrantLock lock = new ReentrantLock();
+        final Node<K, V>[] ring;
+        final int[] freeSlots;
+        int freeCount;
+        final long maximumWeight;
+        final LongAdder evictions;
+        int hand;
+        volatile long weight;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment(int maximumSize, long maximumWeight, LongAdder evictions) {
+            this.ring = new Node[maximumSize];
+            this.freeSlots = new int[maximumSize];
+            for (int i = 0; i < maximumSize; i++) {
+                freeSlots[i] = maximumSize - 1 - i;
+            }
+            this.freeCount = maximumSize;
+            this.maximumWeight = maximumWeight;
+            this.evictions = evictions;
+        }
+
+        boolean put(K key, V value, int entryWeight) {
+            if (entryWeight > maximumWeight) {
+                return false;
+            }
+            lock.lock();
+            try {
+                Node<K, V> node = new Node<>(key, value, entryWeight);
+                Node<K, V> previous = map.get(key);
+                if (previous != null) {
+                    node.slot = previous.slot;
+                    node.referenced = previous.referenced;
+                    ring[node.slot] = node;
+                    weight += entryWeight - previous.weight;
+                    map.put(key, node);
+                } else {
+                    if (freeCount == 0) {
+                        evictOne();
+                    }
+                    node.slot = freeSlots[--freeCount];
+                    ring[node.slot] = node;
+                    weight += entryWeight;
+                    map.put(key, node);
+                }
+                while (weight > maximumWeight) {
+                    evictOne();
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(K key) {
+            lock.lock();
+            try {
+                Node<K, V> node = map.remove(key);
+                if (node != null) {
+                    release(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                for (Node<K, V> node : map.values()) {
+                    release(node);
+                }
+                map.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Advances the hand until it finds an entry not read since the last pass. After two laps
+         * (readers kept setting bits behind the hand) the next entry goes regardless.
+         */
+        private void evictOne() {
+            for (int steps = 0; ; steps++) {
+                Node<K, V> node = ring[hand];
+                hand = hand + 1 == ring.length ? 0 : hand + 1;
+                if (node == null) {
+                    continue;
+                }
+                if (node.referenced && steps < ring.length * 2) {
+                    node.referenced = false;
+                    continue;
+                }
+                map.remove(node.key, node);
+                release(node);
+                evictions.increment();
+                return;
+            }
+        }
+
+        private void release(Node<K, V> node) {
+            ring[node.slot] = null;
+            freeSlots[freeCount++] = node.slot;
+            weight -= node.weight;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mysillydreams.gateway.service.jwks;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * JWKS source backed by a local file, e.g. a mounted Kubernetes secret
+ */
+public class FileJwksSource implements JwksSource {
+
+    private final Path path;
+
+    public FileJwksSource(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Mono<String> fetch() {
+        // File IO is blocking, keep it off the event loop
+        return Mono.fromCallable(() -> Files.readString(path, StandardCharsets.UTF_8))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public String describe() {
+        return "file:" + path;
+    }
+}
@@ -0,0 +1,36 @@
+package com.mysillydreams.gateway.service.jwks;
+
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * JWKS source fetched over HTTP(S) from an identity provider's jwks_uri
+ */
+public class HttpJwksSource implements JwksSource {
+
+    private final WebClient webClient;
+    private final String uri;
+    private final Duration timeout;
+
+    public HttpJwksSource(WebClient webClient, String uri, Duration timeout) {
+        this.webClient = webClient;
+        this.uri = uri;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Mono<String> fetch() {
+        return webClient.get()
+                .uri(uri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(timeout);
+    }
+
+    @Override
+    public String describe() {
+        return uri;
+    }
+}
@@ -0,0 +1,246 @@
+package com.mysillydreams.gateway.service.jwks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-memory cache of JWKS public keys indexed by kid.
+ * Keys are refreshed in the background on a fixed interval and on demand when an unknown kid
+ * is seen; lookups never wait for a fetch, so an unknown kid simply fails until the refresh lands.
+ */
+public class JwksKeyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwksKeyStore.class);
+
+    private final JwksSource source;
+    private final Duration refreshInterval;
+    private final Duration minRefreshInterval;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    // Replaced wholesale on every successful refresh so readers never see a partial key set
+    private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+    private final AtomicBoolean refreshInFlight = new AtomicBoolean(false);
+    private final AtomicLong lastRefreshAttemptMillis = new AtomicLong(0);
+    private volatile Consumer<Set<String>> keyRemovalListener = removed -> { };
+    private Disposable scheduledRefresh;
+
+    private final Counter refreshSuccessCounter;
+    private final Counter refreshFailureCounter;
+    private final Counter unknownKidCounter;
+
+    public JwksKeyStore(JwksSource source, Duration refreshInterval, Duration minRefreshInterval,
+                        ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this(source, refreshInterval, minRefreshInterval, objectMapper, meterRegistry, Clock.systemUTC());
+    }
+
+    JwksKeyStore(JwksSource source, Duration refreshInterval, Duration minRefreshInterval,
+                 ObjectMapper objectMapper, MeterRegistry meterRegistry, Clock clock) {
+        this.source = source;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshInterval = minRefreshInterval;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+
+        this.refreshSuccessCounter = Counter.builder("gateway.jwks.refresh")
+                .tag("result", "success")
+                .description("JWKS refresh attempts")
+                .register(meterRegistry);
+        this.refreshFailureCounter = Counter.builder("gateway.jwks.refresh")
+                .tag("result", "failure")
+                .description("JWKS refresh attempts")
+                .register(meterRegistry);
+        this.unknownKidCounter = Counter.builder("gateway.jwks.unknown.kid")
+                .description("Tokens presented with a kid not in the current key set")
+                .register(meterRegistry);
+        Gauge.builder("gateway.jwks.keys", this, store -> store.keys.size())
+                .description("Number of JWKS keys currently loaded")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start background refresh; the first load runs immediately but asynchronously
+     */
+    public void start() {
+        logger.info("Starting JWKS refresh from {} every {}", source.describe(), refreshInterval);
+        scheduledRefresh = Flux.interval(Duration.ZERO, refreshInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh().onErrorResume(e -> Mono.empty()))
+                .subscribe();
+    }
+
+    public void stop() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.dispose();
+        }
+    }
+
+    /**
+     * Look up a key by kid without blocking. An unknown kid schedules a rate-limited refresh
+     * and returns null so the caller can reject the token immediately.
+     */
+    public PublicKey getKey(String kid) {
+        PublicKey key = kid != null ? keys.get(kid) : null;
+        if (key == null) {
+            unknownKidCounter.increment();
+            requestRefresh();
+        }
+        return key;
+    }
+
+    /**
+     * Register a callback invoked with the kids that disappeared after a refresh
+     */
+    public void setKeyRemovalListener(Consumer<Set<String>> keyRemovalListener) {
+        this.keyRemovalListener = keyRemovalListener;
+    }
+
+    public Set<String> getKeyIds() {
+        return keys.keySet();
+    }
+
+    /**
+     * Fire-and-forget refresh, skipped if one is running or ran within minRefreshInterval
+     */
+    private void requestRefresh() {
+        long now = clock.millis();
+        long last = lastRefreshAttemptMillis.get();
+        if (now - last < minRefreshInterval.toMillis()) {
+            return;
+        }
+        if (lastRefreshAttemptMillis.compareAndSet(last, now)) {
+            refresh().subscribe(null, e -> { });
+        }
+    }
+
+    /**
+     * Fetch and swap in the latest key set. Failures keep the previous keys.
+     */
+    public Mono<Void> refresh() {
+        return Mono.defer(() -> {
+            if (!refreshInFlight.compareAndSet(false, true)) {
+                return Mono.<Void>empty();
+            }
+            lastRefreshAttemptMillis.set(clock.millis());
+
+            return source.fetch()
+                    .map(this::parseKeys)
+                    .doOnNext(this::swapKeys)
+                    .doOnError(e -> {
+                        refreshFailureCounter.increment();
+                        logger.warn("JWKS refresh from {} failed, keeping {} existing keys: {}",
+                                   source.describe(), keys.size(), e.getMessage());
+                    })
+                    .doFinally(signal -> refreshInFlight.set(false))
+                    .then();
+        });
+    }
+
+    private void swapKeys(Map<String, PublicKey> newKeys) {
+        Map<String, PublicKey> previous = keys;
+        keys = newKeys;
+        refreshSuccessCounter.increment();
+
+        Set<String> removed = new HashSet<>(previous.keySet());
+        removed.removeAll(newKeys.keySet());
+        if (!removed.isEmpty()) {
+            logger.info("JWKS keys removed: {}", removed);
+            keyRemovalListener.accept(removed);
+        }
+        logger.debug("JWKS refreshed from {} with {} keys", source.describe(), newKeys.size());
+    }
+
+    /**
+     * Parse RSA and EC signing keys from a JWKS document; a document without any is rejected
+     */
+    Map<String, PublicKey> parseKeys(String json) {
+        try {
+            JsonNode keysNode = objectMapper.readTree(json).path("keys");
+            Map<String, PublicKey> parsed = new HashMap<>();
+            for (JsonNode jwk : keysNode) {
+                String kid = jwk.path("kid").asText(null);
+                String use = jwk.path("use").asText("sig");
+                if (kid == null || !"sig".equals(use)) {
+                    continue;
+                }
+                try {
+                    PublicKey key = toPublicKey(jwk);
+                    if (key != null) {
+                        parsed.put(kid, key);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Skipping unparseable JWKS key kid={}: {}", kid, e.getMessage());
+                }
+            }
+            if (parsed.isEmpty()) {
+                // Swapping in an empty set would reject every RS/ES token until the next good refresh
+                throw new IllegalStateException("no usable signing keys");
+            }
+            return Collections.unmodifiableMap(parsed);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid JWKS document: " + e.getMessage(), e);
+        }
+    }
+
+    private PublicKey toPublicKey(JsonNode jwk) throws Exception {
+        String kty = jwk.path("kty").asText();
+        return switch (kty) {
+            case "RSA" -> KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                    unsignedInt(jwk.path("n").asText()),
+                    unsignedInt(jwk.path("e").asText())));
+            case "EC" -> {
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec(curveName(jwk.path("crv").asText())));
+                ECParameterSpec spec = parameters.getParameterSpec(ECParameterSpec.class);
+                ECPoint point = new ECPoint(unsignedInt(jwk.path("x").asText()), unsignedInt(jwk.path("y").asText()));
+                yield KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, spec));
+            }
+            default -> {
+                logger.debug("Ignoring unsupported JWKS key type: {}", kty);
+                yield null;
+            }
+        };
+    }
+
+    private static String curveName(String crv) {
+        return switch (crv) {
+            case "P-256" -> "secp256r1";
+            case "P-384" -> "secp384r1";
+            case "P-521" -> "secp521r1";
+            default -> throw new IllegalArgumentException("Unsupported EC curve: " + crv);
+        };
+    }
+
+    private static BigInteger unsignedInt(String base64Url) {
+        return new BigInteger(1, Base64.getUrlDecoder().decode(base64Url));
+    }
+}
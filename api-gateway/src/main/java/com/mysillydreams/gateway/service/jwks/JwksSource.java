@@ -0,0 +1,20 @@
+package com.mysillydreams.gateway.service.jwks;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Source of a JWKS document (RFC 7517 key set) used for asymmetric JWT verification.
+ * Implementations must never block the caller; the key store subscribes off the request path.
+ */
+public interface JwksSource {
+
+    /**
+     * Fetch the raw JWKS JSON document
+     */
+    Mono<String> fetch();
+
+    /**
+     * Human-readable location for logs
+     */
+    String describe();
+}
@@ -0,0 +1,85 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import com.mysillydreams.gateway.service.cache.BoundedCache;
+import com.mysillydreams.gateway.service.cache.BoundedCaches;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+
+/**
+ * Maps API keys to rate limit bucket ids.
+ * The bucket id is HMAC-SHA256(hashSecret, apiKey) truncated to 128 bits and hex encoded: collisions
+ * between unrelated clients are out of reach, and without the secret the id cannot be linked back to a key.
+ * Ids are kept in a bounded cache so hot keys are hashed once, not on every request.
+ */
+@Component
+public class ApiKeyIdentity {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiKeyIdentity.class);
+
+    public static final String KEY_PREFIX = "apikey:";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int BUCKET_ID_BYTES = 16;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final SecretKeySpec secret;
+    private final BoundedCache<String, String> bucketKeys;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    public ApiKeyIdentity(RateLimiterProperties rateLimiterProperties, BoundedCaches boundedCaches) {
+        this(rateLimiterProperties.getApiKeys(),
+                boundedCaches.create("api-key-buckets", rateLimiterProperties.getApiKeys().getCacheSize()));
+    }
+
+    ApiKeyIdentity(RateLimiterProperties.ApiKeys config, BoundedCache<String, String> bucketKeys) {
+        this.secret = new SecretKeySpec(secretBytes(config.getHashSecret()), ALGORITHM);
+        this.bucketKeys = bucketKeys;
+        // Fail at startup rather than on the first API request if the JCE provider is missing
+        newMac();
+    }
+
+    /**
+     * apikey:{bucket id}
+     */
+    public String bucketKey(String apiKey) {
+        return bucketKeys.get(apiKey, key -> KEY_PREFIX + bucketId(key));
+    }
+
+    /**
+     * 32 hex characters; this is the id quota overrides are configured under
+     */
+    public String bucketId(String apiKey) {
+        byte[] digest = macs.get().doFinal(apiKey.getBytes(StandardCharsets.UTF_8));
+        return HEX.formatHex(digest, 0, BUCKET_ID_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secret);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + ALGORITHM + " for API key hashing", e);
+        }
+    }
+
+    private static byte[] secretBytes(String hashSecret) {
+        if (hashSecret != null && !hashSecret.isBlank()) {
+            return hashSecret.getBytes(StandardCharsets.UTF_8);
+        }
+        logger.warn("rate-limiter.api-keys.hash-secret is not set; using a random secret, "
+                + "so API key buckets and quota overrides will not match across gateway nodes or restarts");
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+}
@@ -0,0 +1,348 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable set of CIDR ranges compiled into one binary prefix trie per address family.
+ * A lookup parses the literal address in place (never through DNS) and walks at most 32 or 128 nodes
+ * without allocating. IPv4-mapped IPv6 addresses (::ffff:a.b.c.d) are matched as IPv4, like InetAddress does.
+ */
+public final class CidrTrie {
+
+    /**
+     * Outcome of a lookup; INVALID means the text is not an IP literal
+     */
+    public enum Match { MATCH, NO_MATCH, INVALID }
+
+    private static final int NONE = 0;
+    private static final int V4 = 4;
+    private static final int V6 = 6;
+
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final Family ipv4;
+    private final Family ipv6;
+    private final int size;
+
+    private CidrTrie(Family ipv4, Family ipv6, int size) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+        this.size = size;
+    }
+
+    /**
+     * Compiles CIDR ranges such as 10.0.0.0/8 or fc00::/7; a bare address is a single-host range
+     *
+     * @throws IllegalArgumentException for an entry that is not an IP literal with a valid prefix length
+     */
+    public static CidrTrie of(Collection<String> cidrs) {
+        Builder v4 = new Builder(32);
+        Builder v6 = new Builder(128);
+        long[] bits = new long[2];
+        for (String cidr : cidrs) {
+            String entry = cidr.trim();
+            int slash = entry.indexOf('/');
+            int end = slash < 0 ? entry.length() : slash;
+            int family = parse(entry, 0, end, bits);
+            if (family == NONE) {
+                throw new IllegalArgumentException("Not an IP literal: " + cidr);
+            }
+            int maxPrefix = family == V4 ? 32 : 128;
+            int prefix = slash < 0 ? maxPrefix : parsePrefix(entry, slash + 1);
+            if (prefix < 0 || prefix > maxPrefix) {
+                throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+            }
+            if (family == V6 && isIpv4Mapped(bits) && prefix >= 96) {
+                v4.insert(bits[1] << 32, 0L, prefix - 96);
+            } else if (family == V4) {
+                v4.insert(bits[1] << 32, 0L, prefix);
+            } else {
+                v6.insert(bits[0], bits[1], prefix);
+            }
+        }
+        return new CidrTrie(v4.build(), v6.build(), cidrs.size());
+    }
+
+    public Match lookup(CharSequence address) {
+        return lookup(address, 0, address.length());
+    }
+
+    /**
+     * Looks up address[from, to) so callers can match a token inside a longer header value without copying it
+     */
+    public Match lookup(CharSequence address, int from, int to) {
+        long[] bits = SCRATCH.get();
+        int family = parse(address, from, to, bits);
+        if (family == NONE) {
+            return Match.INVALID;
+        }
+        if (family == V6 && isIpv4Mapped(bits)) {
+            family = V4;
+        }
+        boolean matched = family == V4
+                ? ipv4.contains(bits[1] << 32, 0L, 32)
+                : ipv6.contains(bits[0], bits[1], 128);
+        return matched ? Match.MATCH : Match.NO_MATCH;
+    }
+
+    /**
+     * Number of CIDR entries the trie was built from
+     */
+    public int size() {
+        return size;
+    }
+
+    private static boolean isIpv4Mapped(long[] bits) {
+        return bits[0] == 0L && (bits[1] >>> 32) == 0xFFFFL;
+    }
+
+    private static int parsePrefix(String text, int from) {
+        if (from >= text.length() || text.length() - from > 3) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < text.length(); i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 literal in text[from, to) into out (out[0] = high 64 bits, out[1] = low 64 bits;
+     * IPv4 goes in the low 32 bits of out[1]). Accepts [brackets] and a %zone suffix on IPv6.
+     * Returns V4, V6 or NONE.
+     */
+    static int parse(CharSequence text, int from, int to, long[] out) {
+        if (to - from >= 2 && text.charAt(from) == '[' && text.charAt(to - 1) == ']') {
+            from++;
+            to--;
+        }
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == ':') {
+                return parseIpv6(text, from, to, out) ? V6 : NONE;
+            }
+            if (c == '%') {
+                return NONE;
+            }
+        }
+        long v4 = parseIpv4(text, from, to);
+        if (v4 < 0) {
+            return NONE;
+        }
+        out[0] = 0L;
+        out[1] = v4;
+        return V4;
+    }
+
+    private static long parseIpv4(CharSequence text, int from, int to) {
+        long value = 0;
+        int octets = 0;
+        int i = from;
+        while (i < to) {
+            int octet = 0;
+            int digits = 0;
+            while (i < to && text.charAt(i) != '.') {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || ++digits > 3) {
+                    return -1;
+                }
+                octet = octet * 10 + digit;
+                i++;
+            }
+            if (digits == 0 || octet > 255 || ++octets > 4) {
+                return -1;
+            }
+            value = (value << 8) | octet;
+            if (i < to) {
+                i++;
+                if (i == to) {
+                    return -1;
+                }
+            }
+        }
+        return octets == 4 ? value : -1;
+    }
+
+    private static boolean parseIpv6(CharSequence text, int from, int to, long[] out) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '%') {
+                to = i;
+                break;
+            }
+        }
+        long headHi = 0, headLo = 0, tailHi = 0, tailLo = 0;
+        int headGroups = 0;
+        int tailGroups = 0;
+        boolean compressed = false;
+        int i = from;
+
+        if (to - i >= 2 && text.charAt(i) == ':' && text.charAt(i + 1) == ':') {
+            compressed = true;
+            i += 2;
+        } else if (i < to && text.charAt(i) == ':') {
+            return false;
+        }
+
+        while (i < to) {
+            int groupStart = i;
+            int group = 0;
+            boolean dotted = false;
+            while (i < to && text.charAt(i) != ':') {
+                char c = text.charAt(i);
+                if (c == '.') {
+                    dotted = true;
+                    break;
+                }
+                int digit = Character.digit(c, 16);
+                if (digit < 0 || i - groupStart >= 4) {
+                    return false;
+                }
+                group = (group << 4) | digit;
+                i++;
+            }
+            int count = compressed ? tailGroups : headGroups;
+            if (dotted) {
+                // Trailing dotted IPv4 fills the last two groups
+                long v4 = parseIpv4(text, groupStart, to);
+                if (v4 < 0 || headGroups + tailGroups + 2 > (compressed ? 7 : 8)) {
+                    return false;
+                }
+                if (compressed) {
+                    tailHi = (tailHi << 32) | (tailLo >>> 32);
+                    tailLo = (tailLo << 32) | v4;
+                    tailGroups += 2;
+                } else {
+                    headLo |= v4;
+                    headGroups += 2;
+                }
+                i = to;
+                break;
+            }
+            if (i == groupStart || count >= 8) {
+                return false;
+            }
+            if (compressed) {
+                tailHi = (tailHi << 16) | (tailLo >>> 48);
+                tailLo = (tailLo << 16) | group;
+                tailGroups++;
+            } else {
+                int position = 7 - headGroups;
+                if (position >= 4) {
+                    headHi |= (long) group << ((position - 4) * 16);
+                } else {
+                    headLo |= (long) group << (position * 16);
+                }
+                headGroups++;
+            }
+            if (i < to) {
+                // At a ':' separator
+                i++;
+                if (i < to && text.charAt(i) == ':') {
+                    if (compressed) {
+                        return false;
+                    }
+                    compressed = true;
+                    i++;
+                } else if (i == to) {
+                    return false;
+                }
+            }
+        }
+
+        if (compressed ? headGroups + tailGroups > 7 : headGroups != 8) {
+            return false;
+        }
+        out[0] = headHi | tailHi;
+        out[1] = headLo | tailLo;
+        return true;
+    }
+
+    /**
+     * One address family as flat arrays: children[2n] / children[2n + 1] are the 0 / 1 children of node n
+     * (0 meaning none, since the root is never a child) and terminal[n] marks the end of a prefix
+     */
+    private static final class Family {
+
+        private final int[] children;
+        private final boolean[] terminal;
+
+        Family(int[] children, boolean[] terminal) {
+            this.children = children;
+            this.terminal = terminal;
+        }
+
+        boolean contains(long hi, long lo, int bitCount) {
+            int node = 0;
+            if (terminal[node]) {
+                return true;
+            }
+            for (int bit = 0; bit < bitCount; bit++) {
+                long word = bit < 64 ? hi : lo;
+                int b = (int) ((word >>> (63 - (bit & 63))) & 1L);
+                node = children[(node << 1) | b];
+                if (node == 0) {
+                    return false;
+                }
+                if (terminal[node]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Builder {
+
+        private final int maxBits;
+        private final List<int[]> nodes = new ArrayList<>();
+        private final List<Boolean> terminal = new ArrayList<>();
+
+        Builder(int maxBits) {
+            this.maxBits = maxBits;
+            addNode();
+        }
+
+        void insert(long hi, long lo, int prefix) {
+            int node = 0;
+            for (int bit = 0; bit < prefix && bit < maxBits; bit++) {
+                if (terminal.get(node)) {
+                    // A shorter prefix already covers this range
+                    return;
+                }
+                long word = bit < 64 ? hi : lo;
+                int b = (int) ((word >>> (63 - (bit & 63))) & 1L);
+                int next = nodes.get(node)[b];
+                if (next == 0) {
+                    next = addNode();
+                    nodes.get(node)[b] = next;
+                }
+                node = next;
+            }
+            terminal.set(node, true);
+        }
+
+        Family build() {
+            int[] children = new int[nodes.size() * 2];
+            boolean[] terminals = new boolean[nodes.size()];
+            for (int n = 0; n < nodes.size(); n++) {
+                children[n << 1] = nodes.get(n)[0];
+                children[(n << 1) | 1] = nodes.get(n)[1];
+                terminals[n] = terminal.get(n);
+            }
+            return new Family(children, terminals);
+        }
+
+        private int addNode() {
+            nodes.add(new int[2]);
+            terminal.add(false);
+            return nodes.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Resolves who a request comes from and builds the rate limit keys for it.
+ * The client IP is resolved once per exchange and kept in the {@link HeaderConstants#CLIENT_IP_ATTRIBUTE}
+ * attribute. X-Forwarded-For is scanned right to left in place: each proxy appends the address it
+ * received the request from, so the right-most untrusted entry is the closest hop we cannot vouch for,
+ * while anything further left is whatever the client chose to send.
+ */
+@Component
+public class ClientIdentity {
+
+    public static final String UNKNOWN_IP = "unknown";
+
+    private static final String IP_PREFIX = "ip:";
+    private static final String USER_PREFIX = "user:";
+    private static final String ANONYMOUS_PREFIX = "anonymous:";
+    private static final String SESSION_PREFIX = "session:";
+    private static final String IP_SEGMENT = ":ip:";
+    private static final String ENDPOINT_SEGMENT = ":endpoint:";
+    private static final String ANONYMOUS_IP = "anonymous:ip:";
+
+    private final RateLimiterProperties rateLimiterProperties;
+    private final TrustedProxyMatcher trustedProxyMatcher;
+    private final ApiKeyIdentity apiKeyIdentity;
+
+    public ClientIdentity(RateLimiterProperties rateLimiterProperties, TrustedProxyMatcher trustedProxyMatcher,
+                          ApiKeyIdentity apiKeyIdentity) {
+        this.rateLimiterProperties = rateLimiterProperties;
+        this.trustedProxyMatcher = trustedProxyMatcher;
+        this.apiKeyIdentity = apiKeyIdentity;
+    }
+
+    /**
+     * Client IP for the exchange, resolved on first use
+     */
+    public String clientIp(ServerWebExchange exchange) {
+        String clientIp = exchange.getAttribute(HeaderConstants.CLIENT_IP_ATTRIBUTE);
+        if (clientIp == null) {
+            clientIp = resolveClientIp(exchange.getRequest());
+            exchange.getAttributes().put(HeaderConstants.CLIENT_IP_ATTRIBUTE, clientIp);
+        }
+        return clientIp;
+    }
+
+    /**
+     * ip:{clientIp}
+     */
+    public String ipKey(ServerWebExchange exchange) {
+        return concat(IP_PREFIX, clientIp(exchange));
+    }
+
+    /**
+     * user:{userId}, or anonymous:{clientIp} without a user id
+     */
+    public String userKey(ServerWebExchange exchange) {
+        String userId = exchange.getRequest().getHeaders().getFirst(HeaderConstants.X_USER_ID);
+        if (userId != null && !userId.isEmpty()) {
+            return concat(USER_PREFIX, userId);
+        }
+        return concat(ANONYMOUS_PREFIX, clientIp(exchange));
+    }
+
+    /**
+     * user:{userId}:ip:{clientIp}:endpoint:{category}, or anonymous:ip:{clientIp}:endpoint:{category}
+     */
+    public String combinedKey(ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        String userId = request.getHeaders().getFirst(HeaderConstants.X_USER_ID);
+        String clientIp = clientIp(exchange);
+        String endpoint = endpointCategory(request.getPath().value());
+
+        StringBuilder key;
+        if (userId != null && !userId.isEmpty()) {
+            key = new StringBuilder(USER_PREFIX.length() + userId.length() + IP_SEGMENT.length() + clientIp.length()
+                    + ENDPOINT_SEGMENT.length() + endpoint.length());
+            key.append(USER_PREFIX).append(userId).append(IP_SEGMENT);
+        } else {
+            key = new StringBuilder(ANONYMOUS_IP.length() + clientIp.length() + ENDPOINT_SEGMENT.length()
+                    + endpoint.length());
+            key.append(ANONYMOUS_IP);
+        }
+        return key.append(clientIp).append(ENDPOINT_SEGMENT).append(endpoint).toString();
+    }
+
+    /**
+     * session:{sessionId}, falling back to the user key
+     */
+    public String sessionKey(ServerWebExchange exchange) {
+        String sessionId = exchange.getRequest().getHeaders().getFirst(HeaderConstants.X_SESSION_ID);
+        if (sessionId != null && !sessionId.isEmpty()) {
+            return concat(SESSION_PREFIX, sessionId);
+        }
+        return userKey(exchange);
+    }
+
+    /**
+     * apikey:{bucket id}, falling back to the user key; see {@link ApiKeyIdentity}
+     */
+    public String apiKey(ServerWebExchange exchange) {
+        String apiKey = exchange.getRequest().getHeaders().getFirst(HeaderConstants.X_API_KEY);
+        if (apiKey != null && !apiKey.isEmpty()) {
+            return apiKeyIdentity.bucketKey(apiKey);
+        }
+        return userKey(exchange);
+    }
+
+    String resolveClientIp(ServerHttpRequest request) {
+        RateLimiterProperties.IpResolution config = rateLimiterProperties.getIpResolution();
+        HttpHeaders headers = request.getHeaders();
+
+        if (config.isXForwardedForEnabled()) {
+            List<String> forwardedFor = headers.get(HeaderConstants.X_FORWARDED_FOR);
+            if (forwardedFor != null) {
+                // Repeated header lines are appended in hop order too, so the last line is scanned first
+                for (int i = forwardedFor.size() - 1; i >= 0; i--) {
+                    String clientIp = lastUntrustedAddress(forwardedFor.get(i));
+                    if (clientIp != null) {
+                        return clientIp;
+                    }
+                }
+            }
+        }
+
+        if (config.isXRealIpEnabled()) {
+            String realIp = headers.getFirst(HeaderConstants.X_REAL_IP);
+            if (realIp != null) {
+                int from = skipWhitespace(realIp, 0, realIp.length());
+                int to = trimWhitespace(realIp, from, realIp.length());
+                if (!trustedProxyMatcher.isTrusted(realIp, from, to)) {
+                    return from == 0 && to == realIp.length() ? realIp : realIp.substring(from, to);
+                }
+            }
+        }
+
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress != null && remoteAddress.getAddress() != null) {
+            return remoteAddress.getAddress().getHostAddress();
+        }
+        return UNKNOWN_IP;
+    }
+
+    /**
+     * Right-most entry of a comma-separated forwarded list that is not a trusted proxy; only that entry is copied
+     */
+    String lastUntrustedAddress(String forwardedFor) {
+        int end = forwardedFor.length();
+        while (end > 0) {
+            int comma = forwardedFor.lastIndexOf(',', end - 1);
+            int from = skipWhitespace(forwardedFor, comma + 1, end);
+            int to = trimWhitespace(forwardedFor, from, end);
+            if (!trustedProxyMatcher.isTrusted(forwardedFor, from, to)) {
+                return forwardedFor.substring(from, to);
+            }
+            end = comma;
+        }
+        return null;
+    }
+
+    /**
+     * Coarse endpoint group used in combined keys
+     */
+    static String endpointCategory(String path) {
+        if (path.startsWith("/api/auth/")) {
+            return "auth";
+        } else if (path.startsWith("/api/admin/")) {
+            return "admin";
+        } else if (path.startsWith("/api/users/")) {
+            return "users";
+        } else if (path.startsWith("/api/")) {
+            return "api";
+        } else {
+            return "other";
+        }
+    }
+
+    private static String concat(String prefix, String value) {
+        return new StringBuilder(prefix.length() + value.length()).append(prefix).append(value).toString();
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimWhitespace(String text, int from, int to) {
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,96 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Count-Min Sketch over string keys with conservative update and halving decay.
+ * Counters are one AtomicLongArray of depth rows by width columns, so adds and decay are lock-free.
+ * Estimates never undercount a key in a single-threaded run; racing adds can lose at most the
+ * increments that overlapped, which is fine for spotting keys that are orders of magnitude hotter.
+ * The hash seed is random per instance so clients cannot pick keys that collide with someone else's.
+ */
+final class CountMinSketch {
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final int depth;
+    private final int width;
+    private final int mask;
+    private final long seed;
+    private final AtomicLongArray counters;
+
+    CountMinSketch(int depth, int width) {
+        this(depth, width, ThreadLocalRandom.current().nextLong());
+    }
+
+    CountMinSketch(int depth, int width, long seed) {
+        this.depth = Math.max(1, depth);
+        this.width = width <= 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.mask = this.width - 1;
+        this.seed = seed;
+        this.counters = new AtomicLongArray(this.depth * this.width);
+    }
+
+    /**
+     * 64-bit hash of the key; pass it to {@link #add} and {@link #estimate} to hash once per record
+     */
+    long hash(CharSequence key) {
+        long h = seed;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * GOLDEN;
+        }
+        return mix(h ^ key.length());
+    }
+
+    /**
+     * Adds count to the key and returns its new estimate. Only the counters at the current minimum are
+     * raised (conservative update), which keeps collisions from inflating every row.
+     */
+    long add(long hash, long count) {
+        long target = estimate(hash) + count;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.accumulateAndGet(index(hash, row), target, Math::max));
+        }
+        return estimate;
+    }
+
+    long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter, so old traffic fades out geometrically
+     */
+    void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, value -> value >>> 1);
+        }
+    }
+
+    int width() {
+        return width;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    private int index(long hash, int row) {
+        // Double hashing: row i probes h1 + i * h2, with h2 odd so rows never share a column pattern
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & mask);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,288 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter that keeps protecting the backends when Redis is slow or down.
+ * Calls to the Redis-backed limiter go through a circuit breaker that counts errors, timeouts, slow calls
+ * and RedisRateLimiter's own fail-open answers. While the breaker is open each node enforces the limit
+ * from in-memory buckets sized to its share (limit / node count); once the breaker lets trial calls through
+ * and they succeed, decisions go back to Redis.
+ * At most max-keys buckets are kept. Full buckets are swept out at most once per refill period; while the
+ * table is still full, keys without a bucket share a single overflow bucket, so a flood of new keys during
+ * an outage is held to one node share in total instead of growing the table.
+ */
+public class FailoverRateLimiter implements RateLimiter<RedisRateLimiter.Config>, ApplicationContextAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(FailoverRateLimiter.class);
+
+    /**
+     * Where decisions are currently made
+     */
+    public enum Mode { REDIS, LOCAL }
+
+    static final String REMAINING_HEADER = RedisRateLimiter.REMAINING_HEADER;
+    private static final RedisUnavailableException FAILED_OPEN =
+            new RedisUnavailableException("RedisRateLimiter failed open");
+
+    private final String name;
+    private final RateLimiter<RedisRateLimiter.Config> primary;
+    private final int replenishRate;
+    private final int burstCapacity;
+    private final boolean enabled;
+    private final Duration callTimeout;
+    private final int maxKeys;
+    private final CircuitBreaker circuitBreaker;
+    private final IntSupplier nodeCount;
+    private final LocalLimit.Factory localLimits;
+    private final LongSupplier nanoClock;
+
+    private final long sweepIntervalNanos;
+
+    private final ConcurrentMap<String, LocalLimit> buckets = new ConcurrentHashMap<>();
+    private final AtomicReference<LocalLimit> overflow = new AtomicReference<>();
+    private volatile long nextSweepNanos;
+    private volatile int localNodeCount = 1;
+
+    private final Counter localAllowedCounter;
+    private final Counter localDeniedCounter;
+
+    public FailoverRateLimiter(String name, RateLimiter<RedisRateLimiter.Config> primary, int replenishRate,
+                               int burstCapacity, RateLimiterProperties.Failover config, CircuitBreaker circuitBreaker,
+                               IntSupplier nodeCount, MeterRegistry meterRegistry) {
+        this(name, primary, replenishRate, burstCapacity, config, circuitBreaker, nodeCount, LocalTokenBucket::new,
+             meterRegistry);
+    }
+
+    /**
+     * @param localLimits per-key state used while Redis is unavailable, matching the primary's algorithm
+     */
+    public FailoverRateLimiter(String name, RateLimiter<RedisRateLimiter.Config> primary, int replenishRate,
+                               int burstCapacity, RateLimiterProperties.Failover config, CircuitBreaker circuitBreaker,
+                               IntSupplier nodeCount, LocalLimit.Factory localLimits, MeterRegistry meterRegistry) {
+        this(name, primary, replenishRate, burstCapacity, config, circuitBreaker, nodeCount, localLimits, meterRegistry,
+             System::nanoTime);
+    }
+
+    FailoverRateLimiter(String name, RateLimiter<RedisRateLimiter.Config> primary, int replenishRate,
+                        int burstCapacity, RateLimiterProperties.Failover config, CircuitBreaker circuitBreaker,
+                        IntSupplier nodeCount, LocalLimit.Factory localLimits, MeterRegistry meterRegistry,
+                        LongSupplier nanoClock) {
+        this.name = name;
+        this.primary = primary;
+        this.replenishRate = replenishRate;
+        this.burstCapacity = burstCapacity;
+        this.enabled = config.isEnabled();
+        this.callTimeout = config.getCallTimeout();
+        this.maxKeys = config.getMaxKeys();
+        this.circuitBreaker = circuitBreaker;
+        this.nodeCount = nodeCount;
+        this.localLimits = localLimits;
+        this.nanoClock = nanoClock;
+        // A bucket drained to zero is full again after burst / rate seconds; sweeping more often frees nothing
+        this.sweepIntervalNanos = Math.max(TimeUnit.SECONDS.toNanos(1),
+                (long) (TimeUnit.SECONDS.toNanos(1) * ((double) burstCapacity / Math.max(1, replenishRate))));
+        this.nextSweepNanos = nanoClock.getAsLong();
+
+        Gauge.builder("gateway.ratelimit.failover.mode", this, limiter -> limiter.getMode() == Mode.LOCAL ? 1 : 0)
+                .tag("limiter", name)
+                .description("1 while decisions are made from per-node buckets, 0 while Redis decides")
+                .register(meterRegistry);
+        Counter toLocal = transitionCounter(meterRegistry, name, Mode.LOCAL);
+        Counter toRedis = transitionCounter(meterRegistry, name, Mode.REDIS);
+        this.localAllowedCounter = localDecisionCounter(meterRegistry, name, "allowed");
+        this.localDeniedCounter = localDecisionCounter(meterRegistry, name, "denied");
+
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            Mode from = modeOf(event.getStateTransition().getFromState());
+            Mode to = modeOf(event.getStateTransition().getToState());
+            if (from == to) {
+                return;
+            }
+            buckets.clear();
+            overflow.set(null);
+            if (to == Mode.LOCAL) {
+                localNodeCount = Math.max(1, nodeCount.getAsInt());
+                toLocal.increment();
+                logger.warn("Rate limiter '{}' switched to local buckets ({} nodes): {}", name, localNodeCount,
+                        event.getStateTransition());
+            } else {
+                toRedis.increment();
+                logger.info("Rate limiter '{}' switched back to Redis: {}", name, event.getStateTransition());
+            }
+        });
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        if (!enabled) {
+            return primary.isAllowed(routeId, id);
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return localDecision(id);
+        }
+
+        long start = nanoClock.getAsLong();
+        return primary.isAllowed(routeId, id)
+                .timeout(callTimeout)
+                .flatMap(response -> {
+                    String remaining = response.getHeaders().get(REMAINING_HEADER);
+                    if (remaining == null) {
+                        // Answered from a local lease without touching Redis: not a sample for the breaker
+                        circuitBreaker.releasePermission();
+                        return Mono.just(response);
+                    }
+                    long elapsed = nanoClock.getAsLong() - start;
+                    if ("-1".equals(remaining)) {
+                        circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, FAILED_OPEN);
+                        return localDecision(id);
+                    }
+                    circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                    return Mono.just(response);
+                })
+                .onErrorResume(error -> {
+                    circuitBreaker.onError(nanoClock.getAsLong() - start, TimeUnit.NANOSECONDS, error);
+                    return localDecision(id);
+                })
+                .doOnCancel(circuitBreaker::releasePermission);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Mode getMode() {
+        return modeOf(circuitBreaker.getState());
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Node count the local buckets were last sized for
+     */
+    public int getLocalNodeCount() {
+        return localNodeCount;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext context) throws BeansException {
+        if (primary instanceof ApplicationContextAware aware) {
+            aware.setApplicationContext(context);
+        }
+    }
+
+    @Override
+    public Map<String, RedisRateLimiter.Config> getConfig() {
+        return primary.getConfig();
+    }
+
+    @Override
+    public Class<RedisRateLimiter.Config> getConfigClass() {
+        return primary.getConfigClass();
+    }
+
+    @Override
+    public RedisRateLimiter.Config newConfig() {
+        return primary.newConfig();
+    }
+
+    private Mono<Response> localDecision(String id) {
+        return Mono.deferContextual(context -> Mono.just(localDecision(id, RequestCost.of(context))));
+    }
+
+    private Response localDecision(String id, int cost) {
+        long now = nanoClock.getAsLong();
+        int nodes = localNodeCount;
+        LocalLimit bucket = buckets.get(id);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys && !sweep(now)) {
+                bucket = overflow.updateAndGet(shared -> shared != null ? shared : newBucket(nodes, now));
+            } else {
+                bucket = buckets.computeIfAbsent(id, key -> newBucket(nodes, now));
+            }
+        }
+        long limit = Math.max(1L, burstCapacity / nodes);
+        boolean allowed = bucket.tryAcquire(now, (int) Math.min(cost, limit));
+        (allowed ? localAllowedCounter : localDeniedCounter).increment();
+        // Quota headers describe this node's share, which is what the client is held to until Redis is back
+        double rate = Math.max(1.0, (double) replenishRate / nodes);
+        long available = bucket.available(now);
+        long reset = RateLimitHeaders.secondsUntilFull(limit, available, rate);
+        long retryAfter = RateLimitHeaders.secondsUntilAllowed(Math.min(cost, limit), available, rate);
+        Map<String, String> headers = RateLimitHeaders.of(allowed, limit, available, reset, retryAfter);
+        headers.put(REMAINING_HEADER, String.valueOf(available));
+        return new Response(allowed, headers);
+    }
+
+    private LocalLimit newBucket(int nodes, long now) {
+        return localLimits.create(Math.max(1.0, (double) replenishRate / nodes),
+                Math.max(1.0, (double) burstCapacity / nodes), now);
+    }
+
+    /**
+     * Drops full buckets, at most once per sweep interval. Returns true when room was made.
+     */
+    private boolean sweep(long now) {
+        if (now - nextSweepNanos < 0) {
+            return false;
+        }
+        nextSweepNanos = now + sweepIntervalNanos;
+        buckets.values().removeIf(candidate -> candidate.isFull(now));
+        return buckets.size() < maxKeys;
+    }
+
+    private static Mode modeOf(CircuitBreaker.State state) {
+        return switch (state) {
+            case CLOSED, DISABLED, METRICS_ONLY -> Mode.REDIS;
+            default -> Mode.LOCAL;
+        };
+    }
+
+    private static Counter transitionCounter(MeterRegistry meterRegistry, String name, Mode to) {
+        return Counter.builder("gateway.ratelimit.failover.transitions")
+                .tag("limiter", name)
+                .tag("to", to.name().toLowerCase())
+                .description("Switches between Redis and per-node rate limiting")
+                .register(meterRegistry);
+    }
+
+    private static Counter localDecisionCounter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder("gateway.ratelimit.failover.local.decisions")
+                .tag("limiter", name)
+                .tag("result", result)
+                .description("Rate limit decisions made from per-node buckets")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Recorded against the breaker when RedisRateLimiter swallowed a Redis error and allowed the request
+     */
+    static final class RedisUnavailableException extends RuntimeException {
+        RedisUnavailableException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
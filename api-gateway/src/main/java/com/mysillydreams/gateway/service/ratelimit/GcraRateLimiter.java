@@ -0,0 +1,17 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import java.util.List;
+
+/**
+ * GCRA in Redis (gcra_rate_limiter.lua): one key per client holding its theoretical arrival time
+ */
+public class GcraRateLimiter extends LuaRateLimiter {
+
+    static final String SCRIPT = "META-INF/scripts/gcra_rate_limiter.lua";
+    static final String KEY_PREFIX = "gcra_rate_limiter.";
+
+    public GcraRateLimiter(int replenishRate, int burstCapacity, int requestedTokens) {
+        super(SCRIPT, KEY_PREFIX, replenishRate, burstCapacity, requestedTokens,
+              List.of(String.valueOf(replenishRate), String.valueOf(burstCapacity)));
+    }
+}
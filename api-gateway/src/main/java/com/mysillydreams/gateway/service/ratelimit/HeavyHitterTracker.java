@@ -0,0 +1,340 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Streaming heavy-hitter detection over rate limit keys.
+ * Every key a resolver produces is counted in a decaying {@link CountMinSketch}; the largest estimates are
+ * kept in lock-striped top-K tables, one per stripe, so memory is fixed at depth * width counters plus
+ * stripes * topK entries no matter how many distinct clients show up. Stripe locks are only tried, never
+ * waited on: a skipped update is carried by the next request of the same key, which has a larger estimate.
+ * With rate-limiter.heavy-hitters.auto-tighten enabled, keys over the threshold are penalized for a while
+ * and RequestCostFilter charges them a multiple of the normal token cost.
+ * Sketch dimensions are fixed at startup; enabled and the auto-tighten settings follow config refreshes.
+ * Keys carry client IPs, user, session and API-key ids, so the actuator snapshot and the penalty log line
+ * only ever show them through {@link RateLimitKeyMasker}.
+ */
+@Component
+public class HeavyHitterTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeavyHitterTracker.class);
+
+    private final Supplier<RateLimiterProperties.HeavyHitters> configSource;
+    private final CountMinSketch sketch;
+    private final Stripe[] stripes;
+    private final int topK;
+    private final long decayNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong nextDecay;
+    private final Map<String, Long> penalties = new ConcurrentHashMap<>();
+    private final Counter penaltyCounter;
+    private final RateLimitKeyMasker keyMasker = new RateLimitKeyMasker();
+    private volatile Settings settings;
+
+    public HeavyHitterTracker(RateLimiterProperties rateLimiterProperties, MeterRegistry meterRegistry) {
+        this(rateLimiterProperties::getHeavyHitters, meterRegistry, System::nanoTime);
+    }
+
+    HeavyHitterTracker(Supplier<RateLimiterProperties.HeavyHitters> configSource, MeterRegistry meterRegistry,
+                       LongSupplier nanoClock) {
+        RateLimiterProperties.HeavyHitters config = configSource.get();
+        this.configSource = configSource;
+        this.sketch = new CountMinSketch(config.getDepth(), config.getWidth());
+        this.topK = config.getTopK();
+        this.stripes = new Stripe[Math.max(1, config.getStripes())];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(topK);
+        }
+        this.decayNanos = Math.max(1, config.getDecayInterval().toNanos());
+        this.nanoClock = nanoClock;
+        this.nextDecay = new AtomicLong(nanoClock.getAsLong() + decayNanos);
+        this.settings = Settings.of(config);
+
+        Gauge.builder("gateway.ratelimit.heavyhitters.top.estimate", this, HeavyHitterTracker::topEstimate)
+                .description("Decayed request estimate of the hottest rate limit key")
+                .register(meterRegistry);
+        Gauge.builder("gateway.ratelimit.heavyhitters.penalized", penalties, Map::size)
+                .description("Rate limit keys currently charged a penalty cost")
+                .register(meterRegistry);
+        this.penaltyCounter = Counter.builder("gateway.ratelimit.heavyhitters.penalties")
+                .description("Heavy hitters newly penalized by auto-tighten")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts one request for the key and returns the key, so resolvers can record inline
+     */
+    public String record(String key) {
+        Settings current = settings;
+        if (!current.enabled) {
+            return key;
+        }
+        long now = nanoClock.getAsLong();
+        maybeDecay(now);
+
+        long hash = sketch.hash(key);
+        long estimate = sketch.add(hash, 1);
+        stripes[stripe(hash)].offer(key, estimate);
+
+        if (current.autoTighten && estimate >= current.threshold) {
+            penalize(key, now, current);
+        }
+        return key;
+    }
+
+    /**
+     * Current decayed estimate for the key
+     */
+    public long estimate(String key) {
+        return sketch.estimate(sketch.hash(key));
+    }
+
+    /**
+     * True while any key is penalized; lets callers skip building keys on the common path
+     */
+    public boolean hasPenalties() {
+        return !penalties.isEmpty();
+    }
+
+    /**
+     * Token cost multiplier for the key: auto-tighten.cost-multiplier while penalized, 1 otherwise
+     */
+    public int costMultiplier(String key) {
+        return isPenalized(key, nanoClock.getAsLong()) ? settings.costMultiplier : 1;
+    }
+
+    /**
+     * Hottest keys, largest estimate first, at most top-k entries
+     */
+    public List<HeavyHitter> topHitters() {
+        long now = nanoClock.getAsLong();
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(stripes.length * topK);
+        for (Stripe stripe : stripes) {
+            stripe.copyInto(entries);
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+
+        List<HeavyHitter> hitters = new ArrayList<>(Math.min(topK, entries.size()));
+        for (int i = 0; i < entries.size() && i < topK; i++) {
+            Map.Entry<String, Long> entry = entries.get(i);
+            hitters.add(new HeavyHitter(entry.getKey(), entry.getValue(), isPenalized(entry.getKey(), now)));
+        }
+        return hitters;
+    }
+
+    /**
+     * Snapshot for the heavyhitters actuator endpoint, with masked keys
+     */
+    public Map<String, Object> snapshot() {
+        Settings current = settings;
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("enabled", current.enabled);
+        snapshot.put("decayInterval", Duration.ofNanos(decayNanos).toString());
+        snapshot.put("sketch", Map.of("depth", sketch.depth(), "width", sketch.width()));
+        snapshot.put("autoTighten", current.autoTighten);
+        snapshot.put("penalized", penalties.size());
+        List<HeavyHitter> hitters = topHitters();
+        List<HeavyHitter> masked = new ArrayList<>(hitters.size());
+        for (HeavyHitter hitter : hitters) {
+            masked.add(new HeavyHitter(keyMasker.mask(hitter.key()), hitter.estimate(), hitter.penalized()));
+        }
+        snapshot.put("hitters", masked);
+        return snapshot;
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void reconfigure() {
+        settings = Settings.of(configSource.get());
+        if (!settings.autoTighten) {
+            penalties.clear();
+        }
+        logger.info("Heavy hitter tracking {}, auto-tighten {}", settings.enabled ? "enabled" : "disabled",
+                settings.autoTighten ? "enabled" : "disabled");
+    }
+
+    long topEstimate() {
+        long top = 0;
+        for (Stripe stripe : stripes) {
+            top = Math.max(top, stripe.max());
+        }
+        return top;
+    }
+
+    private void maybeDecay(long now) {
+        long next = nextDecay.get();
+        if (now - next < 0 || !nextDecay.compareAndSet(next, now + decayNanos)) {
+            return;
+        }
+        sketch.halve();
+        for (Stripe stripe : stripes) {
+            stripe.halve();
+        }
+        penalties.values().removeIf(until -> until - now <= 0);
+    }
+
+    private void penalize(String key, long now, Settings current) {
+        Long until = penalties.get(key);
+        // Extend an existing penalty only once it is half used, so hot keys do not write on every request
+        if (until != null && until - now > current.penaltyNanos / 2) {
+            return;
+        }
+        if (until == null && penalties.size() >= current.maxPenalized) {
+            return;
+        }
+        Long previous = penalties.put(key, now + current.penaltyNanos);
+        if (previous == null || previous - now <= 0) {
+            penaltyCounter.increment();
+            logger.warn("Heavy hitter {} at ~{} requests, charging {}x token cost for {}", keyMasker.mask(key),
+                    estimate(key), current.costMultiplier, Duration.ofNanos(current.penaltyNanos));
+        }
+    }
+
+    private boolean isPenalized(String key, long now) {
+        Long until = penalties.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (until - now > 0) {
+            return true;
+        }
+        penalties.remove(key, until);
+        return false;
+    }
+
+    private int stripe(long hash) {
+        return (int) ((hash >>> 40) % stripes.length);
+    }
+
+    /**
+     * Heavy hitter entry as reported by the actuator endpoint
+     */
+    public record HeavyHitter(String key, long estimate, boolean penalized) {
+    }
+
+    private record Settings(boolean enabled, boolean autoTighten, long threshold, int costMultiplier,
+                            long penaltyNanos, int maxPenalized) {
+
+        static Settings of(RateLimiterProperties.HeavyHitters config) {
+            RateLimiterProperties.AutoTighten autoTighten = config.getAutoTighten();
+            return new Settings(config.isEnabled(), autoTighten.isEnabled(), autoTighten.getThreshold(),
+                    autoTighten.getCostMultiplier(), autoTighten.getPenaltyDuration().toNanos(),
+                    autoTighten.getMaxPenalized());
+        }
+    }
+
+    /**
+     * Up to capacity keys with the largest estimates seen in this stripe.
+     * floor is the smallest held estimate once the stripe is full, read without the lock so the
+     * bulk of keys (which cannot get in) never touch it.
+     */
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Long> counts;
+        private final int capacity;
+        private String minKey;
+        private volatile long floor;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            this.counts = new HashMap<>(capacity * 2);
+        }
+
+        void offer(String key, long estimate) {
+            if (estimate <= floor || !lock.tryLock()) {
+                return;
+            }
+            try {
+                Long previous = counts.get(key);
+                if (previous != null) {
+                    if (estimate > previous) {
+                        counts.put(key, estimate);
+                        if (key.equals(minKey)) {
+                            updateFloor();
+                        }
+                    }
+                } else if (counts.size() < capacity) {
+                    counts.put(key, estimate);
+                    updateFloor();
+                } else {
+                    counts.remove(minKey);
+                    counts.put(key, estimate);
+                    updateFloor();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void halve() {
+            lock.lock();
+            try {
+                counts.replaceAll((key, count) -> count >>> 1);
+                counts.values().removeIf(count -> count == 0);
+                updateFloor();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void copyInto(List<Map.Entry<String, Long>> entries) {
+            lock.lock();
+            try {
+                for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                    entries.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long max() {
+            lock.lock();
+            try {
+                long max = 0;
+                for (long count : counts.values()) {
+                    max = Math.max(max, count);
+                }
+                return max;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void updateFloor() {
+            if (counts.size() < capacity) {
+                minKey = null;
+                floor = 0;
+                return;
+            }
+            long min = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                if (entry.getValue() < min) {
+                    min = entry.getValue();
+                    minKey = entry.getKey();
+                }
+            }
+            floor = min;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint reporting the hottest rate limit keys on this node.
+ * Mapped to /actuator/heavy-hitters through management.endpoints.web.path-mapping.
+ * /actuator/** is public, so keys are reported masked (see {@link RateLimitKeyMasker}).
+ */
+@Component
+@Endpoint(id = "heavyhitters")
+public class HeavyHittersEndpoint {
+
+    private final HeavyHitterTracker heavyHitterTracker;
+
+    public HeavyHittersEndpoint(HeavyHitterTracker heavyHitterTracker) {
+        this.heavyHitterTracker = heavyHitterTracker;
+    }
+
+    @ReadOperation
+    public Map<String, Object> heavyHitters() {
+        return heavyHitterTracker.snapshot();
+    }
+}
@@ -0,0 +1,296 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.BeansException;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket served from memory on top of the Redis bucket.
+ * A miss takes a batch of tokens from Redis in a single call (the same Redis key the plain limiter uses)
+ * and parks the rest in a per-key lease; later requests only do a CAS on the lease counter.
+ * When Redis cannot grant a whole batch the request falls back to the plain limiter,
+ * so clients close to their limit are judged exactly as before. With leasing disabled every request goes
+ * straight to the plain limiter. Weighted requests (see {@link RequestCost}) take requestedTokens times their
+ * cost, capped at the burst capacity, from the lease, the same amount the plain limiter would deduct; those
+ * needing a whole batch or more always go to the plain limiter.
+ */
+public class LeasedTokenBucketRateLimiter implements RateLimiter<RedisRateLimiter.Config>, ApplicationContextAware {
+
+    private static final Mono<Response> LOCAL_ALLOWED = Mono.just(new Response(true, Collections.emptyMap()));
+
+    private final RedisRateLimiter redisLimiter;
+    private final RedisRateLimiter leaseLimiter;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int burstCapacity;
+    private final int requestedTokens;
+    private final long leaseTtlNanos;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>();
+    private volatile long nextPurgeNanos;
+
+    private final Counter localCounter;
+    private final Counter leasedCounter;
+    private final Counter singleCounter;
+    private final Counter redisErrorCounter;
+
+    public LeasedTokenBucketRateLimiter(String name, RedisRateLimiter redisLimiter, int replenishRate, int burstCapacity,
+                                        int requestedTokens, RateLimiterProperties.Lease config,
+                                        MeterRegistry meterRegistry) {
+        this(name, redisLimiter,
+             new RedisRateLimiter(replenishRate, burstCapacity, config.effectiveBatchSize(burstCapacity)),
+             config.effectiveBatchSize(burstCapacity), burstCapacity, requestedTokens, config, meterRegistry,
+             System::nanoTime);
+    }
+
+    LeasedTokenBucketRateLimiter(String name, RedisRateLimiter redisLimiter, RedisRateLimiter leaseLimiter, int batchSize,
+                                 int burstCapacity, int requestedTokens, RateLimiterProperties.Lease config,
+                                 MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.redisLimiter = redisLimiter;
+        this.leaseLimiter = leaseLimiter;
+        this.enabled = config.isEnabled();
+        this.batchSize = batchSize;
+        this.burstCapacity = burstCapacity;
+        this.requestedTokens = requestedTokens;
+        this.leaseTtlNanos = config.getTtl().toNanos();
+        this.maxKeys = config.getMaxKeys();
+        this.nanoClock = nanoClock;
+        this.nextPurgeNanos = nanoClock.getAsLong();
+
+        this.localCounter = decisionCounter(meterRegistry, name, "local");
+        this.leasedCounter = decisionCounter(meterRegistry, name, "leased");
+        this.singleCounter = decisionCounter(meterRegistry, name, "single");
+        this.redisErrorCounter = decisionCounter(meterRegistry, name, "redis_error");
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        if (!enabled) {
+            return redisLimiter.isAllowed(routeId, id);
+        }
+        return Mono.deferContextual(context -> isAllowed(routeId, id, tokens(RequestCost.of(context))));
+    }
+
+    /**
+     * Tokens a request of the given cost takes, matching what WeightedRedisRateLimiter deducts
+     */
+    int tokens(int cost) {
+        return (int) Math.max(1L, Math.min(burstCapacity, (long) requestedTokens * cost));
+    }
+
+    private Mono<Response> isAllowed(String routeId, String id, int tokens) {
+        long now = nanoClock.getAsLong();
+        Lease lease = leases.get(id);
+        if (lease != null && lease.tryTake(now, tokens)) {
+            localCounter.increment();
+            return lease.quota == null ? LOCAL_ALLOWED : Mono.just(new Response(true, lease.quota.headers(lease)));
+        }
+        if (tokens >= batchSize) {
+            // A batch would not cover this request: Redis deducts its full cost directly
+            singleCounter.increment();
+            return redisLimiter.isAllowed(routeId, id);
+        }
+
+        return leaseLimiter.isAllowed(routeId, id).flatMap(response -> {
+            if (!response.isAllowed()) {
+                // Not enough tokens left for a whole batch: let Redis decide this one request
+                singleCounter.increment();
+                return redisLimiter.isAllowed(routeId, id);
+            }
+            if (isRedisError(response)) {
+                // RedisRateLimiter fails open on errors; pass its answer on but do not hand out a lease
+                redisErrorCounter.increment();
+                return Mono.just(response);
+            }
+            leasedCounter.increment();
+            Quota quota = Quota.of(response);
+            Lease granted = grant(id, batchSize - tokens, quota, now);
+            return Mono.just(leaseResponse(response, granted));
+        });
+    }
+
+    /**
+     * Number of keys currently holding a lease on this node
+     */
+    public int getLeaseCount() {
+        return leases.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext context) throws BeansException {
+        // The lease limiter is not a bean, so it needs the Redis template and script wired by hand
+        leaseLimiter.setApplicationContext(context);
+    }
+
+    @Override
+    public Map<String, RedisRateLimiter.Config> getConfig() {
+        return redisLimiter.getConfig();
+    }
+
+    @Override
+    public Class<RedisRateLimiter.Config> getConfigClass() {
+        return redisLimiter.getConfigClass();
+    }
+
+    @Override
+    public RedisRateLimiter.Config newConfig() {
+        return redisLimiter.newConfig();
+    }
+
+    private Lease grant(String id, int tokens, Quota quota, long now) {
+        if (tokens <= 0) {
+            return null;
+        }
+        if (leases.size() >= maxKeys && !leases.containsKey(id) && !purgeExpired(now)) {
+            // Table is full of live leases: the spare tokens are dropped, which only ever under-admits
+            return null;
+        }
+        Lease fresh = new Lease(tokens, now + leaseTtlNanos, quota);
+        return leases.merge(id, fresh, (old, added) -> {
+            // Drain rather than read so tokens already taken from the old lease are never counted twice
+            int carried = old.isLive(now) ? old.drain() : 0;
+            return carried == 0 ? added : new Lease(carried + tokens, added.expiresAtNanos, quota);
+        });
+    }
+
+    /**
+     * Drops expired leases, at most once per lease TTL. Returns true when room was made.
+     */
+    private boolean purgeExpired(long now) {
+        if (now - nextPurgeNanos < 0) {
+            return false;
+        }
+        nextPurgeNanos = now + leaseTtlNanos;
+        leases.values().removeIf(lease -> !lease.isLive(now));
+        return leases.size() < maxKeys;
+    }
+
+    /**
+     * Keeps the Redis headers of a lease call so callers can tell Redis was reached,
+     * minus the requested-tokens header which would report the batch size.
+     * The client's remaining quota includes the tokens now parked in its lease.
+     */
+    private Response leaseResponse(Response response, Lease granted) {
+        Map<String, String> headers = new HashMap<>(response.getHeaders());
+        headers.remove(leaseLimiter.getRequestedTokensHeader());
+        if (granted != null && granted.quota != null) {
+            headers.putAll(granted.quota.headers(granted));
+        }
+        return new Response(true, headers);
+    }
+
+    private boolean isRedisError(Response response) {
+        return "-1".equals(response.getHeaders().get(leaseLimiter.getRemainingHeader()));
+    }
+
+    private static Counter decisionCounter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder("gateway.ratelimit.lease.decisions")
+                .tag("limiter", name)
+                .tag("result", result)
+                .description("Rate limit decisions by where they were made")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tokens already debited from Redis and held by this node until they are spent or expire
+     */
+    static final class Lease {
+
+        private final AtomicInteger remaining;
+        private final long expiresAtNanos;
+        private final Quota quota;
+
+        Lease(int tokens, long expiresAtNanos, Quota quota) {
+            this.remaining = new AtomicInteger(tokens);
+            this.expiresAtNanos = expiresAtNanos;
+            this.quota = quota;
+        }
+
+        boolean isLive(long now) {
+            return now - expiresAtNanos < 0;
+        }
+
+        boolean tryTake(long now, int tokens) {
+            if (!isLive(now)) {
+                return false;
+            }
+            int current;
+            do {
+                current = remaining.get();
+                if (current < tokens) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - tokens));
+            return true;
+        }
+
+        int drain() {
+            return Math.max(0, remaining.getAndSet(0));
+        }
+    }
+
+    /**
+     * What Redis reported when the lease was taken, used to answer quota headers for local hits
+     */
+    static final class Quota {
+
+        private final long limit;
+        private final long redisRemaining;
+        private final double replenishRate;
+
+        private Quota(long limit, long redisRemaining, double replenishRate) {
+            this.limit = limit;
+            this.redisRemaining = redisRemaining;
+            this.replenishRate = replenishRate;
+        }
+
+        static Quota of(Response response) {
+            Map<String, String> headers = response.getHeaders();
+            String remaining = headers.get(RedisRateLimiter.REMAINING_HEADER);
+            String limit = headers.get(RedisRateLimiter.BURST_CAPACITY_HEADER);
+            String replenishRate = headers.get(RedisRateLimiter.REPLENISH_RATE_HEADER);
+            if (remaining == null || limit == null || replenishRate == null) {
+                return null;
+            }
+            try {
+                Quota quota = new Quota(Long.parseLong(limit), Long.parseLong(remaining), Double.parseDouble(replenishRate));
+                return quota.redisRemaining >= 0 && quota.limit > 0 && quota.replenishRate > 0 ? quota : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Redis has already debited the unspent lease tokens, so they are added back to its count
+         */
+        Map<String, String> headers(Lease lease) {
+            long remaining = Math.min(limit, redisRemaining + lease.remaining.get());
+            return RateLimitHeaders.of(true, limit, remaining,
+                    RateLimitHeaders.secondsUntilFull(limit, remaining, replenishRate), 0);
+        }
+    }
+}
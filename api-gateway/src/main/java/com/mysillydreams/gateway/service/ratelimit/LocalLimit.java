@@ -0,0 +1,37 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+/**
+ * Per-key rate limit state kept in memory on one node, driven by a caller-supplied nanosecond clock
+ */
+public interface LocalLimit {
+
+    /**
+     * Takes one request's worth of quota if it is available
+     */
+    default boolean tryAcquire(long nowNanos) {
+        return tryAcquire(nowNanos, 1);
+    }
+
+    /**
+     * Takes permits units of quota at once, or nothing
+     */
+    boolean tryAcquire(long nowNanos, int permits);
+
+    /**
+     * Whole requests that would currently be allowed
+     */
+    long available(long nowNanos);
+
+    /**
+     * True when the state is back to its initial value and can be dropped
+     */
+    boolean isFull(long nowNanos);
+
+    /**
+     * Creates the state for a new key; rate and burst are already scaled to this node's share
+     */
+    @FunctionalInterface
+    interface Factory {
+        LocalLimit create(double replenishRate, double burstCapacity, long nowNanos);
+    }
+}
@@ -0,0 +1,63 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * In-memory sliding window counter, the per-node counterpart of sliding_window_rate_limiter.lua.
+ * Counts are kept for the current and the previous fixed window; the previous count is weighted by how
+ * much of it still overlaps the sliding window, so a client cannot spend two windows' worth at an edge.
+ */
+public final class LocalSlidingWindow implements LocalLimit {
+
+    private final double limit;
+    private final long windowNanos;
+
+    private long currentWindow;
+    private long currentCount;
+    private long previousCount;
+
+    public LocalSlidingWindow(double limit, Duration window, long nowNanos) {
+        if (limit < 1 || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("limit must be at least 1 and window positive");
+        }
+        this.limit = limit;
+        this.windowNanos = window.toNanos();
+        this.currentWindow = Math.floorDiv(nowNanos, windowNanos);
+    }
+
+    @Override
+    public synchronized boolean tryAcquire(long nowNanos, int permits) {
+        roll(nowNanos);
+        if (estimate(nowNanos) + permits > limit) {
+            return false;
+        }
+        currentCount += permits;
+        return true;
+    }
+
+    @Override
+    public synchronized long available(long nowNanos) {
+        roll(nowNanos);
+        return Math.max(0L, (long) Math.floor(limit - estimate(nowNanos)));
+    }
+
+    @Override
+    public synchronized boolean isFull(long nowNanos) {
+        roll(nowNanos);
+        return currentCount == 0 && previousCount == 0;
+    }
+
+    private void roll(long nowNanos) {
+        long window = Math.floorDiv(nowNanos, windowNanos);
+        if (window != currentWindow) {
+            previousCount = window == currentWindow + 1 ? currentCount : 0;
+            currentCount = 0;
+            currentWindow = window;
+        }
+    }
+
+    private double estimate(long nowNanos) {
+        long elapsed = Math.floorMod(nowNanos, windowNanos);
+        return previousCount * ((double) (windowNanos - elapsed) / windowNanos) + currentCount;
+    }
+}
@@ -0,0 +1,57 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory token bucket kept as a single timestamp: the time at which the bucket would be full again.
+ * Taking a token pushes that time forward by one emission interval; the request is refused when it would
+ * land further ahead than the burst allows. A take is one CAS and the bucket needs no refill task.
+ * This is GCRA, and serves as the per-node counterpart of both the token bucket and gcra_rate_limiter.lua.
+ */
+public final class LocalTokenBucket implements LocalLimit {
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAtNanos;
+
+    public LocalTokenBucket(double replenishRate, double burstCapacity, long nowNanos) {
+        if (replenishRate <= 0 || burstCapacity < 1) {
+            throw new IllegalArgumentException("replenishRate must be positive and burstCapacity at least 1");
+        }
+        this.emissionIntervalNanos = Math.max(1L, (long) (1_000_000_000L / replenishRate));
+        this.burstNanos = (long) (emissionIntervalNanos * burstCapacity);
+        this.fullAtNanos = new AtomicLong(nowNanos);
+    }
+
+    @Override
+    public boolean tryAcquire(long nowNanos, int permits) {
+        long cost = emissionIntervalNanos * permits;
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            long next = Math.max(fullAt, nowNanos) + cost;
+            if (next - nowNanos > burstNanos) {
+                return false;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Whole tokens currently available
+     */
+    @Override
+    public long available(long nowNanos) {
+        long used = Math.max(0L, fullAtNanos.get() - nowNanos);
+        return (burstNanos - used) / emissionIntervalNanos;
+    }
+
+    /**
+     * A full bucket carries no state worth keeping and can be dropped
+     */
+    @Override
+    public boolean isFull(long nowNanos) {
+        return fullAtNanos.get() - nowNanos <= 0;
+    }
+}
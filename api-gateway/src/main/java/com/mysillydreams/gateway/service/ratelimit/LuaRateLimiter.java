@@ -0,0 +1,147 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base for limiters that decide in a single atomic Lua script call.
+ * Scripts take one key and the requested token count as their last argument, and return
+ * { allowed, remaining, retry after ms, full again after ms }. The token count is the request's cost
+ * (see {@link RequestCost}) times requestedTokens, capped at the burst capacity.
+ * Responses carry the same headers as RedisRateLimiter plus exact RateLimit-* and Retry-After values from
+ * the script. Redis errors fail open with a remaining of -1 just like RedisRateLimiter, so the leasing and
+ * failover layers treat every algorithm alike.
+ */
+public abstract class LuaRateLimiter implements RateLimiter<RedisRateLimiter.Config>, ApplicationContextAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(LuaRateLimiter.class);
+
+    private static final List<Long> FAILED_OPEN = List.of(1L, -1L, 0L, 0L);
+
+    private final RedisScript<List<Long>> script;
+    private final String keyPrefix;
+    private final List<String> limitArgs;
+    private final List<String> defaultArgs;
+    private final String replenishRate;
+    private final String burstCapacity;
+    private final int requestedTokens;
+    private final long burstCapacityValue;
+    private volatile ReactiveStringRedisTemplate redisTemplate;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected LuaRateLimiter(String scriptPath, String keyPrefix, int replenishRate, int burstCapacity,
+                             int requestedTokens, List<String> limitArgs) {
+        this.script = (RedisScript) RedisScript.of(new ClassPathResource(scriptPath), List.class);
+        this.keyPrefix = keyPrefix;
+        this.limitArgs = List.copyOf(limitArgs);
+        this.replenishRate = String.valueOf(replenishRate);
+        this.burstCapacity = String.valueOf(burstCapacity);
+        this.burstCapacityValue = burstCapacity;
+        this.requestedTokens = requestedTokens;
+        this.defaultArgs = scriptArgs(requestedTokens);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        ReactiveStringRedisTemplate template = redisTemplate;
+        if (template == null) {
+            throw new IllegalStateException(getClass().getSimpleName() + " is not initialized");
+        }
+        return Mono.deferContextual(context -> isAllowed(template, id, tokens(RequestCost.of(context))));
+    }
+
+    private Mono<Response> isAllowed(ReactiveStringRedisTemplate template, String id, int tokens) {
+        // Hash tag keeps the key on one cluster slot, matching RedisRateLimiter's key layout
+        List<String> keys = List.of(keyPrefix + "{" + id + "}");
+        List<String> args = tokens == requestedTokens ? defaultArgs : scriptArgs(tokens);
+        Flux<List<Long>> results = template.execute(script, keys, args);
+        return results
+                .onErrorResume(e -> {
+                    logger.debug("Error calling rate limiter script for '{}'", id, e);
+                    return Flux.just(FAILED_OPEN);
+                })
+                .reduce(new ArrayList<Long>(), (all, result) -> {
+                    all.addAll(result);
+                    return all;
+                })
+                .map(result -> toResponse(result, tokens));
+    }
+
+    /**
+     * Tokens deducted for a request of the given cost
+     */
+    int tokens(int cost) {
+        return (int) Math.max(1L, Math.min(burstCapacityValue, (long) requestedTokens * cost));
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext context) throws BeansException {
+        if (redisTemplate == null) {
+            redisTemplate = context.getBean(ReactiveStringRedisTemplate.class);
+        }
+    }
+
+    void setRedisTemplate(ReactiveStringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Map<String, RedisRateLimiter.Config> getConfig() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Class<RedisRateLimiter.Config> getConfigClass() {
+        return RedisRateLimiter.Config.class;
+    }
+
+    @Override
+    public RedisRateLimiter.Config newConfig() {
+        return new RedisRateLimiter.Config();
+    }
+
+    private List<String> scriptArgs(int tokens) {
+        List<String> args = new ArrayList<>(limitArgs.size() + 1);
+        args.addAll(limitArgs);
+        args.add(String.valueOf(tokens));
+        return args;
+    }
+
+    private Response toResponse(List<Long> result, int tokens) {
+        if (result.size() < 2) {
+            result = FAILED_OPEN;
+        }
+        boolean allowed = result.get(0) == 1L;
+        Map<String, String> headers = new HashMap<>(8);
+        headers.put(RedisRateLimiter.REMAINING_HEADER, result.get(1).toString());
+        headers.put(RedisRateLimiter.REPLENISH_RATE_HEADER, replenishRate);
+        headers.put(RedisRateLimiter.BURST_CAPACITY_HEADER, burstCapacity);
+        headers.put(RedisRateLimiter.REQUESTED_TOKENS_HEADER, String.valueOf(tokens));
+        long remaining = result.get(1);
+        if (remaining >= 0 && result.size() >= 4) {
+            RateLimitHeaders.put(headers, allowed, burstCapacityValue, remaining, ceilSeconds(result.get(3)),
+                    ceilSeconds(result.get(2)));
+        }
+        return new Response(allowed, headers);
+    }
+
+    private static long ceilSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+}
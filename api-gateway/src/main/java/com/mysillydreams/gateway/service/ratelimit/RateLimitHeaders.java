@@ -0,0 +1,96 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Builds the IETF RateLimit-Limit / RateLimit-Remaining / RateLimit-Reset fields and Retry-After from what a
+ * limiter already knows after its decision, so clients can pace themselves without any extra Redis call.
+ * Limiters that know exact times (the Lua scripts) set the fields themselves; for RedisRateLimiter they are
+ * derived from its X-RateLimit-* headers. Reset and Retry-After are delta-seconds, rounded up.
+ */
+public final class RateLimitHeaders {
+
+    private RateLimitHeaders() {
+    }
+
+    /**
+     * Standard fields for a decision; retryAfterSeconds is only written when the request was denied
+     */
+    public static Map<String, String> of(boolean allowed, long limit, long remaining, long resetSeconds,
+                                         long retryAfterSeconds) {
+        Map<String, String> headers = new HashMap<>(8);
+        put(headers, allowed, limit, remaining, resetSeconds, retryAfterSeconds);
+        return headers;
+    }
+
+    /**
+     * Adds the standard fields to a limiter's own headers
+     */
+    public static void put(Map<String, String> headers, boolean allowed, long limit, long remaining, long resetSeconds,
+                           long retryAfterSeconds) {
+        headers.put(HeaderConstants.RATE_LIMIT_LIMIT, Long.toString(limit));
+        headers.put(HeaderConstants.RATE_LIMIT_REMAINING, Long.toString(Math.max(0L, remaining)));
+        headers.put(HeaderConstants.RATE_LIMIT_RESET, Long.toString(Math.max(0L, resetSeconds)));
+        if (!allowed) {
+            headers.put(HeaderConstants.RETRY_AFTER, Long.toString(Math.max(1L, retryAfterSeconds)));
+        }
+    }
+
+    /**
+     * Seconds until a token bucket holding remaining of limit tokens is full again
+     */
+    public static long secondsUntilFull(long limit, long remaining, double replenishRate) {
+        return ceilSeconds(Math.max(0L, limit - remaining), replenishRate);
+    }
+
+    /**
+     * Seconds until a token bucket holding remaining tokens can serve a request costing requested tokens
+     */
+    public static long secondsUntilAllowed(long requested, long remaining, double replenishRate) {
+        return Math.max(1L, ceilSeconds(Math.max(0L, requested - remaining), replenishRate));
+    }
+
+    /**
+     * Derives the standard fields from RedisRateLimiter's X-RateLimit-* headers. Returns false when they are
+     * missing or report a fail-open decision (remaining -1), in which case nothing is known about the quota.
+     */
+    public static boolean fromRedisRateLimiter(UnaryOperator<String> headers, boolean allowed,
+                                               BiConsumer<String, String> sink) {
+        long remaining = parse(headers.apply(RedisRateLimiter.REMAINING_HEADER));
+        long limit = parse(headers.apply(RedisRateLimiter.BURST_CAPACITY_HEADER));
+        long replenishRate = parse(headers.apply(RedisRateLimiter.REPLENISH_RATE_HEADER));
+        if (remaining < 0 || limit <= 0 || replenishRate <= 0) {
+            return false;
+        }
+        long requested = Math.max(1L, parse(headers.apply(RedisRateLimiter.REQUESTED_TOKENS_HEADER)));
+        sink.accept(HeaderConstants.RATE_LIMIT_LIMIT, Long.toString(limit));
+        sink.accept(HeaderConstants.RATE_LIMIT_REMAINING, Long.toString(remaining));
+        sink.accept(HeaderConstants.RATE_LIMIT_RESET, Long.toString(secondsUntilFull(limit, remaining, replenishRate)));
+        if (!allowed) {
+            sink.accept(HeaderConstants.RETRY_AFTER,
+                    Long.toString(secondsUntilAllowed(requested, remaining, replenishRate)));
+        }
+        return true;
+    }
+
+    private static long ceilSeconds(long tokens, double replenishRate) {
+        return (long) Math.ceil(tokens / replenishRate);
+    }
+
+    private static long parse(String value) {
+        if (value == null) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
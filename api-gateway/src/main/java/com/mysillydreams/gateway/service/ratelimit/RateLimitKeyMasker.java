@@ -0,0 +1,114 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+
+/**
+ * Masks rate limit keys before they leave the gateway in logs or actuator output.
+ * User ids, session ids and API-key bucket ids are replaced by a 64-bit HMAC-SHA256 digest under a random
+ * per-node secret, so the same client keeps the same masked value on one node but the value cannot be
+ * reversed or checked against guessed ids. Client IPs are truncated to their /24 (IPv4) or /48 (IPv6)
+ * network. Endpoint categories and key prefixes are kept; anything unrecognised is digested whole.
+ */
+final class RateLimitKeyMasker {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int DIGEST_BYTES = 8;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static final String IP_PREFIX = "ip:";
+    private static final String USER_PREFIX = "user:";
+    private static final String ANONYMOUS_PREFIX = "anonymous:";
+    private static final String SESSION_PREFIX = "session:";
+    private static final String IP_SEGMENT = ":ip:";
+    private static final String ENDPOINT_SEGMENT = ":endpoint:";
+
+    private final SecretKeySpec secret;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    RateLimitKeyMasker() {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        this.secret = new SecretKeySpec(random, ALGORITHM);
+        newMac();
+    }
+
+    /**
+     * Masked form of a key produced by {@link ClientIdentity} or {@link ApiKeyIdentity}
+     */
+    String mask(String key) {
+        if (key.startsWith(IP_PREFIX)) {
+            return IP_PREFIX + network(key.substring(IP_PREFIX.length()));
+        }
+        if (key.startsWith(SESSION_PREFIX)) {
+            return SESSION_PREFIX + digest(key.substring(SESSION_PREFIX.length()));
+        }
+        if (key.startsWith(ApiKeyIdentity.KEY_PREFIX)) {
+            return ApiKeyIdentity.KEY_PREFIX + digest(key.substring(ApiKeyIdentity.KEY_PREFIX.length()));
+        }
+        if (key.startsWith(ANONYMOUS_PREFIX)) {
+            String rest = key.substring(ANONYMOUS_PREFIX.length());
+            int endpointAt = rest.lastIndexOf(ENDPOINT_SEGMENT);
+            if (rest.startsWith(IP_PREFIX) && endpointAt > 0) {
+                // anonymous:ip:{clientIp}:endpoint:{category}
+                return ANONYMOUS_PREFIX + IP_PREFIX + network(rest.substring(IP_PREFIX.length(), endpointAt))
+                        + rest.substring(endpointAt);
+            }
+            return ANONYMOUS_PREFIX + network(rest);
+        }
+        if (key.startsWith(USER_PREFIX)) {
+            String rest = key.substring(USER_PREFIX.length());
+            int endpointAt = rest.lastIndexOf(ENDPOINT_SEGMENT);
+            int ipAt = endpointAt > 0 ? rest.lastIndexOf(IP_SEGMENT, endpointAt) : -1;
+            if (ipAt >= 0) {
+                // user:{userId}:ip:{clientIp}:endpoint:{category}
+                return USER_PREFIX + digest(rest.substring(0, ipAt)) + IP_SEGMENT
+                        + network(rest.substring(ipAt + IP_SEGMENT.length(), endpointAt)) + rest.substring(endpointAt);
+            }
+            return USER_PREFIX + digest(rest);
+        }
+        return digest(key);
+    }
+
+    /**
+     * The /24 or /48 network of an address literal; "unknown" is kept and anything else is digested
+     */
+    private String network(String ip) {
+        int colon = ip.indexOf(':');
+        if (colon >= 0) {
+            int compressed = ip.indexOf("::");
+            int cut = colon;
+            for (int groups = 1; groups < 3 && cut >= 0; groups++) {
+                cut = ip.indexOf(':', cut + 1);
+            }
+            if (cut < 0 || (compressed >= 0 && compressed < cut)) {
+                cut = compressed >= 0 ? compressed : ip.length();
+            }
+            return ip.substring(0, cut) + "::/48";
+        }
+        int dot = ip.lastIndexOf('.');
+        if (dot > 0) {
+            return ip.substring(0, dot) + ".0/24";
+        }
+        return ClientIdentity.UNKNOWN_IP.equals(ip) ? ip : digest(ip);
+    }
+
+    private String digest(String value) {
+        byte[] digest = macs.get().doFinal(value.getBytes(StandardCharsets.UTF_8));
+        return HEX.formatHex(digest, 0, DIGEST_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secret);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + ALGORITHM + " for rate limit key masking", e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports DEGRADED while any rate limiter enforces limits from per-node buckets instead of Redis.
+ * DEGRADED maps to HTTP 200 (see management.endpoint.health.status) so probes keep the node in rotation.
+ */
+@Component("rateLimiterFailoverHealthIndicator")
+public class RateLimiterFailoverHealthIndicator implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED", "Rate limits enforced per node while Redis is unavailable");
+
+    private final List<FailoverRateLimiter> limiters;
+
+    public RateLimiterFailoverHealthIndicator(List<FailoverRateLimiter> limiters) {
+        this.limiters = limiters;
+    }
+
+    @Override
+    public Health health() {
+        boolean degraded = false;
+        Map<String, Object> details = new LinkedHashMap<>();
+        for (FailoverRateLimiter limiter : limiters) {
+            FailoverRateLimiter.Mode mode = limiter.getMode();
+            Map<String, Object> limiterDetails = new LinkedHashMap<>();
+            limiterDetails.put("mode", mode.name().toLowerCase());
+            limiterDetails.put("circuitBreaker", limiter.getCircuitBreaker().getState().name());
+            if (mode == FailoverRateLimiter.Mode.LOCAL) {
+                degraded = true;
+                limiterDetails.put("nodeCount", limiter.getLocalNodeCount());
+            }
+            details.put(limiter.getName(), limiterDetails);
+        }
+        return Health.status(degraded ? DEGRADED : Status.UP).withDetails(details).build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Carries a request's token cost to the rate limiters through the Reactor context.
+ * RateLimiter.isAllowed only sees the route id and key, so RequestCostFilter writes the cost into the
+ * context of the filter chain and each limiter reads it when it is subscribed. Absent means one token.
+ */
+public final class RequestCost {
+
+    static final String CONTEXT_KEY = RequestCost.class.getName();
+
+    private RequestCost() {
+    }
+
+    public static Context context(int tokens) {
+        return Context.of(CONTEXT_KEY, tokens);
+    }
+
+    public static int of(ContextView context) {
+        Integer tokens = context.getOrDefault(CONTEXT_KEY, null);
+        return tokens == null ? 1 : tokens;
+    }
+}
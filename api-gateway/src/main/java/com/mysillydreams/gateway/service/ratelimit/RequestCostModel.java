@@ -0,0 +1,174 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Token cost of a request, from rate-limiter.costs.
+ * Rules are compiled once (path patterns parsed, methods resolved) and rebuilt after a config refresh;
+ * the compiled list is swapped in with a single volatile write.
+ */
+@Component
+public class RequestCostModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCostModel.class);
+
+    private final RateLimiterProperties rateLimiterProperties;
+    private volatile List<Rule> rules;
+
+    public RequestCostModel(RateLimiterProperties rateLimiterProperties) {
+        this.rateLimiterProperties = rateLimiterProperties;
+        this.rules = compile(rateLimiterProperties.getCosts());
+    }
+
+    /**
+     * Tokens to deduct for the exchange; 1 when no rule matches
+     */
+    public int costOf(ServerWebExchange exchange) {
+        List<Rule> current = rules;
+        if (current.isEmpty()) {
+            return 1;
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : null;
+        ServerHttpRequest request = exchange.getRequest();
+        for (Rule rule : current) {
+            if (rule.matches(routeId, request)) {
+                return rule.cost(request);
+            }
+        }
+        return 1;
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void rebuild() {
+        rules = compile(rateLimiterProperties.getCosts());
+        logger.info("Rebuilt request cost model with {} rules", rules.size());
+    }
+
+    static List<Rule> compile(List<RateLimiterProperties.CostRule> configured) {
+        List<Rule> compiled = new ArrayList<>(configured.size());
+        for (RateLimiterProperties.CostRule rule : configured) {
+            try {
+                compiled.add(new Rule(rule));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring request cost rule for route '{}' path '{}': {}", rule.getRoute(), rule.getPath(),
+                        e.getMessage());
+            }
+        }
+        return List.copyOf(compiled);
+    }
+
+    static final class Rule {
+
+        private final String route;
+        private final PathPattern path;
+        private final Set<HttpMethod> methods;
+        private final int tokens;
+        private final String[] queryParams;
+        private final long[] queryParamUnits;
+        private final long bodyBytesPerToken;
+        private final int maxTokens;
+
+        Rule(RateLimiterProperties.CostRule config) {
+            this.route = config.getRoute() == null || config.getRoute().isBlank() ? null : config.getRoute();
+            this.path = config.getPath() == null || config.getPath().isBlank()
+                    ? null : PathPatternParser.defaultInstance.parse(config.getPath());
+            this.methods = methods(config.getMethods());
+            this.tokens = config.getTokens();
+            this.maxTokens = Math.max(config.getTokens(), config.getMaxTokens());
+            this.bodyBytesPerToken = config.getBodyBytesPerToken();
+            this.queryParams = new String[config.getQueryParams().size()];
+            this.queryParamUnits = new long[queryParams.length];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : config.getQueryParams().entrySet()) {
+                if (entry.getValue() == null || entry.getValue() <= 0) {
+                    throw new IllegalArgumentException("query parameter unit for '" + entry.getKey() + "' must be positive");
+                }
+                queryParams[i] = entry.getKey();
+                queryParamUnits[i++] = entry.getValue();
+            }
+        }
+
+        boolean matches(String routeId, ServerHttpRequest request) {
+            return (route == null || route.equals(routeId))
+                    && (methods.isEmpty() || methods.contains(request.getMethod()))
+                    && (path == null || path.matches(request.getPath().pathWithinApplication()));
+        }
+
+        int cost(ServerHttpRequest request) {
+            long cost = tokens;
+            if (queryParams.length > 0) {
+                MultiValueMap<String, String> query = request.getQueryParams();
+                for (int i = 0; i < queryParams.length; i++) {
+                    long value = parsePositive(query.getFirst(queryParams[i]));
+                    if (value > 0) {
+                        cost += ceilDiv(value, queryParamUnits[i]);
+                    }
+                }
+            }
+            if (bodyBytesPerToken > 0) {
+                long length = request.getHeaders().getContentLength();
+                if (length > 0) {
+                    cost += ceilDiv(length, bodyBytesPerToken);
+                } else if (length < 0 && mayHaveBody(request)) {
+                    // Chunked or otherwise unsized body: charge the cap rather than let the size go unpriced
+                    return maxTokens;
+                }
+            }
+            return (int) Math.min(cost, maxTokens);
+        }
+
+        private static boolean mayHaveBody(ServerHttpRequest request) {
+            HttpMethod method = request.getMethod();
+            return method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.PATCH
+                    || request.getHeaders().containsKey(HttpHeaders.TRANSFER_ENCODING);
+        }
+
+        private static Set<HttpMethod> methods(List<String> names) {
+            Set<HttpMethod> methods = new HashSet<>();
+            for (String name : names) {
+                methods.add(HttpMethod.valueOf(name.trim().toUpperCase()));
+            }
+            return Set.copyOf(methods);
+        }
+
+        private static long parsePositive(String value) {
+            if (value == null || value.isEmpty() || value.length() > 18) {
+                return 0;
+            }
+            long result = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return 0;
+                }
+                result = result * 10 + (c - '0');
+            }
+            return result;
+        }
+
+        private static long ceilDiv(long value, long unit) {
+            return (value + unit - 1) / unit;
+        }
+    }
+}
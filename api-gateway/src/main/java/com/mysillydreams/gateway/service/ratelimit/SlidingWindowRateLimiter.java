@@ -0,0 +1,26 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Sliding window counter in Redis (sliding_window_rate_limiter.lua): one hash per client with a count per window.
+ * The limit is replenishRate * window; it is reported as the burst capacity in the response headers.
+ */
+public class SlidingWindowRateLimiter extends LuaRateLimiter {
+
+    static final String SCRIPT = "META-INF/scripts/sliding_window_rate_limiter.lua";
+    static final String KEY_PREFIX = "sliding_window_rate_limiter.";
+
+    public SlidingWindowRateLimiter(int replenishRate, Duration window, int requestedTokens) {
+        super(SCRIPT, KEY_PREFIX, replenishRate, limit(replenishRate, window), requestedTokens,
+              List.of(String.valueOf(limit(replenishRate, window)), String.valueOf(window.toMillis())));
+    }
+
+    /**
+     * Requests allowed per window
+     */
+    public static int limit(int replenishRate, Duration window) {
+        return (int) Math.max(1L, Math.round(replenishRate * (window.toMillis() / 1000.0)));
+    }
+}
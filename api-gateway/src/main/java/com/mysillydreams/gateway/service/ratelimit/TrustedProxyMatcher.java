@@ -0,0 +1,70 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trusted proxy check against rate-limiter.ip-resolution.trusted-proxies, compiled into a CidrTrie.
+ * The trie is rebuilt after a config refresh and swapped in with a single volatile write,
+ * so lookups never see a half-built list.
+ */
+@Component
+public class TrustedProxyMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrustedProxyMatcher.class);
+
+    private final RateLimiterProperties rateLimiterProperties;
+    private volatile CidrTrie trie;
+
+    public TrustedProxyMatcher(RateLimiterProperties rateLimiterProperties) {
+        this.rateLimiterProperties = rateLimiterProperties;
+        this.trie = compile(rateLimiterProperties.getIpResolution().getTrustedProxies());
+    }
+
+    /**
+     * True when the address is inside a trusted range. Anything that is not an IP literal
+     * (blank, host names, address:port) is treated as trusted so it is never used as a client identity.
+     */
+    public boolean isTrusted(String address) {
+        if (address == null) {
+            return true;
+        }
+        return isTrusted(address, 0, address.length());
+    }
+
+    /**
+     * Same as {@link #isTrusted(String)} for the token text[from, to)
+     */
+    public boolean isTrusted(CharSequence text, int from, int to) {
+        if (from >= to) {
+            return true;
+        }
+        return trie.lookup(text, from, to) != CidrTrie.Match.NO_MATCH;
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void rebuild() {
+        trie = compile(rateLimiterProperties.getIpResolution().getTrustedProxies());
+        logger.info("Rebuilt trusted proxy trie with {} CIDR ranges", trie.size());
+    }
+
+    static CidrTrie compile(List<String> cidrs) {
+        List<String> valid = new ArrayList<>(cidrs.size());
+        for (String cidr : cidrs) {
+            try {
+                CidrTrie.of(List.of(cidr));
+                valid.add(cidr);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring trusted proxy entry '{}': {}", cidr, e.getMessage());
+            }
+        }
+        return CidrTrie.of(valid);
+    }
+}
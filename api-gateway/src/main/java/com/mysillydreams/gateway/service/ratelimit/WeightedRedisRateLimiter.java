@@ -0,0 +1,71 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import org.springframework.beans.BeansException;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * RedisRateLimiter that deducts the request's cost (see {@link RequestCost}) instead of a fixed token count.
+ * RedisRateLimiter takes its requested tokens from config, so each distinct cost gets its own instance on the
+ * same Redis keys; the deduction stays a single atomic script call. Costs are capped at the burst capacity,
+ * since a larger request could never be allowed, which also bounds the number of instances.
+ */
+public class WeightedRedisRateLimiter extends RedisRateLimiter {
+
+    private final int replenishRate;
+    private final int burstCapacity;
+    private final int requestedTokens;
+    private final ConcurrentMap<Integer, RedisRateLimiter> byTokens = new ConcurrentHashMap<>();
+    private volatile ApplicationContext context;
+
+    public WeightedRedisRateLimiter(int replenishRate, int burstCapacity, int requestedTokens) {
+        super(replenishRate, burstCapacity, requestedTokens);
+        this.replenishRate = replenishRate;
+        this.burstCapacity = burstCapacity;
+        this.requestedTokens = requestedTokens;
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        return Mono.deferContextual(ctx -> {
+            int tokens = tokens(RequestCost.of(ctx));
+            if (tokens == requestedTokens) {
+                return super.isAllowed(routeId, id);
+            }
+            return limiterFor(tokens).isAllowed(routeId, id);
+        });
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext context) throws BeansException {
+        super.setApplicationContext(context);
+        this.context = context;
+    }
+
+    /**
+     * Tokens deducted for a request of the given cost
+     */
+    int tokens(int cost) {
+        return (int) Math.max(1L, Math.min(burstCapacity, (long) requestedTokens * cost));
+    }
+
+    private RedisRateLimiter limiterFor(int tokens) {
+        RedisRateLimiter limiter = byTokens.get(tokens);
+        if (limiter == null) {
+            ApplicationContext current = context;
+            if (current == null) {
+                throw new IllegalStateException("WeightedRedisRateLimiter is not initialized");
+            }
+            limiter = byTokens.computeIfAbsent(tokens, key -> {
+                RedisRateLimiter created = new RedisRateLimiter(replenishRate, burstCapacity, key);
+                created.setApplicationContext(current);
+                return created;
+            });
+        }
+        return limiter;
+    }
+}
@@ -0,0 +1,243 @@
+package com.mysillydreams.gateway.service.revocation;
+
+import com.mysillydreams.gateway.config.JwtProperties;
+import com.mysillydreams.gateway.service.VerifiedPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token revocation check backed by an in-memory Bloom filter of revoked jti values.
+ * Redis holds the source of truth (one key per revoked jti, expiring with the token) and a pub/sub
+ * channel feeds new revocations to every gateway node, this one included. Redis is only queried on a filter hit.
+ */
+@Component
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+    private static final char MESSAGE_SEPARATOR = '|';
+
+    private final JwtProperties.Revocation config;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Clock clock;
+
+    private volatile BloomFilter filter;
+    // Filter being rebuilt from Redis; live revocations are mirrored into it so none are lost on swap.
+    // Guarded by filterLock together with the swap, so a revocation always lands in the filter that stays.
+    private BloomFilter rebuilding;
+    private long rebuildingLiveRevocations;
+    private final Object filterLock = new Object();
+    private final AtomicLong trackedRevocations = new AtomicLong();
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    private final Counter filterNegativeCounter;
+    private final Counter confirmedCounter;
+    private final Counter falsePositiveCounter;
+    private final Counter redisErrorCounter;
+    private final Timer syncLagTimer;
+
+    public TokenRevocationService(JwtProperties jwtProperties, ReactiveStringRedisTemplate redisTemplate,
+                                  MeterRegistry meterRegistry) {
+        this(jwtProperties.getRevocation(), redisTemplate, meterRegistry, Clock.systemUTC());
+    }
+
+    TokenRevocationService(JwtProperties.Revocation config, ReactiveStringRedisTemplate redisTemplate,
+                           MeterRegistry meterRegistry, Clock clock) {
+        this.config = config;
+        this.redisTemplate = redisTemplate;
+        this.clock = clock;
+        this.filter = newFilter();
+
+        this.filterNegativeCounter = Counter.builder("gateway.jwt.revocation.checks")
+                .tag("result", "filter_negative")
+                .description("Revocation checks by outcome")
+                .register(meterRegistry);
+        this.confirmedCounter = Counter.builder("gateway.jwt.revocation.checks")
+                .tag("result", "revoked")
+                .description("Revocation checks by outcome")
+                .register(meterRegistry);
+        this.falsePositiveCounter = Counter.builder("gateway.jwt.revocation.checks")
+                .tag("result", "false_positive")
+                .description("Revocation checks by outcome")
+                .register(meterRegistry);
+        this.redisErrorCounter = Counter.builder("gateway.jwt.revocation.checks")
+                .tag("result", "redis_error")
+                .description("Revocation checks by outcome")
+                .register(meterRegistry);
+        this.syncLagTimer = Timer.builder("gateway.jwt.revocation.sync.lag")
+                .description("Delay between a revocation being published and this node applying it")
+                .register(meterRegistry);
+        Gauge.builder("gateway.jwt.revocation.false.positive.ratio", this, TokenRevocationService::falsePositiveRatio)
+                .description("Share of Bloom filter hits that Redis did not confirm")
+                .register(meterRegistry);
+        Gauge.builder("gateway.jwt.revocation.tracked", trackedRevocations, AtomicLong::get)
+                .description("Revoked token ids loaded into the Bloom filter")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        logger.info("Starting token revocation sync on channel {} with rebuild every {}",
+                   config.getChannel(), config.getRebuildInterval());
+
+        subscriptions.add(redisTemplate.listenToChannel(config.getChannel())
+                .doOnNext(message -> onRevocationMessage(message.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30)))
+                .subscribe());
+
+        subscriptions.add(Flux.interval(Duration.ZERO, config.getRebuildInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> rebuild().onErrorResume(e -> {
+                    logger.warn("Revocation filter rebuild failed, keeping current filter: {}", e.getMessage());
+                    return Mono.empty();
+                }))
+                .subscribe());
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscriptions.dispose();
+    }
+
+    /**
+     * Check whether a verified token has been revoked. Tokens without a jti cannot be revoked.
+     */
+    public Mono<Boolean> isRevoked(VerifiedPrincipal principal) {
+        String tokenId = principal.getTokenId();
+        if (!config.isEnabled() || tokenId == null) {
+            return Mono.just(false);
+        }
+
+        if (!filter.mightContain(tokenId)) {
+            filterNegativeCounter.increment();
+            return Mono.just(false);
+        }
+
+        return redisTemplate.hasKey(config.getKeyPrefix() + tokenId)
+                .map(revoked -> {
+                    if (revoked) {
+                        confirmedCounter.increment();
+                    } else {
+                        falsePositiveCounter.increment();
+                    }
+                    return revoked;
+                })
+                .onErrorResume(e -> {
+                    // A filter hit is almost always a real revocation, so fail closed when Redis is unreachable
+                    redisErrorCounter.increment();
+                    logger.warn("Revocation lookup failed for filter hit, treating token as revoked: {}", e.getMessage());
+                    return Mono.just(true);
+                });
+    }
+
+    /**
+     * Revoke a token until its expiry and broadcast the revocation to all gateway nodes.
+     * This node applies it when its own broadcast comes back, like every other node.
+     */
+    public Mono<Void> revoke(String tokenId, Instant expiry) {
+        Duration remaining = Duration.between(clock.instant(), expiry);
+        if (remaining.isNegative() || remaining.isZero()) {
+            return Mono.empty();
+        }
+
+        String message = tokenId + MESSAGE_SEPARATOR + clock.millis();
+        return redisTemplate.opsForValue().set(config.getKeyPrefix() + tokenId, "1", remaining)
+                .then(redisTemplate.convertAndSend(config.getChannel(), message))
+                .then();
+    }
+
+    /**
+     * Replace the filter with a fresh one seeded from Redis, dropping expired revocations
+     */
+    Mono<Void> rebuild() {
+        return Mono.defer(() -> {
+            BloomFilter next = newFilter();
+            AtomicLong count = new AtomicLong();
+            synchronized (filterLock) {
+                rebuilding = next;
+                rebuildingLiveRevocations = 0;
+            }
+
+            return redisTemplate.scan(ScanOptions.scanOptions().match(config.getKeyPrefix() + "*").count(1000).build())
+                    .doOnNext(key -> {
+                        next.add(key.substring(config.getKeyPrefix().length()));
+                        count.incrementAndGet();
+                    })
+                    .then(Mono.fromRunnable(() -> {
+                        synchronized (filterLock) {
+                            filter = next;
+                            rebuilding = null;
+                            trackedRevocations.set(count.get() + rebuildingLiveRevocations);
+                        }
+                        logger.debug("Revocation filter rebuilt with {} entries", count.get());
+                    }))
+                    .doFinally(signal -> {
+                        synchronized (filterLock) {
+                            if (rebuilding == next) {
+                                rebuilding = null;
+                            }
+                        }
+                    })
+                    .then();
+        });
+    }
+
+    void onRevocationMessage(String message) {
+        int separator = message.lastIndexOf(MESSAGE_SEPARATOR);
+        String tokenId = separator > 0 ? message.substring(0, separator) : message;
+        track(tokenId);
+
+        if (separator > 0) {
+            try {
+                long publishedAt = Long.parseLong(message.substring(separator + 1));
+                syncLagTimer.record(Math.max(0, clock.millis() - publishedAt), TimeUnit.MILLISECONDS);
+            } catch (NumberFormatException e) {
+                logger.debug("Revocation message without publish timestamp: {}", message);
+            }
+        }
+    }
+
+    private void track(String tokenId) {
+        synchronized (filterLock) {
+            filter.add(tokenId);
+            if (rebuilding != null) {
+                rebuilding.add(tokenId);
+                rebuildingLiveRevocations++;
+            }
+            trackedRevocations.incrementAndGet();
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(config.getExpectedRevocations(), config.getFalsePositiveProbability());
+    }
+
+    private double falsePositiveRatio() {
+        double falsePositives = falsePositiveCounter.count();
+        double hits = falsePositives + confirmedCounter.count();
+        return hits == 0 ? 0.0 : falsePositives / hits;
+    }
+}
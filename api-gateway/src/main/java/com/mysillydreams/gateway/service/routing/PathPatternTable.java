@@ -0,0 +1,293 @@
+package com.mysillydreams.gateway.service.routing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ant-style path patterns compiled into a segment trie, for lookups on the request path.
+ * Supported segments: literals, '*' or '{name}' for one whole segment, globs with '*' and '?' inside a
+ * segment (e.g. *.js) and '**' for any number of segments, including none.
+ * Template variables with a regex ('{id:\d+}') or inside a segment ('file-{id}.txt') are rejected rather than
+ * treated as wildcards, since that would silently match paths AntPathMatcher turned away.
+ * When several patterns match, the most specific wins: segments are compared from the left and a literal
+ * beats a glob, which beats '*', which beats '**'; patterns of the same shape keep the order they were added.
+ * A lookup walks the path once without allocating, backing up only to a less specific branch when a more
+ * specific one fails further down; an inner '**' (/api/**&#47;export) tries each remaining segment boundary.
+ * Tables are immutable once built, so a rebuilt table can be swapped in with a single volatile write.
+ */
+public final class PathPatternTable<V> {
+
+    private static final String DOUBLE_WILDCARD = "**";
+
+    private static final PathPatternTable<?> EMPTY = new PathPatternTable<>(new Node<>(new MutableNode<>()), 0);
+
+    private final Node<V> root;
+    private final int size;
+
+    private PathPatternTable(Node<V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PathPatternTable<V> empty() {
+        return (PathPatternTable<V>) EMPTY;
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Value of the most specific pattern matching the path, or null when none does
+     */
+    public V match(String path) {
+        if (path == null || size == 0) {
+            return null;
+        }
+        return root.match(path, skipSeparators(path, 0));
+    }
+
+    public boolean matches(String path) {
+        return match(path) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static int skipSeparators(String path, int from) {
+        int i = from;
+        while (i < path.length() && path.charAt(i) == '/') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.length() : end;
+    }
+
+    /**
+     * Whether path[start, end) matches a segment glob of '*' and '?', without allocating
+     */
+    static boolean globMatches(String glob, String path, int start, int end) {
+        int g = 0;
+        int p = start;
+        int starAt = -1;
+        int starMatch = 0;
+        while (p < end) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == path.charAt(p))) {
+                g++;
+                p++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                starAt = g++;
+                starMatch = p;
+            } else if (starAt >= 0) {
+                g = starAt + 1;
+                p = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+
+    /**
+     * Collects patterns in priority order; the first value added for a pattern is kept
+     */
+    public static final class Builder<V> {
+
+        private final MutableNode<V> root = new MutableNode<>();
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * @throws IllegalArgumentException for a template variable that is not a whole, plain '{name}' segment
+         */
+        public Builder<V> add(String pattern, V value) {
+            if (pattern == null || value == null) {
+                throw new IllegalArgumentException("Path pattern and value are required");
+            }
+            String[] segments = pattern.split("/");
+            for (String segment : segments) {
+                if ((segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0) && !isTemplateVariable(segment)) {
+                    throw new IllegalArgumentException("unsupported template segment '" + segment
+                            + "'; only whole-segment '{name}' variables without a regex are supported");
+                }
+            }
+            MutableNode<V> node = root;
+            int last = lastSegment(segments);
+            for (int i = 0; i <= last; i++) {
+                String segment = segments[i];
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                if (DOUBLE_WILDCARD.equals(segment)) {
+                    if (i == last) {
+                        if (node.catchAll == null) {
+                            node.catchAll = value;
+                            size++;
+                        }
+                        return this;
+                    }
+                    if (node.deep == null) {
+                        node.deep = new MutableNode<>();
+                    }
+                    node = node.deep;
+                } else if ("*".equals(segment) || isTemplateVariable(segment)) {
+                    if (node.wildcard == null) {
+                        node.wildcard = new MutableNode<>();
+                    }
+                    node = node.wildcard;
+                } else if (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0) {
+                    node = node.globs.computeIfAbsent(segment, glob -> new MutableNode<>());
+                } else {
+                    node = node.literals.computeIfAbsent(segment, literal -> new MutableNode<>());
+                }
+            }
+            if (node.terminal == null) {
+                node.terminal = value;
+                size++;
+            }
+            return this;
+        }
+
+        public PathPatternTable<V> build() {
+            return size == 0 ? empty() : new PathPatternTable<>(new Node<>(root), size);
+        }
+
+        private static int lastSegment(String[] segments) {
+            int last = segments.length - 1;
+            while (last >= 0 && segments[last].isEmpty()) {
+                last--;
+            }
+            return last;
+        }
+
+        private static boolean isTemplateVariable(String segment) {
+            int last = segment.length() - 1;
+            return last > 1 && segment.charAt(0) == '{' && segment.indexOf('}') == last
+                    && segment.indexOf('{', 1) < 0 && segment.indexOf(':') < 0;
+        }
+    }
+
+    private static final class MutableNode<V> {
+
+        private final Map<String, MutableNode<V>> literals = new LinkedHashMap<>();
+        private final Map<String, MutableNode<V>> globs = new LinkedHashMap<>();
+        private MutableNode<V> wildcard;
+        private MutableNode<V> deep;
+        private V terminal;
+        private V catchAll;
+    }
+
+    /**
+     * Immutable trie node; literal children sit in an open-addressed table probed with the hash of the
+     * path segment, computed in place so no substring is created
+     */
+    private static final class Node<V> {
+
+        private final String[] literalKeys;
+        private final Node<V>[] literalNodes;
+        private final int literalMask;
+        private final String[] globKeys;
+        private final Node<V>[] globNodes;
+        private final Node<V> wildcard;
+        private final Node<V> deep;
+        private final V terminal;
+        private final V catchAll;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node(MutableNode<V> source) {
+            int capacity = Integer.highestOneBit(Math.max(1, source.literals.size() * 2 - 1)) << 1;
+            this.literalKeys = new String[capacity];
+            this.literalNodes = new Node[capacity];
+            this.literalMask = capacity - 1;
+            source.literals.forEach((literal, child) -> {
+                int slot = literal.hashCode() & literalMask;
+                while (literalKeys[slot] != null) {
+                    slot = (slot + 1) & literalMask;
+                }
+                literalKeys[slot] = literal;
+                literalNodes[slot] = new Node<>(child);
+            });
+
+            List<String> globKeys = new ArrayList<>(source.globs.keySet());
+            this.globKeys = globKeys.toArray(new String[0]);
+            this.globNodes = new Node[this.globKeys.length];
+            for (int i = 0; i < this.globKeys.length; i++) {
+                globNodes[i] = new Node<>(source.globs.get(this.globKeys[i]));
+            }
+            this.wildcard = source.wildcard != null ? new Node<>(source.wildcard) : null;
+            this.deep = source.deep != null ? new Node<>(source.deep) : null;
+            this.terminal = source.terminal;
+            this.catchAll = source.catchAll;
+        }
+
+        /**
+         * Most specific value for the rest of the path, starting at a segment (or at the end of the path)
+         */
+        V match(String path, int start) {
+            if (start >= path.length()) {
+                if (terminal != null) {
+                    return terminal;
+                }
+                V found = deep != null ? deep.match(path, start) : null;
+                return found != null ? found : catchAll;
+            }
+            int end = segmentEnd(path, start);
+            int next = skipSeparators(path, end);
+
+            Node<V> literal = literal(path, start, end);
+            V found = literal != null ? literal.match(path, next) : null;
+            for (int i = 0; found == null && i < globKeys.length; i++) {
+                if (globMatches(globKeys[i], path, start, end)) {
+                    found = globNodes[i].match(path, next);
+                }
+            }
+            if (found == null && wildcard != null) {
+                found = wildcard.match(path, next);
+            }
+            if (found == null && deep != null) {
+                // '**' followed by more segments: let it swallow zero or more segments
+                int from = start;
+                while (found == null) {
+                    found = deep.match(path, from);
+                    if (from >= path.length()) {
+                        break;
+                    }
+                    from = skipSeparators(path, segmentEnd(path, from));
+                }
+            }
+            return found != null ? found : catchAll;
+        }
+
+        private Node<V> literal(String path, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + path.charAt(i);
+            }
+            int length = end - start;
+            for (int slot = hash & literalMask; literalKeys[slot] != null; slot = (slot + 1) & literalMask) {
+                String key = literalKeys[slot];
+                if (key.length() == length && path.regionMatches(start, key, 0, length)) {
+                    return literalNodes[slot];
+                }
+            }
+            return null;
+        }
+    }
+}
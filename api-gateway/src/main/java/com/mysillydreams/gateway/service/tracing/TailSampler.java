@@ -0,0 +1,348 @@
+package com.mysillydreams.gateway.service.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.mysillydreams.gateway.config.TracingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Tail-based sampling of recorded gateway traces, as the first Brave span handler.
+ * Finished spans are held per trace until the trace's gateway.request span ends. That span decides:
+ * the trace is exported when it was slow, failed, fell back to a fallback route, was cut off (timeouts
+ * cancel the gateway chain) or won the baseline draw; otherwise everything held is dropped. The decision
+ * sticks for tracing.tail-sampling.window, so late spans follow it.
+ * Memory is capped by a ring of maxTraces slots with at most maxSpansPerTrace spans each. Each new trace
+ * first retires the traces past their window from the oldest end of the ring, so an undecided trace is
+ * held for at most the window; one pushed out of the ring or past its window before deciding is dropped
+ * and counted.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TailSampler extends SpanHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TailSampler.class);
+
+    public static final String ROOT_SPAN_NAME = "gateway.request";
+    public static final String ROUTE_TAG = "gateway.route";
+    public static final String FALLBACK_TAG = "gateway.fallback";
+
+    private static final String STATUS_TAG = "http.status_code";
+    private static final String SIGNAL_TAG = "reactor.signal";
+
+    private final TracingProperties tracingProperties;
+    private final Supplier<List<SpanHandler>> exporters;
+    private final LongSupplier nanoClock;
+    private final DoubleSupplier random;
+    private final Map<Long, PendingTrace> pending = new ConcurrentHashMap<>();
+    private final PendingTrace[] ring;
+    private final ReentrantLock ringLock = new ReentrantLock();
+    private final AtomicInteger undecided = new AtomicInteger();
+    private int cursor;
+    private int oldest;
+    private int occupied;
+    private volatile Settings settings;
+
+    private final Map<String, Counter> kept = new ConcurrentHashMap<>();
+    private final Map<String, Counter> dropped = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public TailSampler(TracingProperties tracingProperties, MeterRegistry meterRegistry,
+                       ObjectProvider<SpanHandler> spanHandlers) {
+        this(tracingProperties, meterRegistry, System::nanoTime, () -> ThreadLocalRandom.current().nextDouble(),
+                new Supplier<>() {
+                    private volatile List<SpanHandler> handlers;
+
+                    // Resolved on first export: the other handlers are created alongside the Tracing bean
+                    @Override
+                    public List<SpanHandler> get() {
+                        List<SpanHandler> resolved = handlers;
+                        if (resolved == null) {
+                            resolved = spanHandlers.orderedStream()
+                                    .filter(handler -> !(handler instanceof TailSampler))
+                                    .toList();
+                            handlers = resolved;
+                        }
+                        return resolved;
+                    }
+                });
+    }
+
+    TailSampler(TracingProperties tracingProperties, MeterRegistry meterRegistry, LongSupplier nanoClock,
+                DoubleSupplier random, Supplier<List<SpanHandler>> exporters) {
+        this.tracingProperties = tracingProperties;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+        this.random = random;
+        this.exporters = exporters;
+        this.settings = Settings.of(tracingProperties.getTailSampling());
+        this.ring = new PendingTrace[tracingProperties.getTailSampling().getMaxTraces()];
+
+        Gauge.builder("gateway.tracing.tail.pending", undecided, AtomicInteger::get)
+                .description("Undecided traces held by the tail sampler")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        Settings current = settings;
+        if (!current.enabled || cause != Cause.FINISHED) {
+            return true;
+        }
+        long now = nanoClock.getAsLong();
+        long traceId = context.traceId();
+        PendingTrace trace = pending.get(traceId);
+        if (trace == null) {
+            trace = register(traceId, now);
+        }
+        boolean root = ROOT_SPAN_NAME.equals(span.name());
+
+        TraceContext[] heldContexts;
+        MutableSpan[] heldSpans;
+        int held;
+        String reason;
+        synchronized (trace) {
+            if (trace.state == State.KEEP) {
+                return true;
+            }
+            if (trace.state == State.DROP) {
+                return false;
+            }
+            if (now - trace.createdNanos > current.windowNanos) {
+                drop(trace, "expired", 1);
+                return false;
+            }
+            if (!root) {
+                if (!trace.add(context, span)) {
+                    dropCounter("span_limit").increment();
+                }
+                return false;
+            }
+            reason = keepReason(span, current);
+            if (reason == null) {
+                drop(trace, "sampled_out", 1);
+                return false;
+            }
+            trace.state = State.KEEP;
+            undecided.decrementAndGet();
+            heldContexts = trace.contexts;
+            heldSpans = trace.spans;
+            held = trace.size;
+            trace.release();
+        }
+
+        keepCounter(reason).increment();
+        export(heldContexts, heldSpans, held);
+        // The root span itself carries on to the remaining handlers
+        return true;
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void reconfigure() {
+        settings = Settings.of(tracingProperties.getTailSampling());
+        logger.info("Tail sampling {}", settings.enabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * Why the trace ending with this gateway.request span should be exported, or null to drop it
+     */
+    String keepReason(MutableSpan root, Settings current) {
+        String signal = root.tag(SIGNAL_TAG);
+        if (root.error() != null || isServerError(root.tag(STATUS_TAG)) || "onError".equals(signal)) {
+            return "error";
+        }
+        if (root.tag(FALLBACK_TAG) != null) {
+            return "fallback";
+        }
+        if ("cancel".equals(signal)) {
+            return "cut_off";
+        }
+        long durationMicros = root.finishTimestamp() - root.startTimestamp();
+        if (durationMicros >= current.latencyThresholdMicros(root.tag(ROUTE_TAG))) {
+            return "latency";
+        }
+        if (current.baselineProbability > 0.0 && random.getAsDouble() < current.baselineProbability) {
+            return "baseline";
+        }
+        return null;
+    }
+
+    private PendingTrace register(long traceId, long now) {
+        ringLock.lock();
+        try {
+            PendingTrace existing = pending.get(traceId);
+            if (existing != null) {
+                return existing;
+            }
+            long windowNanos = settings.windowNanos;
+            while (occupied > 0 && now - ring[oldest].createdNanos > windowNanos) {
+                retireOldest("expired");
+            }
+            if (occupied == ring.length) {
+                retireOldest("overflow");
+            }
+            PendingTrace created = new PendingTrace(traceId, now, settings.maxSpansPerTrace);
+            ring[cursor] = created;
+            cursor = (cursor + 1) % ring.length;
+            occupied++;
+            undecided.incrementAndGet();
+            pending.put(traceId, created);
+            return created;
+        } finally {
+            ringLock.unlock();
+        }
+    }
+
+    /**
+     * Frees the oldest ring slot, dropping its trace if still undecided; called under ringLock
+     */
+    private void retireOldest(String reason) {
+        PendingTrace retired = ring[oldest];
+        ring[oldest] = null;
+        oldest = (oldest + 1) % ring.length;
+        occupied--;
+        pending.remove(retired.traceId, retired);
+        synchronized (retired) {
+            if (retired.state == State.PENDING) {
+                drop(retired, reason, 0);
+            }
+        }
+    }
+
+    /**
+     * Drops everything held for an undecided trace; extra counts a span that was never added
+     */
+    private void drop(PendingTrace trace, String reason, int extra) {
+        trace.state = State.DROP;
+        undecided.decrementAndGet();
+        dropCounter(reason).increment(trace.size + extra);
+        trace.release();
+    }
+
+    private void export(TraceContext[] contexts, MutableSpan[] spans, int size) {
+        if (size == 0) {
+            return;
+        }
+        List<SpanHandler> handlers = exporters.get();
+        for (int i = 0; i < size; i++) {
+            for (SpanHandler handler : handlers) {
+                if (!handler.end(contexts[i], spans[i], Cause.FINISHED)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private Counter keepCounter(String reason) {
+        return kept.computeIfAbsent(reason, r -> Counter.builder("gateway.tracing.tail.kept")
+                .tag("reason", r)
+                .description("Traces exported by the tail sampler")
+                .register(meterRegistry));
+    }
+
+    private Counter dropCounter(String reason) {
+        return dropped.computeIfAbsent(reason, r -> Counter.builder("gateway.tracing.tail.dropped")
+                .tag("reason", r)
+                .description("Spans dropped by the tail sampler")
+                .register(meterRegistry));
+    }
+
+    private static boolean isServerError(String status) {
+        return status != null && status.length() == 3 && status.charAt(0) == '5';
+    }
+
+    private enum State { PENDING, KEEP, DROP }
+
+    record Settings(boolean enabled, long windowNanos, int maxSpansPerTrace, long latencyThresholdMicros,
+                    Map<String, Long> routeLatencyThresholdMicros, double baselineProbability) {
+
+        static Settings of(TracingProperties.TailSampling config) {
+            Map<String, Long> routeThresholds = new HashMap<>();
+            config.getRouteLatencyThresholds().forEach((route, threshold) -> routeThresholds.put(route, micros(threshold)));
+            return new Settings(config.isEnabled(), config.getWindow().toNanos(), config.getMaxSpansPerTrace(),
+                    micros(config.getLatencyThreshold()), routeThresholds, config.getBaselineProbability());
+        }
+
+        long latencyThresholdMicros(String routeId) {
+            if (routeId == null) {
+                return latencyThresholdMicros;
+            }
+            return routeLatencyThresholdMicros.getOrDefault(routeId, latencyThresholdMicros);
+        }
+
+        private static long micros(Duration duration) {
+            return duration.toNanos() / 1_000;
+        }
+    }
+
+    /**
+     * Spans held for one undecided trace; guarded by its own monitor
+     */
+    private static final class PendingTrace {
+
+        private final long traceId;
+        private final long createdNanos;
+        private final int capacity;
+        private TraceContext[] contexts;
+        private MutableSpan[] spans;
+        private int size;
+        private State state = State.PENDING;
+
+        PendingTrace(long traceId, long createdNanos, int capacity) {
+            this.traceId = traceId;
+            this.createdNanos = createdNanos;
+            this.capacity = capacity;
+        }
+
+        boolean add(TraceContext context, MutableSpan span) {
+            if (size == capacity) {
+                return false;
+            }
+            if (spans == null) {
+                // Most traces hold one or two spans before their root ends
+                int initial = Math.min(capacity, 4);
+                contexts = new TraceContext[initial];
+                spans = new MutableSpan[initial];
+            } else if (size == spans.length) {
+                int grown = Math.min(capacity, size * 2);
+                contexts = Arrays.copyOf(contexts, grown);
+                spans = Arrays.copyOf(spans, grown);
+            }
+            contexts[size] = context;
+            spans[size] = span;
+            size++;
+            return true;
+        }
+
+        void release() {
+            contexts = null;
+            spans = null;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.mysillydreams.gateway.service.tracing;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random W3C trace and span ids for requests that are propagated without a recorded span
+ */
+public final class TraceIds {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private TraceIds() {
+    }
+
+    /**
+     * 32 lowercase hex characters, never all zeros
+     */
+    public static String traceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return HEX.toHexDigits(random.nextLong()) + HEX.toHexDigits(nonZero(random));
+    }
+
+    /**
+     * 16 lowercase hex characters, never all zeros
+     */
+    public static String spanId() {
+        return HEX.toHexDigits(nonZero(ThreadLocalRandom.current()));
+    }
+
+    private static long nonZero(ThreadLocalRandom random) {
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        return id;
+    }
+}
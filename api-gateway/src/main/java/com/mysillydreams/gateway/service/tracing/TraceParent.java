@@ -0,0 +1,148 @@
+package com.mysillydreams.gateway.service.tracing;
+
+/**
+ * W3C traceparent header, parsed in place.
+ * Parsing validates the header without splitting or copying it; the trace and parent ids are only
+ * cut out of the header when asked for. Formatting writes the 55 characters into one char array.
+ * Layout: version(2) "-" trace-id(32) "-" parent-id(16) "-" trace-flags(2)
+ */
+public final class TraceParent {
+
+    private static final int LENGTH = 55;
+    private static final int TRACE_ID_OFFSET = 3;
+    private static final int PARENT_ID_OFFSET = 36;
+    private static final int FLAGS_OFFSET = 53;
+    private static final int TRACE_ID_LENGTH = 32;
+    private static final int SPAN_ID_LENGTH = 16;
+    private static final byte SAMPLED = 0x01;
+
+    private final String header;
+    private final int offset;
+    private final boolean sampled;
+
+    private TraceParent(String header, int offset, boolean sampled) {
+        this.header = header;
+        this.offset = offset;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Parses a traceparent header value; null when it is absent or invalid, in which case the
+     * request starts a new trace and any tracestate is dropped
+     */
+    public static TraceParent parse(String header) {
+        if (header == null) {
+            return null;
+        }
+        int from = 0;
+        int to = header.length();
+        while (from < to && isOptionalWhitespace(header.charAt(from))) {
+            from++;
+        }
+        while (to > from && isOptionalWhitespace(header.charAt(to - 1))) {
+            to--;
+        }
+        if (to - from < LENGTH) {
+            return null;
+        }
+
+        int version = hexByte(header, from);
+        if (version < 0 || version == 0xff) {
+            return null;
+        }
+        // Version 00 is exactly 55 characters; later versions may append fields after a dash
+        if (version == 0 ? to - from != LENGTH : to - from > LENGTH && header.charAt(from + LENGTH) != '-') {
+            return null;
+        }
+        if (header.charAt(from + 2) != '-' || header.charAt(from + PARENT_ID_OFFSET - 1) != '-'
+                || header.charAt(from + FLAGS_OFFSET - 1) != '-') {
+            return null;
+        }
+        if (!isNonZeroHex(header, from + TRACE_ID_OFFSET, from + TRACE_ID_OFFSET + TRACE_ID_LENGTH)
+                || !isNonZeroHex(header, from + PARENT_ID_OFFSET, from + PARENT_ID_OFFSET + SPAN_ID_LENGTH)) {
+            return null;
+        }
+        int flags = hexByte(header, from + FLAGS_OFFSET);
+        if (flags < 0) {
+            return null;
+        }
+        return new TraceParent(header, from, (flags & SAMPLED) != 0);
+    }
+
+    /**
+     * traceparent for the given ids. 64-bit trace ids are left-padded with zeros to 128 bits.
+     */
+    public static String format(String traceId, String spanId, boolean sampled) {
+        char[] chars = new char[LENGTH];
+        chars[0] = '0';
+        chars[1] = '0';
+        chars[2] = '-';
+        int pad = TRACE_ID_LENGTH - traceId.length();
+        for (int i = 0; i < pad; i++) {
+            chars[TRACE_ID_OFFSET + i] = '0';
+        }
+        traceId.getChars(0, traceId.length(), chars, TRACE_ID_OFFSET + pad);
+        chars[PARENT_ID_OFFSET - 1] = '-';
+        spanId.getChars(0, SPAN_ID_LENGTH, chars, PARENT_ID_OFFSET);
+        chars[FLAGS_OFFSET - 1] = '-';
+        chars[FLAGS_OFFSET] = '0';
+        chars[FLAGS_OFFSET + 1] = sampled ? '1' : '0';
+        return new String(chars);
+    }
+
+    /**
+     * 32 lowercase hex characters
+     */
+    public String traceId() {
+        return header.substring(offset + TRACE_ID_OFFSET, offset + TRACE_ID_OFFSET + TRACE_ID_LENGTH);
+    }
+
+    /**
+     * Span id of the caller, 16 lowercase hex characters
+     */
+    public String parentId() {
+        return header.substring(offset + PARENT_ID_OFFSET, offset + PARENT_ID_OFFSET + SPAN_ID_LENGTH);
+    }
+
+    /**
+     * The caller's sampling decision (trace-flags bit 0)
+     */
+    public boolean sampled() {
+        return sampled;
+    }
+
+    private static boolean isNonZeroHex(String text, int from, int to) {
+        boolean nonZero = false;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (hexValue(c) < 0) {
+                return false;
+            }
+            nonZero |= c != '0';
+        }
+        return nonZero;
+    }
+
+    private static int hexByte(String text, int at) {
+        int high = hexValue(text.charAt(at));
+        int low = hexValue(text.charAt(at + 1));
+        return high < 0 || low < 0 ? -1 : high << 4 | low;
+    }
+
+    /**
+     * Lowercase hex only; the spec treats uppercase ids as invalid
+     */
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isOptionalWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
@@ -0,0 +1,211 @@
+package com.mysillydreams.gateway.service.tracing;
+
+import brave.sampler.Sampler;
+import com.mysillydreams.gateway.config.TracingProperties;
+import com.mysillydreams.gateway.service.ratelimit.LocalTokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Head-based sampling decisions for TracingFilter.
+ * A new trace is sampled when it passes the tracing.sampling.probability draw and its route still has
+ * budget in a per-route token bucket refilled at maxTracesPerSecond; a continued trace follows the caller.
+ * Decisions are counted per route in gateway.tracing.sampling; the route ids come from the route table,
+ * so the tag set stays small.
+ * The settings are read once per config refresh instead of through the refresh-scoped properties per request.
+ * Brave's own root sampler is driven from here too (see braveSampler), so no other instrumentation starts
+ * a recorded trace behind these decisions.
+ */
+@Component
+public class TraceSampler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceSampler.class);
+
+    private static final String DECISIONS = "gateway.tracing.sampling";
+
+    /** Set while TracingFilter starts the root span of a trace sampled here */
+    private static final ThreadLocal<Boolean> STARTING_SAMPLED_ROOT = new ThreadLocal<>();
+
+    private final TracingProperties tracingProperties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, RouteSampling> routes = new ConcurrentHashMap<>();
+    private volatile Settings settings;
+
+    @Autowired
+    public TraceSampler(TracingProperties tracingProperties, MeterRegistry meterRegistry) {
+        this(tracingProperties, meterRegistry, System::nanoTime);
+    }
+
+    TraceSampler(TracingProperties tracingProperties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.tracingProperties = tracingProperties;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+        this.settings = Settings.of(tracingProperties.getSampling());
+    }
+
+    /**
+     * Whether a new trace should be recorded for a request on this route
+     */
+    public boolean sample(String routeId) {
+        RouteSampling route = route(routeId);
+        double probability = settings.probability;
+        if (probability < 1.0 && (probability <= 0.0 || ThreadLocalRandom.current().nextDouble() >= probability)) {
+            route.droppedByRatio.increment();
+            return false;
+        }
+        if (route.budget != null && !route.budget.tryAcquire(nanoClock.getAsLong())) {
+            route.droppedByRateCap.increment();
+            return false;
+        }
+        route.sampled.increment();
+        return true;
+    }
+
+    /**
+     * Whether a request that continues an inbound trace should be recorded. The caller's decision is kept:
+     * an unsampled parent is never traced here, a sampled one is unless the route has used up its budget.
+     */
+    public boolean sampleContinued(String routeId, boolean parentSampled) {
+        RouteSampling route = route(routeId);
+        if (!parentSampled) {
+            route.parentUnsampled.increment();
+            return false;
+        }
+        if (route.budget != null && !route.budget.tryAcquire(nanoClock.getAsLong())) {
+            route.droppedByRateCap.increment();
+            return false;
+        }
+        route.parentSampled.increment();
+        return true;
+    }
+
+    /**
+     * Whether unsampled requests that fail should still record a span
+     */
+    public boolean alwaysSampleErrors() {
+        return settings.alwaysSampleErrors;
+    }
+
+    /**
+     * Counts a span recorded for an unsampled request because it failed
+     */
+    public void recordErrorSample(String routeId) {
+        route(routeId).sampledOnError.increment();
+    }
+
+    /**
+     * Brave sampler for new root spans: records only the roots started through startSampledRoot, i.e. traces
+     * this sampler already accepted. Roots from any other instrumentation are left unsampled.
+     */
+    public Sampler braveSampler() {
+        return RootSampler.INSTANCE;
+    }
+
+    /**
+     * Starts the root span of a trace accepted by sample(routeId); Brave asks its sampler on this thread
+     */
+    public <T> T startSampledRoot(Supplier<T> start) {
+        STARTING_SAMPLED_ROOT.set(Boolean.TRUE);
+        try {
+            return start.get();
+        } finally {
+            STARTING_SAMPLED_ROOT.remove();
+        }
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void reconfigure() {
+        settings = Settings.of(tracingProperties.getSampling());
+        // Route budgets are rebuilt lazily with the new caps; the counters resolve to the same meters
+        routes.clear();
+        logger.info("Trace sampling probability {}, {} traces/s per route", settings.probability,
+                settings.maxTracesPerSecond == 0 ? "no cap on" : settings.maxTracesPerSecond);
+    }
+
+    private RouteSampling route(String routeId) {
+        RouteSampling route = routes.get(routeId);
+        if (route == null) {
+            route = routes.computeIfAbsent(routeId, id -> new RouteSampling(id, settings));
+        }
+        return route;
+    }
+
+    private record Settings(double probability, int maxTracesPerSecond, Map<String, Integer> routeMaxTracesPerSecond,
+                            boolean alwaysSampleErrors) {
+
+        static Settings of(TracingProperties.Sampling sampling) {
+            return new Settings(sampling.getProbability(), sampling.getMaxTracesPerSecond(),
+                    new HashMap<>(sampling.getRouteMaxTracesPerSecond()), sampling.isAlwaysSampleErrors());
+        }
+
+        int maxTracesPerSecond(String routeId) {
+            return routeMaxTracesPerSecond.getOrDefault(routeId, maxTracesPerSecond);
+        }
+    }
+
+    private static final class RootSampler extends Sampler {
+
+        private static final RootSampler INSTANCE = new RootSampler();
+
+        @Override
+        public boolean isSampled(long traceId) {
+            return STARTING_SAMPLED_ROOT.get() != null;
+        }
+
+        @Override
+        public String toString() {
+            return "TraceSamplerRootSampler";
+        }
+    }
+
+    /**
+     * Trace budget and decision counters of one route
+     */
+    private final class RouteSampling {
+
+        private final LocalTokenBucket budget;
+        private final Counter sampled;
+        private final Counter droppedByRatio;
+        private final Counter droppedByRateCap;
+        private final Counter sampledOnError;
+        private final Counter parentSampled;
+        private final Counter parentUnsampled;
+
+        RouteSampling(String routeId, Settings settings) {
+            int maxTracesPerSecond = settings.maxTracesPerSecond(routeId);
+            // One second of burst, so a cap of N never records more than about 2N traces in any second
+            this.budget = maxTracesPerSecond > 0
+                    ? new LocalTokenBucket(maxTracesPerSecond, maxTracesPerSecond, nanoClock.getAsLong())
+                    : null;
+            this.sampled = decisionCounter(routeId, "sampled");
+            this.droppedByRatio = decisionCounter(routeId, "dropped_ratio");
+            this.droppedByRateCap = decisionCounter(routeId, "dropped_rate_cap");
+            this.sampledOnError = decisionCounter(routeId, "sampled_error");
+            this.parentSampled = decisionCounter(routeId, "parent_sampled");
+            this.parentUnsampled = decisionCounter(routeId, "parent_unsampled");
+        }
+
+        private Counter decisionCounter(String routeId, String decision) {
+            return Counter.builder(DECISIONS)
+                    .tag("route", routeId)
+                    .tag("decision", decision)
+                    .description("Gateway trace sampling decisions")
+                    .register(meterRegistry);
+        }
+    }
+}
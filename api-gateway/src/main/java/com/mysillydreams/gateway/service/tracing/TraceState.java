@@ -0,0 +1,70 @@
+package com.mysillydreams.gateway.service.tracing;
+
+/**
+ * W3C tracestate handling for the gateway, which has no vendor entry of its own and forwards the
+ * caller's list as is. The header is scanned in place: a well-formed list within the limits is returned
+ * as the same String, an over-long one is cut at a member boundary, and a malformed one is dropped.
+ */
+public final class TraceState {
+
+    static final int MAX_MEMBERS = 32;
+    static final int MAX_LENGTH = 512;
+
+    private TraceState() {
+    }
+
+    /**
+     * The tracestate to forward: the header itself when valid, its longest prefix of whole members within
+     * 32 members and 512 characters when too long, or null when empty or malformed
+     */
+    public static String sanitize(String header) {
+        if (header == null) {
+            return null;
+        }
+        int length = header.length();
+        int members = 0;
+        int keepUntil = -1;
+        int start = 0;
+        while (start <= length) {
+            int comma = header.indexOf(',', start);
+            int end = comma < 0 ? length : comma;
+            int from = skipWhitespace(header, start, end);
+            int to = trimWhitespace(header, from, end);
+            if (from < to) {
+                int equals = header.indexOf('=', from);
+                if (equals <= from || equals >= to - 1) {
+                    return null;
+                }
+                members++;
+                if (members <= MAX_MEMBERS && to <= MAX_LENGTH) {
+                    keepUntil = to;
+                }
+            }
+            if (comma < 0) {
+                break;
+            }
+            start = comma + 1;
+        }
+        if (keepUntil < 0) {
+            return null;
+        }
+        if (members <= MAX_MEMBERS && length <= MAX_LENGTH) {
+            return header;
+        }
+        return header.substring(0, keepUntil);
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        while (from < to && (text.charAt(from) == ' ' || text.charAt(from) == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimWhitespace(String text, int from, int to) {
+        while (to > from && (text.charAt(to - 1) == ' ' || text.charAt(to - 1) == '\t')) {
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,37 @@
+-- GCRA: one key per client holding the theoretical arrival time (TAT) in microseconds.
+-- A request costing n tokens is allowed when it would not push the TAT further ahead of now than
+-- burst emission intervals; otherwise nothing is written.
+redis.replicate_commands()
+
+local tat_key = KEYS[1]
+
+local rate = tonumber(ARGV[1])
+local burst = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local interval = 1000000 / rate
+local tolerance = interval * burst
+
+local tat = tonumber(redis.call('GET', tat_key))
+if tat == nil or tat < now then
+  tat = now
+end
+
+local new_tat = tat + interval * requested
+local allowed = 0
+local retry_after = 0
+if new_tat - now <= tolerance then
+  allowed = 1
+  tat = new_tat
+  redis.call('SET', tat_key, string.format('%.0f', tat), 'PX', math.max(1, math.ceil((tat - now) / 1000)))
+else
+  retry_after = new_tat - tolerance - now
+end
+
+local remaining = math.max(0, math.floor((tolerance - (tat - now)) / interval))
+
+-- { allowed, remaining, retry after ms, full again after ms }
+return { allowed, remaining, math.ceil(retry_after / 1000), math.ceil((tat - now) / 1000) }
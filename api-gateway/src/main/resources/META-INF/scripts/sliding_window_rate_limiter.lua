@@ -0,0 +1,52 @@
+-- Sliding window counter: one hash per client with a count per fixed window, keyed by window number.
+-- The count over the last window length is estimated as the current window's count plus the previous
+-- window's count weighted by how much of it still overlaps, so there is no burst at window edges.
+redis.replicate_commands()
+
+local counts_key = KEYS[1]
+
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local current = math.floor(now / window)
+local elapsed = now - current * window
+
+local current_count = tonumber(redis.call('HGET', counts_key, current)) or 0
+local previous_count = tonumber(redis.call('HGET', counts_key, current - 1)) or 0
+local estimated = previous_count * (window - elapsed) / window + current_count
+
+local allowed = 0
+local retry_after = 0
+if estimated + requested <= limit then
+  allowed = 1
+  current_count = redis.call('HINCRBY', counts_key, current, requested)
+  estimated = estimated + requested
+  -- Drop every window older than the previous one, not just current - 2: a client that skipped a
+  -- window inside the expiry would otherwise keep stale fields for as long as it stays active.
+  -- Pruned on every write, so the hash never holds more than a few fields.
+  for _, field in ipairs(redis.call('HKEYS', counts_key)) do
+    if tonumber(field) < current - 1 then
+      redis.call('HDEL', counts_key, field)
+    end
+  end
+  redis.call('PEXPIRE', counts_key, window * 2)
+elseif current_count + requested <= limit and previous_count > 0 then
+  -- Wait until enough of the previous window has slid out
+  local overlap = (limit - current_count - requested) / previous_count
+  retry_after = math.max(1, math.ceil(window * (1 - overlap) - elapsed))
+else
+  retry_after = window - elapsed
+end
+
+local remaining = math.max(0, math.floor(limit - estimated))
+local reset_after = window - elapsed
+if current_count > 0 then
+  reset_after = reset_after + window
+end
+
+-- { allowed, remaining, retry after ms, full again after ms }
+return { allowed, remaining, retry_after, reset_after }
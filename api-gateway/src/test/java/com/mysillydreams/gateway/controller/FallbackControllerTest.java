@@ -1,6 +1,7 @@
 package com.mysillydreams.gateway.controller;
 
 import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.metrics.GatewayMeters;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
@@ -30,7 +31,7 @@ class FallbackControllerTest {
     @BeforeEach
     void setUp() {
         meterRegistry = new SimpleMeterRegistry();
-        fallbackController = new FallbackController(meterRegistry);
+        fallbackController = new FallbackController(new GatewayMeters(meterRegistry));
         
         // Set configuration values using reflection
         ReflectionTestUtils.setField(fallbackController, "retryAfter", Duration.ofSeconds(30));
@@ -0,0 +1,178 @@
+package com.mysillydreams.gateway.filter;
+
+import com.mysillydreams.gateway.config.TimeoutProperties;
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for deadline propagation across upstream attempts
+ */
+class DeadlineFilterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final List<HttpHeaders> forwarded = new ArrayList<>();
+    private final GatewayFilterChain chain = exchange -> {
+        // Copied: a mutated request writes through to the headers of the one it was built from
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(exchange.getRequest().getHeaders());
+        forwarded.add(headers);
+        return Mono.empty();
+    };
+
+    private TimeoutProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private DeadlineFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TimeoutProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new DeadlineFilter(properties, meterRegistry, clock::get);
+    }
+
+    @Test
+    void shouldForwardAShrinkingBudgetOnEveryAttempt() {
+        // Given: a 2s deadline
+        MockServerWebExchange exchange = exchange(clock.get() + 2_000);
+
+        // When: the retry filter re-runs the chain 1.2s later
+        filter.filter(exchange, chain).block();
+        clock.addAndGet(1_200);
+        filter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(forwarded).hasSize(2);
+        assertThat(forwarded.get(0).getFirst(HeaderConstants.X_REQUEST_DEADLINE)).isEqualTo("1002000");
+        assertThat(forwarded.get(0).getFirst(HeaderConstants.X_REQUEST_TIMEOUT)).isEqualTo("2000m");
+        assertThat(forwarded.get(1).getFirst(HeaderConstants.X_REQUEST_DEADLINE)).isEqualTo("1002000");
+        assertThat(forwarded.get(1).getFirst(HeaderConstants.X_REQUEST_TIMEOUT)).isEqualTo("800m");
+        assertThat((Integer) exchange.getAttribute(HeaderConstants.UPSTREAM_ATTEMPT_ATTRIBUTE)).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRefuseRetriesBelowTheBudgetFloor() {
+        // Given: 250ms floor, first attempt used up all but 100ms
+        MockServerWebExchange exchange = exchange(clock.get() + 1_000);
+        filter.filter(exchange, chain).block();
+        clock.addAndGet(900);
+
+        // When/Then
+        assertThatThrownBy(() -> filter.filter(exchange, chain).block())
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        ex -> assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+        assertThat(forwarded).hasSize(1);
+        assertThat(meterRegistry.get("gateway.deadline.retry.refused").tag("route", "cms-api").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldAlwaysStartTheFirstAttempt() {
+        // Given: the deadline is closer than the floor before the request is ever sent
+        MockServerWebExchange exchange = exchange(clock.get() + 100);
+
+        // When
+        filter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(forwarded).hasSize(1);
+        assertThat(forwarded.get(0).getFirst(HeaderConstants.X_REQUEST_TIMEOUT)).isEqualTo("100m");
+    }
+
+    @Test
+    void shouldUseConfiguredHeadersAndSkipBlankOnes() {
+        // Given
+        properties.getDeadline().setHeader("");
+        properties.getDeadline().setTimeoutHeader("grpc-timeout");
+        properties.getDeadline().setMinRetryBudget(Duration.ZERO);
+        MockServerWebExchange exchange = exchange(clock.get() + 500);
+
+        // When
+        filter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(forwarded.get(0).containsKey(HeaderConstants.X_REQUEST_DEADLINE)).isFalse();
+        assertThat(forwarded.get(0).getFirst("grpc-timeout")).isEqualTo("500m");
+    }
+
+    @Test
+    void shouldPassThroughWithoutADeadlineOrWhenDisabled() {
+        // Given
+        MockServerWebExchange noDeadline = MockServerWebExchange.from(MockServerHttpRequest.get("/api/contents/1"));
+        properties.getDeadline().setEnabled(false);
+        MockServerWebExchange disabled = exchange(clock.get() + 500);
+
+        // When
+        filter.filter(noDeadline, chain).block();
+        filter.filter(disabled, chain).block();
+
+        // Then
+        assertThat(forwarded).allSatisfy(headers -> assertThat(headers.containsKey(HeaderConstants.X_REQUEST_TIMEOUT)).isFalse());
+        assertThat(disabled.getAttributes()).doesNotContainKey(HeaderConstants.UPSTREAM_ATTEMPT_ATTRIBUTE);
+    }
+
+    @Test
+    void shouldStripClientDeadlineHeadersWithoutADeadlineOrWhenDisabled() {
+        // Given
+        MockServerWebExchange noDeadline = MockServerWebExchange.from(withClientDeadline());
+        MockServerWebExchange disabled = MockServerWebExchange.from(withClientDeadline());
+        disabled.getAttributes().put(HeaderConstants.REQUEST_DEADLINE_ATTRIBUTE, clock.get() + 500);
+
+        // When
+        filter.filter(noDeadline, chain).block();
+        properties.getDeadline().setEnabled(false);
+        filter.filter(disabled, chain).block();
+
+        // Then
+        assertThat(forwarded).hasSize(2).allSatisfy(headers -> {
+            assertThat(headers.containsKey(HeaderConstants.X_REQUEST_DEADLINE)).isFalse();
+            assertThat(headers.containsKey(HeaderConstants.X_REQUEST_TIMEOUT)).isFalse();
+        });
+    }
+
+    @Test
+    void shouldFormatGrpcTimeouts() {
+        // When/Then
+        assertThat(DeadlineFilter.grpcTimeout(-5)).isEqualTo("0m");
+        assertThat(DeadlineFilter.grpcTimeout(99_999_999)).isEqualTo("99999999m");
+        assertThat(DeadlineFilter.grpcTimeout(100_000_000)).isEqualTo("100000S");
+        assertThat(DeadlineFilter.grpcTimeout(Long.MAX_VALUE)).isEqualTo("99999999S");
+    }
+
+    private static MockServerHttpRequest withClientDeadline() {
+        return MockServerHttpRequest.get("/api/contents/1")
+                .header(HeaderConstants.X_REQUEST_DEADLINE, "9999999999999")
+                .header(HeaderConstants.X_REQUEST_TIMEOUT, "99999999S")
+                .build();
+    }
+
+    private static MockServerWebExchange exchange(long deadline) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/contents/1"));
+        exchange.getAttributes().put(HeaderConstants.REQUEST_DEADLINE_ATTRIBUTE, deadline);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, Route.async()
+                .id("cms-api")
+                .uri(URI.create("http://localhost:8081"))
+                .predicate(ignored -> true)
+                .build());
+        return exchange;
+    }
+}
@@ -0,0 +1,114 @@
+package com.mysillydreams.gateway.filter;
+
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.service.ratelimit.RateLimitHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the IETF RateLimit-* and Retry-After response headers
+ */
+class RateLimitHeadersFilterTest {
+
+    private final RateLimitHeadersFilter filter = new RateLimitHeadersFilter();
+
+    @Test
+    void shouldDeriveStandardHeadersOnAllowedResponses() {
+        // Given: RedisRateLimiter reported 150 of 200 tokens left, refilling at 100/s
+        MockServerWebExchange exchange = exchange();
+        limiterHeaders(exchange, "150", "200", "100");
+
+        // When
+        commit(exchange);
+
+        // Then
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertThat(headers.getFirst(HeaderConstants.RATE_LIMIT_LIMIT)).isEqualTo("200");
+        assertThat(headers.getFirst(HeaderConstants.RATE_LIMIT_REMAINING)).isEqualTo("150");
+        assertThat(headers.getFirst(HeaderConstants.RATE_LIMIT_RESET)).isEqualTo("1");
+        assertThat(headers.containsKey(HeaderConstants.RETRY_AFTER)).isFalse();
+    }
+
+    @Test
+    void shouldAddRetryAfterOnRejection() {
+        // Given
+        MockServerWebExchange exchange = exchange();
+        limiterHeaders(exchange, "0", "10", "5");
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+
+        // When
+        commit(exchange);
+
+        // Then
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertThat(headers.getFirst(HeaderConstants.RATE_LIMIT_REMAINING)).isEqualTo("0");
+        assertThat(headers.getFirst(HeaderConstants.RATE_LIMIT_RESET)).isEqualTo("2");
+        assertThat(headers.getFirst(HeaderConstants.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    void shouldSayNothingWhenTheLimiterFailedOpen() {
+        // Given
+        MockServerWebExchange exchange = exchange();
+        limiterHeaders(exchange, "-1", "10", "5");
+
+        // When
+        commit(exchange);
+
+        // Then
+        assertThat(exchange.getResponse().getHeaders().containsKey(HeaderConstants.RATE_LIMIT_REMAINING)).isFalse();
+    }
+
+    @Test
+    void shouldKeepValuesSetByTheLimiter() {
+        // Given: a Lua limiter already set exact values
+        MockServerWebExchange exchange = exchange();
+        limiterHeaders(exchange, "0", "10", "5");
+        RateLimitHeaders.of(false, 10, 0, 7, 3).forEach(exchange.getResponse().getHeaders()::set);
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+
+        // When
+        commit(exchange);
+
+        // Then
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertThat(headers.getFirst(HeaderConstants.RATE_LIMIT_RESET)).isEqualTo("7");
+        assertThat(headers.getFirst(HeaderConstants.RETRY_AFTER)).isEqualTo("3");
+    }
+
+    @Test
+    void shouldLeaveUnlimitedRoutesAlone() {
+        // Given
+        MockServerWebExchange exchange = exchange();
+
+        // When
+        commit(exchange);
+
+        // Then
+        assertThat(exchange.getResponse().getHeaders().containsKey(HeaderConstants.RATE_LIMIT_LIMIT)).isFalse();
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/contents/1"));
+    }
+
+    private static void limiterHeaders(MockServerWebExchange exchange, String remaining, String burst, String rate) {
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        headers.set(RedisRateLimiter.REMAINING_HEADER, remaining);
+        headers.set(RedisRateLimiter.BURST_CAPACITY_HEADER, burst);
+        headers.set(RedisRateLimiter.REPLENISH_RATE_HEADER, rate);
+        headers.set(RedisRateLimiter.REQUESTED_TOKENS_HEADER, "1");
+    }
+
+    private void commit(MockServerWebExchange exchange) {
+        filter.filter(exchange, chained -> Mono.empty()).block();
+        exchange.getResponse().setComplete().block();
+    }
+}
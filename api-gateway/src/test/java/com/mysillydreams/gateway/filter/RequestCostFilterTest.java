@@ -0,0 +1,119 @@
+package com.mysillydreams.gateway.filter;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.service.cache.BoundedCaches;
+import com.mysillydreams.gateway.service.ratelimit.ApiKeyIdentity;
+import com.mysillydreams.gateway.service.ratelimit.ClientIdentity;
+import com.mysillydreams.gateway.service.ratelimit.HeavyHitterTracker;
+import com.mysillydreams.gateway.service.ratelimit.RequestCost;
+import com.mysillydreams.gateway.service.ratelimit.RequestCostModel;
+import com.mysillydreams.gateway.service.ratelimit.TrustedProxyMatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for handing the request cost, including heavy-hitter penalties, to the rate limiters
+ */
+class RequestCostFilterTest {
+
+    private RateLimiterProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private ClientIdentity clientIdentity;
+
+    @BeforeEach
+    void setUp() {
+        RateLimiterProperties.CostRule search = new RateLimiterProperties.CostRule();
+        search.setRoute("cms-api");
+        search.setPath("/api/contents/search/**");
+        search.setMethods(List.of("GET"));
+        search.setTokens(5);
+        search.setQueryParams(Map.of("size", 20));
+        search.setMaxTokens(20);
+
+        properties = new RateLimiterProperties();
+        properties.setCosts(List.of(search));
+        meterRegistry = new SimpleMeterRegistry();
+        clientIdentity = new ClientIdentity(properties, new TrustedProxyMatcher(properties),
+                new ApiKeyIdentity(properties, new BoundedCaches(meterRegistry)));
+    }
+
+    @Test
+    void shouldHandTheCostToLimitersThroughTheContext() {
+        // Given
+        RequestCostFilter filter = new RequestCostFilter(new RequestCostModel(properties),
+                new HeavyHitterTracker(properties, meterRegistry), clientIdentity);
+        MockServerWebExchange exchange = routed("cms-api", MockServerHttpRequest.get("/api/contents/search?size=40"));
+
+        // When/Then
+        assertThat(costSeenByLimiters(filter, exchange)).isEqualTo(7);
+    }
+
+    @Test
+    void shouldPenalizeHeavyHittersByTheCombinedKey() {
+        // Given: only the combined key, used by combinedKeyResolver, crossed the threshold
+        properties.getHeavyHitters().getAutoTighten().setEnabled(true);
+        properties.getHeavyHitters().getAutoTighten().setThreshold(1);
+        HeavyHitterTracker heavyHitterTracker = new HeavyHitterTracker(properties, meterRegistry);
+        RequestCostFilter filter = new RequestCostFilter(new RequestCostModel(properties), heavyHitterTracker,
+                clientIdentity);
+        MockServerWebExchange exchange = routed("auth-admin", MockServerHttpRequest.get("/auth/admin/users"));
+        heavyHitterTracker.record(clientIdentity.combinedKey(exchange));
+
+        // When/Then
+        assertThat(costSeenByLimiters(filter, exchange)).isEqualTo(4);
+    }
+
+    @Test
+    void shouldChargePenalizedClientsAMultipleOfTheCost() {
+        // Given
+        RateLimiterProperties.AutoTighten autoTighten = properties.getHeavyHitters().getAutoTighten();
+        autoTighten.setEnabled(true);
+        autoTighten.setThreshold(10);
+        autoTighten.setCostMultiplier(4);
+        HeavyHitterTracker tracker = new HeavyHitterTracker(properties, meterRegistry);
+        RequestCostFilter filter = new RequestCostFilter(new RequestCostModel(properties), tracker, clientIdentity);
+        for (int i = 0; i < 10; i++) {
+            tracker.record("user:u-42");
+        }
+
+        // When/Then
+        assertThat(costSeenByLimiters(filter, exchange("u-42"))).isEqualTo(4);
+        assertThat(costSeenByLimiters(filter, exchange("u-7"))).isEqualTo(1);
+    }
+
+    private static int costSeenByLimiters(RequestCostFilter filter, MockServerWebExchange exchange) {
+        AtomicInteger seen = new AtomicInteger();
+        filter.filter(exchange, chained -> Mono.deferContextual(context -> {
+            seen.set(RequestCost.of(context));
+            return Mono.<Void>empty();
+        })).block();
+        return seen.get();
+    }
+
+    private static MockServerWebExchange exchange(String userId) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/contents/1")
+                .header(HeaderConstants.X_USER_ID, userId)
+                .remoteAddress(new InetSocketAddress("203.0.113.7", 443)));
+    }
+
+    private static MockServerWebExchange routed(String routeId, MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        Route route = Route.async().id(routeId).uri("http://localhost").predicate(e -> true).build();
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        return exchange;
+    }
+}
@@ -0,0 +1,134 @@
+package com.mysillydreams.gateway.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.metrics.GatewayMeters;
+import com.mysillydreams.gateway.service.RoleRegistry;
+import com.mysillydreams.gateway.service.RoleSet;
+import com.mysillydreams.gateway.service.VerifiedPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for bitset role parsing and route-level role checks
+ */
+class RequiredRolesFilterFactoryTest {
+
+    private RoleRegistry registry;
+    private SimpleMeterRegistry meterRegistry;
+    private RequiredRolesFilterFactory factory;
+    private AtomicBoolean forwarded;
+    private GatewayFilterChain chain;
+
+    @BeforeEach
+    void setUp() {
+        registry = new RoleRegistry();
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new RequiredRolesFilterFactory(new ObjectMapper(), new GatewayMeters(meterRegistry));
+        forwarded = new AtomicBoolean(false);
+        chain = exchange -> {
+            forwarded.set(true);
+            return Mono.empty();
+        };
+    }
+
+    @Test
+    void shouldInternEqualRoleSets() {
+        // When
+        RoleSet first = registry.parse("ROLE_USER,ROLE_EDITOR");
+        RoleSet second = registry.parse(" ROLE_EDITOR ROLE_USER ");
+
+        // Then
+        assertThat(first).isSameAs(second);
+        assertThat(first.contains("ROLE_USER")).isTrue();
+        assertThat(first.contains("ROLE_ADMIN")).isFalse();
+    }
+
+    @Test
+    void shouldMatchRoleNamesExactly() {
+        // Given
+        RoleSet required = registry.require("ROLE_ADMIN");
+
+        // When
+        RoleSet trainee = registry.parse("ROLE_ADMINISTRATOR_TRAINEE");
+
+        // Then
+        assertThat(trainee.containsAny(required)).isFalse();
+    }
+
+    @Test
+    void shouldForwardWhenAllRequiredRolesPresent() {
+        // Given
+        GatewayFilter filter = factory.allOf("ROLE_USER", "ROLE_EDITOR");
+        MockServerWebExchange exchange = exchangeWithRoles("ROLE_EDITOR,ROLE_USER,ROLE_VIEWER");
+
+        // When
+        filter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(forwarded).isTrue();
+    }
+
+    @Test
+    void shouldRejectWith403BeforeChainWhenRoleMissing() {
+        // Given
+        GatewayFilter filter = factory.allOf("ROLE_USER", "ROLE_EDITOR");
+        MockServerWebExchange exchange = exchangeWithRoles("ROLE_USER");
+
+        // When
+        filter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(forwarded).isFalse();
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(meterRegistry.get("gateway.authz.denied").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldAcceptAnyOfListedRoles() {
+        // Given
+        GatewayFilter filter = factory.anyOf("ROLE_ADMIN", "admin");
+        MockServerWebExchange exchange = exchangeWithRoles("admin");
+
+        // When
+        filter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(forwarded).isTrue();
+    }
+
+    @Test
+    void shouldRejectWith401WhenNoPrincipal() {
+        // Given
+        GatewayFilter filter = factory.anyOf("ROLE_ADMIN");
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/admin").build());
+
+        // When
+        filter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(forwarded).isFalse();
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private MockServerWebExchange exchangeWithRoles(String roles) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/admin").build());
+        VerifiedPrincipal principal = new VerifiedPrincipal("user-1", "alice", roles,
+                Instant.now().plusSeconds(60), "api-gateway", null);
+        exchange.getAttributes().put(HeaderConstants.VERIFIED_PRINCIPAL_ATTRIBUTE, principal);
+        return exchange;
+    }
+}
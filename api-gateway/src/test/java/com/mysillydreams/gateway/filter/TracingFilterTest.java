@@ -0,0 +1,122 @@
+package com.mysillydreams.gateway.filter;
+
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.mysillydreams.gateway.config.TracingProperties;
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.metrics.PathTemplateNormalizer;
+import com.mysillydreams.gateway.service.tracing.TraceParent;
+import com.mysillydreams.gateway.service.tracing.TraceSampler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.brave.bridge.BraveCurrentTraceContext;
+import io.micrometer.tracing.brave.bridge.BraveTracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the spans TracingFilter records for unsampled requests that fail
+ */
+class TracingFilterTest {
+
+    private static final String CALLER_TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String CALLER_SPAN_ID = "00f067aa0ba902b7";
+
+    private final List<MutableSpan> reported = new CopyOnWriteArrayList<>();
+    private final List<String> forwarded = new CopyOnWriteArrayList<>();
+    private final GatewayFilterChain failingChain = exchange -> {
+        forwarded.add(exchange.getRequest().getHeaders().getFirst(HeaderConstants.TRACEPARENT));
+        exchange.getResponse().setStatusCode(HttpStatus.BAD_GATEWAY);
+        return Mono.empty();
+    };
+
+    private Tracing tracing;
+    private TracingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        TracingProperties properties = new TracingProperties();
+        properties.getSampling().setProbability(0.0);
+        TraceSampler traceSampler = new TraceSampler(properties, new SimpleMeterRegistry());
+        tracing = Tracing.newBuilder()
+                .sampler(traceSampler.braveSampler())
+                .addSpanHandler(new SpanHandler() {
+                    @Override
+                    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                        reported.add(span);
+                        return true;
+                    }
+                })
+                .build();
+        BraveTracer tracer = new BraveTracer(tracing.tracer(),
+                new BraveCurrentTraceContext(tracing.currentTraceContext()));
+        filter = new TracingFilter(tracer, tracing.tracer(), properties, new PathTemplateNormalizer(), traceSampler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracing.close();
+    }
+
+    @Test
+    void shouldReportTheErrorSpanUnderThePropagatedSpanId() {
+        // Given: a caller that did not sample the trace
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/api/contents/1")
+                .header(HeaderConstants.TRACEPARENT, TraceParent.format(CALLER_TRACE_ID, CALLER_SPAN_ID, false)));
+
+        // When
+        filter.filter(exchange, failingChain).block();
+
+        // Then
+        TraceParent propagated = TraceParent.parse(forwarded.get(0));
+        assertThat(propagated.sampled()).isFalse();
+        assertThat(reported).singleElement().satisfies(span -> {
+            assertThat(span.traceId()).isEqualTo(CALLER_TRACE_ID);
+            assertThat(span.id()).isEqualTo(propagated.parentId());
+            assertThat(span.parentId()).isEqualTo(CALLER_SPAN_ID);
+            assertThat(span.tag("sampling.reason")).isEqualTo("error");
+        });
+    }
+
+    @Test
+    void shouldReportTheErrorSpanAsTheRootOfANewTrace() {
+        // Given
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/api/contents/1"));
+
+        // When
+        filter.filter(exchange, failingChain).block();
+
+        // Then
+        TraceParent propagated = TraceParent.parse(forwarded.get(0));
+        assertThat(reported).singleElement().satisfies(span -> {
+            assertThat(span.traceId()).isEqualTo(propagated.traceId());
+            assertThat(span.id()).isEqualTo(propagated.parentId());
+            assertThat(span.parentId()).isNull();
+        });
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, Route.async()
+                .id("cms-api")
+                .uri(URI.create("http://localhost:8081"))
+                .predicate(ignored -> true)
+                .build());
+        return exchange;
+    }
+}
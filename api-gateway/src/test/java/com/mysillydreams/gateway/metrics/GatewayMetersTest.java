@@ -0,0 +1,68 @@
+package com.mysillydreams.gateway.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for pre-resolved gateway meters
+ */
+class GatewayMetersTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private GatewayMeters gatewayMeters;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        gatewayMeters = new GatewayMeters(meterRegistry);
+    }
+
+    @Test
+    void shouldReuseRouteMetersForSameTemplateAndMethod() {
+        // When
+        GatewayMeters.RouteMeters first = gatewayMeters.route("/api/contents/{id}", "GET");
+        GatewayMeters.RouteMeters second = gatewayMeters.route("/api/contents/{id}", "GET");
+
+        // Then
+        assertThat(first).isSameAs(second);
+        assertThat(gatewayMeters.route("/api/contents/{id}", "POST")).isNotSameAs(first);
+    }
+
+    @Test
+    void shouldRecordResponsesWithExistingTagNames() {
+        // Given
+        GatewayMeters.RouteMeters route = gatewayMeters.route("/api/contents/{id}", "GET");
+
+        // When
+        route.request();
+        route.response(200, TimeUnit.MILLISECONDS.toNanos(5));
+        route.response(200, TimeUnit.MILLISECONDS.toNanos(7));
+        route.response(503, TimeUnit.MILLISECONDS.toNanos(9));
+
+        // Then
+        assertThat(meterRegistry.get("gateway.requests.total")
+                .tags("method", "GET", "path", "/api/contents/{id}").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("gateway.request.duration")
+                .tags("method", "GET", "path", "/api/contents/{id}", "status", "200").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("gateway.circuitbreaker.opens").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("gateway.errors.total").tag("status", "503").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldRegisterEachAuthFailureSeriesOnce() {
+        // When
+        gatewayMeters.authFailure("/api/users/{id}", "jwt_invalid");
+        gatewayMeters.authFailure("/api/users/{id}", "jwt_invalid");
+        gatewayMeters.authFailure("/api/users/{id}", "missing_or_malformed_header");
+
+        // Then
+        assertThat(meterRegistry.find("gateway.auth.failure").counters()).hasSize(2);
+        assertThat(meterRegistry.get("gateway.auth.failure").tag("reason", "jwt_invalid").counter().count())
+                .isEqualTo(2.0);
+    }
+}
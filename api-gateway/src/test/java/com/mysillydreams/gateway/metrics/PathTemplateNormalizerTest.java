@@ -0,0 +1,64 @@
+package com.mysillydreams.gateway.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for single-pass path template normalization
+ */
+class PathTemplateNormalizerTest {
+
+    private final PathTemplateNormalizer normalizer = new PathTemplateNormalizer(64);
+
+    @ParameterizedTest
+    @CsvSource({
+            "/api/contents/42, /api/contents/{id}",
+            "/api/contents/42/comments/7, /api/contents/{id}/comments/{id}",
+            "/api/users/123e4567-e89b-12d3-a456-426614174000, /api/users/{uuid}",
+            "/api/users/123E4567-E89B-12D3-A456-426614174000/roles, /api/users/{uuid}/roles",
+            "/api/files/deadbeefcafe, /api/files/{hash}",
+            "/api/health/live, /api/health/live",
+            "/api/contents/v2, /api/contents/v2",
+            "/api/cafe, /api/cafe",
+            "/api/contents/42abc, /api/contents/42abc",
+            "/api/contents/123-456, /api/contents/123-456",
+            "/api/contents/42/, /api/contents/{id}/",
+            "/, /"
+    })
+    void shouldReplaceOnlyWholeDynamicSegments(String path, String expected) {
+        assertThat(normalizer.normalize(path)).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldReturnSameInstanceForPathsSharingATemplate() {
+        // When
+        String first = normalizer.normalize("/api/contents/1");
+        String second = normalizer.normalize("/api/contents/2");
+
+        // Then
+        assertThat(first).isSameAs(second);
+    }
+
+    @Test
+    void shouldNotAllocateForStaticPaths() {
+        // Given
+        String path = "/api/health/ready";
+
+        // When/Then
+        assertThat(PathTemplateNormalizer.scan(path)).isSameAs(path);
+    }
+
+    @Test
+    void shouldKeepNormalizingPastCacheCapacity() {
+        // When
+        for (int i = 0; i < 1_000; i++) {
+            normalizer.normalize("/api/contents/" + i + "/static-" + i);
+        }
+
+        // Then
+        assertThat(normalizer.normalize("/api/contents/5/static-5")).isEqualTo("/api/contents/{id}/static-5");
+    }
+}
@@ -0,0 +1,100 @@
+package com.mysillydreams.gateway.metrics;
+
+import com.mysillydreams.gateway.config.MetricsConfiguration;
+import com.mysillydreams.gateway.config.MetricsProperties;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for per-route latency timers and the percentile snapshot
+ */
+class RouteLatencyRecorderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RouteLatencyRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        recorder = new RouteLatencyRecorder(meterRegistry, new MetricsProperties());
+    }
+
+    @Test
+    void shouldReportPercentilesPerRoute() {
+        // Given
+        for (int i = 1; i <= 1000; i++) {
+            recorder.record("cms-api", TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        recorder.record("cms-actuator", TimeUnit.MILLISECONDS.toNanos(3));
+
+        // When
+        Map<String, Map<String, Object>> snapshot = recorder.snapshot();
+
+        // Then
+        assertThat(snapshot).containsOnlyKeys("cms-actuator", "cms-api");
+        Map<String, Object> api = snapshot.get("cms-api");
+        assertThat(api.get("count")).isEqualTo(1000L);
+        assertThat((double) api.get("p50Ms")).isCloseTo(500.0, within(25.0));
+        assertThat((double) api.get("p99Ms")).isCloseTo(990.0, within(40.0));
+        assertThat(api).containsKeys("p90Ms", "p999Ms", "meanMs", "maxMs");
+    }
+
+    @Test
+    void shouldExportSloBucketsTaggedByRouteId() {
+        // Given
+        recorder.record("cms-api", TimeUnit.MILLISECONDS.toNanos(80));
+        recorder.record(null, TimeUnit.MILLISECONDS.toNanos(10));
+
+        // When
+        Timer timer = meterRegistry.get(RouteLatencyRecorder.METER_NAME).tag("route", "cms-api").timer();
+        CountAtBucket[] buckets = timer.takeSnapshot().histogramCounts();
+
+        // Then
+        assertThat(buckets).hasSize(7);
+        assertThat(buckets[0].count()).isZero();
+        assertThat(buckets[1].count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get(RouteLatencyRecorder.METER_NAME)
+                .tag("route", RouteLatencyRecorder.UNMATCHED_ROUTE).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRecordRouteLatencyForPathsExcludedFromRequestMetrics() {
+        // Given
+        GatewayMeters gatewayMeters = new GatewayMeters(meterRegistry);
+        MetricsConfiguration.GatewayMetricsFilter filter = new MetricsConfiguration.GatewayMetricsFilter(
+                gatewayMeters, new PathTemplateNormalizer(), recorder);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+        WebFilterChain chain = routed -> {
+            routed.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, Route.async()
+                    .id("cms-actuator")
+                    .uri(URI.create("http://localhost:8081"))
+                    .predicate(ignored -> true)
+                    .build());
+            return Mono.empty();
+        };
+
+        // When
+        filter.filter(exchange, chain).block();
+
+        // Then
+        assertThat(meterRegistry.get(RouteLatencyRecorder.METER_NAME).tag("route", "cms-actuator").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.find("gateway.requests.total").counters()).isEmpty();
+    }
+}
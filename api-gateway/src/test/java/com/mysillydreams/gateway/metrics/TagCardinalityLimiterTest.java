@@ -0,0 +1,100 @@
+package com.mysillydreams.gateway.metrics;
+
+import com.mysillydreams.gateway.config.MetricsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for capping distinct tag values on gateway meters
+ */
+class TagCardinalityLimiterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TagCardinalityLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        MetricsProperties.TagCardinality config = new MetricsProperties.TagCardinality();
+        config.setMaxValuesPerTag(3);
+        config.setMaxValuesByTag(Map.of("reason", 1));
+        limiter = new TagCardinalityLimiter(config);
+
+        meterRegistry = new SimpleMeterRegistry();
+        meterRegistry.config().meterFilter(limiter);
+        limiter.bindTo(meterRegistry);
+    }
+
+    @Test
+    void shouldFoldValuesBeyondCapIntoOverflowBucket() {
+        // When
+        for (int i = 0; i < 10; i++) {
+            meterRegistry.counter("gateway.requests.total", "path", "/slug-" + i).increment();
+        }
+
+        // Then
+        assertThat(meterRegistry.find("gateway.requests.total").counters()).hasSize(4);
+        assertThat(meterRegistry.get("gateway.requests.total").tag("path", "other").counter().count()).isEqualTo(7.0);
+        assertThat(meterRegistry.get("gateway.metrics.dropped.series").functionCounter().count()).isEqualTo(7.0);
+    }
+
+    @Test
+    void shouldKeepAdmittedValuesAfterCapIsReached() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            limiter.limit("gateway.requests.total", "path", "/p" + i);
+        }
+
+        // When/Then
+        assertThat(limiter.limit("gateway.requests.total", "path", "/p0")).isEqualTo("/p0");
+        assertThat(limiter.limit("gateway.requests.total", "path", "/p4")).isEqualTo("other");
+    }
+
+    @Test
+    void shouldApplyPerTagOverridesAndIgnoreForeignMeters() {
+        // When/Then
+        assertThat(limiter.limit("gateway.auth.failure", "reason", "jwt_invalid")).isEqualTo("jwt_invalid");
+        assertThat(limiter.limit("gateway.auth.failure", "reason", "jwt_invalid_claim")).isEqualTo("other");
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.limit("http.server.requests", "uri", "/u" + i)).isEqualTo("/u" + i);
+        }
+    }
+
+    @Test
+    void shouldBoundGatewayMetersLookupMaps() {
+        // Given
+        GatewayMeters gatewayMeters = new GatewayMeters(meterRegistry, limiter);
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            gatewayMeters.route("/search/term-" + i, "GET").request();
+        }
+
+        // Then
+        assertThat(gatewayMeters.route("/search/term-49", "GET"))
+                .isSameAs(gatewayMeters.route("/search/term-48", "GET"));
+        assertThat(meterRegistry.find("gateway.requests.total").counters()).hasSize(4);
+    }
+
+    @Test
+    void shouldCountEachFoldedValueOnce() {
+        // Given
+        GatewayMeters gatewayMeters = new GatewayMeters(meterRegistry, limiter);
+
+        // When: five distinct paths, two past the cap, each requested many times
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 5; i++) {
+                gatewayMeters.route("/search/term-" + i, "GET").request();
+                meterRegistry.counter("gateway.auth.success", "path", "/search/term-" + i);
+            }
+        }
+
+        // Then: two values folded for each of the two meters
+        assertThat(limiter.getFoldedCount()).isEqualTo(4);
+        assertThat(meterRegistry.get("gateway.requests.total").tag("path", "other").counter().count()).isEqualTo(40.0);
+    }
+}
@@ -2,6 +2,9 @@ package com.mysillydreams.gateway.security;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mysillydreams.gateway.dto.ErrorResponse;
+import com.mysillydreams.gateway.logging.SanitizingLoggerInterceptor;
+import com.mysillydreams.gateway.service.cache.BoundedCaches;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -187,7 +190,8 @@ class AbstractErrorHandlerTest {
     // Testable implementation of AbstractErrorHandler
     private static class TestableAbstractErrorHandler extends AbstractErrorHandler {
         public TestableAbstractErrorHandler(ObjectMapper objectMapper, String realm) {
-            super(objectMapper, realm);
+            super(objectMapper, realm, new SanitizingLoggerInterceptor(new SecurityErrorFormatter(),
+                    new BoundedCaches(new SimpleMeterRegistry())));
         }
     }
 }
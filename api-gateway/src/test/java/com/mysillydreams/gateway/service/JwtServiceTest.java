@@ -0,0 +1,179 @@
+package com.mysillydreams.gateway.service;
+
+import com.mysillydreams.gateway.config.JwtProperties;
+import com.mysillydreams.gateway.service.cache.BoundedCaches;
+import com.mysillydreams.gateway.service.jwks.JwksKeyStore;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for single-parse JWT verification in JwtService
+ */
+class JwtServiceTest {
+
+    private static final String SECRET = "TestJwtSecretKeyForUnitTestsMinimum256BitsLong123456789!";
+
+    private JwtService jwtService;
+    private VerifiedTokenCache tokenCache;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        tokenCache = new VerifiedTokenCache(true, 100, Duration.ofMinutes(5), Clock.systemUTC(), meterRegistry,
+                new BoundedCaches(meterRegistry));
+        jwtService = new JwtService(SECRET, "api-gateway", "mysillydreams-api", Duration.ofSeconds(60), tokenCache, new JwtProperties(), noJwks());
+    }
+
+    @Test
+    void shouldVerifyTokenAndExposeAllClaims() {
+        // Given
+        Instant expiry = Instant.now().plusSeconds(300);
+        String token = token("alice", "user-42", "ROLE_USER,ROLE_ADMIN", "api-gateway", expiry);
+
+        // When
+        VerifiedPrincipal principal = jwtService.verify(token);
+
+        // Then
+        assertThat(principal.getUserId()).isEqualTo("user-42");
+        assertThat(principal.getUsername()).isEqualTo("alice");
+        assertThat(principal.getRoles()).isEqualTo("ROLE_USER,ROLE_ADMIN");
+        assertThat(principal.getIssuer()).isEqualTo("api-gateway");
+        assertThat(principal.getExpiry().getEpochSecond()).isEqualTo(expiry.getEpochSecond());
+    }
+
+    @Test
+    void shouldFallBackToSubjectWhenUserIdClaimMissing() {
+        // Given
+        String token = token("bob", null, "ROLE_USER", "api-gateway", Instant.now().plusSeconds(300));
+
+        // When
+        VerifiedPrincipal principal = jwtService.verify(token);
+
+        // Then
+        assertThat(principal.getUserId()).isEqualTo("bob");
+    }
+
+    @Test
+    void shouldRejectWrongIssuer() {
+        // Given
+        String token = token("alice", "user-42", "ROLE_USER", "someone-else", Instant.now().plusSeconds(300));
+
+        // When/Then
+        assertThatThrownBy(() -> jwtService.verify(token)).isInstanceOf(JwtException.class);
+        assertThat(jwtService.validateToken(token)).isFalse();
+    }
+
+    @Test
+    void shouldRejectExpiredTokenBeyondClockSkew() {
+        // Given
+        String token = token("alice", "user-42", "ROLE_USER", "api-gateway", Instant.now().minusSeconds(120));
+
+        // When/Then
+        assertThatThrownBy(() -> jwtService.verify(token)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void shouldServeRepeatedTokenFromCache() {
+        // Given
+        String token = token("alice", "user-42", "ROLE_USER", "api-gateway", Instant.now().plusSeconds(300));
+
+        // When
+        VerifiedPrincipal first = jwtService.verify(token);
+        VerifiedPrincipal second = jwtService.verify(token);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(tokenCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCacheRejectedTokens() {
+        // Given
+        String token = token("alice", "user-42", "ROLE_USER", "someone-else", Instant.now().plusSeconds(300));
+
+        // When
+        assertThat(jwtService.validateToken(token)).isFalse();
+
+        // Then
+        assertThat(tokenCache.size()).isZero();
+    }
+
+    @Test
+    void shouldVerifySmallTokensInlineByDefault() {
+        // Given
+        String token = token("alice", "user-42", "ROLE_USER", "api-gateway", Instant.now().plusSeconds(300));
+
+        // When/Then
+        assertThat(jwtService.requiresOffload(token, false)).isFalse();
+    }
+
+    @Test
+    void shouldOffloadOnlyLargeTokensThatMissedTheCache() {
+        // Given
+        JwtProperties properties = new JwtProperties();
+        properties.getVerification().setMaxInlineTokenLength(16);
+        JwtService inline = new JwtService(SECRET, "api-gateway", "mysillydreams-api", Duration.ofSeconds(60), tokenCache, properties, noJwks());
+        String token = token("alice", "user-42", "ROLE_USER", "api-gateway", Instant.now().plusSeconds(300));
+
+        // When
+        VerifiedPrincipal miss = inline.cached(token);
+        VerifiedPrincipal verified = inline.verifyUncached(token);
+        VerifiedPrincipal hit = inline.cached(token);
+
+        // Then
+        assertThat(miss).isNull();
+        assertThat(inline.requiresOffload(token, false)).isTrue();
+        assertThat(hit).isSameAs(verified);
+        assertThat(inline.requiresOffload(token, true)).isFalse();
+    }
+
+    @Test
+    void shouldOffloadEverythingInOffloadMode() {
+        // Given
+        JwtProperties properties = new JwtProperties();
+        properties.getVerification().setMode(JwtProperties.Mode.OFFLOAD);
+        JwtService offloading = new JwtService(SECRET, "api-gateway", "mysillydreams-api", Duration.ofSeconds(60), tokenCache, properties, noJwks());
+        String token = token("alice", "user-42", "ROLE_USER", "api-gateway", Instant.now().plusSeconds(300));
+
+        // When/Then
+        assertThat(offloading.requiresOffload(token, true)).isTrue();
+    }
+
+    @Test
+    void shouldRejectEmptyTokenAsJwtException() {
+        assertThatThrownBy(() -> jwtService.verify("")).isInstanceOf(JwtException.class);
+    }
+
+    private String token(String subject, String userId, String authorities, String issuer, Instant expiry) {
+        var builder = Jwts.builder()
+                .setSubject(subject)
+                .setIssuer(issuer)
+                .setAudience("mysillydreams-api")
+                .setExpiration(Date.from(expiry))
+                .claim("authorities", authorities)
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)));
+        if (userId != null) {
+            builder.claim("userId", userId);
+        }
+        return builder.compact();
+    }
+
+    private static ObjectProvider<JwksKeyStore> noJwks() {
+        return new StaticListableBeanFactory().getBeanProvider(JwksKeyStore.class);
+    }
+}
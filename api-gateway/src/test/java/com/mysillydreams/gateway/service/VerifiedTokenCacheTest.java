@@ -0,0 +1,99 @@
+package com.mysillydreams.gateway.service;
+
+import com.mysillydreams.gateway.service.cache.BoundedCaches;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the bounded verified-token cache
+ */
+class VerifiedTokenCacheTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldNeverGrowPastMaxSize() {
+        // Given
+        VerifiedTokenCache cache = cache(Clock.fixed(NOW, ZoneOffset.UTC), 32);
+
+        // When
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("token-" + i, principal(NOW.plusSeconds(60)));
+        }
+
+        // Then
+        assertThat(cache.size()).isLessThanOrEqualTo(32);
+        assertThat(meterRegistry.get("cache.evictions").tag("cache", "jwt-verified-tokens").functionCounter().count())
+                .isGreaterThanOrEqualTo(1_000 - 32);
+    }
+
+    @Test
+    void shouldExpireEntriesOnRead() {
+        // Given
+        MutableClock clock = new MutableClock();
+        VerifiedTokenCache cache = cache(clock, 10);
+        cache.put("short-lived", principal(NOW.plusSeconds(1)));
+
+        // When
+        VerifiedPrincipal beforeExpiry = cache.get("short-lived");
+        clock.now = NOW.plusSeconds(1);
+        VerifiedPrincipal afterExpiry = cache.get("short-lived");
+
+        // Then
+        assertThat(beforeExpiry).isNotNull();
+        assertThat(afterExpiry).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(meterRegistry.get("gateway.jwt.cache.evictions").tag("reason", "expired").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepDistinctNonAsciiTokensApart() {
+        // Given: both tokens encode to the same US-ASCII bytes ('?' replacement)
+        VerifiedTokenCache cache = cache(Clock.fixed(NOW, ZoneOffset.UTC), 10);
+        cache.put("token-é", principal(NOW.plusSeconds(60)));
+
+        // When/Then
+        assertThat(cache.get("token-é")).isNotNull();
+        assertThat(cache.get("token-è")).isNull();
+    }
+
+    private VerifiedTokenCache cache(Clock clock, int maxSize) {
+        return new VerifiedTokenCache(true, maxSize, Duration.ofMinutes(5), clock, meterRegistry,
+                new BoundedCaches(meterRegistry));
+    }
+
+    private static VerifiedPrincipal principal(Instant expiry) {
+        return new VerifiedPrincipal("user-1", "alice", "ROLE_USER", expiry, "api-gateway", "jti-1");
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now = NOW;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.mysillydreams.gateway.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the bounded CLOCK cache, including a random-IP flood
+ */
+class ClockCacheTest {
+
+    @Test
+    void shouldKeepRecentlyReadEntriesUnderChurn() {
+        // Given
+        BoundedCache<String, String> cache = ClockCache.<String, String>builder().maximumSize(100).segments(1).build();
+        for (int i = 0; i < 10; i++) {
+            cache.put("hot-" + i, "v");
+        }
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("cold-" + i, "v");
+            if (i % 50 == 0) {
+                for (int h = 0; h < 10; h++) {
+                    cache.getIfPresent("hot-" + h);
+                }
+            }
+        }
+
+        // Then
+        assertThat(cache.size()).isEqualTo(100);
+        for (int h = 0; h < 10; h++) {
+            assertThat(cache.getIfPresent("hot-" + h)).as("hot-" + h).isEqualTo("v");
+        }
+        assertThat(cache.stats().evictions()).isEqualTo(9_910);
+    }
+
+    @Test
+    void shouldEvictByWeight() {
+        // Given
+        BoundedCache<String, String> cache = ClockCache.<String, String>builder()
+                .maximumSize(1_000)
+                .maximumWeight(100)
+                .weigher((key, value) -> value.length())
+                .segments(1)
+                .build();
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            cache.put("k" + i, "0123456789");
+        }
+        cache.put("too-big", "x".repeat(101));
+
+        // Then
+        assertThat(cache.weightedSize()).isEqualTo(100);
+        assertThat(cache.size()).isEqualTo(10);
+        assertThat(cache.getIfPresent("too-big")).isNull();
+    }
+
+    @Test
+    void shouldComputeOnMissAndCountHits() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BoundedCache<String, String> cache = new BoundedCaches(meterRegistry).create("test", 10);
+
+        // When
+        cache.get("a", String::toUpperCase);
+        cache.get("a", key -> "recomputed");
+        cache.invalidate("a");
+        String afterInvalidate = cache.get("a", key -> "fresh");
+
+        // Then
+        assertThat(afterInvalidate).isEqualTo("fresh");
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "test").tag("result", "hit").functionCounter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "test").tag("result", "miss").functionCounter().count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.get("cache.size").tag("cache", "test").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldKeepHeapFlatUnderRandomIpFlood() throws Exception {
+        // Given
+        int maximumSize = 10_000;
+        BoundedCache<String, Boolean> cache = ClockCache.<String, Boolean>builder().maximumSize(maximumSize).build();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        flood(cache, 200_000);
+        long baseline = usedHeapAfterGc(memory);
+
+        // When
+        flood(cache, 2_000_000);
+        long after = usedHeapAfterGc(memory);
+
+        // Then
+        assertThat(cache.size()).isLessThanOrEqualTo(maximumSize);
+        // An unbounded map would retain ~2M extra keys here (well over 100 MB)
+        assertThat(after - baseline).isLessThan(32L * 1024 * 1024);
+    }
+
+    private static void flood(BoundedCache<String, Boolean> cache, int requests) throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < requests / threads; i++) {
+                        String ip = random.nextInt(256) + "." + random.nextInt(256) + "."
+                                + random.nextInt(256) + "." + random.nextInt(256);
+                        cache.get(ip, key -> Boolean.FALSE);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
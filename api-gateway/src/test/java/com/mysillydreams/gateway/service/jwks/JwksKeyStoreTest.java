@@ -0,0 +1,190 @@
+package com.mysillydreams.gateway.service.jwks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.gateway.config.JwtProperties;
+import com.mysillydreams.gateway.service.JwtService;
+import com.mysillydreams.gateway.service.VerifiedPrincipal;
+import com.mysillydreams.gateway.service.VerifiedTokenCache;
+import com.mysillydreams.gateway.service.cache.BoundedCaches;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Mono;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for JWKS-backed asymmetric JWT verification
+ */
+class JwksKeyStoreTest {
+
+    private static final String SECRET = "TestJwtSecretKeyForUnitTestsMinimum256BitsLong123456789!";
+
+    @TempDir
+    Path tempDir;
+
+    private KeyPair rsaKeyPair;
+    private KeyPair ecKeyPair;
+    private Path jwksFile;
+    private JwksKeyStore keyStore;
+    private JwtService jwtService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(2048);
+        rsaKeyPair = rsa.generateKeyPair();
+
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp256r1"));
+        ecKeyPair = ec.generateKeyPair();
+
+        jwksFile = tempDir.resolve("jwks.json");
+        Files.writeString(jwksFile, "{\"keys\":[" + rsaJwk("rsa-1") + "," + ecJwk("ec-1") + "]}");
+
+        keyStore = new JwksKeyStore(new FileJwksSource(jwksFile), Duration.ofMinutes(5), Duration.ZERO,
+                new ObjectMapper(), new SimpleMeterRegistry());
+        keyStore.refresh().block();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VerifiedTokenCache cache = new VerifiedTokenCache(false, 1, Duration.ofMinutes(1), Clock.systemUTC(), meterRegistry,
+                new BoundedCaches(meterRegistry));
+        jwtService = new JwtService(SECRET, "api-gateway", "mysillydreams-api", Duration.ofSeconds(60),
+                cache, new JwtProperties(),
+                new StaticListableBeanFactory(Map.of("jwksKeyStore", keyStore)).getBeanProvider(JwksKeyStore.class));
+    }
+
+    @Test
+    void shouldLoadRsaAndEcKeysByKid() {
+        assertThat(keyStore.getKeyIds()).containsExactlyInAnyOrder("rsa-1", "ec-1");
+    }
+
+    @Test
+    void shouldVerifyRs256Token() {
+        // Given
+        String token = token("rsa-1", rsaKeyPair, SignatureAlgorithm.RS256);
+
+        // When
+        VerifiedPrincipal principal = jwtService.verify(token);
+
+        // Then
+        assertThat(principal.getUsername()).isEqualTo("alice");
+    }
+
+    @Test
+    void shouldVerifyEs256Token() {
+        // Given
+        String token = token("ec-1", ecKeyPair, SignatureAlgorithm.ES256);
+
+        // When/Then
+        assertThat(jwtService.verify(token).getUserId()).isEqualTo("user-42");
+    }
+
+    @Test
+    void shouldRejectUnknownKidWithoutBlocking() {
+        // Given
+        String token = token("rotated-away", rsaKeyPair, SignatureAlgorithm.RS256);
+
+        // When/Then
+        assertThatThrownBy(() -> jwtService.verify(token)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void shouldPickUpRotatedKeyOnRefresh() throws Exception {
+        // Given
+        Files.writeString(jwksFile, "{\"keys\":[" + rsaJwk("rsa-2") + "]}");
+
+        // When
+        keyStore.refresh().block();
+
+        // Then
+        assertThat(keyStore.getKeyIds()).containsExactly("rsa-2");
+        assertThat(jwtService.verify(token("rsa-2", rsaKeyPair, SignatureAlgorithm.RS256))).isNotNull();
+    }
+
+    @Test
+    void shouldKeepExistingKeysWhenRefreshFails() throws Exception {
+        // Given
+        Files.writeString(jwksFile, "not json");
+
+        // When
+        keyStore.refresh().onErrorResume(e -> Mono.empty()).block();
+
+        // Then
+        assertThat(keyStore.getKeyIds()).containsExactlyInAnyOrder("rsa-1", "ec-1");
+    }
+
+    @Test
+    void shouldKeepExistingKeysWhenTheDocumentHasNoKeys() throws Exception {
+        // Given
+        AtomicInteger removals = new AtomicInteger();
+        keyStore.setKeyRemovalListener(removed -> removals.incrementAndGet());
+
+        for (String document : new String[] {"{}", "{\"keys\":[]}", "{\"keys\":[{\"kty\":\"oct\",\"kid\":\"k\"}]}"}) {
+            Files.writeString(jwksFile, document);
+
+            // When
+            keyStore.refresh().onErrorResume(e -> Mono.empty()).block();
+
+            // Then
+            assertThat(keyStore.getKeyIds()).containsExactlyInAnyOrder("rsa-1", "ec-1");
+        }
+        assertThat(removals).hasValue(0);
+    }
+
+    private String token(String kid, KeyPair keyPair, SignatureAlgorithm algorithm) {
+        return Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setSubject("alice")
+                .setIssuer("api-gateway")
+                .setAudience("mysillydreams-api")
+                .setExpiration(Date.from(Instant.now().plusSeconds(300)))
+                .claim("userId", "user-42")
+                .claim("authorities", "ROLE_USER")
+                .signWith(keyPair.getPrivate(), algorithm)
+                .compact();
+    }
+
+    private String rsaJwk(String kid) {
+        RSAPublicKey key = (RSAPublicKey) rsaKeyPair.getPublic();
+        return "{\"kty\":\"RSA\",\"kid\":\"" + kid + "\",\"use\":\"sig\",\"n\":\"" + base64Url(key.getModulus())
+                + "\",\"e\":\"" + base64Url(key.getPublicExponent()) + "\"}";
+    }
+
+    private String ecJwk(String kid) {
+        ECPublicKey key = (ECPublicKey) ecKeyPair.getPublic();
+        return "{\"kty\":\"EC\",\"kid\":\"" + kid + "\",\"crv\":\"P-256\",\"x\":\"" + base64Url(key.getW().getAffineX())
+                + "\",\"y\":\"" + base64Url(key.getW().getAffineY()) + "\"}";
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes[0] == 0 && bytes.length > 1) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,139 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import com.mysillydreams.gateway.service.cache.BoundedCache;
+import com.mysillydreams.gateway.service.cache.ClockCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for API key bucket ids and per-key quota overrides
+ */
+class ApiKeyIdentityTest {
+
+    private RateLimiterProperties.ApiKeys config;
+    private BoundedCache<String, String> cache;
+
+    @BeforeEach
+    void setUp() {
+        config = new RateLimiterProperties.ApiKeys();
+        config.setHashSecret("test-secret");
+        cache = ClockCache.<String, String>builder().maximumSize(100).build();
+    }
+
+    @Test
+    void shouldSeparateKeysThatShareAStringHashCode() {
+        // Given: "Aa" and "BB" have the same String.hashCode(), so they shared a bucket before
+        ApiKeyIdentity identity = new ApiKeyIdentity(config, cache);
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        // When/Then
+        assertThat(identity.bucketKey("Aa")).isNotEqualTo(identity.bucketKey("BB"));
+    }
+
+    @Test
+    void shouldProduceStableNonNegativeBucketIds() {
+        // Given: Math.abs(Integer.MIN_VALUE) used to leak a negative id for keys hashing to MIN_VALUE
+        ApiKeyIdentity identity = new ApiKeyIdentity(config, cache);
+        ApiKeyIdentity otherNode = new ApiKeyIdentity(config, ClockCache.<String, String>builder().build());
+
+        // When
+        String key = identity.bucketKey("polygenelubricants");
+
+        // Then
+        assertThat("polygenelubricants".hashCode()).isEqualTo(Integer.MIN_VALUE);
+        assertThat(key).matches("apikey:[0-9a-f]{32}");
+        assertThat(otherNode.bucketKey("polygenelubricants")).isEqualTo(key);
+    }
+
+    @Test
+    void shouldDependOnTheSecret() {
+        // Given
+        RateLimiterProperties.ApiKeys other = new RateLimiterProperties.ApiKeys();
+        other.setHashSecret("another-secret");
+
+        // When/Then
+        assertThat(new ApiKeyIdentity(other, cache).bucketId("k-1"))
+                .isNotEqualTo(new ApiKeyIdentity(config, cache).bucketId("k-1"));
+    }
+
+    @Test
+    void shouldHashEachKeyOnce() {
+        // Given
+        ApiKeyIdentity identity = new ApiKeyIdentity(config, cache);
+
+        // When
+        String first = identity.bucketKey("k-1");
+        String second = identity.bucketKey("k-1");
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+        assertThat(cache.stats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCollideAcrossManyKeys() {
+        // Given
+        ApiKeyIdentity identity = new ApiKeyIdentity(config, cache);
+        Set<String> ids = new HashSet<>();
+
+        // When
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(identity.bucketId("key-" + i));
+        }
+
+        // Then
+        assertThat(ids).hasSize(100_000);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRouteOverriddenKeysToTheirOwnQuota() {
+        // Given
+        ApiKeyIdentity identity = new ApiKeyIdentity(config, cache);
+        RateLimiterProperties.Quota quota = new RateLimiterProperties.Quota();
+        quota.setReplenishRate(500);
+        quota.setBurstCapacity(1000);
+        RateLimiter<RedisRateLimiter.Config> defaultLimiter = mock(RateLimiter.class);
+
+        // When
+        ApiKeyQuotaRateLimiter limiter = new ApiKeyQuotaRateLimiter(defaultLimiter,
+                Map.of(identity.bucketId("partner-key"), quota));
+
+        // Then
+        assertThat(limiter.hasOverride(identity.bucketKey("partner-key"))).isTrue();
+        assertThat(limiter.hasOverride(identity.bucketKey("other-key"))).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldChargeTheRequestCostOnOverriddenKeys() {
+        // Given
+        ApiKeyIdentity identity = new ApiKeyIdentity(config, cache);
+        RateLimiterProperties.Quota quota = new RateLimiterProperties.Quota();
+        quota.setReplenishRate(500);
+        quota.setBurstCapacity(1000);
+        quota.setRequestedTokens(2);
+        RateLimiter<RedisRateLimiter.Config> defaultLimiter = mock(RateLimiter.class);
+
+        // When
+        ApiKeyQuotaRateLimiter limiter = new ApiKeyQuotaRateLimiter(defaultLimiter,
+                Map.of(identity.bucketId("partner-key"), quota));
+
+        // Then
+        WeightedRedisRateLimiter override = limiter.override(identity.bucketKey("partner-key"));
+        assertThat(override).isNotNull();
+        assertThat(override.tokens(5)).isEqualTo(10);
+        assertThat(limiter.override(identity.bucketKey("other-key"))).isNull();
+    }
+}
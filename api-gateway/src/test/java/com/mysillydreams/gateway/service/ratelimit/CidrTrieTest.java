@@ -0,0 +1,134 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for CIDR matching through the binary prefix trie
+ */
+class CidrTrieTest {
+
+    private static final List<String> DEFAULT_PROXIES = List.of(
+            "10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16", "127.0.0.0/8", "::1/128", "fc00::/7", "fe80::/10");
+
+    @ParameterizedTest
+    @CsvSource({
+            "10.1.2.3, MATCH",
+            "172.31.255.255, MATCH",
+            "172.32.0.1, NO_MATCH",
+            "203.0.113.7, NO_MATCH",
+            "::1, MATCH",
+            "[::1], MATCH",
+            "0:0:0:0:0:0:0:1, MATCH",
+            "fd12:3456:789a::1, MATCH",
+            "fe80::1%eth0, MATCH",
+            "2001:db8::1, NO_MATCH",
+            "::ffff:192.168.1.10, MATCH",
+            "::ffff:8.8.8.8, NO_MATCH",
+            "proxy.internal, INVALID",
+            "10.0.0.1:8080, INVALID",
+            "256.1.1.1, INVALID",
+            "1:2:3:4:5:6:7:8:9, INVALID",
+            "1::2::3, INVALID"
+    })
+    void shouldMatchDefaultTrustedProxies(String address, CidrTrie.Match expected) {
+        // Given
+        CidrTrie trie = CidrTrie.of(DEFAULT_PROXIES);
+
+        // When/Then
+        assertThat(trie.lookup(address)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"10.0.0.0/33", "fc00::/129", "example.com/8", "10.0.0.0/", "1.2.3/24"})
+    void shouldRejectInvalidCidrs(String cidr) {
+        assertThatThrownBy(() -> CidrTrie.of(List.of(cidr))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldAgreeWithByteWiseMatchingForThousandsOfRanges() throws Exception {
+        // Given
+        Random random = new Random(42);
+        List<String> cidrs = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            cidrs.add(i % 3 == 0 ? randomIpv6(random) + "/" + random.nextInt(129)
+                    : randomIpv4(random) + "/" + (8 + random.nextInt(25)));
+        }
+        CidrTrie trie = CidrTrie.of(cidrs);
+
+        // When/Then
+        for (int i = 0; i < 5000; i++) {
+            String address = i % 3 == 0 ? randomIpv6(random) : randomIpv4(random);
+            if (i % 7 == 0) {
+                // Probe inside a configured range as well as random space
+                address = cidrs.get(random.nextInt(cidrs.size())).split("/")[0];
+            }
+            boolean expected = matchesAny(InetAddress.getByName(address), cidrs);
+            assertThat(trie.lookup(address))
+                    .as(address)
+                    .isEqualTo(expected ? CidrTrie.Match.MATCH : CidrTrie.Match.NO_MATCH);
+        }
+    }
+
+    @Test
+    void shouldHandleCatchAllAndOverlappingRanges() {
+        // Given
+        CidrTrie trie = CidrTrie.of(List.of("10.1.0.0/16", "10.0.0.0/8", "0.0.0.0/0"));
+
+        // When/Then
+        assertThat(trie.lookup("8.8.8.8")).isEqualTo(CidrTrie.Match.MATCH);
+        assertThat(trie.lookup("2001:db8::1")).isEqualTo(CidrTrie.Match.NO_MATCH);
+    }
+
+    private static String randomIpv4(Random random) {
+        return random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+    }
+
+    private static String randomIpv6(Random random) {
+        // Keep a common prefix so random probes regularly land inside configured ranges
+        StringBuilder sb = new StringBuilder("fd00");
+        for (int i = 0; i < 7; i++) {
+            sb.append(':').append(Integer.toHexString(random.nextInt(4) == 0 ? 0 : random.nextInt(0x10000)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reference implementation: the byte-wise comparison the gateway used before the trie
+     */
+    private static boolean matchesAny(InetAddress ip, List<String> cidrs) throws Exception {
+        for (String cidr : cidrs) {
+            String[] parts = cidr.split("/");
+            byte[] ipBytes = ip.getAddress();
+            byte[] networkBytes = InetAddress.getByName(parts[0]).getAddress();
+            int prefixLength = Integer.parseInt(parts[1]);
+            if (ipBytes.length != networkBytes.length) {
+                continue;
+            }
+            int bytesToCheck = prefixLength / 8;
+            int bitsToCheck = prefixLength % 8;
+            boolean match = true;
+            for (int i = 0; i < bytesToCheck && match; i++) {
+                match = ipBytes[i] == networkBytes[i];
+            }
+            if (match && bitsToCheck > 0) {
+                int mask = 0xFF << (8 - bitsToCheck);
+                match = (ipBytes[bytesToCheck] & mask) == (networkBytes[bytesToCheck] & mask);
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
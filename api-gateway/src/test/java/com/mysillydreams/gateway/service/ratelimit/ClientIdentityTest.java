@@ -0,0 +1,107 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import com.mysillydreams.gateway.service.cache.ClockCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for client IP resolution and rate limit key building
+ */
+class ClientIdentityTest {
+
+    private static final InetSocketAddress PROXY = new InetSocketAddress("10.0.0.5", 443);
+
+    private ClientIdentity clientIdentity;
+
+    @BeforeEach
+    void setUp() {
+        RateLimiterProperties properties = new RateLimiterProperties();
+        ApiKeyIdentity apiKeyIdentity = new ApiKeyIdentity(properties.getApiKeys(),
+                ClockCache.<String, String>builder().maximumSize(10).build());
+        clientIdentity = new ClientIdentity(properties, new TrustedProxyMatcher(properties), apiKeyIdentity);
+    }
+
+    @Test
+    void shouldTakeRightMostUntrustedForwardedAddress() {
+        // Given: the client spoofed 1.1.1.1, the edge proxy appended the real peer 203.0.113.7
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/api/contents/1")
+                .header(HeaderConstants.X_FORWARDED_FOR, "1.1.1.1, 203.0.113.7 , 10.0.0.1,192.168.1.2"));
+
+        // When/Then
+        assertThat(clientIdentity.clientIp(exchange)).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    void shouldScanRepeatedHeaderLinesFromTheLast() {
+        // Given
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/api/contents/1")
+                .header(HeaderConstants.X_FORWARDED_FOR, "198.51.100.1")
+                .header(HeaderConstants.X_FORWARDED_FOR, "203.0.113.9, 10.0.0.1"));
+
+        // When/Then
+        assertThat(clientIdentity.clientIp(exchange)).isEqualTo("203.0.113.9");
+    }
+
+    @Test
+    void shouldFallBackToRealIpThenRemoteAddress() {
+        // Given
+        MockServerWebExchange realIp = exchange(MockServerHttpRequest.get("/")
+                .header(HeaderConstants.X_FORWARDED_FOR, "10.0.0.1, proxy.internal")
+                .header(HeaderConstants.X_REAL_IP, " 198.51.100.4 "));
+        MockServerWebExchange remote = exchange(MockServerHttpRequest.get("/")
+                .header(HeaderConstants.X_REAL_IP, "127.0.0.1"));
+
+        // When/Then
+        assertThat(clientIdentity.clientIp(realIp)).isEqualTo("198.51.100.4");
+        assertThat(clientIdentity.clientIp(remote)).isEqualTo("10.0.0.5");
+    }
+
+    @Test
+    void shouldResolveOncePerExchange() {
+        // Given
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/api/contents/1")
+                .header(HeaderConstants.X_FORWARDED_FOR, "203.0.113.7"));
+
+        // When
+        String first = clientIdentity.ipKey(exchange);
+        String cached = exchange.getAttribute(HeaderConstants.CLIENT_IP_ATTRIBUTE);
+
+        // Then
+        assertThat(first).isEqualTo("ip:203.0.113.7");
+        assertThat(cached).isEqualTo("203.0.113.7");
+        assertThat(clientIdentity.clientIp(exchange)).isSameAs(cached);
+    }
+
+    @Test
+    void shouldBuildKeysInTheExistingFormats() {
+        // Given
+        MockServerWebExchange user = exchange(MockServerHttpRequest.get("/api/admin/users")
+                .header(HeaderConstants.X_FORWARDED_FOR, "203.0.113.7")
+                .header(HeaderConstants.X_USER_ID, "u-42"));
+        MockServerWebExchange anonymous = exchange(MockServerHttpRequest.get("/api/contents/1")
+                .header(HeaderConstants.X_FORWARDED_FOR, "203.0.113.7")
+                .header(HeaderConstants.X_SESSION_ID, "s-1"));
+
+        // When/Then
+        assertThat(clientIdentity.userKey(user)).isEqualTo("user:u-42");
+        assertThat(clientIdentity.combinedKey(user)).isEqualTo("user:u-42:ip:203.0.113.7:endpoint:admin");
+        assertThat(clientIdentity.userKey(anonymous)).isEqualTo("anonymous:203.0.113.7");
+        assertThat(clientIdentity.combinedKey(anonymous)).isEqualTo("anonymous:ip:203.0.113.7:endpoint:api");
+        assertThat(clientIdentity.sessionKey(anonymous)).isEqualTo("session:s-1");
+        assertThat(clientIdentity.apiKey(user)).isEqualTo("user:u-42");
+        assertThat(clientIdentity.apiKey(exchange(MockServerHttpRequest.get("/api/internal/auth/x")
+                .header(HeaderConstants.X_API_KEY, "k-1")))).matches("apikey:[0-9a-f]{32}");
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        return MockServerWebExchange.from(request.remoteAddress(PROXY));
+    }
+}
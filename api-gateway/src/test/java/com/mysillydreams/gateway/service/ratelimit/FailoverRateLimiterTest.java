@@ -0,0 +1,233 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.internal.CircuitBreakerStateMachine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for switching between Redis and per-node buckets as Redis goes down and comes back
+ */
+class FailoverRateLimiterTest {
+
+    private static final String ROUTE = "cms-api";
+    private static final String KEY = "ip:203.0.113.7";
+
+    private final MutableClock clock = new MutableClock();
+    private FakeRedisLimiter redis;
+    private SimpleMeterRegistry meterRegistry;
+    private FailoverRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        redis = new FakeRedisLimiter();
+        meterRegistry = new SimpleMeterRegistry();
+
+        RateLimiterProperties.Failover config = new RateLimiterProperties.Failover();
+        CircuitBreakerConfig breakerConfig = CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofSeconds(10))
+                .permittedNumberOfCallsInHalfOpenState(2)
+                .build();
+        CircuitBreaker circuitBreaker = new CircuitBreakerStateMachine("rate-limiter-api", breakerConfig, clock);
+
+        limiter = new FailoverRateLimiter("api", redis, 10, 10, config, circuitBreaker, () -> 2, LocalTokenBucket::new,
+                meterRegistry, clock::nanos);
+    }
+
+    @Test
+    void shouldSwitchToPerNodeBucketsWhenRedisIsDown() {
+        // Given
+        redis.down = true;
+        for (int i = 0; i < 4; i++) {
+            allowed();
+        }
+        int redisCalls = redis.calls;
+
+        // When
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (allowed()) {
+                allowed++;
+            }
+        }
+
+        // Then
+        assertThat(limiter.getMode()).isEqualTo(FailoverRateLimiter.Mode.LOCAL);
+        assertThat(redis.calls).isEqualTo(redisCalls);
+        // Burst of 10 split over 2 nodes; the call that opened the breaker already took one token
+        assertThat(allowed).isEqualTo(4);
+        assertThat(limiter.getLocalNodeCount()).isEqualTo(2);
+        assertThat(meterRegistry.get("gateway.ratelimit.failover.mode").gauge().value()).isEqualTo(1.0);
+        assertThat(new RateLimiterFailoverHealthIndicator(List.of(limiter)).health().getStatus())
+                .isEqualTo(RateLimiterFailoverHealthIndicator.DEGRADED);
+    }
+
+    @Test
+    void shouldSwitchBackWhenRedisRecovers() {
+        // Given
+        redis.down = true;
+        for (int i = 0; i < 4; i++) {
+            allowed();
+        }
+
+        // When
+        redis.down = false;
+        clock.advance(Duration.ofSeconds(11));
+        allowed();
+        allowed();
+
+        // Then
+        assertThat(limiter.getMode()).isEqualTo(FailoverRateLimiter.Mode.REDIS);
+        assertThat(meterRegistry.get("gateway.ratelimit.failover.transitions").tag("to", "redis").counter().count())
+                .isEqualTo(1.0);
+        assertThat(new RateLimiterFailoverHealthIndicator(List.of(limiter)).health().getStatus())
+                .isEqualTo(Status.UP);
+    }
+
+    @Test
+    void shouldTreatFailOpenAnswersAsRedisErrors() {
+        // Given
+        redis.failOpen = true;
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            allowed();
+        }
+
+        // Then
+        assertThat(limiter.getMode()).isEqualTo(FailoverRateLimiter.Mode.LOCAL);
+    }
+
+    @Test
+    void shouldNotCountLeaseHitsAsRedisCalls() {
+        // Given
+        redis.leaseHit = true;
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            allowed();
+        }
+
+        // Then
+        assertThat(limiter.getCircuitBreaker().getMetrics().getNumberOfBufferedCalls()).isZero();
+    }
+
+    @Test
+    void shouldShareAnOverflowBucketOnceTheKeyTableIsFull() {
+        // Given: room for three keys, Redis down
+        RateLimiterProperties.Failover config = new RateLimiterProperties.Failover();
+        config.setMaxKeys(3);
+        CircuitBreaker circuitBreaker = new CircuitBreakerStateMachine("rate-limiter-small",
+                CircuitBreakerConfig.custom().slidingWindowSize(4).minimumNumberOfCalls(4).build(), clock);
+        limiter = new FailoverRateLimiter("small", redis, 10, 10, config, circuitBreaker, () -> 2,
+                LocalTokenBucket::new, meterRegistry, clock::nanos);
+        redis.down = true;
+        for (int i = 0; i < 4; i++) {
+            allowed();
+        }
+
+        // When: a flood of one-off keys
+        int allowed = 0;
+        for (int i = 0; i < 50; i++) {
+            if (limiter.isAllowed(ROUTE, "ip:198.51.100." + i).block().isAllowed()) {
+                allowed++;
+            }
+        }
+
+        // Then: two keys got their own bucket, everyone else shared one bucket of 5
+        assertThat(allowed).isEqualTo(7);
+    }
+
+    private boolean allowed() {
+        return limiter.isAllowed(ROUTE, KEY).block().isAllowed();
+    }
+
+    /**
+     * Stands in for the Redis-backed limiter; can be taken down and brought back
+     */
+    private static class FakeRedisLimiter implements RateLimiter<RedisRateLimiter.Config> {
+
+        volatile boolean down;
+        volatile boolean failOpen;
+        volatile boolean leaseHit;
+        int calls;
+
+        @Override
+        public Mono<Response> isAllowed(String routeId, String id) {
+            calls++;
+            if (down) {
+                return Mono.error(new RedisConnectionFailureException("Connection refused"));
+            }
+            if (leaseHit) {
+                return Mono.just(new Response(true, Collections.emptyMap()));
+            }
+            String remaining = failOpen ? "-1" : "5";
+            return Mono.just(new Response(true, Map.of(RedisRateLimiter.REMAINING_HEADER, remaining)));
+        }
+
+        @Override
+        public Map<String, RedisRateLimiter.Config> getConfig() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Class<RedisRateLimiter.Config> getConfigClass() {
+            return RedisRateLimiter.Config.class;
+        }
+
+        @Override
+        public RedisRateLimiter.Config newConfig() {
+            return new RedisRateLimiter.Config();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        long nanos() {
+            return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for heavy-hitter detection and auto-tighten penalties
+ */
+class HeavyHitterTrackerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private RateLimiterProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimiterProperties();
+        properties.getHeavyHitters().setTopK(5);
+        properties.getHeavyHitters().setDecayInterval(Duration.ofSeconds(10));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldFindHotKeysAmongManyColdOnes() {
+        // Given: 20 000 one-off clients interleaved with three hot ones
+        HeavyHitterTracker tracker = tracker();
+
+        // When
+        for (int i = 0; i < 20_000; i++) {
+            tracker.record("ip:10.1." + (i >> 8) + "." + (i & 0xff));
+            if (i % 10 == 0) {
+                tracker.record("ip:203.0.113.7");
+            }
+            if (i % 20 == 0) {
+                tracker.record("user:u-42");
+            }
+            if (i % 40 == 0) {
+                tracker.record("apikey:feed");
+            }
+        }
+
+        // Then: ordered by volume, estimates never below the true count and close to it
+        List<HeavyHitterTracker.HeavyHitter> top = tracker.topHitters();
+        assertThat(top).hasSizeLessThanOrEqualTo(5);
+        assertThat(top.subList(0, 3)).extracting(HeavyHitterTracker.HeavyHitter::key)
+                .containsExactly("ip:203.0.113.7", "user:u-42", "apikey:feed");
+        assertThat(top.get(0).estimate()).isBetween(2_000L, 2_100L);
+        assertThat(top.get(1).estimate()).isBetween(1_000L, 1_100L);
+        assertThat(top.get(2).estimate()).isBetween(500L, 600L);
+        assertThat(meterRegistry.get("gateway.ratelimit.heavyhitters.top.estimate").gauge().value())
+                .isEqualTo(top.get(0).estimate());
+    }
+
+    @Test
+    void shouldHalveCountsEveryDecayInterval() {
+        // Given
+        HeavyHitterTracker tracker = tracker();
+        for (int i = 0; i < 1_000; i++) {
+            tracker.record("ip:203.0.113.7");
+        }
+
+        // When
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        tracker.record("ip:198.51.100.1");
+
+        // Then
+        assertThat(tracker.estimate("ip:203.0.113.7")).isEqualTo(500);
+        assertThat(tracker.topHitters().get(0).estimate()).isEqualTo(500);
+    }
+
+    @Test
+    void shouldPenalizeKeysOverTheThresholdUntilThePenaltyExpires() {
+        // Given
+        RateLimiterProperties.AutoTighten autoTighten = properties.getHeavyHitters().getAutoTighten();
+        autoTighten.setEnabled(true);
+        autoTighten.setThreshold(100);
+        autoTighten.setCostMultiplier(3);
+        autoTighten.setPenaltyDuration(Duration.ofSeconds(30));
+        HeavyHitterTracker tracker = tracker();
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            tracker.record("ip:203.0.113.7");
+            tracker.record("ip:198.51.100.1");
+        }
+        tracker.record("ip:192.0.2.9");
+
+        // Then
+        assertThat(tracker.costMultiplier("ip:203.0.113.7")).isEqualTo(3);
+        assertThat(tracker.costMultiplier("ip:192.0.2.9")).isEqualTo(1);
+        assertThat(tracker.topHitters().get(0).penalized()).isTrue();
+        assertThat(meterRegistry.get("gateway.ratelimit.heavyhitters.penalties").counter().count()).isEqualTo(2);
+
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertThat(tracker.costMultiplier("ip:203.0.113.7")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStopCountingWhenDisabled() {
+        // Given
+        properties.getHeavyHitters().setEnabled(false);
+        HeavyHitterTracker tracker = tracker();
+
+        // When
+        String key = tracker.record("ip:203.0.113.7");
+
+        // Then
+        assertThat(key).isEqualTo("ip:203.0.113.7");
+        assertThat(tracker.estimate(key)).isZero();
+        assertThat(tracker.topHitters()).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldMaskKeysInTheSnapshot() {
+        // Given
+        HeavyHitterTracker tracker = tracker();
+        tracker.record("session:s-secret");
+        tracker.record("ip:203.0.113.7");
+
+        // When
+        List<HeavyHitterTracker.HeavyHitter> hitters =
+                (List<HeavyHitterTracker.HeavyHitter>) tracker.snapshot().get("hitters");
+
+        // Then
+        assertThat(hitters).extracting(HeavyHitterTracker.HeavyHitter::key)
+                .contains("ip:203.0.113.0/24")
+                .noneMatch(key -> key.contains("s-secret") || key.contains("203.0.113.7"));
+    }
+
+    private HeavyHitterTracker tracker() {
+        return new HeavyHitterTracker(properties::getHeavyHitters, meterRegistry, clock::get);
+    }
+}
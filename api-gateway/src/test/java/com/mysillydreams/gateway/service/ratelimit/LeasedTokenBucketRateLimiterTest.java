@@ -0,0 +1,188 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter.Response;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for serving rate limit decisions from locally leased tokens
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LeasedTokenBucketRateLimiterTest {
+
+    private static final String ROUTE = "cms-api";
+    private static final String KEY = "ip:203.0.113.7";
+
+    @Mock
+    private RedisRateLimiter redisLimiter;
+
+    @Mock
+    private RedisRateLimiter leaseLimiter;
+
+    private final AtomicLong clock = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimiterProperties.Lease config;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        config = new RateLimiterProperties.Lease();
+        config.setEnabled(true);
+        config.setTtl(Duration.ofSeconds(1));
+        when(leaseLimiter.getRemainingHeader()).thenReturn(RedisRateLimiter.REMAINING_HEADER);
+        when(leaseLimiter.isAllowed(ROUTE, KEY)).thenReturn(response(true, 90));
+        when(redisLimiter.isAllowed(ROUTE, KEY)).thenReturn(response(true, 0));
+    }
+
+    @Test
+    void shouldServeBatchFromOneRedisCall() {
+        // Given
+        LeasedTokenBucketRateLimiter limiter = limiter(10);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.isAllowed(ROUTE, KEY).block().isAllowed()).isTrue();
+        }
+
+        // Then
+        verify(leaseLimiter, times(10)).isAllowed(ROUTE, KEY);
+        verify(redisLimiter, never()).isAllowed(ROUTE, KEY);
+        assertThat(meterRegistry.get("gateway.ratelimit.lease.decisions").tag("result", "local").counter().count())
+                .isEqualTo(90.0);
+    }
+
+    @Test
+    void shouldFallBackToSingleTokenWhenBatchIsDenied() {
+        // Given
+        when(leaseLimiter.isAllowed(ROUTE, KEY)).thenReturn(response(false, 3));
+        when(redisLimiter.isAllowed(ROUTE, KEY)).thenReturn(response(true, 2)).thenReturn(response(false, 0));
+        LeasedTokenBucketRateLimiter limiter = limiter(10);
+
+        // When
+        boolean first = limiter.isAllowed(ROUTE, KEY).block().isAllowed();
+        boolean second = limiter.isAllowed(ROUTE, KEY).block().isAllowed();
+
+        // Then
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        assertThat(limiter.getLeaseCount()).isZero();
+    }
+
+    @Test
+    void shouldDiscardExpiredLease() {
+        // Given
+        LeasedTokenBucketRateLimiter limiter = limiter(10);
+        limiter.isAllowed(ROUTE, KEY).block();
+
+        // When
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        limiter.isAllowed(ROUTE, KEY).block();
+
+        // Then
+        verify(leaseLimiter, times(2)).isAllowed(ROUTE, KEY);
+    }
+
+    @Test
+    void shouldNotLeaseWhenRedisFailsOpen() {
+        // Given
+        when(leaseLimiter.isAllowed(ROUTE, KEY)).thenReturn(response(true, -1));
+        LeasedTokenBucketRateLimiter limiter = limiter(10);
+
+        // When
+        limiter.isAllowed(ROUTE, KEY).block();
+        limiter.isAllowed(ROUTE, KEY).block();
+
+        // Then
+        verify(leaseLimiter, times(2)).isAllowed(ROUTE, KEY);
+        assertThat(limiter.getLeaseCount()).isZero();
+    }
+
+    @Test
+    void shouldChargeRequestedTokensPerRequestFromTheLease() {
+        // Given: two tokens per request, so a batch of 10 covers five requests
+        LeasedTokenBucketRateLimiter limiter = limiter(10, 2);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.isAllowed(ROUTE, KEY).block().isAllowed()).isTrue();
+        }
+
+        // Then
+        verify(leaseLimiter, times(2)).isAllowed(ROUTE, KEY);
+        assertThat(limiter.tokens(3)).isEqualTo(6);
+        assertThat(limiter.tokens(500)).isEqualTo(100);
+    }
+
+    @Test
+    void shouldSendWeightedRequestsNeedingABatchToRedis() {
+        // Given: cost 5 at two tokens each is a whole batch
+        LeasedTokenBucketRateLimiter limiter = limiter(10, 2);
+
+        // When
+        limiter.isAllowed(ROUTE, KEY).contextWrite(RequestCost.context(5)).block();
+
+        // Then
+        verify(redisLimiter, times(1)).isAllowed(ROUTE, KEY);
+        verify(leaseLimiter, never()).isAllowed(ROUTE, KEY);
+    }
+
+    @Test
+    void shouldCapBatchByErrorBound() {
+        // Given
+        config.setBatchSize(50);
+        config.setMaxErrorRatio(0.1);
+
+        // When/Then
+        assertThat(config.effectiveBatchSize(200)).isEqualTo(20);
+        assertThat(config.effectiveBatchSize(10)).isEqualTo(1);
+        assertThat(config.effectiveBatchSize(1000)).isEqualTo(50);
+    }
+
+    @Test
+    void shouldPassThroughWhenDisabled() {
+        // Given
+        config.setEnabled(false);
+        LeasedTokenBucketRateLimiter limiter = limiter(10);
+
+        // When
+        limiter.isAllowed(ROUTE, KEY).block();
+        limiter.isAllowed(ROUTE, KEY).block();
+
+        // Then
+        verify(redisLimiter, times(2)).isAllowed(ROUTE, KEY);
+        verify(leaseLimiter, never()).isAllowed(ROUTE, KEY);
+    }
+
+    private LeasedTokenBucketRateLimiter limiter(int batchSize) {
+        return limiter(batchSize, 1);
+    }
+
+    private LeasedTokenBucketRateLimiter limiter(int batchSize, int requestedTokens) {
+        return new LeasedTokenBucketRateLimiter("api", redisLimiter, leaseLimiter, batchSize, 100, requestedTokens,
+                config, meterRegistry, clock::get);
+    }
+
+    private static Mono<Response> response(boolean allowed, long remaining) {
+        return Mono.just(new Response(allowed, Map.of(RedisRateLimiter.REMAINING_HEADER, String.valueOf(remaining))));
+    }
+}
@@ -0,0 +1,132 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.constants.HeaderConstants;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the GCRA and sliding window limiters and their in-memory counterparts
+ */
+class RateLimitAlgorithmsTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void shouldNotLetABurstThroughAtTheWindowEdge() {
+        // Given: 5 requests per second; the client spends a full quota just before the window rolls over
+        LocalLimit tokenBucket = new LocalTokenBucket(5, 10, 0);
+        LocalLimit slidingWindow = new LocalSlidingWindow(5, Duration.ofSeconds(1), 0);
+        long edge = SECOND - SECOND / 100;
+
+        // When
+        int bucketAllowed = acquireAll(tokenBucket, edge) + acquireAll(tokenBucket, SECOND + SECOND / 100);
+        int windowAllowed = acquireAll(slidingWindow, edge) + acquireAll(slidingWindow, SECOND + SECOND / 100);
+
+        // Then: the token bucket lets its whole burst through and then some; the window holds at the limit
+        assertThat(bucketAllowed).isGreaterThanOrEqualTo(10);
+        assertThat(windowAllowed).isEqualTo(5);
+    }
+
+    @Test
+    void shouldHoldTheRateUnderSteadyOverload() {
+        // Given: a client sending 20 requests per second against a limit of 5 per second, for 60 seconds
+        LocalLimit slidingWindow = new LocalSlidingWindow(5, Duration.ofSeconds(1), 0);
+        LocalLimit gcra = new LocalTokenBucket(5, 1, 0);
+
+        // When
+        int windowAllowed = 0;
+        int gcraAllowed = 0;
+        for (long now = 0; now < 60 * SECOND; now += SECOND / 20) {
+            windowAllowed += slidingWindow.tryAcquire(now) ? 1 : 0;
+            gcraAllowed += gcra.tryAcquire(now) ? 1 : 0;
+        }
+
+        // Then: GCRA is exact; the window counter never overshoots but errs low, since the previous
+        // window's count is only an estimate of what still overlaps
+        assertThat(gcraAllowed).isBetween(300, 301);
+        assertThat(windowAllowed).isBetween(240, 300);
+    }
+
+    @Test
+    void shouldForgetAClientAfterTwoQuietWindows() {
+        // Given
+        LocalLimit slidingWindow = new LocalSlidingWindow(5, Duration.ofSeconds(1), 0);
+        acquireAll(slidingWindow, SECOND / 2);
+
+        // When/Then
+        assertThat(slidingWindow.isFull(SECOND + SECOND / 2)).isFalse();
+        assertThat(slidingWindow.available(SECOND + SECOND / 2)).isEqualTo(2);
+        assertThat(slidingWindow.isFull(2 * SECOND)).isTrue();
+        assertThat(slidingWindow.available(2 * SECOND)).isEqualTo(5);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldMapScriptResultsToRedisRateLimiterHeaders() {
+        // Given
+        ReactiveStringRedisTemplate template = mock(ReactiveStringRedisTemplate.class);
+        when(template.execute(any(RedisScript.class), anyList(), anyList()))
+                .thenReturn(Flux.just(List.of(0L, 0L, 120L, 900L)));
+        GcraRateLimiter limiter = new GcraRateLimiter(10, 20, 1);
+        limiter.setRedisTemplate(template);
+
+        // When
+        RateLimiter.Response response = limiter.isAllowed("cms-api", "ip:203.0.113.7").block();
+
+        // Then
+        assertThat(response.isAllowed()).isFalse();
+        assertThat(response.getHeaders())
+                .containsEntry(RedisRateLimiter.REMAINING_HEADER, "0")
+                .containsEntry(RedisRateLimiter.REPLENISH_RATE_HEADER, "10")
+                .containsEntry(RedisRateLimiter.BURST_CAPACITY_HEADER, "20")
+                .containsEntry(HeaderConstants.RATE_LIMIT_RESET, "1")
+                .containsEntry(HeaderConstants.RETRY_AFTER, "1");
+        verify(template).execute(any(RedisScript.class), eq(List.of("gcra_rate_limiter.{ip:203.0.113.7}")),
+                eq(List.of("10", "20", "1")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldFailOpenLikeRedisRateLimiter() {
+        // Given
+        ReactiveStringRedisTemplate template = mock(ReactiveStringRedisTemplate.class);
+        when(template.execute(any(RedisScript.class), anyList(), anyList()))
+                .thenReturn(Flux.error(new RedisConnectionFailureException("down")));
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(5, Duration.ofSeconds(2), 1);
+        limiter.setRedisTemplate(template);
+
+        // When
+        RateLimiter.Response response = limiter.isAllowed("auth", "ip:203.0.113.7").block();
+
+        // Then
+        assertThat(response.isAllowed()).isTrue();
+        assertThat(response.getHeaders())
+                .containsEntry(RedisRateLimiter.REMAINING_HEADER, "-1")
+                .containsEntry(RedisRateLimiter.BURST_CAPACITY_HEADER, "10")
+                .doesNotContainKey(HeaderConstants.RATE_LIMIT_REMAINING);
+    }
+
+    private static int acquireAll(LocalLimit limit, long now) {
+        int allowed = 0;
+        while (allowed < 100 && limit.tryAcquire(now)) {
+            allowed++;
+        }
+        return allowed;
+    }
+}
@@ -0,0 +1,53 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for masking rate limit keys in logs and actuator output
+ */
+class RateLimitKeyMaskerTest {
+
+    private final RateLimitKeyMasker masker = new RateLimitKeyMasker();
+
+    @Test
+    void shouldTruncateClientIps() {
+        assertThat(masker.mask("ip:203.0.113.7")).isEqualTo("ip:203.0.113.0/24");
+        assertThat(masker.mask("ip:2001:db8:1:2::5")).isEqualTo("ip:2001:db8:1::/48");
+        assertThat(masker.mask("ip:2001:db8::1")).isEqualTo("ip:2001:db8::/48");
+        assertThat(masker.mask("anonymous:203.0.113.7")).isEqualTo("anonymous:203.0.113.0/24");
+        assertThat(masker.mask("ip:unknown")).isEqualTo("ip:unknown");
+    }
+
+    @Test
+    void shouldDigestIdentifiersConsistently() {
+        // When
+        String session = masker.mask("session:s-secret");
+        String user = masker.mask("user:u-42");
+        String apiKey = masker.mask("apikey:0123456789abcdef0123456789abcdef");
+
+        // Then: prefixes survive, ids do not, and the same id masks the same way
+        assertThat(session).startsWith("session:").doesNotContain("s-secret").hasSize("session:".length() + 16);
+        assertThat(user).startsWith("user:").doesNotContain("u-42");
+        assertThat(apiKey).startsWith("apikey:").doesNotContain("0123456789abcdef");
+        assertThat(masker.mask("session:s-secret")).isEqualTo(session);
+        assertThat(masker.mask("session:s-other")).isNotEqualTo(session);
+    }
+
+    @Test
+    void shouldMaskEachPartOfCombinedKeys() {
+        // When
+        String user = masker.mask("user:u-42:ip:203.0.113.7:endpoint:content");
+        String anonymous = masker.mask("anonymous:ip:2001:db8:1:2::5:endpoint:auth");
+
+        // Then
+        assertThat(user).startsWith("user:").endsWith(":ip:203.0.113.0/24:endpoint:content").doesNotContain("u-42");
+        assertThat(anonymous).isEqualTo("anonymous:ip:2001:db8:1::/48:endpoint:auth");
+    }
+
+    @Test
+    void shouldDigestUnrecognisedKeys() {
+        assertThat(masker.mask("custom-key")).hasSize(16).doesNotContain("custom");
+    }
+}
@@ -0,0 +1,134 @@
+package com.mysillydreams.gateway.service.ratelimit;
+
+import com.mysillydreams.gateway.config.properties.RateLimiterProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for request cost rules and how limiters take weighted costs
+ */
+class RequestCostModelTest {
+
+    private RateLimiterProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        RateLimiterProperties.CostRule search = new RateLimiterProperties.CostRule();
+        search.setRoute("cms-api");
+        search.setPath("/api/contents/search/**");
+        search.setMethods(List.of("GET"));
+        search.setTokens(5);
+        search.setQueryParams(Map.of("size", 20));
+        search.setMaxTokens(20);
+
+        RateLimiterProperties.CostRule writes = new RateLimiterProperties.CostRule();
+        writes.setRoute("cms-api");
+        writes.setMethods(List.of("post", "PUT"));
+        writes.setTokens(2);
+        writes.setBodyBytesPerToken(1024);
+
+        properties = new RateLimiterProperties();
+        properties.setCosts(List.of(search, writes));
+    }
+
+    @Test
+    void shouldPriceByRouteMethodAndQuery() {
+        // Given
+        RequestCostModel model = new RequestCostModel(properties);
+
+        // When/Then
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.get("/api/contents/42")))).isEqualTo(1);
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.get("/api/contents/search")))).isEqualTo(5);
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.get("/api/contents/search/tags?size=100"))))
+                .isEqualTo(10);
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.get("/api/contents/search?size=100000"))))
+                .as("capped at maxTokens").isEqualTo(20);
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.get("/api/contents/search?size=-3"))))
+                .as("non-numeric and negative values are ignored").isEqualTo(5);
+        assertThat(model.costOf(routed("user-service", MockServerHttpRequest.get("/api/contents/search"))))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldPriceByBodySize() {
+        // Given
+        RequestCostModel model = new RequestCostModel(properties);
+
+        // When/Then
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.post("/api/contents").contentLength(0))))
+                .isEqualTo(2);
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.post("/api/contents").contentLength(4097))))
+                .isEqualTo(7);
+    }
+
+    @Test
+    void shouldChargeTheCapWhenTheBodySizeIsUnknown() {
+        // Given
+        RequestCostModel model = new RequestCostModel(properties);
+
+        // Then: a chunked upload has no Content-Length to price, so it pays max-tokens (50 by default)
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.post("/api/contents")
+                .header("Transfer-Encoding", "chunked")))).isEqualTo(50);
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.put("/api/contents/1")))).isEqualTo(50);
+    }
+
+    @Test
+    void shouldSkipInvalidRules() {
+        // Given
+        RateLimiterProperties.CostRule broken = new RateLimiterProperties.CostRule();
+        broken.setPath("/api/{unclosed");
+        properties.setCosts(List.of(broken, properties.getCosts().get(0)));
+
+        // When
+        RequestCostModel model = new RequestCostModel(properties);
+
+        // Then
+        assertThat(model.costOf(routed("cms-api", MockServerHttpRequest.get("/api/contents/search")))).isEqualTo(5);
+    }
+
+    @Test
+    void shouldTakeWeightedCostsFromLocalLimits() {
+        // Given: 10 tokens per second, burst 10
+        LocalLimit bucket = new LocalTokenBucket(10, 10, 0);
+        LocalLimit window = new LocalSlidingWindow(10, Duration.ofSeconds(1), 0);
+
+        // When/Then
+        assertThat(bucket.tryAcquire(0, 7)).isTrue();
+        assertThat(bucket.tryAcquire(0, 4)).isFalse();
+        assertThat(bucket.tryAcquire(0, 3)).isTrue();
+        assertThat(window.tryAcquire(0, 7)).isTrue();
+        assertThat(window.tryAcquire(0, 4)).isFalse();
+        assertThat(window.available(0)).isEqualTo(3);
+    }
+
+    @Test
+    void shouldCapTokensAtTheBurstCapacity() {
+        // Given
+        WeightedRedisRateLimiter limiter = new WeightedRedisRateLimiter(10, 20, 1);
+        GcraRateLimiter gcra = new GcraRateLimiter(10, 20, 2);
+
+        // When/Then
+        assertThat(limiter.tokens(1)).isEqualTo(1);
+        assertThat(limiter.tokens(5)).isEqualTo(5);
+        assertThat(limiter.tokens(500)).isEqualTo(20);
+        assertThat(gcra.tokens(5)).isEqualTo(10);
+        assertThat(gcra.tokens(50)).isEqualTo(20);
+    }
+
+    private static MockServerWebExchange routed(String routeId, MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        Route route = Route.async().id(routeId).uri("http://localhost").predicate(e -> true).build();
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        return exchange;
+    }
+}
@@ -0,0 +1,165 @@
+package com.mysillydreams.gateway.service.revocation;
+
+import com.mysillydreams.gateway.config.JwtProperties;
+import com.mysillydreams.gateway.service.VerifiedPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for Bloom-filter-backed token revocation with a mocked Redis template
+ */
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRevocationService revocationService;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties.Revocation config = new JwtProperties.Revocation();
+        config.setEnabled(true);
+        meterRegistry = new SimpleMeterRegistry();
+        revocationService = new TokenRevocationService(config, redisTemplate, meterRegistry, Clock.systemUTC());
+    }
+
+    @Test
+    void shouldSkipRedisWhenFilterSaysAbsent() {
+        // When
+        Boolean revoked = revocationService.isRevoked(principal("jti-1")).block();
+
+        // Then
+        assertThat(revoked).isFalse();
+        verify(redisTemplate, never()).hasKey(anyString());
+    }
+
+    @Test
+    void shouldConfirmFilterHitAgainstRedis() {
+        // Given
+        revocationService.onRevocationMessage("jti-1|" + System.currentTimeMillis());
+        when(redisTemplate.hasKey("jwt:revoked:jti-1")).thenReturn(Mono.just(true));
+
+        // When/Then
+        assertThat(revocationService.isRevoked(principal("jti-1")).block()).isTrue();
+        assertThat(meterRegistry.get("gateway.jwt.revocation.sync.lag").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCountUnconfirmedHitAsFalsePositive() {
+        // Given
+        revocationService.onRevocationMessage("jti-1");
+        when(redisTemplate.hasKey("jwt:revoked:jti-1")).thenReturn(Mono.just(false));
+
+        // When/Then
+        assertThat(revocationService.isRevoked(principal("jti-1")).block()).isFalse();
+        assertThat(meterRegistry.get("gateway.jwt.revocation.false.positive.ratio").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldFailClosedOnFilterHitWhenRedisIsDown() {
+        // Given
+        revocationService.onRevocationMessage("jti-1");
+        when(redisTemplate.hasKey("jwt:revoked:jti-1")).thenReturn(Mono.error(new IllegalStateException("connection refused")));
+
+        // When/Then
+        assertThat(revocationService.isRevoked(principal("jti-1")).block()).isTrue();
+    }
+
+    @Test
+    void shouldSeedFilterFromRedisOnRebuild() {
+        // Given
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(Flux.just("jwt:revoked:jti-7"));
+        when(redisTemplate.hasKey(anyString())).thenReturn(Mono.just(true));
+
+        // When
+        revocationService.rebuild().block();
+
+        // Then
+        assertThat(revocationService.isRevoked(principal("jti-7")).block()).isTrue();
+    }
+
+    @Test
+    void shouldKeepRevocationsThatArriveDuringARebuild() {
+        // Given: a revocation is broadcast while the scan is still running
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(Flux.just("jwt:revoked:jti-7")
+                .doOnComplete(() -> revocationService.onRevocationMessage("jti-9")));
+        when(redisTemplate.hasKey(anyString())).thenReturn(Mono.just(true));
+
+        // When
+        revocationService.rebuild().block();
+
+        // Then
+        assertThat(revocationService.isRevoked(principal("jti-9")).block()).isTrue();
+        assertThat(tracked()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldTrackLocalRevocationsOnceWhenTheBroadcastComesBack() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.set(eq("jwt:revoked:jti-1"), eq("1"), any(Duration.class))).thenReturn(Mono.just(true));
+        when(redisTemplate.convertAndSend(eq("jwt:revocations"), anyString())).thenReturn(Mono.just(1L));
+
+        // When
+        revocationService.revoke("jti-1", Instant.now().plusSeconds(60)).block();
+        revocationService.onRevocationMessage("jti-1|" + System.currentTimeMillis());
+
+        // Then
+        assertThat(tracked()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepBloomFilterFalsePositiveRateNearTarget() {
+        // Given
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("revoked-" + i);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("active-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        assertThat(filter.mightContain("revoked-42")).isTrue();
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    private double tracked() {
+        return meterRegistry.get("gateway.jwt.revocation.tracked").gauge().value();
+    }
+
+    private VerifiedPrincipal principal(String tokenId) {
+        return new VerifiedPrincipal("user-42", "alice", "ROLE_USER", Instant.now().plusSeconds(300), "api-gateway", tokenId);
+    }
+}
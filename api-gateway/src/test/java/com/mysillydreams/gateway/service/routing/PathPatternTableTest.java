@@ -0,0 +1,136 @@
+package com.mysillydreams.gateway.service.routing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for the compiled path pattern table behind GlobalTimeoutFilter
+ */
+class PathPatternTableTest {
+
+    @Test
+    void shouldMatchLikeAntPathMatcherForSinglePatterns() {
+        // Given
+        AntPathMatcher antMatcher = new AntPathMatcher();
+        List<String> patterns = List.of("/actuator/**", "/health", "/api/*/items", "/api/{id}/items/*",
+                "/static/*.js", "/api/v?/users", "/api/**/export", "/**", "/api/health/**");
+        List<String> paths = List.of("/", "/health", "/healthz", "/actuator", "/actuator/metrics/jvm",
+                "/api/1/items", "/api/1/items/2", "/api/1/2/items", "/static/app.js", "/static/app.css",
+                "/static/a/b.js", "/api/v1/users", "/api/v12/users", "/api/export", "/api/a/b/export",
+                "/api/a/b/export/x", "/api/health", "/api/health/deep/check");
+
+        for (String pattern : patterns) {
+            PathPatternTable<String> table = PathPatternTable.<String>builder().add(pattern, pattern).build();
+            for (String path : paths) {
+                // When/Then
+                assertThat(table.matches(path))
+                        .as("%s against %s", path, pattern)
+                        .isEqualTo(antMatcher.match(pattern, path));
+            }
+        }
+    }
+
+    @Test
+    void shouldPreferTheMostSpecificPattern() {
+        // Given: added least specific first
+        PathPatternTable<Duration> table = PathPatternTable.<Duration>builder()
+                .add("/**", Duration.ofSeconds(30))
+                .add("/api/**", Duration.ofSeconds(15))
+                .add("/api/*/reports/**", Duration.ofMinutes(1))
+                .add("/api/admin/reports/**", Duration.ofMinutes(2))
+                .add("/api/admin/reports/daily", Duration.ofMinutes(5))
+                .build();
+
+        // When/Then
+        assertThat(table.match("/api/admin/reports/daily")).isEqualTo(Duration.ofMinutes(5));
+        assertThat(table.match("/api/admin/reports/weekly")).isEqualTo(Duration.ofMinutes(2));
+        assertThat(table.match("/api/users/reports")).isEqualTo(Duration.ofMinutes(1));
+        assertThat(table.match("/api/users/profile")).isEqualTo(Duration.ofSeconds(15));
+        assertThat(table.match("/other")).isEqualTo(Duration.ofSeconds(30));
+        assertThat(table.match("/")).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void shouldBackUpToALessSpecificBranchWhenTheSpecificOneFails() {
+        // Given
+        PathPatternTable<String> table = PathPatternTable.<String>builder()
+                .add("/api/users/*/avatar", "avatar")
+                .add("/api/*/42/orders", "orders")
+                .add("/api/**", "api")
+                .build();
+
+        // When/Then
+        assertThat(table.match("/api/users/42/avatar")).isEqualTo("avatar");
+        assertThat(table.match("/api/users/42/orders")).isEqualTo("orders");
+        assertThat(table.match("/api/users/42/settings")).isEqualTo("api");
+    }
+
+    @Test
+    void shouldKeepTheFirstValueForEquivalentPatterns() {
+        // Given: {id} and * both stand for one segment
+        PathPatternTable<String> table = PathPatternTable.<String>builder()
+                .add("/api/{id}", "first")
+                .add("/api/*", "second")
+                .add("/api/**", "catch-all")
+                .add("/api/**", "ignored")
+                .build();
+
+        // When/Then
+        assertThat(table.match("/api/7")).isEqualTo("first");
+        assertThat(table.match("/api/7/8")).isEqualTo("catch-all");
+        assertThat(table.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldIgnoreRepeatedAndTrailingSeparators() {
+        // Given
+        PathPatternTable<String> table = PathPatternTable.<String>builder()
+                .add("/api/upload/**", "upload")
+                .build();
+
+        // When/Then
+        assertThat(table.match("//api//upload/file")).isEqualTo("upload");
+        assertThat(table.match("/api/upload/")).isEqualTo("upload");
+        assertThat(table.match("/api/uploads")).isNull();
+    }
+
+    @Test
+    void shouldMatchNothingWhenEmpty() {
+        // When/Then
+        assertThat(PathPatternTable.<String>builder().build().match("/api")).isNull();
+        assertThat(PathPatternTable.empty().isEmpty()).isTrue();
+        assertThat(PathPatternTable.empty().match(null)).isNull();
+        assertThatThrownBy(() -> PathPatternTable.<String>builder().add(null, "x"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldMatchSegmentGlobsInPlace() {
+        // When/Then
+        assertThat(PathPatternTable.globMatches("*.js", "/static/app.js", 8, 14)).isTrue();
+        assertThat(PathPatternTable.globMatches("a*b*c", "xabxxbcx", 1, 7)).isTrue();
+        assertThat(PathPatternTable.globMatches("a*b*c", "xabxxbx", 1, 7)).isFalse();
+        assertThat(PathPatternTable.globMatches("v?", "v1", 0, 2)).isTrue();
+        assertThat(PathPatternTable.globMatches("v?", "v", 0, 1)).isFalse();
+    }
+
+    @Test
+    void shouldRejectTemplateVariablesItCannotEnforce() {
+        // Given
+        PathPatternTable.Builder<String> builder = PathPatternTable.builder();
+
+        // When/Then: a regex or a partial-segment variable would otherwise match as a plain wildcard
+        assertThatThrownBy(() -> builder.add("/api/items/{id:\\d+}", "regex"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("{id:\\d+}");
+        assertThatThrownBy(() -> builder.add("/files/report-{id}.pdf", "partial"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(builder.add("/api/items/{id}", "plain").build().match("/api/items/abc")).isEqualTo("plain");
+    }
+}
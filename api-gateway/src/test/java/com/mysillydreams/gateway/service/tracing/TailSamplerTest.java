@@ -0,0 +1,240 @@
+package com.mysillydreams.gateway.service.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.mysillydreams.gateway.config.TracingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for tail-based sampling of gateway traces
+ */
+class TailSamplerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<MutableSpan> exported = new ArrayList<>();
+    private final SpanHandler exporter = new SpanHandler() {
+        @Override
+        public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+            exported.add(span);
+            return true;
+        }
+    };
+
+    private TracingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private double draw;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TracingProperties();
+        properties.getTailSampling().setEnabled(true);
+        properties.getTailSampling().setLatencyThreshold(Duration.ofMillis(500));
+        meterRegistry = new SimpleMeterRegistry();
+        draw = 1.0;
+    }
+
+    @Test
+    void shouldExportSlowTracesWithTheSpansHeldForThem() {
+        // Given
+        TailSampler sampler = sampler();
+        MutableSpan client = span("http client", 0, 600_000);
+
+        // When: the child is held until the root decides
+        boolean childPassed = sampler.end(context(1, 2), client, SpanHandler.Cause.FINISHED);
+        boolean rootPassed = sampler.end(context(1, 1), root("cms-api", 700_000, null), SpanHandler.Cause.FINISHED);
+
+        // Then
+        assertThat(childPassed).isFalse();
+        assertThat(rootPassed).isTrue();
+        assertThat(exported).containsExactly(client);
+        assertThat(kept("latency")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropFastSuccessfulTraces() {
+        // Given
+        TailSampler sampler = sampler();
+
+        // When
+        sampler.end(context(1, 2), span("http client", 0, 1_000), SpanHandler.Cause.FINISHED);
+        boolean rootPassed = sampler.end(context(1, 1), root("cms-api", 2_000, "200"), SpanHandler.Cause.FINISHED);
+        boolean lateChild = sampler.end(context(1, 3), span("late", 0, 3_000), SpanHandler.Cause.FINISHED);
+
+        // Then
+        assertThat(rootPassed).isFalse();
+        assertThat(lateChild).isFalse();
+        assertThat(exported).isEmpty();
+        assertThat(dropped("sampled_out")).isEqualTo(2);
+    }
+
+    @Test
+    void shouldKeepFailedFallbackAndCutOffTraces() {
+        // Given
+        TailSampler sampler = sampler();
+        MutableSpan fallback = root("cms-api", 1_000, "503");
+        fallback.tag(TailSampler.FALLBACK_TAG, "true");
+        MutableSpan cancelled = root("cms-api", 1_000, null);
+        cancelled.tag("reactor.signal", "cancel");
+
+        // When/Then
+        assertThat(sampler.end(context(1, 1), root("cms-api", 1_000, "502"), SpanHandler.Cause.FINISHED)).isTrue();
+        assertThat(sampler.end(context(2, 1), cancelled, SpanHandler.Cause.FINISHED)).isTrue();
+        assertThat(kept("error")).isEqualTo(1);
+        assertThat(kept("cut_off")).isEqualTo(1);
+
+        MutableSpan fellBack = root("cms-api", 1_000, "200");
+        fellBack.tag(TailSampler.FALLBACK_TAG, "true");
+        assertThat(sampler.end(context(3, 1), fellBack, SpanHandler.Cause.FINISHED)).isTrue();
+        assertThat(kept("fallback")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldApplyRouteThresholdsAndTheBaseline() {
+        // Given
+        properties.getTailSampling().getRouteLatencyThresholds().put("auth-login", Duration.ofMillis(100));
+        TailSampler sampler = sampler();
+
+        // When/Then
+        assertThat(sampler.end(context(1, 1), root("auth-login", 150_000, "200"), SpanHandler.Cause.FINISHED)).isTrue();
+        assertThat(sampler.end(context(2, 1), root("cms-api", 150_000, "200"), SpanHandler.Cause.FINISHED)).isFalse();
+        draw = 0.0;
+        assertThat(sampler.end(context(3, 1), root("cms-api", 150_000, "200"), SpanHandler.Cause.FINISHED)).isTrue();
+        assertThat(kept("baseline")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldLetLateSpansFollowAKeepDecision() {
+        // Given
+        TailSampler sampler = sampler();
+        sampler.end(context(1, 1), root("cms-api", 900_000, "200"), SpanHandler.Cause.FINISHED);
+
+        // When/Then
+        assertThat(sampler.end(context(1, 5), span("late", 0, 1_000), SpanHandler.Cause.FINISHED)).isTrue();
+    }
+
+    @Test
+    void shouldCapHeldTracesAndSpans() {
+        // Given: two traces and two spans per trace at most
+        properties.getTailSampling().setMaxTraces(2);
+        properties.getTailSampling().setMaxSpansPerTrace(2);
+        TailSampler sampler = sampler();
+
+        // When
+        for (int span = 2; span < 5; span++) {
+            sampler.end(context(1, span), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+        }
+        sampler.end(context(2, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+        sampler.end(context(3, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+
+        // Then: trace 1 held two spans, lost one to the span cap and was pushed out by trace 3
+        assertThat(dropped("span_limit")).isEqualTo(1);
+        assertThat(dropped("overflow")).isEqualTo(2);
+        assertThat(pending()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldExpireTracesWhoseRootNeverArrives() {
+        // Given
+        TailSampler sampler = sampler();
+        sampler.end(context(1, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+
+        // When
+        clock.addAndGet(Duration.ofSeconds(6).toNanos());
+        boolean rootPassed = sampler.end(context(1, 1), root("cms-api", 900_000, "500"), SpanHandler.Cause.FINISHED);
+
+        // Then
+        assertThat(rootPassed).isFalse();
+        assertThat(exported).isEmpty();
+        assertThat(dropped("expired")).isEqualTo(2);
+    }
+
+    @Test
+    void shouldOnlyCountUndecidedTracesAsPending() {
+        // Given
+        TailSampler sampler = sampler();
+        sampler.end(context(1, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+        sampler.end(context(2, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+        sampler.end(context(3, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+
+        // When: one trace is kept and one sampled out
+        sampler.end(context(1, 1), root("cms-api", 900_000, "200"), SpanHandler.Cause.FINISHED);
+        sampler.end(context(2, 1), root("cms-api", 1_000, "200"), SpanHandler.Cause.FINISHED);
+
+        // Then
+        assertThat(pending()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExpireStaleTracesAsTheRingAdvances() {
+        // Given
+        TailSampler sampler = sampler();
+        sampler.end(context(1, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+        sampler.end(context(1, 3), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+
+        // When: no further span of trace 1 arrives, but a new trace registers after the window
+        clock.addAndGet(Duration.ofSeconds(6).toNanos());
+        sampler.end(context(2, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED);
+
+        // Then
+        assertThat(dropped("expired")).isEqualTo(2);
+        assertThat(pending()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldPassEverythingThroughWhenDisabled() {
+        // Given
+        properties.getTailSampling().setEnabled(false);
+        TailSampler sampler = sampler();
+
+        // When/Then
+        assertThat(sampler.end(context(1, 2), span("child", 0, 1_000), SpanHandler.Cause.FINISHED)).isTrue();
+        assertThat(sampler.end(context(1, 1), root("cms-api", 1_000, "200"), SpanHandler.Cause.FINISHED)).isTrue();
+    }
+
+    private TailSampler sampler() {
+        return new TailSampler(properties, meterRegistry, clock::get, () -> draw, () -> List.of(exporter));
+    }
+
+    private static TraceContext context(long traceId, long spanId) {
+        return TraceContext.newBuilder().traceId(traceId).spanId(spanId).sampled(true).build();
+    }
+
+    private static MutableSpan span(String name, long startMicros, long finishMicros) {
+        MutableSpan span = new MutableSpan();
+        span.name(name);
+        span.startTimestamp(startMicros);
+        span.finishTimestamp(finishMicros);
+        return span;
+    }
+
+    private static MutableSpan root(String routeId, long durationMicros, String status) {
+        MutableSpan root = span(TailSampler.ROOT_SPAN_NAME, 1, 1 + durationMicros);
+        root.tag(TailSampler.ROUTE_TAG, routeId);
+        if (status != null) {
+            root.tag("http.status_code", status);
+        }
+        return root;
+    }
+
+    private double kept(String reason) {
+        return meterRegistry.get("gateway.tracing.tail.kept").tag("reason", reason).counter().count();
+    }
+
+    private double pending() {
+        return meterRegistry.get("gateway.tracing.tail.pending").gauge().value();
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("gateway.tracing.tail.dropped").tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,102 @@
+package com.mysillydreams.gateway.service.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for W3C traceparent and tracestate handling
+ */
+class TraceParentTest {
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String PARENT_ID = "00f067aa0ba902b7";
+
+    @Test
+    void shouldParseValidHeaders() {
+        // When
+        TraceParent sampled = TraceParent.parse("00-" + TRACE_ID + "-" + PARENT_ID + "-01");
+        TraceParent unsampled = TraceParent.parse(" 00-" + TRACE_ID + "-" + PARENT_ID + "-00\t");
+        TraceParent otherFlags = TraceParent.parse("00-" + TRACE_ID + "-" + PARENT_ID + "-02");
+
+        // Then
+        assertThat(sampled).isNotNull();
+        assertThat(sampled.traceId()).isEqualTo(TRACE_ID);
+        assertThat(sampled.parentId()).isEqualTo(PARENT_ID);
+        assertThat(sampled.sampled()).isTrue();
+        assertThat(unsampled.sampled()).isFalse();
+        assertThat(unsampled.traceId()).isEqualTo(TRACE_ID);
+        assertThat(otherFlags.sampled()).isFalse();
+    }
+
+    @Test
+    void shouldAcceptLongerHeadersFromFutureVersions() {
+        // When/Then
+        assertThat(TraceParent.parse("01-" + TRACE_ID + "-" + PARENT_ID + "-01-extra")).isNotNull();
+        assertThat(TraceParent.parse("01-" + TRACE_ID + "-" + PARENT_ID + "-01")).isNotNull();
+        assertThat(TraceParent.parse("01-" + TRACE_ID + "-" + PARENT_ID + "-01x")).isNull();
+        assertThat(TraceParent.parse("00-" + TRACE_ID + "-" + PARENT_ID + "-01-extra")).isNull();
+    }
+
+    @Test
+    void shouldRejectInvalidHeaders() {
+        // When/Then
+        assertThat(TraceParent.parse(null)).isNull();
+        assertThat(TraceParent.parse("")).isNull();
+        assertThat(TraceParent.parse("ff-" + TRACE_ID + "-" + PARENT_ID + "-01")).isNull();
+        assertThat(TraceParent.parse("00-" + TRACE_ID.toUpperCase() + "-" + PARENT_ID + "-01")).isNull();
+        assertThat(TraceParent.parse("00-" + "0".repeat(32) + "-" + PARENT_ID + "-01")).isNull();
+        assertThat(TraceParent.parse("00-" + TRACE_ID + "-" + "0".repeat(16) + "-01")).isNull();
+        assertThat(TraceParent.parse("00-" + TRACE_ID + "_" + PARENT_ID + "-01")).isNull();
+        assertThat(TraceParent.parse("00-" + TRACE_ID + "-" + PARENT_ID + "-0g")).isNull();
+        assertThat(TraceParent.parse("00-" + TRACE_ID.substring(1) + "-" + PARENT_ID + "-01")).isNull();
+    }
+
+    @Test
+    void shouldFormatWithoutStringFormat() {
+        // When/Then
+        assertThat(TraceParent.format(TRACE_ID, PARENT_ID, true)).isEqualTo("00-" + TRACE_ID + "-" + PARENT_ID + "-01");
+        assertThat(TraceParent.format(TRACE_ID, PARENT_ID, false)).isEqualTo("00-" + TRACE_ID + "-" + PARENT_ID + "-00");
+        assertThat(TraceParent.format("a3ce929d0e0e4736", PARENT_ID, true))
+                .isEqualTo("00-0000000000000000a3ce929d0e0e4736-" + PARENT_ID + "-01");
+        assertThat(TraceParent.parse(TraceParent.format(TRACE_ID, PARENT_ID, true)).traceId()).isEqualTo(TRACE_ID);
+    }
+
+    @Test
+    void shouldForwardValidTraceStateAsIs() {
+        // Given
+        String traceState = "congo=t61rcWkgMzE, rojo=00f067aa0ba902b7";
+
+        // When/Then
+        assertThat(TraceState.sanitize(traceState)).isSameAs(traceState);
+        assertThat(TraceState.sanitize("rojo=1,,congo=2 ")).isEqualTo("rojo=1,,congo=2 ");
+    }
+
+    @Test
+    void shouldDropMalformedOrEmptyTraceState() {
+        // When/Then
+        assertThat(TraceState.sanitize(null)).isNull();
+        assertThat(TraceState.sanitize(" , ")).isNull();
+        assertThat(TraceState.sanitize("rojo")).isNull();
+        assertThat(TraceState.sanitize("rojo=1,=2")).isNull();
+        assertThat(TraceState.sanitize("rojo=")).isNull();
+    }
+
+    @Test
+    void shouldTruncateOversizedTraceStateAtMemberBoundaries() {
+        // Given: 40 members, 8 over the limit
+        StringBuilder many = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            many.append(i == 0 ? "" : ",").append("k").append(i).append("=v");
+        }
+        String tooLong = "a=" + "x".repeat(300) + ",b=" + "y".repeat(300);
+
+        // When
+        String truncated = TraceState.sanitize(many.toString());
+
+        // Then
+        assertThat(truncated.split(",")).hasSize(TraceState.MAX_MEMBERS);
+        assertThat(truncated).endsWith("k31=v");
+        assertThat(TraceState.sanitize(tooLong)).isEqualTo("a=" + "x".repeat(300));
+    }
+}
@@ -0,0 +1,166 @@
+package com.mysillydreams.gateway.service.tracing;
+
+import brave.Span;
+import brave.Tracing;
+import com.mysillydreams.gateway.config.TracingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for head-based trace sampling decisions
+ */
+class TraceSamplerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private TracingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TracingProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldSampleTheConfiguredFraction() {
+        // Given
+        properties.getSampling().setProbability(0.25);
+        TraceSampler sampler = sampler();
+
+        // When
+        int sampled = 0;
+        for (int i = 0; i < 20_000; i++) {
+            if (sampler.sample("cms-api")) {
+                sampled++;
+            }
+        }
+
+        // Then
+        assertThat(sampled).isBetween(4_500, 5_500);
+        assertThat(decisions("cms-api", "sampled") + decisions("cms-api", "dropped_ratio")).isEqualTo(20_000);
+    }
+
+    @Test
+    void shouldHonourTheExtremes() {
+        // Given
+        TraceSampler all = sampler();
+        properties.getSampling().setProbability(0.0);
+        TraceSampler none = sampler();
+
+        // When/Then
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(all.sample("cms-api")).isTrue();
+            assertThat(none.sample("cms-api")).isFalse();
+        }
+    }
+
+    @Test
+    void shouldCapTracesPerRoutePerSecond() {
+        // Given: 10 traces/s everywhere, 2 traces/s on auth-login
+        properties.getSampling().setMaxTracesPerSecond(10);
+        properties.getSampling().setRouteMaxTracesPerSecond(Map.of("auth-login", 2));
+        TraceSampler sampler = sampler();
+
+        // When
+        int api = count(sampler, "cms-api", 100);
+        int login = count(sampler, "auth-login", 100);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        int apiNextSecond = count(sampler, "cms-api", 100);
+
+        // Then
+        assertThat(api).isEqualTo(10);
+        assertThat(login).isEqualTo(2);
+        assertThat(apiNextSecond).isEqualTo(10);
+        assertThat(decisions("cms-api", "dropped_rate_cap")).isEqualTo(180);
+    }
+
+    @Test
+    void shouldKeepTheCallersDecisionForContinuedTraces() {
+        // Given: a zero probability only applies to new traces
+        properties.getSampling().setProbability(0.0);
+        properties.getSampling().setMaxTracesPerSecond(5);
+        TraceSampler sampler = sampler();
+
+        // When
+        int sampled = 0;
+        for (int i = 0; i < 10; i++) {
+            if (sampler.sampleContinued("cms-api", true)) {
+                sampled++;
+            }
+        }
+
+        // Then
+        assertThat(sampled).isEqualTo(5);
+        assertThat(sampler.sampleContinued("auth-login", false)).isFalse();
+        assertThat(decisions("cms-api", "parent_sampled")).isEqualTo(5);
+        assertThat(decisions("auth-login", "parent_unsampled")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCountErrorSamplesAndApplyRefreshedSettings() {
+        // Given
+        TraceSampler sampler = sampler();
+        sampler.recordErrorSample("cms-api");
+
+        // When
+        properties.getSampling().setProbability(0.0);
+        properties.getSampling().setAlwaysSampleErrors(false);
+        sampler.reconfigure();
+
+        // Then
+        assertThat(decisions("cms-api", "sampled_error")).isEqualTo(1);
+        assertThat(sampler.sample("cms-api")).isFalse();
+        assertThat(sampler.alwaysSampleErrors()).isFalse();
+    }
+
+    @Test
+    void shouldLetBraveRecordOnlyTheRootsItSampled() {
+        // Given
+        TraceSampler sampler = sampler();
+
+        try (Tracing tracing = Tracing.newBuilder().sampler(sampler.braveSampler()).build()) {
+            // When: a root started by other instrumentation, then one started for a sampled request
+            Span other = tracing.tracer().nextSpan();
+            Span gateway = sampler.startSampledRoot(tracing.tracer()::nextSpan);
+            Span after = tracing.tracer().nextSpan();
+
+            // Then
+            assertThat(other.isNoop()).isTrue();
+            assertThat(gateway.context().sampled()).isTrue();
+            assertThat(after.isNoop()).isTrue();
+        }
+    }
+
+    @Test
+    void shouldGenerateW3cIds() {
+        // When/Then
+        assertThat(TraceIds.traceId()).matches("[0-9a-f]{32}").isNotEqualTo("0".repeat(32));
+        assertThat(TraceIds.spanId()).matches("[0-9a-f]{16}").isNotEqualTo("0".repeat(16));
+    }
+
+    private TraceSampler sampler() {
+        return new TraceSampler(properties, meterRegistry, clock::get);
+    }
+
+    private static int count(TraceSampler sampler, String routeId, int requests) {
+        int sampled = 0;
+        for (int i = 0; i < requests; i++) {
+            if (sampler.sample(routeId)) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    private double decisions(String routeId, String decision) {
+        return meterRegistry.get("gateway.tracing.sampling").tag("route", routeId).tag("decision", decision)
+                .counter().count();
+    }
+}